@@ -0,0 +1,175 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.HiveWriter;
+import com.williballenthin.rejistry.RegistryValueType;
+import com.williballenthin.rejistry.SyntheticHiveGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * BenchmarkHives generates the synthetic hives that the benchmarks parse.
+ *   The build runs `main` to write them into target/hives; benchmarks locate them
+ *   with `getHive`, which regenerates them if they are missing.
+ */
+public class BenchmarkHives {
+    public static final String HIVE_DIRECTORY_PROPERTY = "rejistry.benchmark.hives";
+
+    ///< a balanced tree of keys, each with a handful of values.
+    public static final String TREE = "tree.hive";
+    ///< a larger tree with big data values, "ri" index roots, and mixed name encodings.
+    public static final String SCALE = "scale.hive";
+    ///< a root key with one value of each type.
+    public static final String VALUES = "values.hive";
+    ///< a root key with WIDE_SUBKEYS subkeys in a single list, in each list format.
+    public static final String WIDE_LH = "wide-lh.hive";
+    public static final String WIDE_LF = "wide-lf.hive";
+    public static final String WIDE_LI = "wide-li.hive";
+
+    public static final int TREE_DEPTH = 4;
+    public static final int TREE_FANOUT = 8;
+    public static final int WIDE_SUBKEYS = 20000;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("usage: BenchmarkHives <output directory>");
+            System.exit(1);
+        }
+        generateAll(new File(args[0]));
+    }
+
+    /**
+     * getHive locates a generated hive, generating all of them first if necessary.
+     *
+     * @param name One of the hive names defined by this class.
+     * @return The hive file.
+     */
+    public static synchronized File getHive(String name) throws IOException {
+        File directory = new File(System.getProperty(HIVE_DIRECTORY_PROPERTY, "target/hives"));
+        File hive = new File(directory, name);
+        if (!hive.isFile()) {
+            generateAll(directory);
+        }
+        return hive;
+    }
+
+    private static void generateAll(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        writeTree(new File(directory, TREE));
+        writeScale(new File(directory, SCALE));
+        writeValues(new File(directory, VALUES));
+        writeWide(new File(directory, WIDE_LH), "lh");
+        writeWide(new File(directory, WIDE_LF), "lf");
+        writeWide(new File(directory, WIDE_LI), "li");
+    }
+
+    private static void writeTree(File file) throws IOException {
+        HiveWriter w = new HiveWriter(file);
+        try {
+            w.beginKey("ROOT");
+            writeSubtree(w, new Random(0), 0);
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void writeSubtree(HiveWriter w, Random random, int depth) throws IOException {
+        if (depth == TREE_DEPTH) {
+            return;
+        }
+        for (int i = 0; i < TREE_FANOUT; i++) {
+            w.beginKey("Key" + depth + "." + i, HiveWriter.DEFAULT_TIMESTAMP + random.nextInt());
+            w.addString("DisplayName", "Synthetic key at depth " + depth + ", index " + i);
+            w.addDword("Index", i);
+            byte[] blob = new byte[64];
+            random.nextBytes(blob);
+            w.addValue("Blob", RegistryValueType.REG_BIN, blob);
+            w.addValue("Paths", RegistryValueType.REG_MULTI_SZ, multiString("C:\\Windows", "C:\\Program Files", "C:\\Users"));
+            writeSubtree(w, random, depth + 1);
+            w.endKey();
+        }
+    }
+
+    private static void writeScale(File file) throws IOException {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(3);
+        g.setFanout(24);
+        g.setValuesPerKey(6);
+        g.setBigDataInterval(500);
+        g.setMaxSubkeyListLength(8);
+        g.setNameEncoding(SyntheticHiveGenerator.NameEncoding.MIXED);
+        g.generate(file);
+    }
+
+    private static void writeValues(File file) throws IOException {
+        Random random = new Random(1);
+        HiveWriter w = new HiveWriter(file);
+        try {
+            w.beginKey("ROOT");
+            for (RegistryValueType type : RegistryValueType.values()) {
+                byte[] data;
+                switch (type) {
+                    case REG_SZ:
+                    case REG_EXPAND_SZ:
+                        data = HiveWriter.encodeString("%SystemRoot%\\System32\\svchost.exe -k netsvcs -p -s Schedule");
+                        break;
+                    case REG_MULTI_SZ:
+                        data = multiString("Schedule", "Themes", "Winmgmt", "wuauserv", "BITS", "EventSystem",
+                                "LanmanServer", "LanmanWorkstation", "Netman", "SENS");
+                        break;
+                    case REG_DWORD:
+                    case REG_BIG_ENDIAN:
+                        data = new byte[] {0x78, 0x56, 0x34, 0x12};
+                        break;
+                    case REG_QWORD:
+                        data = new byte[] {0x78, 0x56, 0x34, 0x12, 0x78, 0x56, 0x34, 0x12};
+                        break;
+                    default:
+                        data = new byte[0x1000];
+                        random.nextBytes(data);
+                }
+                w.addValue(type.toString(), type, data);
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void writeWide(File file, String listType) throws IOException {
+        HiveWriter w = new HiveWriter(file);
+        try {
+            w.setSubkeyListType(listType);
+            w.beginKey("ROOT");
+            for (int i = 0; i < WIDE_SUBKEYS; i++) {
+                w.beginKey(wideSubkeyName(i));
+                w.endKey();
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * wideSubkeyName fetches the name of the i-th subkey of the wide hives,
+     *   which look like the CLSIDs found under HKCR\CLSID.
+     */
+    public static String wideSubkeyName(int i) {
+        return String.format("{%08X-0000-0000-C000-%012X}", i * 0x9E3779B1, (long)i * 0x5DEECE66DL & 0xFFFFFFFFFFFFL);
+    }
+
+    private static byte[] multiString(String... strings) throws IOException {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        for (String s : strings) {
+            b.write(HiveWriter.encodeString(s));
+        }
+        b.write(new byte[] {0x0, 0x0});
+        return b.toByteArray();
+    }
+}
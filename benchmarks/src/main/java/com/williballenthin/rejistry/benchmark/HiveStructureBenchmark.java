@@ -0,0 +1,73 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.Cell;
+import com.williballenthin.rejistry.CellScanner;
+import com.williballenthin.rejistry.CellType;
+import com.williballenthin.rejistry.HBIN;
+import com.williballenthin.rejistry.REGFHeader;
+import com.williballenthin.rejistry.RegistryHiveFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HiveStructureBenchmark measures enumeration of the HBINs and cells of a hive,
+ *   both via the HBIN iterators and via the CellScanner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HiveStructureBenchmark {
+    private REGFHeader _header;
+
+    @Setup
+    public void setup() throws Exception {
+        this._header = new RegistryHiveFile(BenchmarkHives.getHive(BenchmarkHives.SCALE)).getHeader();
+    }
+
+    @Benchmark
+    public int getHBINs() {
+        int count = 0;
+        Iterator<HBIN> it = this._header.getHBINs();
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void getCells(Blackhole bh) {
+        Iterator<HBIN> hbins = this._header.getHBINs();
+        while (hbins.hasNext()) {
+            Iterator<Cell> cells = hbins.next().getCells();
+            while (cells.hasNext()) {
+                bh.consume(cells.next().getLength());
+            }
+        }
+    }
+
+    @Benchmark
+    public long scanNKCells() {
+        return new CellScanner(this._header).stream().filter(c -> c.getType() == CellType.NK).count();
+    }
+
+    @Benchmark
+    public long scanNKCellsParallel() {
+        return new CellScanner(this._header).parallelStream().filter(c -> c.getType() == CellType.NK).count();
+    }
+}
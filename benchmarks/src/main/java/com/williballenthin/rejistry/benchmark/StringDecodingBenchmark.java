@@ -0,0 +1,55 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.RegistryHiveFile;
+import com.williballenthin.rejistry.ValueData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringDecodingBenchmark measures the decoding of string value data by `ValueData`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringDecodingBenchmark {
+    @Param({"REG_SZ", "REG_EXPAND_SZ", "REG_MULTI_SZ"})
+    public String type;
+
+    private ValueData _data;
+
+    @Setup
+    public void setup() throws Exception {
+        this._data = new RegistryHiveFile(BenchmarkHives.getHive(BenchmarkHives.VALUES)).getHeader()
+                .getRootNKRecord().getValueList().getValue(this.type).getValue();
+    }
+
+    @Benchmark
+    public List<String> getAsStringList() throws UnsupportedEncodingException {
+        return this._data.getAsStringList();
+    }
+
+    @Benchmark
+    public String getAsString() throws UnsupportedEncodingException {
+        if (this.type.equals("REG_MULTI_SZ")) {
+            // getAsString does not support REG_MULTI_SZ
+            return null;
+        }
+        return this._data.getAsString();
+    }
+}
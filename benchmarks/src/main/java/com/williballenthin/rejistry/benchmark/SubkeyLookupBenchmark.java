@@ -0,0 +1,65 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.RegistryHiveFile;
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.SubkeyList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SubkeyLookupBenchmark measures `SubkeyList.getSubkey` against a key with many subkeys,
+ *   for each of the subkey list formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubkeyLookupBenchmark {
+    @Param({BenchmarkHives.WIDE_LH, BenchmarkHives.WIDE_LF, BenchmarkHives.WIDE_LI})
+    public String hive;
+
+    private SubkeyList _list;
+    private String _first;
+    private String _last;
+
+    @Setup
+    public void setup() throws Exception {
+        this._list = new RegistryHiveFile(BenchmarkHives.getHive(this.hive)).getHeader().getRootNKRecord().getSubkeyList();
+        this._first = BenchmarkHives.wideSubkeyName(0).toLowerCase();
+        this._last = BenchmarkHives.wideSubkeyName(BenchmarkHives.WIDE_SUBKEYS - 1).toLowerCase();
+    }
+
+    @Benchmark
+    public NKRecord getFirst() {
+        return this._list.getSubkey(this._first);
+    }
+
+    @Benchmark
+    public NKRecord getLast() {
+        return this._list.getSubkey(this._last);
+    }
+
+    @Benchmark
+    public boolean getMissing() {
+        try {
+            this._list.getSubkey("{FFFFFFFF-0000-0000-C000-000000000000}x");
+            return true;
+        } catch (NoSuchElementException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.REGFHeader;
+import com.williballenthin.rejistry.RegistryHiveFile;
+import com.williballenthin.rejistry.RegistryParseException;
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.VKCursor;
+import com.williballenthin.rejistry.record.VKRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TraversalBenchmark measures a recursive walk over every key and value of a hive,
+ *   as done by `Rejistry.recurseNKRecord`, using both the record API and the cursors.
+ *   Both walks do the same work: they decode every key and value name, and read each key's
+ *   FILETIME and each value's type, so that the difference is the cost of the records themselves.
+ *   Run with `-prof gc` to compare their allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+    private static final int MAX_DEPTH = 0x10;
+
+    @Param({BenchmarkHives.TREE, BenchmarkHives.SCALE})
+    public String hive;
+
+    private REGFHeader _header;
+    private NKCursor _nk;
+    private VKCursor _vk;
+    private int[][] _scratch;
+
+    @Setup
+    public void setup() throws Exception {
+        this._header = new RegistryHiveFile(BenchmarkHives.getHive(this.hive)).getHeader();
+        this._nk = this._header.newNKCursor();
+        this._vk = this._header.newVKCursor();
+        this._scratch = new int[2 * MAX_DEPTH][];
+    }
+
+    @Benchmark
+    public void recurseRecords(Blackhole bh) throws RegistryParseException, UnsupportedEncodingException {
+        recurse(this._header.getRootNKRecord(), bh);
+    }
+
+    private static void recurse(NKRecord record, Blackhole bh) throws RegistryParseException, UnsupportedEncodingException {
+        bh.consume(record.getName());
+        bh.consume(record.getTimestampFiletime());
+
+        Iterator<VKRecord> vkit = record.getValueList().getValues();
+        while (vkit.hasNext()) {
+            VKRecord r = vkit.next();
+            bh.consume(r.getName());
+            bh.consume(r.getValueType());
+        }
+
+        Iterator<NKRecord> nkit = record.getSubkeyList().getSubkeys();
+        while (nkit.hasNext()) {
+            recurse(nkit.next(), bh);
+        }
+    }
+
+    @Benchmark
+    public void recurseCursors(Blackhole bh) throws RegistryParseException, UnsupportedEncodingException {
+        recurse(this._nk, this._vk, this._header.getRootCellOffset(), this._scratch, 0, bh);
+    }
+
+    /**
+     * recurse walks the subtree at `offset` reusing one pair of cursors. The offset arrays are kept
+     *   per depth, so that besides the names, the walk allocates only when a key is wider than any
+     *   before it at its depth.
+     */
+    private static void recurse(NKCursor nk, VKCursor vk, int offset, int[][] scratch, int depth, Blackhole bh) throws RegistryParseException, UnsupportedEncodingException {
+        nk.moveTo(offset);
+        bh.consume(nk.getName());
+        bh.consume(nk.getTimestampFiletime());
+
+        int[] values = grow(scratch, 2 * depth, nk.getNumberOfValues());
+        int numValues = nk.readValueOffsets(values);
+        for (int i = 0; i < numValues; i++) {
+            vk.moveTo(values[i]);
+            bh.consume(vk.getName());
+            bh.consume(vk.getValueType());
+        }
+
+        int numSubkeys = nk.getSubkeyCount();
+        int[] subkeys = grow(scratch, 2 * depth + 1, numSubkeys);
+        numSubkeys = nk.readSubkeyOffsets(subkeys);
+        for (int i = 0; i < numSubkeys; i++) {
+            recurse(nk, vk, subkeys[i], scratch, depth + 1, bh);
+        }
+    }
+
+    private static int[] grow(int[][] scratch, int index, int length) {
+        if (scratch[index] == null || scratch[index].length < length) {
+            scratch[index] = new int[length];
+        }
+        return scratch[index];
+    }
+}
@@ -0,0 +1,51 @@
+package com.williballenthin.rejistry.benchmark;
+
+import com.williballenthin.rejistry.RegistryHiveFile;
+import com.williballenthin.rejistry.RegistryParseException;
+import com.williballenthin.rejistry.ValueData;
+import com.williballenthin.rejistry.record.VKRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ValueBenchmark measures `VKRecord.getValue` for each value type.
+ *   See StringDecodingBenchmark for the decoding of the resulting data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueBenchmark {
+    // the values of the values hive are named after their types
+    @Param({"REG_NONE", "REG_SZ", "REG_EXPAND_SZ", "REG_BIN", "REG_DWORD", "REG_BIG_ENDIAN", "REG_LINK",
+            "REG_MULTI_SZ", "REG_RESOURCE_LIST", "REG_FULL_RESOURCE_DESCRIPTOR", "REG_RESOURCE_REQUIREMENTS_LIST",
+            "REG_QWORD"})
+    public String type;
+
+    private VKRecord _value;
+
+    @Setup
+    public void setup() throws Exception {
+        this._value = new RegistryHiveFile(BenchmarkHives.getHive(BenchmarkHives.VALUES)).getHeader()
+                .getRootNKRecord().getValueList().getValue(this.type);
+    }
+
+    @Benchmark
+    public ValueData getValue() throws RegistryParseException, UnsupportedEncodingException {
+        return this._value.getValue();
+    }
+}
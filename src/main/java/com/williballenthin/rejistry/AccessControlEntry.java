@@ -0,0 +1,172 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * AccessControlEntry is a parsed ACE: the access that an ACL allows, denies, or audits for a trustee.
+ *   Object ACEs, which are rare in hives, may also name the types of object to which they apply.
+ */
+public class AccessControlEntry {
+    public static final int ACCESS_ALLOWED_ACE_TYPE = 0x0;
+    public static final int ACCESS_DENIED_ACE_TYPE = 0x1;
+    public static final int SYSTEM_AUDIT_ACE_TYPE = 0x2;
+    public static final int ACCESS_ALLOWED_OBJECT_ACE_TYPE = 0x5;
+    public static final int ACCESS_DENIED_OBJECT_ACE_TYPE = 0x6;
+    public static final int SYSTEM_AUDIT_OBJECT_ACE_TYPE = 0x7;
+    public static final int SYSTEM_MANDATORY_LABEL_ACE_TYPE = 0x11;
+
+    public static final int OBJECT_INHERIT_ACE = 0x01;
+    public static final int CONTAINER_INHERIT_ACE = 0x02;
+    public static final int NO_PROPAGATE_INHERIT_ACE = 0x04;
+    public static final int INHERIT_ONLY_ACE = 0x08;
+    public static final int INHERITED_ACE = 0x10;
+
+    private static final int FLAGS_OFFSET = 0x1;
+    private static final int SIZE_OFFSET = 0x2;
+    private static final int MASK_OFFSET = 0x4;
+    private static final int SID_OFFSET = 0x8;
+    private static final int OBJECT_FLAGS_OFFSET = 0x8;
+    private static final int OBJECT_TYPE_OFFSET = 0xC;
+    private static final int HEADER_SIZE = 0x4;
+    private static final int GUID_SIZE = 0x10;
+    private static final int ACE_OBJECT_TYPE_PRESENT = 0x1;
+    private static final int ACE_INHERITED_OBJECT_TYPE_PRESENT = 0x2;
+
+    private final int _type;
+    private final int _flags;
+    private final int _size;
+    private final long _mask;
+    private final String _sid;
+    private final UUID _objectType;
+    private final UUID _inheritedObjectType;
+
+    /**
+     * @param b A little endian view of the security descriptor.
+     * @param offset The offset of the ACE within the descriptor.
+     * @param end The offset of the end of the ACL, which the ACE may not overrun.
+     * @throws RegistryParseException if the ACE is malformed.
+     */
+    AccessControlEntry(ByteBuffer b, int offset, int end) throws RegistryParseException {
+        if (offset < 0 || HEADER_SIZE > end - offset) {
+            throw new RegistryParseException("ACE out of bounds at offset: " + offset);
+        }
+        this._type = b.get(offset) & 0xFF;
+        this._flags = b.get(offset + FLAGS_OFFSET) & 0xFF;
+        this._size = b.getShort(offset + SIZE_OFFSET) & 0xFFFF;
+        if (this._size < SID_OFFSET || this._size > end - offset) {
+            throw new RegistryParseException("ACE out of bounds at offset: " + offset);
+        }
+        this._mask = b.getInt(offset + MASK_OFFSET) & 0xFFFFFFFFL;
+
+        int sid = offset + SID_OFFSET;
+        UUID objectType = null;
+        UUID inheritedObjectType = null;
+        if (isObjectType(this._type)) {
+            if (this._size < OBJECT_TYPE_OFFSET) {
+                throw new RegistryParseException("Object ACE out of bounds at offset: " + offset);
+            }
+            int objectFlags = b.getInt(offset + OBJECT_FLAGS_OFFSET);
+            sid = offset + OBJECT_TYPE_OFFSET;
+            if ((objectFlags & ACE_OBJECT_TYPE_PRESENT) != 0) {
+                objectType = parseGuid(b, sid, offset + this._size);
+                sid += GUID_SIZE;
+            }
+            if ((objectFlags & ACE_INHERITED_OBJECT_TYPE_PRESENT) != 0) {
+                inheritedObjectType = parseGuid(b, sid, offset + this._size);
+                sid += GUID_SIZE;
+            }
+        }
+        if (SecurityDescriptor.getSidLength(b, sid) > offset + this._size - sid) {
+            throw new RegistryParseException("ACE SID out of bounds at offset: " + offset);
+        }
+        this._sid = SecurityDescriptor.parseSid(b, sid);
+        this._objectType = objectType;
+        this._inheritedObjectType = inheritedObjectType;
+    }
+
+    /**
+     * isObjectType returns True if ACEs of the given type carry object type GUIDs before their SID.
+     */
+    private static boolean isObjectType(int type) {
+        switch (type) {
+            case 0x5:   // ACCESS_ALLOWED_OBJECT_ACE_TYPE
+            case 0x6:   // ACCESS_DENIED_OBJECT_ACE_TYPE
+            case 0x7:   // SYSTEM_AUDIT_OBJECT_ACE_TYPE
+            case 0x8:   // SYSTEM_ALARM_OBJECT_ACE_TYPE
+            case 0xB:   // ACCESS_ALLOWED_CALLBACK_OBJECT_ACE_TYPE
+            case 0xC:   // ACCESS_DENIED_CALLBACK_OBJECT_ACE_TYPE
+            case 0xF:   // SYSTEM_AUDIT_CALLBACK_OBJECT_ACE_TYPE
+            case 0x10:  // SYSTEM_ALARM_CALLBACK_OBJECT_ACE_TYPE
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * parseGuid reads a GUID, whose first three fields are little endian, and the rest big endian.
+     */
+    private static UUID parseGuid(ByteBuffer b, int offset, int end) throws RegistryParseException {
+        if (GUID_SIZE > end - offset) {
+            throw new RegistryParseException("ACE GUID out of bounds at offset: " + offset);
+        }
+        long high = ((b.getInt(offset) & 0xFFFFFFFFL) << 32)
+                | ((b.getShort(offset + 0x4) & 0xFFFFL) << 16)
+                | (b.getShort(offset + 0x6) & 0xFFFFL);
+        long low = 0;
+        for (int i = 0x8; i < GUID_SIZE; i++) {
+            low = (low << 8) | (b.get(offset + i) & 0xFF);
+        }
+        return new UUID(high, low);
+    }
+
+    /**
+     * getType fetches the type of the ACE, such as ACCESS_ALLOWED_ACE_TYPE.
+     */
+    public int getType() {
+        return this._type;
+    }
+
+    /**
+     * getFlags fetches the inheritance flags of the ACE, a combination of the *_ACE constants.
+     */
+    public int getFlags() {
+        return this._flags;
+    }
+
+    /**
+     * getSize fetches the size in bytes of the ACE, as stored.
+     */
+    public int getSize() {
+        return this._size;
+    }
+
+    /**
+     * getAccessMask fetches the rights to which the ACE applies, such as 0xF003F for KEY_ALL_ACCESS.
+     */
+    public long getAccessMask() {
+        return this._mask;
+    }
+
+    /**
+     * getSid fetches the SID of the trustee, in string form.
+     */
+    public String getSid() {
+        return this._sid;
+    }
+
+    /**
+     * getObjectType fetches the type of object to which an object ACE applies, or null.
+     */
+    public UUID getObjectType() {
+        return this._objectType;
+    }
+
+    /**
+     * getInheritedObjectType fetches the type of object that may inherit an object ACE, or null.
+     */
+    public UUID getInheritedObjectType() {
+        return this._inheritedObjectType;
+    }
+}
@@ -0,0 +1,56 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * AccessControlList is a parsed ACL from a SecurityDescriptor: an ordered list of access control entries.
+ */
+public class AccessControlList {
+    private static final int SIZE_OFFSET = 0x2;
+    private static final int COUNT_OFFSET = 0x4;
+    private static final int HEADER_SIZE = 0x8;
+
+    private final int _revision;
+    private final List<AccessControlEntry> _entries;
+
+    /**
+     * @param b A little endian view of the security descriptor.
+     * @param offset The offset of the ACL within the descriptor.
+     * @throws RegistryParseException if the ACL or one of its entries is malformed.
+     */
+    AccessControlList(ByteBuffer b, int offset) throws RegistryParseException {
+        if (offset < 0 || offset > b.limit() - HEADER_SIZE) {
+            throw new RegistryParseException("ACL out of bounds at offset: " + offset);
+        }
+        int size = b.getShort(offset + SIZE_OFFSET) & 0xFFFF;
+        int count = b.getShort(offset + COUNT_OFFSET) & 0xFFFF;
+        if (size < HEADER_SIZE || size > b.limit() - offset) {
+            throw new RegistryParseException("ACL out of bounds at offset: " + offset);
+        }
+        int end = offset + size;
+
+        this._revision = b.get(offset) & 0xFF;
+        List<AccessControlEntry> entries = new ArrayList<AccessControlEntry>(count);
+        int ace = offset + HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            AccessControlEntry entry = new AccessControlEntry(b, ace, end);
+            entries.add(entry);
+            ace += entry.getSize();
+        }
+        this._entries = Collections.unmodifiableList(entries);
+    }
+
+    public int getRevision() {
+        return this._revision;
+    }
+
+    /**
+     * getEntries fetches the entries of the ACL, in order. The list may not be modified.
+     */
+    public List<AccessControlEntry> getEntries() {
+        return this._entries;
+    }
+}
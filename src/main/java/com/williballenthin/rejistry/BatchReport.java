@@ -0,0 +1,69 @@
+package com.williballenthin.rejistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchReport holds the results of a HiveBatch, one per hive, in the order the hives were given.
+ */
+public class BatchReport {
+    private final List<HiveResult> _results;
+    private final long _elapsedNanos;
+    private final long _peakMappedBytes;
+
+    BatchReport(List<HiveResult> results, long elapsedNanos, long peakMappedBytes) {
+        this._results = Collections.unmodifiableList(results);
+        this._elapsedNanos = elapsedNanos;
+        this._peakMappedBytes = peakMappedBytes;
+    }
+
+    public List<HiveResult> getResults() {
+        return this._results;
+    }
+
+    /**
+     * getFailures fetches the results of the hives that could not be processed.
+     */
+    public List<HiveResult> getFailures() {
+        List<HiveResult> failures = new ArrayList<HiveResult>();
+        for (HiveResult result : this._results) {
+            if (!result.isSuccess()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * getElapsedNanos fetches the wall clock time taken by the whole batch.
+     */
+    public long getElapsedNanos() {
+        return this._elapsedNanos;
+    }
+
+    /**
+     * getTotalBytes fetches the total size of the hives processed.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (HiveResult result : this._results) {
+            total += result.getMappedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * getBytesPerSecond fetches the throughput of the batch, in bytes of hive processed per second of wall clock time.
+     */
+    public double getBytesPerSecond() {
+        return this._elapsedNanos == 0 ? 0.0 : this.getTotalBytes() * 1e9 / this._elapsedNanos;
+    }
+
+    /**
+     * getPeakMappedBytes fetches the largest total size of the hives that were open at any one time.
+     */
+    public long getPeakMappedBytes() {
+        return this._peakMappedBytes;
+    }
+}
@@ -2,7 +2,7 @@ package com.williballenthin.rejistry;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
@@ -10,19 +10,25 @@ import java.util.TimeZone;
 /**
  * BinaryBlock is a convenient parsing structure. Its a bookmark into a view of bytes with
  *   methods for accessing fields at relative offsets.
+ * All accesses use absolute offsets into the shared HiveStorage, which is read-only,
+ *   so many BinaryBlocks, on many threads, may safely read from the same storage concurrently.
  */
 public class BinaryBlock {
-    ///< The backing bytes for this structure. This ByteBuffer may be shared across many instances.
-    protected final ByteBuffer _buf;
-    ///< The absolute offset into the ByteBuffer at which this structure begins.
+    ///< looked up once, since `TimeZone.getTimeZone` synchronizes on a shared cache.
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    ///< The backing bytes for this structure. This storage may be shared across many instances.
+    protected final HiveStorage _buf;
+    ///< The absolute offset into the storage at which this structure begins.
     protected final int _offset;
 
-    public BinaryBlock(ByteBuffer buf, int offset) {
+    public BinaryBlock(HiveStorage buf, int offset) {
         this._buf = buf;
         this._offset = offset;
+    }
 
-        this._buf.order(ByteOrder.LITTLE_ENDIAN);
-        this._buf.position(0x0);
+    public BinaryBlock(ByteBuffer buf, int offset) {
+        this(HiveStorage.wrap(buf), offset);
     }
 
     /**
@@ -64,16 +70,12 @@ public class BinaryBlock {
     /**
      * getDwordBE parses a 32bit number from the specified relative offset with the range 0-2**32 - 1;
      *   The integer is decoded as a big endian value.
-     *   This is not thread safe.
      *
      * @param offset The relative offset from which to parse the number.
      * @return A non-negative 32bit number with the range 0-2**32-1.
      */
     protected long getDwordBE(int offset) {
-        this._buf.order(ByteOrder.BIG_ENDIAN);
-        long d = this._buf.getInt(this._offset + offset) & 0xFFFFFFFFL;
-        this._buf.order(ByteOrder.LITTLE_ENDIAN);
-        return d;
+        return Integer.reverseBytes(this._buf.getInt(this._offset + offset)) & 0xFFFFFFFFL;
     }
 
     /**
@@ -89,12 +91,36 @@ public class BinaryBlock {
         return this._buf.getLong(this._offset + offset) & 0xFFFFFFFFFFFFFFFFL;
     }
 
+    /**
+     * getBytes copies `length` bytes from the relative offset `offset` into a new array.
+     *
+     * @param offset The relative offset into the buffer from which to read.
+     * @param length The number of bytes to read.
+     * @return A new array containing the bytes.
+     */
+    protected byte[] getBytes(int offset, int length) {
+        byte[] b = new byte[length];
+        this._buf.get(this._offset + offset, b, 0, length);
+        return b;
+    }
+
+    /**
+     * getSlice creates a read-only view of `length` bytes at the relative offset `offset`.
+     *   See `HiveStorage.slice`.
+     *
+     * @param offset The relative offset into the buffer at which the view begins.
+     * @param length The number of bytes in the view.
+     * @return A read-only view of the bytes, with position zero and limit `length`.
+     */
+    protected ByteBuffer getSlice(int offset, int length) {
+        return this._buf.slice(this._offset + offset, length);
+    }
+
     /**
      * getWString fetches `length` bytes from `buf` at relative offset `offset`
      * and interprets them as a UTF-16LE string.
      * This will return only the characters found before any NULL characters
      * (not NULL bytes).
-     * This is not thread safe.
      *
      * @param offset The relative offset into the buffer from which to read.
      * @param length The number of bytes to read.
@@ -102,12 +128,7 @@ public class BinaryBlock {
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as an UTF-16LE string.
      */
     protected String getWString(int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = this._buf.position();
-        byte[] sb = new byte[length];
-
-        this._buf.position(this._offset + offset);
-        this._buf.get(sb, 0, length);
-        this._buf.position(saved_position);
+        byte[] sb = this.getBytes(offset, length);
 
         String s = new String(sb, "UTF-16LE");
 
@@ -124,7 +145,6 @@ public class BinaryBlock {
      * and interprets them as an ASCII string.
      * This will return only the characters found before any NULL characters
      * (not NULL bytes).
-     * This is not thread safe.
      *
      * @param offset The relative offset into the buffer from which to read.
      * @param length The number of bytes to read.
@@ -132,12 +152,7 @@ public class BinaryBlock {
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as an ASCII string.
      */
     protected String getASCIIString(int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = this._buf.position();
-        byte[] sb = new byte[length];
-
-        this._buf.position(this._offset + offset);
-        this._buf.get(sb, 0, length);
-        this._buf.position(saved_position);
+        byte[] sb = this.getBytes(offset, length);
 
         String s = new String(sb, "ASCII");
 
@@ -148,6 +163,35 @@ public class BinaryBlock {
         return s;
     }
 
+    /**
+     * asciiEqualsIgnoreCase compares the ASCII string of `length` bytes at relative offset `offset`
+     *   with `s`, case-insensitively, without decoding the string or allocating.
+     *   Like `getASCIIString`, the string ends at the first NULL character, and bytes outside
+     *   the ASCII range are treated as the Unicode replacement character.
+     *
+     * @param offset The relative offset into the buffer from which to read.
+     * @param length The number of bytes to read.
+     * @param s The string to compare against.
+     * @return True if the strings are equal, ignoring case.
+     */
+    protected boolean asciiEqualsIgnoreCase(int offset, int length, String s) {
+        return U.asciiEqualsIgnoreCase(this._buf, this._offset + offset, length, s);
+    }
+
+    /**
+     * wstringEqualsIgnoreCase compares the UTF-16LE string of `length` bytes at relative offset
+     *   `offset` with `s`, case-insensitively, without decoding the string or allocating.
+     *   Like `getWString`, the string ends at the first NULL character.
+     *
+     * @param offset The relative offset into the buffer from which to read.
+     * @param length The number of bytes to read.
+     * @param s The string to compare against.
+     * @return True if the strings are equal, ignoring case.
+     */
+    protected boolean wstringEqualsIgnoreCase(int offset, int length, String s) {
+        return U.wstringEqualsIgnoreCase(this._buf, this._offset + offset, length, s);
+    }
+
     /**
      * getWindowsTimestamp fetches the 8-byte Windows timestamp at the relative offset.
      *   Note, no bounds checking is performed.
@@ -156,11 +200,21 @@ public class BinaryBlock {
      * @return The datetime in UTC.
      */
     protected Calendar getWindowsTimestamp(int offset) {
-        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        c.setTimeInMillis((long)(this.getQword(offset) * 1e-4 - 11644473600000L));
+        Calendar c = Calendar.getInstance(UTC);
+        c.setTimeInMillis(U.filetimeToMillis(this.getQword(offset)));
         return c;
     }
 
+    /**
+     * getWindowsInstant fetches the 8-byte Windows timestamp at the relative offset as an Instant,
+     *   with the full 100 nanosecond resolution of the timestamp.
+     * @param offset The relative offset into the buffer from which to read.
+     * @return The timestamp.
+     */
+    protected Instant getWindowsInstant(int offset) {
+        return U.filetimeToInstant(this.getQword(offset));
+    }
+
     /**
      * getAbsoluteOffset calculates the absolute offset given a relative offset into this block.
      * @param offset A relative offset into this block.
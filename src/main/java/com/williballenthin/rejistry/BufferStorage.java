@@ -0,0 +1,63 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * BufferStorage is a HiveStorage held in a single ByteBuffer, such as a mapped hive file.
+ */
+final class BufferStorage implements HiveStorage {
+    private final ByteBuffer _buf;
+
+    BufferStorage(ByteBuffer buf) {
+        if (buf.order() == ByteOrder.LITTLE_ENDIAN) {
+            this._buf = buf;
+        } else {
+            // don't touch the caller's buffer, since it may be in use by other threads.
+            this._buf = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return this._buf.limit();
+    }
+
+    @Override
+    public byte get(int index) {
+        return this._buf.get(index);
+    }
+
+    @Override
+    public short getShort(int index) {
+        return this._buf.getShort(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return this._buf.getInt(index);
+    }
+
+    @Override
+    public long getLong(int index) {
+        return this._buf.getLong(index);
+    }
+
+    @Override
+    public void get(int index, byte[] dest, int destOffset, int length) {
+        ByteBuffer view = this._buf.duplicate();
+        view.position(index);
+        view.get(dest, destOffset, length);
+    }
+
+    @Override
+    public ByteBuffer slice(int index, int length) {
+        if (index < 0 || length < 0 || length > this._buf.limit() - index) {
+            throw new IndexOutOfBoundsException("Slice beyond the buffer: " + index + " + " + length);
+        }
+        ByteBuffer view = this._buf.duplicate();
+        view.position(index);
+        view.limit(index + length);
+        return view.slice().asReadOnlyBuffer();
+    }
+}
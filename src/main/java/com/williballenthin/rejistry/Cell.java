@@ -13,10 +13,14 @@ public class Cell extends BinaryBlock {
     private static final int LENGTH_OFFSET = 0x0;
     private static final int DATA_OFFSET = 0x4;
 
-    public Cell(ByteBuffer buf, int offset) {
+    public Cell(HiveStorage buf, int offset) {
         super(buf, offset);
     }
 
+    public Cell(ByteBuffer buf, int offset) {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * getLength fetches the size of this cell. It will always be a
      * positive value.
@@ -46,14 +50,12 @@ public class Cell extends BinaryBlock {
      * getData fetches a view into the data of this cell.
      * The returned ByteBuffer is limited to the range of
      * this cell, and now beyond.
+     * Each call returns a new, independent, read-only view.
      *
      * @return A view of the data in this cell.
      */
     public ByteBuffer getData() {
-        this._buf.position(this.getAbsoluteOffset(DATA_OFFSET));
-        ByteBuffer data = this._buf.slice();
-        data.limit(this.getLength() - DATA_OFFSET);
-        return data;
+        return this.getSlice(DATA_OFFSET, this.getLength() - DATA_OFFSET);
     }
 
     /**
@@ -181,6 +183,17 @@ public class Cell extends BinaryBlock {
         return new DBIndirectRecord(this._buf, this.getAbsoluteOffset(DATA_OFFSET));
     }
 
+    /**
+     * getSKRecord interprets the data of this cell as an SKRecord and
+     *   returns the parsed out structure.
+     *
+     * @return The SKRecord found within this Cell.
+     * @throws RegistryParseException if the creation of the SKRecord fails.
+     */
+    public SKRecord getSKRecord() throws RegistryParseException {
+        return new SKRecord(this._buf, this.getAbsoluteOffset(DATA_OFFSET));
+    }
+
     /**
      * getVKRecord interprets the data of this cell as an VKRecord and
      *   returns the parsed out structure.
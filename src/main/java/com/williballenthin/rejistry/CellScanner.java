@@ -0,0 +1,162 @@
+package com.williballenthin.rejistry;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * CellScanner streams every cell of a hive, allocated or free, in file order, classified by signature.
+ *   Rather than following references from the root key, it reads the HBINs front to back,
+ *   so bulk analyses (counting, export, carving) proceed at the speed of a sequential read.
+ *
+ * The Spliterator splits only at HBIN boundaries, so a parallel stream hands each
+ *   thread a contiguous run of whole HBINs.
+ * Cells whose size is zero or overruns their HBIN are assumed corrupt, and the remainder
+ *   of that HBIN is skipped; scanning stops at the first region that is not a HBIN.
+ */
+public class CellScanner {
+    private static final int HBIN_MAGIC = 0x6E696268;
+    private static final int HBIN_SIZE_OFFSET = 0x8;
+    private static final int HBIN_HEADER_SIZE = 0x20;
+    private static final int CELL_HEADER_SIZE = 0x4;
+    ///< a guess at the average size of a cell, used only to estimate the number of cells remaining.
+    private static final int AVERAGE_CELL_SIZE = 0x40;
+
+    private final HiveStorage _buf;
+    private final int _end;
+
+    /**
+     * @param header The header of the hive to scan.
+     */
+    public CellScanner(REGFHeader header) {
+        this._buf = header._buf;
+        long end = (long)REGFHeader.FIRST_HBIN_OFFSET + (header.getLastHbinOffset() & 0xFFFFFFFFL);
+        if (header.getLastHbinOffset() == 0x0 || end > this._buf.capacity()) {
+            end = this._buf.capacity();
+        }
+        this._end = (int)end;
+    }
+
+    /**
+     * spliterator creates a Spliterator over the cells of the hive, in file order.
+     */
+    public Spliterator<ScannedCell> spliterator() {
+        return new CellSpliterator(this._buf, REGFHeader.FIRST_HBIN_OFFSET, this._end);
+    }
+
+    /**
+     * stream creates a sequential Stream over the cells of the hive, in file order.
+     */
+    public Stream<ScannedCell> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * parallelStream creates a parallel Stream over the cells of the hive.
+     */
+    public Stream<ScannedCell> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    private static class CellSpliterator implements Spliterator<ScannedCell> {
+        private final HiveStorage _buf;
+        ///< absolute offset of the end of the current HBIN, which is also the start of the next.
+        private int _hbinEnd;
+        ///< absolute offset of the next cell to return.
+        private int _cell;
+        ///< absolute offset at which this Spliterator stops.
+        private final int _end;
+
+        CellSpliterator(HiveStorage buf, int start, int end) {
+            this._buf = buf;
+            this._hbinEnd = start;
+            this._cell = start;
+            this._end = end;
+        }
+
+        private CellSpliterator(HiveStorage buf, int hbinEnd, int cell, int end) {
+            this._buf = buf;
+            this._hbinEnd = hbinEnd;
+            this._cell = cell;
+            this._end = end;
+        }
+
+        /**
+         * getHBINSize fetches the size of the HBIN at `offset`, or zero if there is no valid HBIN there.
+         */
+        private int getHBINSize(int offset) {
+            if (offset < 0 || offset + HBIN_HEADER_SIZE > this._end || this._buf.getInt(offset) != HBIN_MAGIC) {
+                return 0;
+            }
+            int size = this._buf.getInt(offset + HBIN_SIZE_OFFSET);
+            if (size < HBIN_HEADER_SIZE) {
+                return 0;
+            }
+            return (int)Math.min(size, (long)this._end - offset);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ScannedCell> action) {
+            while (true) {
+                if (this._cell + CELL_HEADER_SIZE <= this._hbinEnd) {
+                    int size = this._buf.getInt(this._cell);
+                    int length = size < 0 ? -size : size;
+                    if (length < CELL_HEADER_SIZE || length > this._hbinEnd - this._cell) {
+                        // corrupt cell: resume at the next HBIN
+                        this._cell = this._hbinEnd;
+                        continue;
+                    }
+                    int offset = this._cell;
+                    this._cell += length;
+                    CellType type = CellType.classify(this._buf, offset + CELL_HEADER_SIZE, length - CELL_HEADER_SIZE);
+                    action.accept(new ScannedCell(this._buf, offset - REGFHeader.FIRST_HBIN_OFFSET, length, size < 0, type));
+                    return true;
+                }
+
+                int hbinSize = this.getHBINSize(this._hbinEnd);
+                if (hbinSize == 0) {
+                    this._cell = this._hbinEnd = this._end;
+                    return false;
+                }
+                this._cell = this._hbinEnd + HBIN_HEADER_SIZE;
+                this._hbinEnd += hbinSize;
+            }
+        }
+
+        /**
+         * trySplit hands off the remainder of the current HBIN and the HBINs up to about
+         *   halfway to the end, found by walking the HBIN headers.
+         */
+        @Override
+        public Spliterator<ScannedCell> trySplit() {
+            int middle = this._hbinEnd + ((this._end - this._hbinEnd) >>> 1);
+            int split = this._hbinEnd;
+            while (split < middle) {
+                int hbinSize = this.getHBINSize(split);
+                if (hbinSize == 0) {
+                    break;
+                }
+                split += hbinSize;
+            }
+            if (split <= this._hbinEnd || split >= this._end) {
+                return null;
+            }
+
+            CellSpliterator prefix = new CellSpliterator(this._buf, this._hbinEnd, this._cell, split);
+            this._hbinEnd = split;
+            this._cell = split;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (this._end - this._cell) / AVERAGE_CELL_SIZE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * CellType classifies the contents of a Cell by the two byte signature at the start of its data.
+ *   Cells without a recognized signature, such as value data and value lists, are DATA.
+ */
+public enum CellType {
+    NK('n', 'k'),
+    VK('v', 'k'),
+    SK('s', 'k'),
+    LF('l', 'f'),
+    LH('l', 'h'),
+    LI('l', 'i'),
+    RI('r', 'i'),
+    DB('d', 'b'),
+    DATA('\0', '\0');
+
+    ///< the signature, as read by a little endian getShort.
+    private final short _magic;
+
+    private CellType(char magic0, char magic1) {
+        this._magic = (short)((magic1 << 8) | magic0);
+    }
+
+    /**
+     * classify determines the type of a cell from the first two bytes of its data.
+     *   This does not allocate, so that it may be applied to every cell of a hive.
+     *
+     * @param buf The storage containing the cell.
+     * @param dataOffset The absolute offset of the data of the cell, just past its size.
+     * @param dataLength The number of bytes of data in the cell.
+     * @return The type of the cell.
+     */
+    public static CellType classify(HiveStorage buf, int dataOffset, int dataLength) {
+        if (dataLength < 0x2) {
+            return DATA;
+        }
+        short magic = buf.getShort(dataOffset);
+        // the first byte narrows the candidates, then the whole signature is compared
+        switch ((byte)magic) {
+            case 'n':
+                return magic == NK._magic ? NK : DATA;
+            case 'v':
+                return magic == VK._magic ? VK : DATA;
+            case 's':
+                return magic == SK._magic ? SK : DATA;
+            case 'l':
+                if (magic == LF._magic) {
+                    return LF;
+                } else if (magic == LH._magic) {
+                    return LH;
+                } else if (magic == LI._magic) {
+                    return LI;
+                }
+                return DATA;
+            case 'r':
+                return magic == RI._magic ? RI : DATA;
+            case 'd':
+                return magic == DB._magic ? DB : DATA;
+            default:
+                return DATA;
+        }
+    }
+
+    /**
+     * classify determines the type of a cell in `buf`, as `classify(HiveStorage, int, int)`.
+     */
+    public static CellType classify(ByteBuffer buf, int dataOffset, int dataLength) {
+        return classify(HiveStorage.wrap(buf), dataOffset, dataLength);
+    }
+}
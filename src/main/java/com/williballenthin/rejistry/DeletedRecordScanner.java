@@ -0,0 +1,289 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * DeletedRecordScanner carves deleted keys and values from the unallocated space of a hive.
+ *   When Windows deletes a key or value, it marks the cell free but leaves its contents in place,
+ *   so an NKRecord or VKRecord may survive until the space is reused.
+ *
+ * In a single pass over the cells (see CellScanner), every free cell, and the slack after the
+ *   record in each allocated "nk" and "vk" cell, is searched for records at each eight byte
+ *   aligned cell boundary. Free cells are often coalesced, so a free cell may hold many records.
+ *   Each candidate is validated (name length and contents, timestamp, counts, and references)
+ *   before it is reported. Then, using only the records found, each recovered key's path is
+ *   rebuilt by following its parent link through recovered and allocated keys, and each
+ *   recovered value is attributed to the recovered key whose value list still references it.
+ */
+public class DeletedRecordScanner {
+    ///< the first component of the path of a key whose chain of parent keys is broken.
+    public static final String UNKNOWN_PARENT = "?";
+
+    private static final int CELL_ALIGNMENT = 0x8;
+    private static final int CELL_HEADER_SIZE = 0x4;
+    private static final int NK_NAME_OFFSET = 0x4C;
+    private static final int VK_NAME_OFFSET = 0x14;
+    ///< key names are at most 255 characters, so 510 bytes as UTF-16LE.
+    private static final int MAX_KEY_NAME_LENGTH = 0x1FE;
+    ///< value names are at most 16383 characters.
+    private static final int MAX_VALUE_NAME_LENGTH = 0x7FFE;
+    private static final int MAX_COUNT = 0x100000;
+    ///< keys are nested at most 512 deep.
+    private static final int MAX_DEPTH = 0x200;
+    private static final long RESIDENT_DATA = 0x80000000L;
+    ///< FILETIMEs of 1990-01-01 and 2100-01-01: timestamps outside this range are taken as garbage.
+    private static final long MIN_FILETIME = (631152000000L + 11644473600000L) * 10000L;
+    private static final long MAX_FILETIME = (4102444800000L + 11644473600000L) * 10000L;
+
+    private final REGFHeader _header;
+    private final HiveStorage _buf;
+    ///< the size of the HBINs, beyond which no cell offset may point.
+    private final long _hbinsSize;
+
+    public DeletedRecordScanner(REGFHeader header) {
+        this._header = header;
+        this._buf = header._buf;
+        this._hbinsSize = Math.min(header.getLastHbinOffset() & 0xFFFFFFFFL,
+                (long)this._buf.capacity() - REGFHeader.FIRST_HBIN_OFFSET);
+    }
+
+    /**
+     * scan carves the deleted keys and values of the hive.
+     *
+     * @return The recovered keys and values, in file order.
+     */
+    public RecoveryResult scan() {
+        final NKCursor nk = this._header.newNKCursor();
+        final VKCursor vk = this._header.newVKCursor();
+        final Map<Integer, RecoveredKey> keys = new LinkedHashMap<Integer, RecoveredKey>();
+        final Map<Integer, RecoveredValue> values = new LinkedHashMap<Integer, RecoveredValue>();
+
+        Spliterator<ScannedCell> cells = new CellScanner(this._header).spliterator();
+        cells.forEachRemaining(new Consumer<ScannedCell>() {
+            @Override
+            public void accept(ScannedCell cell) {
+                int start = cell.getCellOffset();
+                int end = start + cell.getLength();
+                if (!cell.isActive()) {
+                    DeletedRecordScanner.this.carve(start, end, nk, vk, keys, values);
+                } else if (cell.getType() == CellType.NK && nk.moveTo(start)) {
+                    int used = align(CELL_HEADER_SIZE + NK_NAME_OFFSET + nk.getNameLength());
+                    DeletedRecordScanner.this.carve(start + used, end, nk, vk, keys, values);
+                } else if (cell.getType() == CellType.VK && vk.moveTo(start)) {
+                    int used = align(CELL_HEADER_SIZE + VK_NAME_OFFSET + vk.getNameLength());
+                    DeletedRecordScanner.this.carve(start + used, end, nk, vk, keys, values);
+                }
+            }
+        });
+
+        Map<Integer, String> allocatedPaths = new HashMap<Integer, String>();
+        for (RecoveredKey key : keys.values()) {
+            this.resolvePath(key, keys, allocatedPaths, nk);
+        }
+        int[] offsets = new int[0];
+        for (RecoveredKey key : keys.values()) {
+            if (!nk.moveTo(key.getCellOffset()) || !this.isValueListInBounds(nk)) {
+                continue;
+            }
+            if (offsets.length < nk.getNumberOfValues()) {
+                offsets = new int[nk.getNumberOfValues()];
+            }
+            int count = nk.readValueOffsets(offsets);
+            for (int i = 0; i < count; i++) {
+                RecoveredValue value = values.get(offsets[i]);
+                if (value != null && value.getKey() == null) {
+                    value.setKey(key);
+                    key.addValue(value);
+                }
+            }
+        }
+
+        return new RecoveryResult(new ArrayList<RecoveredKey>(keys.values()), new ArrayList<RecoveredValue>(values.values()));
+    }
+
+    private static int align(int length) {
+        return (length + CELL_ALIGNMENT - 1) & ~(CELL_ALIGNMENT - 1);
+    }
+
+    /**
+     * carve searches the region [start, end) for records at each aligned cell boundary.
+     *   Offsets are relative to the first HBIN.
+     */
+    private void carve(int start, int end, NKCursor nk, VKCursor vk,
+                       Map<Integer, RecoveredKey> keys, Map<Integer, RecoveredValue> values) {
+        int offset = align(start);
+        while (offset + CELL_HEADER_SIZE + 0x2 <= end) {
+            int length = 0;
+            try {
+                if (nk.moveTo(offset) && this.isValidKey(nk, end)) {
+                    keys.put(offset, new RecoveredKey(nk.toRecord(), nk.getName(), nk.getParentOffset()));
+                    length = CELL_HEADER_SIZE + NK_NAME_OFFSET + nk.getNameLength();
+                } else if (vk.moveTo(offset) && this.isValidValue(vk, end)) {
+                    values.put(offset, new RecoveredValue(vk.toRecord(), vk.getName()));
+                    length = CELL_HEADER_SIZE + VK_NAME_OFFSET + vk.getNameLength();
+                }
+            } catch (RegistryParseException e) {
+                // not a record after all
+            } catch (UnsupportedEncodingException e) {
+                // not a record after all
+            }
+            offset += length == 0 ? CELL_ALIGNMENT : align(length);
+        }
+    }
+
+    private boolean isCellOffset(long offset) {
+        return offset >= 0 && offset < this._hbinsSize && (offset & (CELL_ALIGNMENT - 1)) == 0;
+    }
+
+    /**
+     * isValidName returns True if the bytes of a name decode to plausible characters.
+     */
+    private static boolean isValidName(String name, boolean allowBackslash) {
+        if (name.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < 0x20 || c == 0xFFFD || (c == '\\' && !allowBackslash)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidKey(NKCursor nk, int end) throws UnsupportedEncodingException {
+        int nameLength = nk.getNameLength();
+        if (nameLength == 0 || nameLength > MAX_KEY_NAME_LENGTH) {
+            return false;
+        }
+        if (!nk.hasAsciiName() && (nameLength & 0x1) != 0) {
+            return false;
+        }
+        if (nk.getCellOffset() + CELL_HEADER_SIZE + NK_NAME_OFFSET + nameLength > end) {
+            return false;
+        }
+        long timestamp = nk.getTimestampFiletime();
+        if (timestamp < MIN_FILETIME || timestamp > MAX_FILETIME) {
+            return false;
+        }
+        if (nk.getSubkeyCount() > MAX_COUNT || nk.getNumberOfValues() > MAX_COUNT) {
+            return false;
+        }
+        if (!this.isCellOffset(nk.getParentOffset() & 0xFFFFFFFFL)) {
+            return false;
+        }
+        return isValidName(nk.getName(), false);
+    }
+
+    private boolean isValidValue(VKCursor vk, int end) throws UnsupportedEncodingException {
+        int nameLength = vk.getNameLength();
+        if (nameLength > MAX_VALUE_NAME_LENGTH) {
+            return false;
+        }
+        if (vk.hasName() && !vk.hasAsciiName() && (nameLength & 0x1) != 0) {
+            return false;
+        }
+        if (vk.getCellOffset() + CELL_HEADER_SIZE + VK_NAME_OFFSET + nameLength > end) {
+            return false;
+        }
+        if (vk.getValueTypeCode() < 0 || vk.getValueTypeCode() > RegistryValueType.REG_QWORD.getValue()) {
+            return false;
+        }
+        long rawLength = vk.getRawDataLength();
+        if (rawLength >= RESIDENT_DATA) {
+            if (rawLength - RESIDENT_DATA > 0x4) {
+                return false;
+            }
+        } else if (rawLength > 0 && !this.isCellOffset(vk.getDataCellOffset() & 0xFFFFFFFFL)) {
+            return false;
+        }
+        return !vk.hasName() || isValidName(vk.getName(), true);
+    }
+
+    private boolean isValueListInBounds(NKCursor nk) {
+        int count = nk.getNumberOfValues();
+        long list = nk.getValueListOffset() & 0xFFFFFFFFL;
+        return count > 0 && this.isCellOffset(list) && list + CELL_HEADER_SIZE + 0x4L * count <= this._hbinsSize;
+    }
+
+    /**
+     * resolvePath rebuilds the path of `key` from the chain of its parents.
+     *   Recovered parents are resolved first; once the chain reaches an allocated key,
+     *   it is followed to the root through allocated keys only, whose paths are cached in `allocatedPaths`.
+     */
+    private void resolvePath(RecoveredKey key, Map<Integer, RecoveredKey> keys, Map<Integer, String> allocatedPaths, NKCursor nk) {
+        if (key.getPath() != null) {
+            return;
+        }
+        // mark the key as in progress, so that a cycle of parent links ends as a broken chain
+        key.setPath(UNKNOWN_PARENT + "\\" + key.getName(), false);
+
+        RecoveredKey parent = keys.get(key.getParentOffset());
+        if (parent == key) {
+            return;
+        } else if (parent != null) {
+            this.resolvePath(parent, keys, allocatedPaths, nk);
+            key.setPath(parent.getPath() + "\\" + key.getName(), parent.isPathComplete());
+            return;
+        }
+
+        String path = this.getAllocatedPath(key.getParentOffset(), allocatedPaths, nk);
+        if (path != null) {
+            key.setPath(path + "\\" + key.getName(), true);
+        }
+    }
+
+    /**
+     * getAllocatedPath fetches the path of the allocated key at `offset`, or null if there is no allocated key there.
+     */
+    private String getAllocatedPath(int offset, Map<Integer, String> allocatedPaths, NKCursor nk) {
+        String path = allocatedPaths.get(offset);
+        if (path != null) {
+            return path;
+        }
+
+        // collect the chain of names up to the first key with a known path, or the root
+        List<Integer> offsets = new ArrayList<Integer>();
+        List<String> names = new ArrayList<String>();
+        String prefix = null;
+        int current = offset;
+        while (true) {
+            if (!this.isCellOffset(current & 0xFFFFFFFFL)
+                    || this._buf.getInt(REGFHeader.FIRST_HBIN_OFFSET + current) >= 0
+                    || !nk.moveTo(current)
+                    || offsets.size() > MAX_DEPTH) {
+                return null;
+            }
+            try {
+                offsets.add(current);
+                names.add(nk.getName());
+            } catch (UnsupportedEncodingException e) {
+                return null;
+            }
+            if (nk.isRootKey()) {
+                break;
+            }
+            current = nk.getParentOffset();
+            prefix = allocatedPaths.get(current);
+            if (prefix != null) {
+                break;
+            }
+        }
+
+        for (int i = names.size() - 1; i >= 0; i--) {
+            prefix = prefix == null ? names.get(i) : prefix + "\\" + names.get(i);
+            allocatedPaths.put(offsets.get(i), prefix);
+        }
+        return prefix;
+    }
+}
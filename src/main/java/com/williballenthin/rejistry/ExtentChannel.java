@@ -0,0 +1,176 @@
+package com.williballenthin.rejistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ExtentChannel is a read-only view of a file stored as a list of extents within a larger channel, such as
+ *   a fragmented hive within a raw disk image. Its positions are those of the file, and each read is
+ *   forwarded to the extent that holds the position, so the file is never copied out of the image.
+ *   Wrapped in a `PageCache`, only the pages that parsing touches are read, across any number of extents.
+ *
+ * Closing an ExtentChannel does not close the image, which may be shared by many. The image is read
+ *   positionally if it is a FileChannel, and otherwise under its lock, so ExtentChannels on many threads
+ *   may share one image. Each ExtentChannel guards its own position with its lock.
+ */
+public class ExtentChannel implements SeekableByteChannel {
+    /**
+     * Extent is a run of bytes of a file, at an offset within an image.
+     */
+    public static final class Extent {
+        private final long _offset;
+        private final long _length;
+
+        /**
+         * @param offset The offset of the run within the image.
+         * @param length The length of the run, in bytes.
+         */
+        public Extent(long offset, long length) {
+            if (offset < 0) {
+                throw new IllegalArgumentException("Negative extent offset: " + offset);
+            }
+            if (length <= 0) {
+                throw new IllegalArgumentException("Extent length must be positive: " + length);
+            }
+            this._offset = offset;
+            this._length = length;
+        }
+
+        public long getOffset() {
+            return this._offset;
+        }
+
+        public long getLength() {
+            return this._length;
+        }
+
+        @Override
+        public String toString() {
+            return "Extent(" + this._offset + ", " + this._length + ")";
+        }
+    }
+
+    private final SeekableByteChannel _image;
+    private final List<Extent> _extents;
+    ///< the position within the file of the start of each extent, plus the size of the file.
+    private final long[] _starts;
+    private long _position = 0;
+    private volatile boolean _open = true;
+
+    /**
+     * @param image The channel that contains the extents.
+     * @param extents The runs of the file, in file order.
+     * @throws IllegalArgumentException if there are no extents, or an extent extends past the end of the image.
+     * @throws IOException if the size of the image cannot be determined.
+     */
+    public ExtentChannel(SeekableByteChannel image, List<Extent> extents) throws IOException {
+        if (extents.isEmpty()) {
+            throw new IllegalArgumentException("No extents");
+        }
+        long imageSize = image.size();
+        this._image = image;
+        this._extents = Collections.unmodifiableList(new ArrayList<Extent>(extents));
+        this._starts = new long[extents.size() + 1];
+        for (int i = 0; i < extents.size(); i++) {
+            Extent e = extents.get(i);
+            if (e.getOffset() + e.getLength() > imageSize) {
+                throw new IllegalArgumentException("Extent beyond the image: " + e);
+            }
+            this._starts[i + 1] = this._starts[i] + e.getLength();
+        }
+    }
+
+    /**
+     * getExtents fetches the runs of the file, in file order.
+     */
+    public List<Extent> getExtents() {
+        return this._extents;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        if (!this._open) {
+            throw new ClosedChannelException();
+        }
+        if (this._position >= this.size()) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+
+        // the last extent whose start is at or before the position
+        int i = Arrays.binarySearch(this._starts, 0, this._extents.size(), this._position);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        long delta = this._position - this._starts[i];
+        long available = this._extents.get(i).getLength() - delta;
+
+        int limit = dst.limit();
+        if (dst.remaining() > available) {
+            dst.limit(dst.position() + (int)available);
+        }
+        int n;
+        try {
+            n = PageCache.read(this._image, this._extents.get(i).getOffset() + delta, dst);
+        } finally {
+            dst.limit(limit);
+        }
+        if (n < 0) {
+            throw new EOFException("Image ended within extent: " + this._extents.get(i));
+        }
+        this._position += n;
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() {
+        return this._position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        this._position = newPosition;
+        return this;
+    }
+
+    /**
+     * size fetches the size of the file: the total length of its extents.
+     */
+    @Override
+    public long size() {
+        return this._starts[this._extents.size()];
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this._open;
+    }
+
+    @Override
+    public void close() {
+        this._open = false;
+    }
+}
@@ -21,7 +21,7 @@ public class HBIN extends BinaryBlock {
      * @param offset
      * @throws RegistryParseException if the magic header is not the ASCII string "HBIN".
      */
-    public HBIN(REGFHeader header, ByteBuffer buf, int offset) throws RegistryParseException {
+    public HBIN(REGFHeader header, HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset);
         this._header = header;
 
@@ -30,6 +30,10 @@ public class HBIN extends BinaryBlock {
         }
     }
 
+    public HBIN(REGFHeader header, ByteBuffer buf, int offset) throws RegistryParseException {
+        this(header, HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * getRelativeOffsetNextHBIN fetches the relative offset from the
      * start of this HBIN to the next HBIN structure. I suppose it is probably
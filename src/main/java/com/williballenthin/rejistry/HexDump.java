@@ -100,14 +100,11 @@ public class HexDump
     }
 
     public static String dumpHexString(ByteBuffer buf) {
-        int saved_position = buf.position();
         byte[] sb = new byte[buf.limit()];
 
-        buf.position(0x0);
         for (int i = 0; i < buf.limit(); i++) {
-            sb[i] = buf.get();
+            sb[i] = buf.get(i);
         }
-        buf.position(saved_position);
         return dumpHexString(sb);
     }
 
@@ -0,0 +1,228 @@
+package com.williballenthin.rejistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * HiveBatch opens and processes many hives on a bounded pool of threads, and reports the outcome of each.
+ *   A hive that fails to parse is recorded as failed, and the batch continues.
+ *
+ * Memory is bounded by a budget of mapped bytes: a hive is only submitted once the total size of the
+ *   hives being processed, plus its own, fits within the budget, so the submitting thread blocks
+ *   (applying backpressure) rather than mapping an unbounded number of hives at once. A hive larger
+ *   than the whole budget is processed alone. Note that a mapping is released by the JVM only once
+ *   it is garbage collected, so the budget limits the hives in use, not the address space reserved.
+ */
+public class HiveBatch {
+    public static final long DEFAULT_MAPPED_BYTES_BUDGET = 0x40000000L;  // 1GB
+    private static final int REGF_MAGIC = 0x72656766;  // "regf", read big endian
+
+    private final List<File> _hives;
+    private int _parallelism = Runtime.getRuntime().availableProcessors();
+    private long _mappedBytesBudget = DEFAULT_MAPPED_BYTES_BUDGET;
+    private ExecutorService _executor = null;
+
+    /**
+     * @param hives The hive files to process, in order.
+     */
+    public HiveBatch(List<File> hives) {
+        this._hives = new ArrayList<File>(hives);
+    }
+
+    /**
+     * fromDirectory creates a batch of the hives found beneath `directory`, recursively, in path order.
+     *   Files are recognized as hives by their "regf" signature, so transaction logs and other files are skipped.
+     *
+     * @throws IOException if the directory cannot be listed.
+     */
+    public static HiveBatch fromDirectory(File directory) throws IOException {
+        List<File> hives = new ArrayList<File>();
+        Stream<Path> paths = Files.walk(directory.toPath());
+        try {
+            Iterator<Path> it = paths.iterator();
+            while (it.hasNext()) {
+                File file = it.next().toFile();
+                if (file.isFile() && isHive(file)) {
+                    hives.add(file);
+                }
+            }
+        } finally {
+            paths.close();
+        }
+        Collections.sort(hives);
+        return new HiveBatch(hives);
+    }
+
+    /**
+     * isHive returns True if the file begins with the signature of a hive.
+     */
+    private static boolean isHive(File file) {
+        try {
+            RandomAccessFile f = new RandomAccessFile(file, "r");
+            try {
+                return f.length() >= 0x4 && f.readInt() == REGF_MAGIC;
+            } finally {
+                f.close();
+            }
+        } catch (IOException e) {
+            // unreadable, so not a hive we can process
+            return false;
+        }
+    }
+
+    public List<File> getHives() {
+        return Collections.unmodifiableList(this._hives);
+    }
+
+    /**
+     * setParallelism selects the number of threads that process hives at once. Ignored if an executor is given.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this._parallelism = parallelism;
+    }
+
+    /**
+     * setMappedBytesBudget selects the largest total size of the hives processed at once.
+     * @throws IllegalArgumentException if the budget is not positive.
+     */
+    public void setMappedBytesBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budget);
+        }
+        this._mappedBytesBudget = budget;
+    }
+
+    /**
+     * setExecutor selects the executor on which hives are processed, such as a virtual thread
+     *   per task executor on Java 21 and later. The batch does not shut it down. By default,
+     *   each run uses its own pool of `parallelism` threads.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this._executor = executor;
+    }
+
+    /**
+     * run opens each hive and passes it to `visitor`, and returns once every hive has been processed.
+     *
+     * @param visitor The thread safe visitor that receives each hive.
+     * @return The outcome of each hive.
+     * @throws InterruptedException if interrupted while waiting for hives to be processed.
+     */
+    public BatchReport run(final HiveVisitor visitor) throws InterruptedException {
+        ExecutorService executor = this._executor != null ? this._executor : Executors.newFixedThreadPool(this._parallelism);
+        final Budget budget = new Budget(this._mappedBytesBudget);
+        List<Future<HiveResult>> futures = new ArrayList<Future<HiveResult>>(this._hives.size());
+        long start = System.nanoTime();
+        try {
+            for (final File hive : this._hives) {
+                final long size = hive.length();
+                budget.acquire(size);
+                futures.add(executor.submit(new Callable<HiveResult>() {
+                    @Override
+                    public HiveResult call() {
+                        try {
+                            return process(hive, size, visitor);
+                        } finally {
+                            budget.release(size);
+                        }
+                    }
+                }));
+            }
+
+            List<HiveResult> results = new ArrayList<HiveResult>(futures.size());
+            for (Future<HiveResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // `process` records exceptions, so only Errors arrive here
+                    if (e.getCause() instanceof Error) {
+                        throw (Error)e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return new BatchReport(results, System.nanoTime() - start, budget.getPeak());
+        } finally {
+            if (this._executor == null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * run walks each hive with `visitor`, as `RegistryWalker.walk` does, on the worker thread that opened it.
+     *
+     * @param visitor The thread safe visitor that receives the keys and values of every hive.
+     * @return The outcome of each hive.
+     * @throws InterruptedException if interrupted while waiting for hives to be processed.
+     */
+    public BatchReport run(final RegistryVisitor visitor) throws InterruptedException {
+        return this.run(new HiveVisitor() {
+            @Override
+            public void visitHive(File file, RegistryHive hive) throws RegistryParseException, UnsupportedEncodingException {
+                RegistryWalker.walkSerially(hive, visitor);
+            }
+        });
+    }
+
+    private static HiveResult process(File file, long size, HiveVisitor visitor) {
+        long start = System.nanoTime();
+        try {
+            visitor.visitHive(file, new RegistryHiveFile(file));
+            return new HiveResult(file, size, System.nanoTime() - start, null);
+        } catch (Exception e) {
+            return new HiveResult(file, size, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Budget counts the bytes of the hives being processed, and blocks those that would exceed it.
+     */
+    private static class Budget {
+        private final long _limit;
+        private long _used = 0;
+        private long _peak = 0;
+
+        private Budget(long limit) {
+            this._limit = limit;
+        }
+
+        /**
+         * acquire waits until `bytes` fit within the budget, or nothing else is in use.
+         */
+        private synchronized void acquire(long bytes) throws InterruptedException {
+            while (this._used > 0 && this._used + bytes > this._limit) {
+                this.wait();
+            }
+            this._used += bytes;
+            this._peak = Math.max(this._peak, this._used);
+        }
+
+        private synchronized void release(long bytes) {
+            this._used -= bytes;
+            this.notifyAll();
+        }
+
+        private synchronized long getPeak() {
+            return this._peak;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.williballenthin.rejistry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HiveImage locates and opens hives within a large file, such as a disk image, a set of
+ *   concatenated hives, or a damaged or oversized hive, addressing the file with long offsets.
+ *
+ * Cell offsets within a hive are 32 bit, so a hive itself can be mapped by one ByteBuffer, and
+ *   parsed by the usual record API. But the file that contains it may be far larger than the
+ *   2GB a ByteBuffer may span, or than the address space a constrained JVM can spare. So, rather
+ *   than mapping the whole file, a HiveImage maps a window of at most `windowSize` bytes at a time
+ *   while searching, and, when opening a hive, maps only the extent declared by its header.
+ *
+ * That extent is itself mapped as a series of windows, no larger than the window size rounded down
+ *   to a power of two, so that opening a hive of up to 2GB never needs one contiguous region of
+ *   address space that large. See WindowStorage.
+ */
+public class HiveImage implements Closeable {
+    public static final int DEFAULT_WINDOW_SIZE = 0x4000000;  // 64MB
+    ///< hives in images begin on a sector boundary.
+    public static final int HIVE_ALIGNMENT = 0x200;
+    private static final int REGF_MAGIC = 0x66676572;  // "regf"
+    private static final int HBIN_MAGIC = 0x6E696268;  // "hbin"
+
+    private final RandomAccessFile _file;
+    private final FileChannel _channel;
+    private final long _length;
+    private int _windowSize = DEFAULT_WINDOW_SIZE;
+
+    /**
+     * @throws IOException if the file cannot be opened.
+     */
+    public HiveImage(File file) throws IOException {
+        this._file = new RandomAccessFile(file, "r");
+        this._channel = this._file.getChannel();
+        this._length = this._file.length();
+    }
+
+    public long getLength() {
+        return this._length;
+    }
+
+    /**
+     * setWindowSize selects the size of the region mapped at once while searching for hives.
+     * @throws IllegalArgumentException if the size is not a positive multiple of HIVE_ALIGNMENT.
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0 || windowSize % HIVE_ALIGNMENT != 0) {
+            throw new IllegalArgumentException("Window size must be a positive multiple of " + HIVE_ALIGNMENT + ": " + windowSize);
+        }
+        this._windowSize = windowSize;
+    }
+
+    /**
+     * findHives searches the image for hives: a "regf" base block on a HIVE_ALIGNMENT boundary,
+     *   followed by a "hbin" header where the first HBIN belongs.
+     *
+     * @return The offsets of the hives found, in file order.
+     * @throws IOException if the image cannot be read.
+     */
+    public List<Long> findHives() throws IOException {
+        List<Long> hives = new ArrayList<Long>();
+        for (long window = 0; window < this._length; window += this._windowSize) {
+            // overlap the next window, so that the HBIN following a base block near the end is visible
+            long size = Math.min((long)this._windowSize + REGFHeader.FIRST_HBIN_OFFSET + 0x4, this._length - window);
+            MappedByteBuffer buf = this._channel.map(MapMode.READ_ONLY, window, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int end = (int)Math.min(this._windowSize, size);
+            for (int offset = 0; offset < end && offset + 0x4 <= size; offset += HIVE_ALIGNMENT) {
+                if (buf.getInt(offset) != REGF_MAGIC) {
+                    continue;
+                }
+                int hbin = offset + REGFHeader.FIRST_HBIN_OFFSET;
+                if (hbin + 0x4 <= size && buf.getInt(hbin) == HBIN_MAGIC) {
+                    hives.add(window + offset);
+                }
+            }
+        }
+        return hives;
+    }
+
+    /**
+     * getHiveLength fetches the size of the hive at `offset`: its base block and the HBINs its header declares,
+     *   limited to the end of the file, and to the 2GB that the hive's 32 bit offsets may address.
+     *
+     * @throws IOException if the image cannot be read.
+     */
+    public long getHiveLength(long offset) throws IOException {
+        return getHiveLength(this._channel, offset, this._length);
+    }
+
+    static long getHiveLength(FileChannel channel, long offset, long fileLength) throws IOException {
+        long available = Math.min(fileLength - offset, Integer.MAX_VALUE);
+        ByteBuffer b = ByteBuffer.allocate(0x4).order(ByteOrder.LITTLE_ENDIAN);
+        long position = offset + REGFHeader.LAST_HBIN_OFFSET_OFFSET;
+        while (b.hasRemaining() && channel.read(b, position + b.position()) >= 0) {
+            // keep reading until the field is complete, or the file ends
+        }
+        return getHiveLength(b.hasRemaining() ? 0 : b.getInt(0) & 0xFFFFFFFFL, available);
+    }
+
+    static long getHiveLength(long hbinsSize, long available) {
+        if (hbinsSize == 0) {
+            // a damaged header: take everything that could belong to the hive
+            return available;
+        }
+        return Math.min(REGFHeader.FIRST_HBIN_OFFSET + hbinsSize, available);
+    }
+
+    /**
+     * openHive maps the hive at `offset`, from its base block to the end of its HBINs, a window at a time.
+     *   See `getHiveLength`.
+     *
+     * @param offset The offset of the hive within the image, such as one found by `findHives`.
+     * @return The hive, which remains valid after this image is closed.
+     * @throws IOException if the hive cannot be mapped.
+     */
+    public RegistryHive openHive(long offset) throws IOException {
+        if (offset < 0 || offset >= this._length) {
+            throw new IllegalArgumentException("Offset beyond the image: " + offset);
+        }
+        int length = (int)this.getHiveLength(offset);
+        int windowSize = Integer.highestOneBit(this._windowSize);
+        return new RegistryHiveBuffer(new WindowStorage(this._channel, offset, windowSize, length), KeyPathCache.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this._file.close();
+    }
+}
@@ -0,0 +1,283 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * HiveIndex records the location, size, type, and owner of every cell of a hive in compact primitive arrays,
+ *   so that questions about an offset can be answered without parsing the structures around it.
+ *
+ * The index is built in one sequential pass over the cells (see CellScanner). While each allocated record
+ *   is read, the cells it references are noted; once every cell is known, each referenced cell is assigned
+ *   its owner: the parent key of a key, the key of a subkey list, value list, class name, or value,
+ *   the value of its data, and the "db" record of big data segments. So, the owner of a value is the key
+ *   whose value list holds it, and the path of any cell can be rebuilt by following owners to the root.
+ *
+ * Cells are kept in file order, so a lookup by offset is a binary search over an int[], and the
+ *   lookups by index are constant time. Building the index takes about 13 bytes per cell.
+ */
+public class HiveIndex {
+    public static final int NO_OWNER = -1;
+    ///< keys are nested at most 512 deep.
+    private static final int MAX_DEPTH = 0x200;
+    private static final int CELL_HEADER_SIZE = 0x4;
+    private static final int DB_LIST_OFFSET_OFFSET = 0x4;
+    private static final int DB_COUNT_OFFSET = 0x2;
+    private static final CellType[] TYPES = CellType.values();
+
+    private final REGFHeader _header;
+    ///< the offsets of the cells, relative to the first HBIN, in increasing order.
+    private final int[] _offsets;
+    ///< the sizes of the cells, including their headers; negative for allocated cells, as stored.
+    private final int[] _sizes;
+    ///< the CellType ordinal of each cell.
+    private final byte[] _types;
+    ///< the offset of the cell that owns each cell, or NO_OWNER.
+    private final int[] _owners;
+
+    private HiveIndex(REGFHeader header, int[] offsets, int[] sizes, byte[] types) {
+        this._header = header;
+        this._offsets = offsets;
+        this._sizes = sizes;
+        this._types = types;
+        this._owners = new int[offsets.length];
+        Arrays.fill(this._owners, NO_OWNER);
+    }
+
+    /**
+     * build indexes the cells of a hive.
+     *
+     * @param header The header of the hive to index.
+     * @return The index of the hive.
+     */
+    public static HiveIndex build(REGFHeader header) {
+        final NKCursor nk = header.newNKCursor();
+        final VKCursor vk = header.newVKCursor();
+        final HiveStorage buf = header._buf;
+        final IntColumn offsets = new IntColumn();
+        final IntColumn sizes = new IntColumn();
+        final IntColumn types = new IntColumn();
+        // the references: the offset of the owning cell, then of the owned cell
+        final IntColumn owners = new IntColumn();
+        final IntColumn owned = new IntColumn();
+
+        Spliterator<ScannedCell> cells = new CellScanner(header).spliterator();
+        cells.forEachRemaining(new Consumer<ScannedCell>() {
+            @Override
+            public void accept(ScannedCell cell) {
+                int offset = cell.getCellOffset();
+                offsets.add(offset);
+                sizes.add(cell.isActive() ? -cell.getLength() : cell.getLength());
+                types.add(cell.getType().ordinal());
+                if ( ! cell.isActive()) {
+                    return;
+                }
+
+                switch (cell.getType()) {
+                    case NK:
+                        if ( ! nk.moveTo(offset)) {
+                            break;
+                        }
+                        if ( ! nk.isRootKey()) {
+                            owners.add(nk.getParentOffset());
+                            owned.add(offset);
+                        }
+                        if (nk.getSubkeyCount() > 0) {
+                            owners.add(offset);
+                            owned.add(nk.getSubkeyListOffset());
+                        }
+                        if (nk.getClassnameLength() > 0) {
+                            owners.add(offset);
+                            owned.add(nk.getClassnameOffset());
+                        }
+                        if (nk.getNumberOfValues() > 0) {
+                            owners.add(offset);
+                            owned.add(nk.getValueListOffset());
+                            int list = REGFHeader.FIRST_HBIN_OFFSET + nk.getValueListOffset() + CELL_HEADER_SIZE;
+                            if (isInBounds(buf, list, 0x4L * nk.getNumberOfValues())) {
+                                for (int i = 0; i < nk.getNumberOfValues(); i++) {
+                                    owners.add(offset);
+                                    owned.add(buf.getInt(list + (0x4 * i)));
+                                }
+                            }
+                        }
+                        break;
+                    case VK:
+                        if (vk.moveTo(offset) && ! vk.isDataResident() && vk.getRawDataLength() > 0x4) {
+                            owners.add(offset);
+                            owned.add(vk.getDataCellOffset());
+                        }
+                        break;
+                    case DB: {
+                        int data = REGFHeader.FIRST_HBIN_OFFSET + offset + CELL_HEADER_SIZE;
+                        int count = buf.getShort(data + DB_COUNT_OFFSET) & 0xFFFF;
+                        int list = buf.getInt(data + DB_LIST_OFFSET_OFFSET);
+                        owners.add(offset);
+                        owned.add(list);
+                        int segments = REGFHeader.FIRST_HBIN_OFFSET + list + CELL_HEADER_SIZE;
+                        if (isInBounds(buf, segments, 0x4L * count)) {
+                            for (int i = 0; i < count; i++) {
+                                owners.add(offset);
+                                owned.add(buf.getInt(segments + (0x4 * i)));
+                            }
+                        }
+                        break;
+                    }
+                    default:
+                        break;
+                }
+            }
+        });
+
+        byte[] typeArray = new byte[offsets.size()];
+        for (int i = 0; i < typeArray.length; i++) {
+            typeArray[i] = (byte)types.get(i);
+        }
+        HiveIndex index = new HiveIndex(header, offsets.toArray(), sizes.toArray(), typeArray);
+        for (int i = 0; i < owned.size(); i++) {
+            int target = index.indexOf(owned.get(i));
+            // the first reference wins, which for a key is its parent
+            if (target != -1 && index._owners[target] == NO_OWNER && index.indexOf(owners.get(i)) != -1) {
+                index._owners[target] = owners.get(i);
+            }
+        }
+        return index;
+    }
+
+    private static boolean isInBounds(HiveStorage buf, int offset, long length) {
+        return offset >= 0 && offset + length <= buf.capacity();
+    }
+
+    public int getCellCount() {
+        return this._offsets.length;
+    }
+
+    /**
+     * indexOf finds the index of the cell at `cellOffset`, relative to the first HBIN.
+     *
+     * @return The index of the cell, or -1 if no cell starts at the offset.
+     */
+    public int indexOf(int cellOffset) {
+        int index = Arrays.binarySearch(this._offsets, cellOffset);
+        return index < 0 ? -1 : index;
+    }
+
+    private int getIndex(int cellOffset) {
+        int index = this.indexOf(cellOffset);
+        if (index == -1) {
+            throw new NoSuchElementException("No cell at offset: " + cellOffset);
+        }
+        return index;
+    }
+
+    /**
+     * getCellOffset fetches the offset of the `index`-th cell, relative to the first HBIN.
+     */
+    public int getCellOffset(int index) {
+        return this._offsets[index];
+    }
+
+    /**
+     * getCellLength fetches the size of the `index`-th cell, including its four byte size header.
+     */
+    public int getCellLength(int index) {
+        return Math.abs(this._sizes[index]);
+    }
+
+    public boolean isAllocated(int index) {
+        return this._sizes[index] < 0;
+    }
+
+    public CellType getCellType(int index) {
+        return TYPES[this._types[index]];
+    }
+
+    /**
+     * getType fetches the type of the cell at `cellOffset`, relative to the first HBIN.
+     * @throws NoSuchElementException if no cell starts at the offset.
+     */
+    public CellType getType(int cellOffset) {
+        return this.getCellType(this.getIndex(cellOffset));
+    }
+
+    /**
+     * getOwner fetches the offset of the cell that owns the cell at `cellOffset`. See the class comment.
+     *
+     * @return The offset of the owning cell, or NO_OWNER if no allocated record references the cell.
+     * @throws NoSuchElementException if no cell starts at the offset.
+     */
+    public int getOwner(int cellOffset) {
+        return this._owners[this.getIndex(cellOffset)];
+    }
+
+    /**
+     * getKeyOffset fetches the offset of the key to which the cell at `cellOffset` belongs:
+     *   for a key, the key itself; otherwise, the nearest key among its owners.
+     *
+     * @return The offset of the key, or NO_OWNER if the cell belongs to no key.
+     * @throws NoSuchElementException if no cell starts at the offset.
+     */
+    public int getKeyOffset(int cellOffset) {
+        int index = this.getIndex(cellOffset);
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            if (this.getCellType(index) == CellType.NK) {
+                return this._offsets[index];
+            }
+            int owner = this._owners[index];
+            if (owner == NO_OWNER) {
+                return NO_OWNER;
+            }
+            index = this.indexOf(owner);
+        }
+        return NO_OWNER;
+    }
+
+    /**
+     * getPath rebuilds the path of the key to which the cell at `cellOffset` belongs, from the name of the root key.
+     *   If the chain of keys is broken before the root, the path begins with DeletedRecordScanner.UNKNOWN_PARENT.
+     *
+     * @return The path of the key, such as "ROOT\\Software\\Microsoft".
+     * @throws NoSuchElementException if no cell starts at the offset, or the cell belongs to no key.
+     * @throws UnsupportedEncodingException if the name of a key cannot be decoded.
+     */
+    public String getPath(int cellOffset) throws UnsupportedEncodingException {
+        int key = this.getKeyOffset(cellOffset);
+        if (key == NO_OWNER) {
+            throw new NoSuchElementException("No key owns the cell at offset: " + cellOffset);
+        }
+        NKCursor nk = this._header.newNKCursor();
+        List<String> names = new ArrayList<String>();
+        boolean complete = false;
+        while (names.size() < MAX_DEPTH && nk.moveTo(key)) {
+            names.add(nk.getName());
+            if (nk.isRootKey()) {
+                complete = true;
+                break;
+            }
+            key = this._owners[this.indexOf(key)];
+            if (key == NO_OWNER) {
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if ( ! complete) {
+            sb.append(DeletedRecordScanner.UNKNOWN_PARENT);
+        }
+        for (int i = names.size() - 1; i >= 0; i--) {
+            if (sb.length() > 0) {
+                sb.append('\\');
+            }
+            sb.append(names.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,301 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * HiveIntegrityChecker validates the structure of a hive in a single linear pass, so that many hives
+ *   can be triaged cheaply before they are parsed in depth.
+ *
+ * The header checksum and size of the hive bins are checked first. Then each HBIN is read in turn,
+ *   checking its signature, offset, and size, and each of its cells, checking that their sizes are
+ *   multiples of eight that exactly tile the HBIN. While reading the cells, the references held by
+ *   the allocated "nk", "vk", "db", and subkey list records are collected; once all the cells are known,
+ *   each reference is checked to point at the start of an allocated cell of the expected type.
+ *   The entries of value lists are checked through the keys that reference them.
+ *
+ * An unreadable HBIN ends the pass, since the position of the next HBIN cannot be known.
+ *   Use `setMaxErrors` to stop at the first problem, or after a few.
+ */
+public class HiveIntegrityChecker {
+    private static final int HBIN_MAGIC = 0x6E696268;
+    private static final int HBIN_OFFSET_OFFSET = 0x4;
+    private static final int HBIN_SIZE_OFFSET = 0x8;
+    private static final int HBIN_HEADER_SIZE = 0x20;
+    private static final int HBIN_ALIGNMENT = 0x1000;
+    private static final int CELL_ALIGNMENT = 0x8;
+    private static final int CELL_HEADER_SIZE = 0x4;
+    private static final int LIST_LENGTH_OFFSET = 0x2;
+    private static final int LIST_START_OFFSET = 0x4;
+    private static final int DB_LIST_OFFSET_OFFSET = 0x4;
+
+    // the kind of cell that a reference must point to
+    private static final int EXPECT_ANY = 0;
+    private static final int EXPECT_NK = 1;
+    private static final int EXPECT_VK = 2;
+    private static final int EXPECT_SUBKEY_LIST = 3;
+    ///< the sublists of an "ri" index root, which may not themselves be index roots.
+    private static final int EXPECT_LEAF_LIST = 4;
+    ///< a value list, whose entries are checked in turn.
+    private static final int EXPECT_VALUE_LIST = 5;
+
+    private final REGFHeader _header;
+    private final HiveStorage _buf;
+    private int _maxErrors = Integer.MAX_VALUE;
+
+    public HiveIntegrityChecker(REGFHeader header) {
+        this._header = header;
+        this._buf = header._buf;
+    }
+
+    /**
+     * setMaxErrors stops the check once `maxErrors` problems have been found. One fails fast.
+     */
+    public void setMaxErrors(int maxErrors) {
+        this._maxErrors = maxErrors;
+    }
+
+    /**
+     * Pass holds the state of a single call to `check`.
+     */
+    private class Pass {
+        private final List<IntegrityError> _errors = new ArrayList<IntegrityError>();
+        ///< the cell offsets, relative to the first HBIN, at which cells start, and which of those are allocated, in units of CELL_ALIGNMENT.
+        private final BitSet _cells = new BitSet();
+        private final BitSet _allocated = new BitSet();
+        ///< the references found so far: the absolute offset of the referring cell, the target cell offset, what the target must be, and a count of entries.
+        private final IntColumn _sources = new IntColumn();
+        private final IntColumn _targets = new IntColumn();
+        private final IntColumn _expected = new IntColumn();
+        private final IntColumn _counts = new IntColumn();
+        private final NKCursor _nk = HiveIntegrityChecker.this._header.newNKCursor();
+        private final VKCursor _vk = HiveIntegrityChecker.this._header.newVKCursor();
+
+        /**
+         * error records a problem, and returns True if the check should stop.
+         */
+        private boolean error(IntegrityError.Kind kind, long offset, String message) {
+            this._errors.add(new IntegrityError(kind, offset, message));
+            return this.isFull();
+        }
+
+        private boolean isFull() {
+            return this._errors.size() >= HiveIntegrityChecker.this._maxErrors;
+        }
+
+        private void reference(int source, int target, int expected, int count) {
+            this._sources.add(source);
+            this._targets.add(target);
+            this._expected.add(expected);
+            this._counts.add(count);
+        }
+    }
+
+    /**
+     * check validates the hive.
+     *
+     * @return The problems found.
+     */
+    public IntegrityReport check() {
+        Pass pass = new Pass();
+        boolean complete = this.checkHeader(pass) && this.checkHBINs(pass) && this.checkReferences(pass);
+        return new IntegrityReport(pass._errors, complete);
+    }
+
+    private boolean checkHeader(Pass pass) {
+        if ( ! this._header.isChecksumValid()) {
+            int expected = REGFHeader.computeChecksum(this._buf, 0x0);
+            if (pass.error(IntegrityError.Kind.HEADER_CHECKSUM, REGFHeader.CHECKSUM_OFFSET,
+                    String.format("expected checksum 0x%08x, found 0x%08x", expected, this._header.getChecksum()))) {
+                return false;
+            }
+        }
+        long size = this._header.getLastHbinOffset() & 0xFFFFFFFFL;
+        if (size == 0 || size % HBIN_ALIGNMENT != 0 || REGFHeader.FIRST_HBIN_OFFSET + size > this._buf.capacity()) {
+            if (pass.error(IntegrityError.Kind.HEADER_HBINS_SIZE, REGFHeader.LAST_HBIN_OFFSET_OFFSET,
+                    String.format("invalid size of hive bins 0x%x for a file of 0x%x bytes", size, this._buf.capacity()))) {
+                return false;
+            }
+        }
+        pass.reference(0x0, this._header.getRootCellOffset(), EXPECT_NK, 0);
+        return true;
+    }
+
+    private boolean checkHBINs(Pass pass) {
+        long size = this._header.getLastHbinOffset() & 0xFFFFFFFFL;
+        long end = REGFHeader.FIRST_HBIN_OFFSET + size;
+        if (size == 0 || end > this._buf.capacity()) {
+            // check whatever HBINs there are
+            end = this._buf.capacity();
+        }
+
+        int offset = REGFHeader.FIRST_HBIN_OFFSET;
+        while (offset < end) {
+            if (offset + HBIN_HEADER_SIZE > end || this._buf.getInt(offset) != HBIN_MAGIC) {
+                pass.error(IntegrityError.Kind.HBIN_SIGNATURE, offset, "expected a HBIN");
+                return false;
+            }
+            int relative = offset - REGFHeader.FIRST_HBIN_OFFSET;
+            int stored = this._buf.getInt(offset + HBIN_OFFSET_OFFSET);
+            if (stored != relative && pass.error(IntegrityError.Kind.HBIN_OFFSET, offset,
+                    String.format("expected offset 0x%x, found 0x%x", relative, stored))) {
+                return false;
+            }
+            int hbinSize = this._buf.getInt(offset + HBIN_SIZE_OFFSET);
+            if (hbinSize <= 0 || hbinSize % HBIN_ALIGNMENT != 0 || offset + (long)hbinSize > end) {
+                pass.error(IntegrityError.Kind.HBIN_SIZE, offset,
+                        String.format("invalid size 0x%x, with 0x%x bytes of hive bins remaining", hbinSize, end - offset));
+                return false;
+            }
+            if ( ! this.checkCells(pass, offset, offset + hbinSize)) {
+                return false;
+            }
+            offset += hbinSize;
+        }
+        return true;
+    }
+
+    /**
+     * checkCells checks the cells of the HBIN spanning the absolute offsets [start, end), and collects their references.
+     */
+    private boolean checkCells(Pass pass, int start, int end) {
+        int offset = start + HBIN_HEADER_SIZE;
+        while (offset < end) {
+            int raw = this._buf.getInt(offset);
+            int length = Math.abs(raw);
+            if (raw == 0 || raw == Integer.MIN_VALUE || length % CELL_ALIGNMENT != 0 || length > end - offset) {
+                // the rest of this HBIN cannot be read, but the next HBIN can
+                return !pass.error(IntegrityError.Kind.CELL_SIZE, offset,
+                        String.format("invalid size 0x%x, with 0x%x bytes of the HBIN remaining", length, end - offset));
+            }
+            int cell = offset - REGFHeader.FIRST_HBIN_OFFSET;
+            pass._cells.set(cell / CELL_ALIGNMENT);
+            if (raw < 0) {
+                pass._allocated.set(cell / CELL_ALIGNMENT);
+                this.collectReferences(pass, offset, length);
+            }
+            offset += length;
+        }
+        return true;
+    }
+
+    private void collectReferences(Pass pass, int offset, int length) {
+        int cell = offset - REGFHeader.FIRST_HBIN_OFFSET;
+        int data = offset + CELL_HEADER_SIZE;
+        switch (CellType.classify(this._buf, data, length - CELL_HEADER_SIZE)) {
+            case NK: {
+                NKCursor nk = pass._nk;
+                if ( ! nk.moveTo(cell)) {
+                    return;
+                }
+                if ( ! nk.isRootKey()) {
+                    pass.reference(offset, nk.getParentOffset(), EXPECT_NK, 0);
+                }
+                if (nk.getSubkeyCount() > 0) {
+                    pass.reference(offset, nk.getSubkeyListOffset(), EXPECT_SUBKEY_LIST, 0);
+                }
+                if (nk.getNumberOfValues() > 0) {
+                    pass.reference(offset, nk.getValueListOffset(), EXPECT_VALUE_LIST, nk.getNumberOfValues());
+                }
+                break;
+            }
+            case VK: {
+                VKCursor vk = pass._vk;
+                if (vk.moveTo(cell) && ! vk.isDataResident() && vk.getRawDataLength() >= 0x5) {
+                    pass.reference(offset, vk.getDataCellOffset(), EXPECT_ANY, 0);
+                }
+                break;
+            }
+            case LF:
+            case LH:
+            case LI:
+            case RI: {
+                boolean indexRoot = this._buf.get(data) == 'r';
+                int itemSize = this._buf.get(data + 1) == 'i' ? 0x4 : 0x8;
+                int count = this._buf.getShort(data + LIST_LENGTH_OFFSET) & 0xFFFF;
+                if (LIST_START_OFFSET + ((long)itemSize * count) > length - CELL_HEADER_SIZE) {
+                    pass.error(IntegrityError.Kind.CELL_SIZE, offset,
+                            String.format("list of 0x%x entries overruns its cell of 0x%x bytes", count, length));
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    int target = this._buf.getInt(data + LIST_START_OFFSET + (itemSize * i));
+                    pass.reference(offset, target, indexRoot ? EXPECT_LEAF_LIST : EXPECT_NK, 0);
+                }
+                break;
+            }
+            case DB:
+                pass.reference(offset, this._buf.getInt(data + DB_LIST_OFFSET_OFFSET), EXPECT_ANY, 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean checkReferences(Pass pass) {
+        // checking value lists adds references, so the count may grow
+        for (int i = 0; i < pass._targets.size(); i++) {
+            int source = pass._sources.get(i);
+            int target = pass._targets.get(i);
+            int expected = pass._expected.get(i);
+            String problem = this.checkReference(pass, target, expected);
+            if (problem != null) {
+                if (pass.error(IntegrityError.Kind.REFERENCE, source, String.format("reference to 0x%x: %s", target, problem))) {
+                    return false;
+                }
+            } else if (expected == EXPECT_VALUE_LIST) {
+                int data = REGFHeader.FIRST_HBIN_OFFSET + target + CELL_HEADER_SIZE;
+                int count = pass._counts.get(i);
+                if (0x4L * count > Math.abs(this._buf.getInt(data - CELL_HEADER_SIZE)) - CELL_HEADER_SIZE) {
+                    if (pass.error(IntegrityError.Kind.REFERENCE, source,
+                            String.format("value list at 0x%x is too small for 0x%x values", target, count))) {
+                        return false;
+                    }
+                    continue;
+                }
+                for (int j = 0; j < count; j++) {
+                    pass.reference(data - CELL_HEADER_SIZE, this._buf.getInt(data + (0x4 * j)), EXPECT_VK, 0);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * checkLeafList describes the problem with a reference to a cell of type `type` where a subkey list
+     *   other than an index root is expected, or returns null if there is none.
+     */
+    private static String checkLeafList(CellType type) {
+        return type == CellType.LF || type == CellType.LH || type == CellType.LI ? null : "expected a subkey list, found " + type;
+    }
+
+    /**
+     * checkReference describes the problem with a reference to the cell at `target`, or returns null if there is none.
+     */
+    private String checkReference(Pass pass, int target, int expected) {
+        if (target < 0 || target % CELL_ALIGNMENT != 0 || ! pass._cells.get(target / CELL_ALIGNMENT)) {
+            return "not the start of a cell";
+        }
+        if ( ! pass._allocated.get(target / CELL_ALIGNMENT)) {
+            return "the cell is free";
+        }
+        int offset = REGFHeader.FIRST_HBIN_OFFSET + target;
+        CellType type = CellType.classify(this._buf, offset + CELL_HEADER_SIZE, Math.abs(this._buf.getInt(offset)) - CELL_HEADER_SIZE);
+        switch (expected) {
+            case EXPECT_NK:
+                return type == CellType.NK ? null : "expected a key, found " + type;
+            case EXPECT_VK:
+                return type == CellType.VK ? null : "expected a value, found " + type;
+            case EXPECT_SUBKEY_LIST:
+                return type == CellType.RI ? null : checkLeafList(type);
+            case EXPECT_LEAF_LIST:
+                return checkLeafList(type);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.williballenthin.rejistry;
+
+import java.io.File;
+
+/**
+ * HiveResult describes the processing of one hive by a HiveBatch: how large it was, how long it took, and how it failed, if it did.
+ */
+public class HiveResult {
+    private final File _file;
+    private final long _mappedBytes;
+    private final long _elapsedNanos;
+    private final Exception _failure;
+
+    HiveResult(File file, long mappedBytes, long elapsedNanos, Exception failure) {
+        this._file = file;
+        this._mappedBytes = mappedBytes;
+        this._elapsedNanos = elapsedNanos;
+        this._failure = failure;
+    }
+
+    public File getFile() {
+        return this._file;
+    }
+
+    /**
+     * getMappedBytes fetches the number of bytes of the hive mapped into memory while it was processed.
+     */
+    public long getMappedBytes() {
+        return this._mappedBytes;
+    }
+
+    /**
+     * getElapsedNanos fetches the time taken to open and visit the hive.
+     */
+    public long getElapsedNanos() {
+        return this._elapsedNanos;
+    }
+
+    /**
+     * getBytesPerSecond fetches the throughput of the hive, in bytes of hive processed per second.
+     */
+    public double getBytesPerSecond() {
+        return this._elapsedNanos == 0 ? 0.0 : this._mappedBytes * 1e9 / this._elapsedNanos;
+    }
+
+    public boolean isSuccess() {
+        return this._failure == null;
+    }
+
+    /**
+     * getFailure fetches the exception that stopped the processing of the hive, or null if it succeeded.
+     *   This is usually a RegistryParseException, for a corrupt hive, or an IOException.
+     */
+    public Exception getFailure() {
+        return this._failure;
+    }
+}
@@ -0,0 +1,46 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HiveStorage is the bytes of a hive, addressed by absolute offset from the start of its base block.
+ *   The records and cursors read a hive only through a HiveStorage, so the bytes may be held in a
+ *   single ByteBuffer, read lazily a page at a time from a channel, or assembled from pages of
+ *   several sources, without the parsing code knowing the difference.
+ * Accessors mirror the absolute accessors of ByteBuffer: integers are little endian, and an access
+ *   beyond the storage throws IndexOutOfBoundsException. Implementations are read-only, and safe for
+ *   use by many threads at once.
+ */
+public interface HiveStorage {
+    /**
+     * capacity fetches the number of bytes in the storage.
+     */
+    int capacity();
+
+    byte get(int index);
+
+    short getShort(int index);
+
+    int getInt(int index);
+
+    long getLong(int index);
+
+    /**
+     * get copies `length` bytes at absolute offset `index` into `dest`, starting at `destOffset`.
+     */
+    void get(int index, byte[] dest, int destOffset, int length);
+
+    /**
+     * slice fetches a read-only buffer of the `length` bytes at absolute offset `index`, with position zero.
+     *   It is a view of the storage where the bytes are contiguous, and otherwise a copy.
+     */
+    ByteBuffer slice(int index, int length);
+
+    /**
+     * wrap creates a HiveStorage over the bytes of `buf` from zero to its limit, without copying them,
+     *   for callers that hold a hive, or part of one, in a ByteBuffer. The buffer's byte order is not changed.
+     */
+    static HiveStorage wrap(ByteBuffer buf) {
+        return new BufferStorage(buf);
+    }
+}
@@ -0,0 +1,19 @@
+package com.williballenthin.rejistry;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * HiveVisitor receives each hive processed by a HiveBatch.
+ *   Hives are visited concurrently, so implementations must be thread safe.
+ */
+public interface HiveVisitor {
+    /**
+     * visitHive processes a single hive. The hive is only valid for the duration of the call.
+     *
+     * @param file The file from which the hive was opened.
+     * @param hive The opened hive.
+     * @throws IOException or RegistryParseException to record the hive as failed. The batch continues.
+     */
+    public void visitHive(File file, RegistryHive hive) throws IOException, RegistryParseException;
+}
@@ -0,0 +1,36 @@
+package com.williballenthin.rejistry;
+
+import java.util.Arrays;
+
+/**
+ * IntColumn is a growable int[], for collecting offsets without boxing them.
+ */
+class IntColumn {
+    static final int INITIAL_CAPACITY = 0x100;
+
+    private int[] _data = new int[INITIAL_CAPACITY];
+    private int _size = 0;
+
+    void add(int i) {
+        if (this._size == this._data.length) {
+            this._data = Arrays.copyOf(this._data, this._size * 2);
+        }
+        this._data[this._size++] = i;
+    }
+
+    int get(int index) {
+        return this._data[index];
+    }
+
+    int pop() {
+        return this._data[--this._size];
+    }
+
+    int size() {
+        return this._size;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(this._data, this._size);
+    }
+}
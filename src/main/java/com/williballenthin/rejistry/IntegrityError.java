@@ -0,0 +1,58 @@
+package com.williballenthin.rejistry;
+
+/**
+ * IntegrityError describes a structural problem found by a HiveIntegrityChecker.
+ */
+public class IntegrityError {
+    /**
+     * Kind classifies the structure that is damaged.
+     */
+    public enum Kind {
+        ///< the stored checksum of the header does not match its contents.
+        HEADER_CHECKSUM,
+        ///< the size of the hive bins in the header is invalid, or disagrees with the HBINs found.
+        HEADER_HBINS_SIZE,
+        HBIN_SIGNATURE,
+        ///< the offset of a HBIN stored in its header does not match its position.
+        HBIN_OFFSET,
+        HBIN_SIZE,
+        ///< the size of a cell is zero, not a multiple of eight bytes, or overruns its HBIN.
+        CELL_SIZE,
+        ///< a reference does not point at the start of an allocated cell of the expected type.
+        REFERENCE
+    }
+
+    private final Kind _kind;
+    private final long _offset;
+    private final String _message;
+
+    IntegrityError(Kind kind, long offset, String message) {
+        this._kind = kind;
+        this._offset = offset;
+        this._message = message;
+    }
+
+    public Kind getKind() {
+        return this._kind;
+    }
+
+    /**
+     * getOffset fetches the absolute offset in the hive file of the damaged structure.
+     *   For a reference, this is the offset of the cell holding the reference.
+     */
+    public long getOffset() {
+        return this._offset;
+    }
+
+    /**
+     * getMessage fetches a description of the problem, including the expected value where it is known.
+     */
+    public String getMessage() {
+        return this._message;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s at 0x%x: %s", this._kind, this._offset, this._message);
+    }
+}
@@ -0,0 +1,37 @@
+package com.williballenthin.rejistry;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IntegrityReport holds the problems found by a HiveIntegrityChecker, in file order
+ *   (except for damaged references, which are reported after the structures).
+ */
+public class IntegrityReport {
+    private final List<IntegrityError> _errors;
+    private final boolean _complete;
+
+    IntegrityReport(List<IntegrityError> errors, boolean complete) {
+        this._errors = Collections.unmodifiableList(errors);
+        this._complete = complete;
+    }
+
+    public List<IntegrityError> getErrors() {
+        return this._errors;
+    }
+
+    /**
+     * isValid returns True if no problems were found.
+     */
+    public boolean isValid() {
+        return this._errors.isEmpty();
+    }
+
+    /**
+     * isComplete returns False if the check stopped early: either it found the maximum number of errors,
+     *   or an HBIN with a bad signature or size ended the pass before references were checked.
+     */
+    public boolean isComplete() {
+        return this._complete;
+    }
+}
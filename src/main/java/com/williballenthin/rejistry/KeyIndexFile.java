@@ -0,0 +1,485 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * KeyIndexFile is an index of the keys and values of a hive, persisted to a sidecar file that is
+ *   memory mapped when opened, so that a process can answer path lookups against a large hive
+ *   immediately, without first walking its tree.
+ *
+ * The file holds a table of keys sorted by a hash of their case-folded path (with the offset of the
+ *   NKRecord, the hash of its name, and its last written timestamp) and a table of values sorted by
+ *   a hash of their key and case-folded name (with the offset of the VKRecord). A lookup is a binary
+ *   search of the mapped table, and each candidate is confirmed against the hive itself, so hash
+ *   collisions cannot produce wrong answers. The hash of each key's name lets `getKeysByName` find
+ *   keys anywhere in the tree with a scan of the key table, reading only the candidates from the hive.
+ *
+ * The file is tied to the hive by a fingerprint of its header: the length of the hive, its sequence
+ *   numbers, checksum, size of hive bins, and a hash of the base block. Use `open`, which rebuilds the
+ *   file when the fingerprint does not match. The fingerprint does not cover the hive bins, since hashing
+ *   them would cost as much as rebuilding the index; a hive modified without updating its header
+ *   (which Windows never does) requires deleting the sidecar.
+ *
+ * Layout, little endian: a header of HEADER_SIZE bytes, then the key table, then the value table.
+ */
+public class KeyIndexFile {
+    private static final int MAGIC = 0x494B4A52;  // "RJKI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 0x40;
+    private static final int KEY_ENTRY_SIZE = 0x18;
+    private static final int VALUE_ENTRY_SIZE = 0x10;
+    private static final long FINGERPRINT_SEED = 0x3C6EF372FE94F82BL;
+    private static final int BASE_BLOCK_SIZE = 0x200;
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    ///< keys are nested at most 512 deep.
+    private static final int MAX_DEPTH = 0x200;
+
+    // offsets within the header
+    private static final int VERSION_OFFSET = 0x4;
+    private static final int HIVE_LENGTH_OFFSET = 0x8;
+    private static final int SEQ1_OFFSET = 0x10;
+    private static final int SEQ2_OFFSET = 0x14;
+    private static final int CHECKSUM_OFFSET = 0x18;
+    private static final int HBINS_SIZE_OFFSET = 0x1C;
+    private static final int KEY_COUNT_OFFSET = 0x20;
+    private static final int VALUE_COUNT_OFFSET = 0x24;
+    private static final int BASE_BLOCK_HASH_OFFSET = 0x28;
+
+    // offsets within the entries
+    private static final int ENTRY_HASH_OFFSET = 0x0;
+    private static final int KEY_OFFSET_OFFSET = 0x8;
+    private static final int KEY_NAME_HASH_OFFSET = 0xC;
+    private static final int KEY_TIMESTAMP_OFFSET = 0x10;
+    private static final int VALUE_OFFSET_OFFSET = 0x8;
+
+    private final REGFHeader _header;
+    private final ByteBuffer _buf;
+    private final int _keyCount;
+    private final int _valueCount;
+    private final int _valuesStart;
+
+    private KeyIndexFile(REGFHeader header, ByteBuffer buf) {
+        this._header = header;
+        this._buf = buf;
+        this._keyCount = buf.getInt(KEY_COUNT_OFFSET);
+        this._valueCount = buf.getInt(VALUE_COUNT_OFFSET);
+        this._valuesStart = HEADER_SIZE + (KEY_ENTRY_SIZE * this._keyCount);
+    }
+
+    /**
+     * open maps the index of a hive from `sidecar`, first writing it if the file is missing or was built for a different hive.
+     *
+     * @param header The header of the hive.
+     * @param sidecar The index file, conventionally next to the hive with the extension ".rjki".
+     * @return The index.
+     * @throws IOException if the index cannot be read or written.
+     * @throws RegistryParseException if the hive cannot be parsed while building the index.
+     */
+    public static KeyIndexFile open(REGFHeader header, File sidecar) throws IOException, RegistryParseException {
+        if (sidecar.isFile()) {
+            KeyIndexFile index = map(header, sidecar);
+            if (index != null) {
+                return index;
+            }
+        }
+        write(header, sidecar);
+        KeyIndexFile index = map(header, sidecar);
+        if (index == null) {
+            throw new IOException("Index file was modified while it was opened: " + sidecar);
+        }
+        return index;
+    }
+
+    /**
+     * map maps the index in `file` if it was built for the hive described by `header`, or returns null.
+     *   The header of the index is checked with a plain read first, so that a stale file is never mapped,
+     *   and may be replaced by `write` (which Windows refuses while a mapping of the file is reachable).
+     */
+    private static KeyIndexFile map(REGFHeader header, File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = f.getChannel();
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && channel.read(head, head.position()) >= 0) {
+                // keep reading until the header is complete, or the file ends
+            }
+            long length = channel.size();
+            if (head.hasRemaining() || ! matches(header, head, length)) {
+                return null;
+            }
+            return new KeyIndexFile(header, channel.map(MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN));
+        } finally {
+            f.close(); // does not affect ByteBuffer mapping
+        }
+    }
+
+    private static long getBaseBlockHash(REGFHeader header) {
+        int length = Math.min(BASE_BLOCK_SIZE, header._buf.capacity());
+        return Marvin32.hash(header._buf.slice(0x0, length), 0x0, length, FINGERPRINT_SEED);
+    }
+
+    /**
+     * matches returns True if the index with the header `buf`, in a file of `length` bytes, is complete,
+     *   and was built for the hive described by `header`.
+     */
+    private static boolean matches(REGFHeader header, ByteBuffer buf, long length) {
+        if (buf.getInt(0x0) != MAGIC || buf.getInt(VERSION_OFFSET) != VERSION) {
+            return false;
+        }
+        long size = HEADER_SIZE + ((long)KEY_ENTRY_SIZE * buf.getInt(KEY_COUNT_OFFSET)) + ((long)VALUE_ENTRY_SIZE * buf.getInt(VALUE_COUNT_OFFSET));
+        return length == size
+                && buf.getLong(HIVE_LENGTH_OFFSET) == header._buf.capacity()
+                && buf.getInt(SEQ1_OFFSET) == (int)header.getPrimarySequenceNumber()
+                && buf.getInt(SEQ2_OFFSET) == (int)header.getSecondarySequenceNumber()
+                && buf.getInt(CHECKSUM_OFFSET) == header.getChecksum()
+                && buf.getInt(HBINS_SIZE_OFFSET) == header.getLastHbinOffset()
+                && buf.getLong(BASE_BLOCK_HASH_OFFSET) == getBaseBlockHash(header);
+    }
+
+    /**
+     * fold maps a character to the form in which names are hashed, such that two characters that are
+     *   equal ignoring case (in the sense of `String.equalsIgnoreCase`) fold to the same character.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * hash continues the FNV-1a hash `h` with the case-folded characters of `s`.
+     */
+    private static long hash(long h, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = fold(s.charAt(i));
+            h = (h ^ (c & 0xFF)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long hashPath(List<String> components) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < components.size(); i++) {
+            if (i > 0) {
+                h = hash(h, "\\");
+            }
+            h = hash(h, components.get(i));
+        }
+        return h;
+    }
+
+    private static long hashValue(int keyOffset, String name) {
+        return hash(FNV_OFFSET_BASIS ^ (keyOffset * 0x9E3779B97F4A7C15L), name);
+    }
+
+    /**
+     * Builder walks the tree of keys, collecting the entries of the index.
+     */
+    private static class Builder {
+        private final NKCursor _nk;
+        private final VKCursor _vk;
+        private final BitSet _visited = new BitSet();
+        private long[] _keyHashes = new long[IntColumn.INITIAL_CAPACITY];
+        private final IntColumn _keyOffsets = new IntColumn();
+        private final IntColumn _keyNameHashes = new IntColumn();
+        private long[] _keyTimestamps = new long[IntColumn.INITIAL_CAPACITY];
+        private long[] _valueHashes = new long[IntColumn.INITIAL_CAPACITY];
+        private final IntColumn _valueOffsets = new IntColumn();
+
+        private Builder(REGFHeader header) {
+            this._nk = header.newNKCursor();
+            this._vk = header.newVKCursor();
+        }
+
+        private void addKey(int offset, long pathHash, int depth) throws RegistryParseException, UnsupportedEncodingException {
+            if (depth > MAX_DEPTH || ! this._nk.moveTo(offset) || this._visited.get(offset)) {
+                return;
+            }
+            this._visited.set(offset);
+
+            int index = this._keyOffsets.size();
+            if (index == this._keyHashes.length) {
+                this._keyHashes = Arrays.copyOf(this._keyHashes, index * 2);
+                this._keyTimestamps = Arrays.copyOf(this._keyTimestamps, index * 2);
+            }
+            this._keyHashes[index] = pathHash;
+            this._keyTimestamps[index] = this._nk.getTimestampFiletime();
+            this._keyOffsets.add(offset);
+            this._keyNameHashes.add(depth == 0 ? 0 : (int)hash(FNV_OFFSET_BASIS, this._nk.getName()));
+
+            int[] values = new int[this._nk.getNumberOfValues()];
+            int count = values.length == 0 ? 0 : this._nk.readValueOffsets(values);
+            for (int i = 0; i < count; i++) {
+                if ( ! this._vk.moveTo(values[i])) {
+                    continue;
+                }
+                int v = this._valueOffsets.size();
+                if (v == this._valueHashes.length) {
+                    this._valueHashes = Arrays.copyOf(this._valueHashes, v * 2);
+                }
+                this._valueHashes[v] = hashValue(offset, this._vk.getName());
+                this._valueOffsets.add(values[i]);
+            }
+
+            int[] subkeys = new int[this._nk.getSubkeyCount()];
+            count = this._nk.readSubkeyOffsets(subkeys);
+            for (int i = 0; i < count; i++) {
+                if ( ! this._nk.moveTo(subkeys[i])) {
+                    continue;
+                }
+                long h = depth == 0 ? FNV_OFFSET_BASIS : hash(pathHash, "\\");
+                this.addKey(subkeys[i], hash(h, this._nk.getName()), depth + 1);
+            }
+        }
+    }
+
+    /**
+     * sortByHash fetches the order of the entries with the given hashes, by increasing hash.
+     */
+    private static Integer[] sortByHash(final long[] hashes, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(hashes[a], hashes[b]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * write builds the index of a hive and writes it to `sidecar`, replacing it atomically where the file system allows.
+     *
+     * @throws IOException if the index cannot be written.
+     * @throws RegistryParseException if the hive cannot be parsed.
+     */
+    public static void write(REGFHeader header, File sidecar) throws IOException, RegistryParseException {
+        Builder b = new Builder(header);
+        b.addKey(header.getRootCellOffset(), FNV_OFFSET_BASIS, 0);
+        int keys = b._keyOffsets.size();
+        int values = b._valueOffsets.size();
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + (KEY_ENTRY_SIZE * keys) + (VALUE_ENTRY_SIZE * values)).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0x0, MAGIC);
+        buf.putInt(VERSION_OFFSET, VERSION);
+        buf.putLong(HIVE_LENGTH_OFFSET, header._buf.capacity());
+        buf.putInt(SEQ1_OFFSET, (int)header.getPrimarySequenceNumber());
+        buf.putInt(SEQ2_OFFSET, (int)header.getSecondarySequenceNumber());
+        buf.putInt(CHECKSUM_OFFSET, header.getChecksum());
+        buf.putInt(HBINS_SIZE_OFFSET, header.getLastHbinOffset());
+        buf.putInt(KEY_COUNT_OFFSET, keys);
+        buf.putInt(VALUE_COUNT_OFFSET, values);
+        buf.putLong(BASE_BLOCK_HASH_OFFSET, getBaseBlockHash(header));
+
+        int offset = HEADER_SIZE;
+        for (int i : sortByHash(b._keyHashes, keys)) {
+            buf.putLong(offset + ENTRY_HASH_OFFSET, b._keyHashes[i]);
+            buf.putInt(offset + KEY_OFFSET_OFFSET, b._keyOffsets.get(i));
+            buf.putInt(offset + KEY_NAME_HASH_OFFSET, b._keyNameHashes.get(i));
+            buf.putLong(offset + KEY_TIMESTAMP_OFFSET, b._keyTimestamps[i]);
+            offset += KEY_ENTRY_SIZE;
+        }
+        for (int i : sortByHash(b._valueHashes, values)) {
+            buf.putLong(offset + ENTRY_HASH_OFFSET, b._valueHashes[i]);
+            buf.putInt(offset + VALUE_OFFSET_OFFSET, b._valueOffsets.get(i));
+            offset += VALUE_ENTRY_SIZE;
+        }
+
+        File temp = File.createTempFile(sidecar.getName(), ".tmp", sidecar.getAbsoluteFile().getParentFile());
+        try {
+            FileChannel channel = new RandomAccessFile(temp, "rw").getChannel();
+            try {
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+            try {
+                Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    public int getKeyCount() {
+        return this._keyCount;
+    }
+
+    public int getValueCount() {
+        return this._valueCount;
+    }
+
+    /**
+     * findFirst finds the index of the first entry with the hash `h` in the table of `count` entries
+     *   of `size` bytes at `start`, or -1 if there is none.
+     */
+    private int findFirst(int start, int size, int count, long h) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this._buf.getLong(start + (size * mid) + ENTRY_HASH_OFFSET) < h) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < count && this._buf.getLong(start + (size * lo) + ENTRY_HASH_OFFSET) == h ? lo : -1;
+    }
+
+    /**
+     * isKeyAt returns True if the key at `offset` has the path `components`, relative to the root key.
+     */
+    private boolean isKeyAt(NKCursor nk, int offset, List<String> components) {
+        if ( ! nk.moveTo(offset)) {
+            return false;
+        }
+        for (int i = components.size() - 1; i >= 0; i--) {
+            if (nk.isRootKey() || ! nk.nameEqualsIgnoreCase(components.get(i)) || ! nk.moveToParent()) {
+                return false;
+            }
+        }
+        return nk.isRootKey();
+    }
+
+    /**
+     * findKey finds the entry of the key at `path`, or -1 if there is none.
+     */
+    private int findKey(String path) {
+        List<String> components = KeyPathCache.splitPath(path);
+        long h = hashPath(components);
+        NKCursor nk = this._header.newNKCursor();
+        for (int i = this.findFirst(HEADER_SIZE, KEY_ENTRY_SIZE, this._keyCount, h); i != -1 && i < this._keyCount; i++) {
+            int entry = HEADER_SIZE + (KEY_ENTRY_SIZE * i);
+            if (this._buf.getLong(entry + ENTRY_HASH_OFFSET) != h) {
+                break;
+            }
+            if (this.isKeyAt(nk, this._buf.getInt(entry + KEY_OFFSET_OFFSET), components)) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * getKeyOffset fetches the cell offset of the NKRecord of the key at `path`, relative to the first HBIN.
+     *   Paths are interpreted as by `RegistryHive.getKey`.
+     *
+     * @throws NoSuchElementException if no key exists at `path`.
+     */
+    public int getKeyOffset(String path) {
+        int entry = this.findKey(path);
+        if (entry == -1) {
+            throw new NoSuchElementException("No key at path: " + path);
+        }
+        return this._buf.getInt(entry + KEY_OFFSET_OFFSET);
+    }
+
+    /**
+     * getKeyTimestampFiletime fetches the last written timestamp of the key at `path`, as a Windows FILETIME.
+     *
+     * @throws NoSuchElementException if no key exists at `path`.
+     */
+    public long getKeyTimestampFiletime(String path) {
+        int entry = this.findKey(path);
+        if (entry == -1) {
+            throw new NoSuchElementException("No key at path: " + path);
+        }
+        return this._buf.getLong(entry + KEY_TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * getKey fetches the key at `path`. See `RegistryHive.getKey`.
+     *
+     * @throws NoSuchElementException if no key exists at `path`.
+     * @throws RegistryParseException if the key cannot be parsed.
+     */
+    public RegistryKey getKey(String path) throws RegistryParseException {
+        return new RegistryKey(this._header.getCellAtOffset(this.getKeyOffset(path)).getNKRecord());
+    }
+
+    /**
+     * getValueOffset fetches the cell offset of the VKRecord of the value `name` of the key at `path`.
+     *
+     * @throws NoSuchElementException if no such key or value exists.
+     */
+    public int getValueOffset(String path, String name) {
+        int key = this.getKeyOffset(path);
+        long h = hashValue(key, name);
+        VKCursor vk = this._header.newVKCursor();
+        for (int i = this.findFirst(this._valuesStart, VALUE_ENTRY_SIZE, this._valueCount, h); i != -1 && i < this._valueCount; i++) {
+            int entry = this._valuesStart + (VALUE_ENTRY_SIZE * i);
+            if (this._buf.getLong(entry + ENTRY_HASH_OFFSET) != h) {
+                break;
+            }
+            int offset = this._buf.getInt(entry + VALUE_OFFSET_OFFSET);
+            if (vk.moveTo(offset) && vk.nameEqualsIgnoreCase(name)) {
+                return offset;
+            }
+        }
+        throw new NoSuchElementException("No value " + name + " at path: " + path);
+    }
+
+    /**
+     * getKeyOffsetsByName finds the cell offsets of the NKRecords of every key named `name`, ignoring case,
+     *   wherever it is in the tree. The root key, whose name is not part of paths, is never found.
+     *
+     * @return The offsets, in no particular order, which is empty if there are none.
+     */
+    public List<Integer> getKeyOffsetsByName(String name) {
+        int h = (int)hash(FNV_OFFSET_BASIS, name);
+        NKCursor nk = this._header.newNKCursor();
+        List<Integer> offsets = new ArrayList<Integer>();
+        for (int i = 0; i < this._keyCount; i++) {
+            int entry = HEADER_SIZE + (KEY_ENTRY_SIZE * i);
+            if (this._buf.getInt(entry + KEY_NAME_HASH_OFFSET) != h) {
+                continue;
+            }
+            int offset = this._buf.getInt(entry + KEY_OFFSET_OFFSET);
+            if (nk.moveTo(offset) && ! nk.isRootKey() && nk.nameEqualsIgnoreCase(name)) {
+                offsets.add(offset);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * getKeysByName fetches every key named `name`, ignoring case. See `getKeyOffsetsByName`.
+     *
+     * @throws RegistryParseException if a key cannot be parsed.
+     */
+    public List<RegistryKey> getKeysByName(String name) throws RegistryParseException {
+        List<RegistryKey> keys = new ArrayList<RegistryKey>();
+        for (int offset : this.getKeyOffsetsByName(name)) {
+            keys.add(new RegistryKey(this._header.getCellAtOffset(offset).getNKRecord()));
+        }
+        return keys;
+    }
+}
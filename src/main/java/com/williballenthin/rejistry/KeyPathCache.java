@@ -0,0 +1,157 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * KeyPathCache resolves key paths against a hive, and remembers where recently resolved
+ *   paths, and the paths leading to them, were found. It maps normalized path prefixes
+ *   to the offsets of their NKRecord cells, and evicts the least recently used entry once
+ *   it reaches its capacity.
+ * A KeyPathCache is safe for use by many threads at once.
+ */
+public class KeyPathCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int _capacity;
+    ///< normalized path -> NKRecord cell offset, relative to the first HBIN. Guarded by `this`.
+    private final LinkedHashMap<String, Integer> _entries;
+    private long _hits = 0;
+    private long _misses = 0;
+
+    /**
+     * @param capacity The maximum number of path prefixes to remember.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public KeyPathCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this._capacity = capacity;
+        this._entries = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return this.size() > KeyPathCache.this._capacity;
+            }
+        };
+    }
+
+    /**
+     * getKey fetches the key at `path`, relative to the root key of the hive described by `header`.
+     *   Components are separated by backslashes and matched case-insensitively. Leading,
+     *   trailing, and repeated separators are ignored, and the empty path names the root key.
+     *
+     * @param header The header of the hive that this cache serves.
+     * @param path The path to the key, relative to the root key.
+     * @return The key at `path`.
+     * @throws NoSuchElementException if no key exists at `path`.
+     * @throws RegistryParseException if a key along the path cannot be parsed.
+     */
+    public RegistryKey getKey(REGFHeader header, String path) throws RegistryParseException {
+        return this.getKey(header, path, null);
+    }
+
+    /**
+     * getKey fetches the key at `path`, as `getKey(REGFHeader, String)`, sharing the hive's cache of security descriptors.
+     */
+    RegistryKey getKey(REGFHeader header, String path, SecurityDescriptorCache securityCache) throws RegistryParseException {
+        List<String> components = splitPath(path);
+        if (components.isEmpty()) {
+            return new RegistryKey(header.getRootNKRecord(), securityCache);
+        }
+
+        String[] prefixes = new String[components.size()];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < components.size(); i++) {
+            if (i > 0) {
+                sb.append('\\');
+            }
+            sb.append(components.get(i).toUpperCase(Locale.ROOT));
+            prefixes[i] = sb.toString();
+        }
+
+        // find the longest prefix that we've already resolved
+        int start = prefixes.length - 1;
+        Integer offset = null;
+        synchronized (this) {
+            for (; start >= 0; start--) {
+                offset = this._entries.get(prefixes[start]);
+                if (offset != null) {
+                    break;
+                }
+            }
+            if (start == prefixes.length - 1) {
+                this._hits++;
+            } else {
+                this._misses++;
+            }
+        }
+
+        NKRecord nk;
+        if (offset == null) {
+            nk = header.getRootNKRecord();
+        } else {
+            nk = header.getCellAtOffset(offset).getNKRecord();
+        }
+
+        for (int i = start + 1; i < components.size(); i++) {
+            nk = nk.getSubkeyList().getSubkey(components.get(i));
+            synchronized (this) {
+                this._entries.put(prefixes[i], nk.getCellOffset());
+            }
+        }
+        return new RegistryKey(nk, securityCache);
+    }
+
+    /**
+     * getHitCount fetches the number of lookups whose full path was found in the cache.
+     */
+    public synchronized long getHitCount() {
+        return this._hits;
+    }
+
+    /**
+     * getMissCount fetches the number of lookups that had to walk at least one path component.
+     */
+    public synchronized long getMissCount() {
+        return this._misses;
+    }
+
+    /**
+     * size fetches the number of path prefixes currently remembered.
+     */
+    public synchronized int size() {
+        return this._entries.size();
+    }
+
+    public int getCapacity() {
+        return this._capacity;
+    }
+
+    /**
+     * clear forgets all remembered paths, and resets the hit and miss counts.
+     */
+    public synchronized void clear() {
+        this._entries.clear();
+        this._hits = 0;
+        this._misses = 0;
+    }
+
+    static List<String> splitPath(String path) {
+        List<String> components = new ArrayList<String>();
+        for (String component : path.split("\\\\")) {
+            if (component.length() > 0) {
+                components.add(component);
+            }
+        }
+        return components;
+    }
+}
@@ -0,0 +1,58 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Marvin32 is the keyed hash with which Windows protects the entries of hive transaction logs.
+ */
+class Marvin32 {
+    ///< the seed used for the hashes of transaction log entries.
+    static final long LOG_ENTRY_SEED = 0x82EF4D887A4E55C5L;
+
+    private Marvin32() {
+    }
+
+    /**
+     * hash computes the Marvin32 hash of `length` bytes at absolute offset `offset` in `buf`.
+     *
+     * @param seed The 64 bit key of the hash.
+     * @return The 64 bit hash.
+     */
+    static long hash(ByteBuffer buf, int offset, int length, long seed) {
+        ByteBuffer b = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int p0 = (int)seed;
+        int p1 = (int)(seed >>> 32);
+
+        int end = offset + (length & ~0x3);
+        for (int i = offset; i < end; i += 0x4) {
+            p0 += b.getInt(i);
+            p1 ^= p0;
+            p0 = Integer.rotateLeft(p0, 20);
+            p0 += p1;
+            p1 = Integer.rotateLeft(p1, 9);
+            p1 ^= p0;
+            p0 = Integer.rotateLeft(p0, 27);
+            p0 += p1;
+            p1 = Integer.rotateLeft(p1, 19);
+        }
+
+        // the remaining zero to three bytes, padded with 0x80
+        int last = 0x80;
+        for (int i = (length & 0x3) - 1; i >= 0; i--) {
+            last = (last << 8) | (b.get(end + i) & 0xFF);
+        }
+        p0 += last;
+        for (int round = 0; round < 2; round++) {
+            p1 ^= p0;
+            p0 = Integer.rotateLeft(p0, 20);
+            p0 += p1;
+            p1 = Integer.rotateLeft(p1, 9);
+            p1 ^= p0;
+            p0 = Integer.rotateLeft(p0, 27);
+            p0 += p1;
+            p1 = Integer.rotateLeft(p1, 19);
+        }
+        return ((long)p1 << 32) | (p0 & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,243 @@
+package com.williballenthin.rejistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * PageCache is the storage of a hive read on demand from a SeekableByteChannel, through a least recently
+ *   used cache of fixed size pages. Use it for storage that cannot be mapped, or is slow to seek: a hive
+ *   within a disk image container, or behind a decompressing stream.
+ * Pages are PAGE_SIZE bytes, aligned to the start of the hive, so each HBIN fills whole pages. Parsing a
+ *   record reads only the pages that hold it, and at most `capacity` pages are kept, so memory is bounded
+ *   by `capacity * PAGE_SIZE` no matter the size of the hive. On a miss, the page and the `readAhead` pages
+ *   after it are read from the channel in a single sequential read.
+ *
+ * A PageCache is safe for use by many threads at once. The cache is locked only to look up and insert
+ *   pages: a missed page is claimed by the thread that missed it, and read from the channel outside the
+ *   lock, while other threads that need the same page wait for it, and threads that need other pages carry
+ *   on. Misses are read with positional reads when the channel is a FileChannel, and otherwise while
+ *   holding the lock of the channel, so many caches may share one channel. Since HiveStorage accessors
+ *   cannot throw IOException, a failure to read a page is thrown as an UncheckedIOException.
+ *
+ * The hit and miss counts are of page lookups: one for each integer read, or for each page spanned by a
+ *   bulk read, so a name compared or copied costs a lookup per page it spans, not one per byte.
+ */
+public class PageCache extends PagedStorage {
+    public static final int PAGE_SIZE = 0x1000;
+    public static final int DEFAULT_CAPACITY = 0x400;  // 4MB
+    public static final int DEFAULT_READ_AHEAD = 0xF;
+
+    private final SeekableByteChannel _channel;
+    private final long _origin;
+    private final int _capacity;
+    private final int _readAhead;
+    ///< page index -> page contents, which are still being read by the thread that claimed them. Guarded by `this`.
+    private final LinkedHashMap<Integer, CompletableFuture<ByteBuffer>> _pages;
+    private long _hits = 0;
+    private long _misses = 0;
+
+    /**
+     * @param channel The channel that contains the hive.
+     * @param origin The offset of the hive within the channel.
+     * @param length The number of bytes of the hive, which must lie within the channel.
+     * @param capacity The maximum number of pages to keep.
+     * @param readAhead The number of pages to read after each missed page.
+     * @throws IllegalArgumentException if the capacity is not positive, or the read-ahead is negative or not less than the capacity.
+     */
+    public PageCache(SeekableByteChannel channel, long origin, int length, int capacity, int readAhead) {
+        super(PAGE_SIZE, length);
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (readAhead < 0 || readAhead >= capacity) {
+            throw new IllegalArgumentException("Read-ahead must be in [0, capacity): " + readAhead);
+        }
+        this._channel = channel;
+        this._origin = origin;
+        this._capacity = capacity;
+        this._readAhead = readAhead;
+        this._pages = new LinkedHashMap<Integer, CompletableFuture<ByteBuffer>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CompletableFuture<ByteBuffer>> eldest) {
+                return this.size() > PageCache.this._capacity;
+            }
+        };
+    }
+
+    /**
+     * read reads bytes of `channel` at `position` into `dest`, without disturbing readers of the channel
+     *   on other threads: a FileChannel is read positionally, and any other channel under its lock.
+     *
+     * @return The number of bytes read, or -1 at the end of the channel.
+     */
+    static int read(SeekableByteChannel channel, long position, ByteBuffer dest) throws IOException {
+        if (channel instanceof FileChannel) {
+            return ((FileChannel)channel).read(dest, position);
+        }
+        synchronized (channel) {
+            channel.position(position);
+            return channel.read(dest);
+        }
+    }
+
+    /**
+     * readFully fills `dest` from `channel` at `position`. See `read`.
+     *
+     * @throws EOFException if the channel ends first.
+     */
+    static void readFully(SeekableByteChannel channel, long position, ByteBuffer dest) throws IOException {
+        while (dest.hasRemaining()) {
+            int n = read(channel, position, dest);
+            if (n < 0) {
+                throw new EOFException("Channel ended early at: " + position);
+            }
+            position += n;
+        }
+    }
+
+    @Override
+    protected ByteBuffer getPage(int index) {
+        CompletableFuture<ByteBuffer> page;
+        List<CompletableFuture<ByteBuffer>> claimed = null;
+        synchronized (this) {
+            page = this._pages.get(index);
+            if (page != null) {
+                this._hits++;
+            } else {
+                this._misses++;
+                // claim the page, and the read-ahead pages up to the first that is cached already,
+                //   inserting the read-ahead pages first, so that the requested page is the most recently used
+                int count = 1;
+                while (count <= this._readAhead && (long)(index + count) * PAGE_SIZE < this.capacity()
+                        && ! this._pages.containsKey(index + count)) {
+                    count++;
+                }
+                claimed = new ArrayList<CompletableFuture<ByteBuffer>>(count);
+                for (int i = 0; i < count; i++) {
+                    claimed.add(new CompletableFuture<ByteBuffer>());
+                }
+                for (int i = count - 1; i >= 0; i--) {
+                    this._pages.put(index + i, claimed.get(i));
+                }
+                page = claimed.get(0);
+            }
+        }
+        if (claimed != null) {
+            this.readPages(index, claimed);
+        }
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * readPages reads the pages claimed by `getPage`, starting at `index`, in a single read from the channel,
+     *   and completes their futures. A failure is passed to every thread waiting for the pages, and the pages
+     *   are dropped from the cache, so that the next lookup tries again.
+     */
+    private void readPages(int index, List<CompletableFuture<ByteBuffer>> pages) {
+        long start = (long)index * PAGE_SIZE;
+        long end = Math.min(this.capacity(), start + ((long)pages.size() * PAGE_SIZE));
+        ByteBuffer b;
+        try {
+            b = ByteBuffer.allocate((int)(end - start));
+            readFully(this._channel, this._origin + start, b);
+        } catch (IOException e) {
+            this.failPages(index, pages, new UncheckedIOException("Failed to read page at: " + (this._origin + start), e));
+            return;
+        } catch (RuntimeException | Error e) {
+            // never leave waiting threads without their pages
+            this.failPages(index, pages, e);
+            return;
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            b.limit(Math.min(b.capacity(), (i + 1) * PAGE_SIZE));
+            b.position(i * PAGE_SIZE);
+            pages.get(i).complete(b.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+
+    private void failPages(int index, List<CompletableFuture<ByteBuffer>> pages, Throwable e) {
+        synchronized (this) {
+            for (int i = 0; i < pages.size(); i++) {
+                this._pages.remove(index + i, pages.get(i));
+            }
+        }
+        for (CompletableFuture<ByteBuffer> page : pages) {
+            page.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * getHitCount fetches the number of page lookups satisfied by the cache.
+     */
+    public synchronized long getHitCount() {
+        return this._hits;
+    }
+
+    /**
+     * getMissCount fetches the number of page lookups that read from the channel.
+     */
+    public synchronized long getMissCount() {
+        return this._misses;
+    }
+
+    /**
+     * getHitRate fetches the fraction of page lookups satisfied by the cache, or zero if there were none.
+     */
+    public synchronized double getHitRate() {
+        long total = this._hits + this._misses;
+        return total == 0 ? 0.0 : (double)this._hits / total;
+    }
+
+    /**
+     * getPageCount fetches the number of pages currently cached.
+     */
+    public synchronized int getPageCount() {
+        return this._pages.size();
+    }
+
+    /**
+     * getCapacity fetches the maximum number of pages kept, as opposed to `capacity`, the size of the hive.
+     */
+    public int getCapacity() {
+        return this._capacity;
+    }
+
+    /**
+     * getOrigin fetches the offset of the hive within its channel.
+     */
+    public long getOrigin() {
+        return this._origin;
+    }
+
+    /**
+     * clear discards all cached pages, and resets the hit and miss counts.
+     */
+    public synchronized void clear() {
+        this._pages.clear();
+        this._hits = 0;
+        this._misses = 0;
+    }
+}
@@ -0,0 +1,138 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PagedStorage is a HiveStorage divided into fixed size pages, each fetched on demand by the subclass.
+ *   A value that straddles two pages is assembled from both, so the subclass need only supply pages.
+ *   Page sizes are powers of two, and a page size that divides 0x1000 or is a multiple of it keeps
+ *   every HBIN within whole pages.
+ */
+public abstract class PagedStorage implements HiveStorage {
+    private final int _pageShift;
+    private final int _pageMask;
+    private final int _capacity;
+
+    /**
+     * @param pageSize The size of each page, a power of two.
+     * @param capacity The number of bytes in the storage.
+     * @throws IllegalArgumentException if the page size is not a power of two, or the capacity is negative.
+     */
+    protected PagedStorage(int pageSize, int capacity) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of two: " + pageSize);
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        }
+        this._pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this._pageMask = pageSize - 1;
+        this._capacity = capacity;
+    }
+
+    /**
+     * getPage fetches the page at index `index`: a little endian buffer whose offset zero is the byte at
+     *   `index * getPageSize()`, and which is shorter than a page only at the end of the storage.
+     *   Readers use only absolute accesses, so the same buffer may be returned to many threads.
+     */
+    protected abstract ByteBuffer getPage(int index);
+
+    public int getPageSize() {
+        return this._pageMask + 1;
+    }
+
+    @Override
+    public int capacity() {
+        return this._capacity;
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || length > this._capacity - index) {
+            throw new IndexOutOfBoundsException("Access beyond the storage: " + index + " + " + length);
+        }
+    }
+
+    /**
+     * getSpanning assembles the little endian integer of `length` bytes at `index`, which straddles
+     *   the page that holds `index` and the next.
+     */
+    private long getSpanning(int index, int length) {
+        int pageSize = this._pageMask + 1;
+        int offset = index & this._pageMask;
+        ByteBuffer first = this.getPage(index >>> this._pageShift);
+        ByteBuffer second = this.getPage((index >>> this._pageShift) + 1);
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int o = offset + i;
+            byte b = o < pageSize ? first.get(o) : second.get(o - pageSize);
+            value |= (b & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    @Override
+    public byte get(int index) {
+        this.checkIndex(index, 0x1);
+        return this.getPage(index >>> this._pageShift).get(index & this._pageMask);
+    }
+
+    @Override
+    public short getShort(int index) {
+        this.checkIndex(index, 0x2);
+        int offset = index & this._pageMask;
+        if (offset + 0x2 <= this._pageMask + 1) {
+            return this.getPage(index >>> this._pageShift).getShort(offset);
+        }
+        return (short)this.getSpanning(index, 0x2);
+    }
+
+    @Override
+    public int getInt(int index) {
+        this.checkIndex(index, 0x4);
+        int offset = index & this._pageMask;
+        if (offset + 0x4 <= this._pageMask + 1) {
+            return this.getPage(index >>> this._pageShift).getInt(offset);
+        }
+        return (int)this.getSpanning(index, 0x4);
+    }
+
+    @Override
+    public long getLong(int index) {
+        this.checkIndex(index, 0x8);
+        int offset = index & this._pageMask;
+        if (offset + 0x8 <= this._pageMask + 1) {
+            return this.getPage(index >>> this._pageShift).getLong(offset);
+        }
+        return this.getSpanning(index, 0x8);
+    }
+
+    @Override
+    public void get(int index, byte[] dest, int destOffset, int length) {
+        this.checkIndex(index, length);
+        while (length > 0) {
+            int offset = index & this._pageMask;
+            int n = Math.min(length, this._pageMask + 1 - offset);
+            ByteBuffer view = this.getPage(index >>> this._pageShift).duplicate();
+            view.position(offset);
+            view.get(dest, destOffset, n);
+            index += n;
+            destOffset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public ByteBuffer slice(int index, int length) {
+        this.checkIndex(index, length);
+        int offset = index & this._pageMask;
+        if (offset + length <= this._pageMask + 1) {
+            ByteBuffer view = this.getPage(index >>> this._pageShift).duplicate();
+            view.position(offset);
+            view.limit(offset + length);
+            return view.slice().asReadOnlyBuffer();
+        }
+        byte[] b = new byte[length];
+        this.get(index, b, 0, length);
+        return ByteBuffer.wrap(b).asReadOnlyBuffer();
+    }
+}
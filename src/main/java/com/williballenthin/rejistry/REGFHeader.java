@@ -1,6 +1,8 @@
 package com.williballenthin.rejistry;
 
+import com.williballenthin.rejistry.record.NKCursor;
 import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.VKCursor;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
@@ -12,20 +14,29 @@ import java.util.NoSuchElementException;
  */
 public class REGFHeader extends BinaryBlock {
     private static final int MAGIC_OFFSET = 0x0;
-    private static final int SEQ1_OFFSET = 0x4;
-    private static final int SEQ2_OFFSET = 0x8;
+    static final int SEQ1_OFFSET = 0x4;
+    static final int SEQ2_OFFSET = 0x8;
     private static final int MAJOR_VERSION_OFFSET = 0x14;
     private static final int MINOR_VERSION_OFFSET = 0x18;
     private static final int FIRST_KEY_OFFSET_OFFSET = 0x24;
     private static final int HIVE_NAME_OFFSET = 0x30;
-    private static final int LAST_HBIN_OFFSET_OFFSET = 0x28;
+    static final int LAST_HBIN_OFFSET_OFFSET = 0x28;
+    static final int CHECKSUM_OFFSET = 0x1FC;
     public static final int FIRST_HBIN_OFFSET = 0x1000;
 
     /**
      * @throws RegistryParseException if the magic header is not the ASCII string "REGF".
      */
     public REGFHeader(ByteBuffer buf, int offset) throws RegistryParseException {
-        super(buf, offset);
+        this(new BufferStorage(buf), offset);
+    }
+
+    /**
+     * @param storage The bytes of the hive, such as a `PageCache`.
+     * @throws RegistryParseException if the magic header is not the ASCII string "REGF".
+     */
+    public REGFHeader(HiveStorage storage, int offset) throws RegistryParseException {
+        super(storage, offset);
 
         long magic = this.getDword(MAGIC_OFFSET);
         if (magic != 0x66676572) {
@@ -37,6 +48,20 @@ public class REGFHeader extends BinaryBlock {
         return this.getDword(SEQ1_OFFSET) == this.getDword(SEQ2_OFFSET);
     }
 
+    /**
+     * getPrimarySequenceNumber fetches the sequence number that Windows increments before writing to the hive.
+     */
+    public long getPrimarySequenceNumber() {
+        return this.getDword(SEQ1_OFFSET);
+    }
+
+    /**
+     * getSecondarySequenceNumber fetches the sequence number that Windows increments after writing to the hive.
+     */
+    public long getSecondarySequenceNumber() {
+        return this.getDword(SEQ2_OFFSET);
+    }
+
     public long getMajorVersion() {
         return this.getDword(MAJOR_VERSION_OFFSET);
     }
@@ -53,6 +78,37 @@ public class REGFHeader extends BinaryBlock {
         return (int)this.getDword(LAST_HBIN_OFFSET_OFFSET);
     }
 
+    /**
+     * getChecksum fetches the checksum stored in the header.
+     */
+    public int getChecksum() {
+        return (int)this.getDword(CHECKSUM_OFFSET);
+    }
+
+    /**
+     * isChecksumValid returns True if the stored checksum matches the contents of the header.
+     */
+    public boolean isChecksumValid() {
+        return this.getChecksum() == computeChecksum(this._buf, this.getAbsoluteOffset(0x0));
+    }
+
+    /**
+     * computeChecksum computes the checksum of the header at absolute offset `offset` in `buf`:
+     *   the XOR of the 127 dwords that precede the checksum field.
+     */
+    static int computeChecksum(HiveStorage buf, int offset) {
+        int checksum = 0;
+        for (int i = 0; i < CHECKSUM_OFFSET; i += 0x4) {
+            checksum ^= buf.getInt(offset + i);
+        }
+        if (checksum == 0xFFFFFFFF) {
+            checksum = 0xFFFFFFFE;
+        } else if (checksum == 0x0) {
+            checksum = 0x1;
+        }
+        return checksum;
+    }
+
     /**
      * getHBINs creates an iterator over the HBINs that make up
      * this hive. The iterator does not support the `remove` operation.
@@ -117,6 +173,48 @@ public class REGFHeader extends BinaryBlock {
         return this.getHBINs().next();
     }
 
+    /**
+     * getCellAtOffset fetches the Cell at the given offset, relative to the first HBIN.
+     *   This is the form in which structures in the hive refer to one another.
+     * Note, no checking of the Cell structure is performed, so accessing the correct
+     * offset is up to the caller.
+     *
+     * @param offset The offset of the Cell, relative to the first HBIN.
+     * @return A Cell that starts at the given offset.
+     */
+    public Cell getCellAtOffset(int offset) {
+        return new Cell(this._buf, FIRST_HBIN_OFFSET + offset);
+    }
+
+    /**
+     * newNKCursor creates a cursor over the NKRecords of this hive.
+     *   The cursor is not positioned; use `NKCursor.moveTo`.
+     *
+     * @return A new, unpositioned NKCursor.
+     */
+    public NKCursor newNKCursor() {
+        return new NKCursor(this._buf);
+    }
+
+    /**
+     * newVKCursor creates a cursor over the VKRecords of this hive.
+     *   The cursor is not positioned; use `VKCursor.moveTo`.
+     *
+     * @return A new, unpositioned VKCursor.
+     */
+    public VKCursor newVKCursor() {
+        return new VKCursor(this._buf);
+    }
+
+    /**
+     * getRootCellOffset fetches the offset of the cell of the root NKRecord, relative to the first HBIN.
+     *
+     * @return The offset of the cell of the root key.
+     */
+    public int getRootCellOffset() {
+        return (int)(this.getDword(FIRST_KEY_OFFSET_OFFSET));
+    }
+
     /**
      * getRootNKRecord fetches the NKRecord that the Hive claims as the root.
      *
@@ -124,7 +222,7 @@ public class REGFHeader extends BinaryBlock {
      * @throws RegistryParseException if the creation of the NKRecord fails, or there are no HBINs in this Hive.
      */
     public NKRecord getRootNKRecord() throws RegistryParseException {
-        int first_cell_offset = (int)(this.getDword(FIRST_KEY_OFFSET_OFFSET));
+        int first_cell_offset = this.getRootCellOffset();
         try {
             Cell cell = this.getFirstHBIN().getCellAtOffset(first_cell_offset);
             return cell.getNKRecord();
@@ -0,0 +1,82 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RecoveredKey is a deleted key carved from unallocated space by a DeletedRecordScanner.
+ */
+public class RecoveredKey {
+    private final NKRecord _record;
+    private final String _name;
+    private final int _parentOffset;
+    private String _path = null;
+    private boolean _pathComplete = false;
+    private final List<RecoveredValue> _values = new ArrayList<RecoveredValue>();
+
+    RecoveredKey(NKRecord record, String name, int parentOffset) {
+        this._record = record;
+        this._name = name;
+        this._parentOffset = parentOffset;
+    }
+
+    /**
+     * getCellOffset fetches the offset of the carved record's cell, relative to the first HBIN.
+     */
+    public int getCellOffset() {
+        return this._record.getCellOffset();
+    }
+
+    /**
+     * getRecord fetches the carved NKRecord.
+     *   Its references to other structures may point at space that has since been reused.
+     */
+    public NKRecord getRecord() {
+        return this._record;
+    }
+
+    public String getName() {
+        return this._name;
+    }
+
+    /**
+     * getParentOffset fetches the cell offset of the parent key that this key recorded, relative to the first HBIN.
+     */
+    public int getParentOffset() {
+        return this._parentOffset;
+    }
+
+    /**
+     * getPath fetches the path of this key, reconstructed from the chain of parent keys.
+     *   If the chain is broken, the path begins with `DeletedRecordScanner.UNKNOWN_PARENT`.
+     */
+    public String getPath() {
+        return this._path;
+    }
+
+    /**
+     * isPathComplete returns True if the chain of parent keys could be followed all the way to the root.
+     */
+    public boolean isPathComplete() {
+        return this._pathComplete;
+    }
+
+    /**
+     * getValues fetches the recovered values that this key's value list still references.
+     */
+    public List<RecoveredValue> getValues() {
+        return Collections.unmodifiableList(this._values);
+    }
+
+    void setPath(String path, boolean complete) {
+        this._path = path;
+        this._pathComplete = complete;
+    }
+
+    void addValue(RecoveredValue value) {
+        this._values.add(value);
+    }
+}
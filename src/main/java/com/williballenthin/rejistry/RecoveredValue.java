@@ -0,0 +1,48 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.VKRecord;
+
+/**
+ * RecoveredValue is a deleted value carved from unallocated space by a DeletedRecordScanner.
+ */
+public class RecoveredValue {
+    private final VKRecord _record;
+    private final String _name;
+    private RecoveredKey _key = null;
+
+    RecoveredValue(VKRecord record, String name) {
+        this._record = record;
+        this._name = name;
+    }
+
+    /**
+     * getCellOffset fetches the offset of the carved record's cell, relative to the first HBIN.
+     */
+    public int getCellOffset() {
+        return this._record.getCellOffset();
+    }
+
+    /**
+     * getRecord fetches the carved VKRecord.
+     *   Its data may have since been overwritten, so parse it with care.
+     */
+    public VKRecord getRecord() {
+        return this._record;
+    }
+
+    public String getName() {
+        return this._name;
+    }
+
+    /**
+     * getKey fetches the recovered key whose value list references this value,
+     *   or null if the value is orphaned.
+     */
+    public RecoveredKey getKey() {
+        return this._key;
+    }
+
+    void setKey(RecoveredKey key) {
+        this._key = key;
+    }
+}
@@ -0,0 +1,42 @@
+package com.williballenthin.rejistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * RecoveryResult holds the keys and values recovered by a DeletedRecordScanner, in file order.
+ */
+public class RecoveryResult {
+    private final List<RecoveredKey> _keys;
+    private final List<RecoveredValue> _values;
+
+    RecoveryResult(List<RecoveredKey> keys, List<RecoveredValue> values) {
+        this._keys = Collections.unmodifiableList(keys);
+        this._values = Collections.unmodifiableList(values);
+    }
+
+    public List<RecoveredKey> getKeys() {
+        return this._keys;
+    }
+
+    /**
+     * getValues fetches all the recovered values, including those attributed to a recovered key.
+     */
+    public List<RecoveredValue> getValues() {
+        return this._values;
+    }
+
+    /**
+     * getOrphanedValues fetches the recovered values that no recovered key references.
+     */
+    public List<RecoveredValue> getOrphanedValues() {
+        List<RecoveredValue> ret = new ArrayList<RecoveredValue>();
+        for (RecoveredValue value : this._values) {
+            if (value.getKey() == null) {
+                ret.add(value);
+            }
+        }
+        return ret;
+    }
+}
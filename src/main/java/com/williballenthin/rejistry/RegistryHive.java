@@ -1,5 +1,14 @@
 package com.williballenthin.rejistry;
 
+/**
+ * RegistryHive is the entry point to a parsed Registry hive.
+ *
+ * Thread safety: once constructed, a RegistryHive and every structure parsed from it
+ *   (keys, values, records, cells) only ever read the backing bytes with absolute,
+ *   side-effect-free accesses. So, a single hive may be traversed by many threads
+ *   concurrently without external synchronization. Iterators returned by the parsing
+ *   structures are not themselves thread safe, and should be used by one thread at a time.
+ */
 public interface RegistryHive {
     /**
      * getRoot fetches the root RegistryKey of the hive.
@@ -8,6 +17,26 @@ public interface RegistryHive {
      */
     public RegistryKey getRoot() throws RegistryParseException;
 
+    /**
+     * getKey fetches the key at the given path, relative to the root key.
+     *   Components are separated by backslashes and matched case-insensitively,
+     *   such as "Microsoft\\Windows\\CurrentVersion\\Run". The empty path names the root key.
+     *
+     *   By default, the path is walked from `getRoot`; the hives of this package cache the keys they resolve.
+     *
+     * @param path The path to the key, relative to the root key.
+     * @return The key at the given path.
+     * @throws java.util.NoSuchElementException if no key exists at the path.
+     * @throws RegistryParseException if a key along the path cannot be parsed.
+     */
+    public default RegistryKey getKey(String path) throws RegistryParseException {
+        RegistryKey key = this.getRoot();
+        for (String component : KeyPathCache.splitPath(path)) {
+            key = key.getSubkey(component);
+        }
+        return key;
+    }
+
     /**
      * getHeader fetches the REGFHeader that defined metadata
      * for this Registry hive.
@@ -1,19 +1,59 @@
 package com.williballenthin.rejistry;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 public class RegistryHiveBuffer implements RegistryHive {
-    private ByteBuffer _buf;
+    private final HiveStorage _buf;
+    private final KeyPathCache _pathCache;
+    private final SecurityDescriptorCache _securityCache = new SecurityDescriptorCache();
 
     public RegistryHiveBuffer(ByteBuffer buf) {
-        this._buf = buf.asReadOnlyBuffer();
-        this._buf.order(ByteOrder.LITTLE_ENDIAN);
+        this(buf, KeyPathCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param pathCacheCapacity The number of key paths remembered by `getKey`.
+     */
+    public RegistryHiveBuffer(ByteBuffer buf, int pathCacheCapacity) {
+        this(new BufferStorage(buf.asReadOnlyBuffer()), pathCacheCapacity);
+    }
+
+    /**
+     * @param storage The bytes of the hive, such as a `PagedStorage` that reads them on demand.
+     * @param pathCacheCapacity The number of key paths remembered by `getKey`.
+     */
+    public RegistryHiveBuffer(HiveStorage storage, int pathCacheCapacity) {
+        this._buf = storage;
+        this._pathCache = new KeyPathCache(pathCacheCapacity);
     }
 
     @Override
     public RegistryKey getRoot() throws RegistryParseException {
-        return new RegistryKey(this.getHeader().getRootNKRecord());
+        return new RegistryKey(this.getHeader().getRootNKRecord(), this._securityCache);
+    }
+
+    @Override
+    public RegistryKey getKey(String path) throws RegistryParseException {
+        return this._pathCache.getKey(this.getHeader(), path, this._securityCache);
+    }
+
+    /**
+     * getPathCache fetches the cache used by `getKey`, so that its hit and miss counts
+     *   may be inspected.
+     *
+     * @return The path cache of this hive.
+     */
+    public KeyPathCache getPathCache() {
+        return this._pathCache;
+    }
+
+    /**
+     * getSecurityCache fetches the cache of security descriptors shared by the keys of this hive.
+     *
+     * @return The security descriptor cache of this hive.
+     */
+    public SecurityDescriptorCache getSecurityCache() {
+        return this._securityCache;
     }
 
     @Override
@@ -0,0 +1,106 @@
+package com.williballenthin.rejistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+/**
+ * RegistryHiveChannel is a hive read on demand from a SeekableByteChannel, rather than mapped from a file.
+ *   Use it for hives within disk image containers, or behind decompressing streams, which cannot be mapped.
+ *   Records read only the pages that hold them, through a `PageCache`, so memory is bounded by the
+ *   capacity of the cache no matter the size of the hive or of the channel.
+ *
+ * A fragmented hive may be read in place from a raw disk image by describing its runs as extents,
+ *   without first extracting it to a file.
+ */
+public class RegistryHiveChannel implements RegistryHive {
+    private final PageCache _pages;
+    private final RegistryHiveBuffer _hive;
+
+    /**
+     * @throws IOException if the header of the hive cannot be read from the channel.
+     */
+    public RegistryHiveChannel(SeekableByteChannel channel) throws IOException {
+        this(channel, 0, PageCache.DEFAULT_CAPACITY, PageCache.DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * @param image The raw disk image, or other channel, that contains the hive.
+     * @param extents The runs of the hive file within the image, in file order. See `ExtentChannel`.
+     * @throws IOException if the header of the hive cannot be read from the image.
+     */
+    public RegistryHiveChannel(SeekableByteChannel image, List<ExtentChannel.Extent> extents) throws IOException {
+        this(new ExtentChannel(image, extents));
+    }
+
+    /**
+     * @param channel The channel that contains the hive, which may be shared by many hives and threads.
+     * @param offset The offset of the hive within the channel, such as one found by `HiveImage.findHives`.
+     * @param capacity The maximum number of pages of the hive to keep in memory.
+     * @param readAhead The number of pages to read after each page that is not in memory.
+     * @throws IOException if the header of the hive cannot be read from the channel.
+     */
+    public RegistryHiveChannel(SeekableByteChannel channel, long offset, int capacity, int readAhead) throws IOException {
+        long size = channel.size();
+        if (offset < 0 || offset >= size) {
+            throw new IllegalArgumentException("Offset beyond the channel: " + offset);
+        }
+        long available = Math.min(size - offset, Integer.MAX_VALUE);
+        long hbinsSize = 0;
+        if (available >= REGFHeader.LAST_HBIN_OFFSET_OFFSET + 0x4) {
+            ByteBuffer b = ByteBuffer.allocate(0x4).order(ByteOrder.LITTLE_ENDIAN);
+            PageCache.readFully(channel, offset + REGFHeader.LAST_HBIN_OFFSET_OFFSET, b);
+            hbinsSize = b.getInt(0) & 0xFFFFFFFFL;
+        }
+        int length = (int)HiveImage.getHiveLength(hbinsSize, available);
+        this._pages = new PageCache(channel, offset, length, capacity, readAhead);
+        this._hive = new RegistryHiveBuffer(this._pages, KeyPathCache.DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public RegistryKey getRoot() throws RegistryParseException {
+        return this._hive.getRoot();
+    }
+
+    @Override
+    public RegistryKey getKey(String path) throws RegistryParseException {
+        return this._hive.getKey(path);
+    }
+
+    @Override
+    public REGFHeader getHeader() throws RegistryParseException {
+        return this._hive.getHeader();
+    }
+
+    /**
+     * getPageCache fetches the cache through which this hive is read, so that its hit rate may be inspected.
+     *
+     * @return The page cache of the hive.
+     */
+    public PageCache getPageCache() {
+        return this._pages;
+    }
+
+    /**
+     * getOffset fetches the offset of this hive within its channel.
+     */
+    public long getOffset() {
+        return this._pages.getOrigin();
+    }
+
+    /**
+     * getPathCache fetches the cache used by `getKey`. See `RegistryHiveBuffer.getPathCache`.
+     */
+    public KeyPathCache getPathCache() {
+        return this._hive.getPathCache();
+    }
+
+    /**
+     * getSecurityCache fetches the cache of security descriptors shared by the keys of this hive.
+     */
+    public SecurityDescriptorCache getSecurityCache() {
+        return this._hive.getSecurityCache();
+    }
+}
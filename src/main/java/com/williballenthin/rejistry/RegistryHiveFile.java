@@ -3,26 +3,63 @@ package com.williballenthin.rejistry;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-
-import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 
 public class RegistryHiveFile implements RegistryHive {
-    private ByteBuffer _buf;
+    private final HiveStorage _buf;
+    private final KeyPathCache _pathCache;
+    private final SecurityDescriptorCache _securityCache = new SecurityDescriptorCache();
 
     /**
      * @throws IOException if the file cannot be accessed
      */
     public RegistryHiveFile(File file) throws IOException {
-        this._buf = RegistryHiveFile.readFile(file);
-        this._buf.order(ByteOrder.LITTLE_ENDIAN);
+        this(file, KeyPathCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param pathCacheCapacity The number of key paths remembered by `getKey`.
+     * @throws IOException if the file cannot be accessed
+     */
+    public RegistryHiveFile(File file, int pathCacheCapacity) throws IOException {
+        this(file, pathCacheCapacity, HiveImage.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize The largest region mapped at once, a power of two. See `readFile`.
+     */
+    RegistryHiveFile(File file, int pathCacheCapacity, int windowSize) throws IOException {
+        this._buf = RegistryHiveFile.readFile(file, windowSize);
+        this._pathCache = new KeyPathCache(pathCacheCapacity);
     }
 
     @Override
     public RegistryKey getRoot() throws RegistryParseException {
-        return new RegistryKey(this.getHeader().getRootNKRecord());
+        return new RegistryKey(this.getHeader().getRootNKRecord(), this._securityCache);
+    }
+
+    @Override
+    public RegistryKey getKey(String path) throws RegistryParseException {
+        return this._pathCache.getKey(this.getHeader(), path, this._securityCache);
+    }
+
+    /**
+     * getPathCache fetches the cache used by `getKey`, so that its hit and miss counts
+     *   may be inspected.
+     *
+     * @return The path cache of this hive.
+     */
+    public KeyPathCache getPathCache() {
+        return this._pathCache;
+    }
+
+    /**
+     * getSecurityCache fetches the cache of security descriptors shared by the keys of this hive.
+     *
+     * @return The security descriptor cache of this hive.
+     */
+    public SecurityDescriptorCache getSecurityCache() {
+        return this._securityCache;
     }
 
     @Override
@@ -31,17 +68,27 @@ public class RegistryHiveFile implements RegistryHive {
     }
 
     /**
-     * readFile reads an entire file as a ByteBuffer.
+     * readFile maps an entire file. A file no larger than `windowSize` is mapped as one buffer, and a
+     *   larger one as a series of windows, so that even a 2GB hive needs no contiguous mapping larger
+     *   than the window. See WindowStorage.
+     *   A file too large for the 32 bit offsets of a hive, such as a hive with trailing data, is mapped
+     *   only as far as its header declares HBINs. See `HiveImage.getHiveLength`.
      *
      * @param file The file to read.
-     * @return A ByteBuffer of the file contents
+     * @return The storage of the file contents.
      * @throws IOException
      */
-    private static ByteBuffer readFile(File file) throws IOException {
+    private static HiveStorage readFile(File file, int windowSize) throws IOException {
         RandomAccessFile f = new RandomAccessFile(file, "r");
         try {
             long length = f.length();
-            return f.getChannel().map(MapMode.READ_ONLY, 0, length);
+            if (length > Integer.MAX_VALUE) {
+                length = HiveImage.getHiveLength(f.getChannel(), 0, length);
+            }
+            if (length <= windowSize) {
+                return new BufferStorage(f.getChannel().map(MapMode.READ_ONLY, 0, length));
+            }
+            return new WindowStorage(f.getChannel(), 0, windowSize, (int)length);
         } finally {
             f.close(); // does not affect ByteBuffer mapping
         }
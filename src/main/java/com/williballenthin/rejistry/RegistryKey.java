@@ -4,19 +4,60 @@ import com.williballenthin.rejistry.record.NKRecord;
 import com.williballenthin.rejistry.record.VKRecord;
 
 import java.io.UnsupportedEncodingException;
+import java.time.Instant;
 import java.util.*;
 
 public class RegistryKey {
     private final NKRecord _nk;
+    ///< shared by the keys of a hive, or null to parse each descriptor on request.
+    private final SecurityDescriptorCache _securityCache;
 
     public RegistryKey(NKRecord nk) {
+        this(nk, null);
+    }
+
+    /**
+     * @param securityCache The cache of the hive's security descriptors, which is shared with
+     *   the parent and subkeys fetched from this key, or null to parse each descriptor on request.
+     */
+    public RegistryKey(NKRecord nk, SecurityDescriptorCache securityCache) {
         this._nk = nk;
+        this._securityCache = securityCache;
     }
 
     public Calendar getTimestamp() {
         return this._nk.getTimestamp();
     }
 
+    /**
+     * getTimestampFiletime fetches the modification timestamp of this key as a Windows FILETIME. See `NKRecord.getTimestampFiletime`.
+     */
+    public long getTimestampFiletime() {
+        return this._nk.getTimestampFiletime();
+    }
+
+    /**
+     * getTimestampInstant fetches the modification timestamp of this key as an Instant. See `NKRecord.getTimestampInstant`.
+     */
+    public Instant getTimestampInstant() {
+        return this._nk.getTimestampInstant();
+    }
+
+    /**
+     * getSecurityDescriptor fetches the owner, group, and ACLs of this key.
+     *   Keys fetched from a RegistryHiveFile or RegistryHiveBuffer share the hive's SecurityDescriptorCache,
+     *   so the descriptors shared by many keys are parsed only once.
+     *
+     * @throws NoSuchElementException if the key has no security descriptor.
+     * @throws RegistryParseException if the descriptor cannot be parsed.
+     */
+    public SecurityDescriptor getSecurityDescriptor() throws RegistryParseException {
+        if (this._securityCache != null) {
+            return this._securityCache.getSecurityDescriptor(this._nk);
+        }
+        return this._nk.getSecurityRecord().getSecurityDescriptor();
+    }
+
     public String getName() throws UnsupportedEncodingException {
         return this._nk.getName();
     }
@@ -25,7 +66,7 @@ public class RegistryKey {
         if ( ! this._nk.hasParentRecord()) {
             throw new NoSuchElementException("Registry Key has no parent");
         }
-        return new RegistryKey(this._nk.getParentRecord());
+        return new RegistryKey(this._nk.getParentRecord(), this._securityCache);
     }
 
     public List<RegistryKey> getSubkeyList() throws RegistryParseException {
@@ -33,13 +74,13 @@ public class RegistryKey {
         Iterator<NKRecord> nkit = this._nk.getSubkeyList().getSubkeys();
 
         while (nkit.hasNext()) {
-            l.add(new RegistryKey(nkit.next()));
+            l.add(new RegistryKey(nkit.next(), this._securityCache));
         }
         return l;
     }
 
     public RegistryKey getSubkey(String name) throws RegistryParseException {
-        return new RegistryKey(this._nk.getSubkeyList().getSubkey(name));
+        return new RegistryKey(this._nk.getSubkeyList().getSubkey(name), this._securityCache);
     }
 
     public List<RegistryValue> getValueList() throws RegistryParseException {
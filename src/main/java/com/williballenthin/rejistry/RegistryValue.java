@@ -2,10 +2,15 @@ package com.williballenthin.rejistry;
 
 import com.williballenthin.rejistry.record.VKRecord;
 
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
 public class RegistryValue {
     private final VKRecord _vk;
+    ///< the data, parsed on first use, so that its decoded forms are shared by every call to `getValue`.
+    private volatile ValueData _data;
 
     public RegistryValue(VKRecord vk) {
         this._vk = vk;
@@ -20,6 +25,29 @@ public class RegistryValue {
     }
 
     public ValueData getValue() throws UnsupportedEncodingException, RegistryParseException {
-        return this._vk.getValue();
+        ValueData data = this._data;
+        if (data == null) {
+            data = this._vk.getValue();
+            this._data = data;
+        }
+        return data;
+    }
+
+    /**
+     * openChannel opens a channel over the raw data of this value.
+     *   The data is read straight from the hive, a segment at a time, so this is the way to
+     *   hash, search, or export very large values. Each call returns an independent channel.
+     * @throws RegistryParseException if the value data cannot be located.
+     */
+    public ReadableByteChannel openChannel() throws RegistryParseException {
+        return this._vk.openChannel();
+    }
+
+    /**
+     * openStream opens an InputStream over the raw data of this value. See `openChannel`.
+     * @throws RegistryParseException if the value data cannot be located.
+     */
+    public InputStream openStream() throws RegistryParseException {
+        return Channels.newInputStream(this._vk.openChannel());
     }
 }
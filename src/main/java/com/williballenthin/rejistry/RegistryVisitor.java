@@ -0,0 +1,31 @@
+package com.williballenthin.rejistry;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * RegistryVisitor receives the keys and values found by a RegistryWalker.
+ *   A walker may invoke the methods from many threads at once, so implementations
+ *   must be thread safe. The order in which keys are visited is not defined, except
+ *   that a key is always visited before its subkeys and values.
+ */
+public interface RegistryVisitor {
+    /**
+     * visitKey is invoked once for each key in the hive.
+     *
+     * @param path The path of the key, with components separated by backslashes,
+     *   starting with the name of the root key.
+     * @param key The key.
+     * @throws RegistryParseException to abort the walk.
+     */
+    public void visitKey(String path, RegistryKey key) throws RegistryParseException, UnsupportedEncodingException;
+
+    /**
+     * visitValue is invoked once for each value of each key in the hive.
+     *
+     * @param path The path of the key that contains the value.
+     * @param key The key that contains the value.
+     * @param value The value.
+     * @throws RegistryParseException to abort the walk.
+     */
+    public void visitValue(String path, RegistryKey key, RegistryValue value) throws RegistryParseException, UnsupportedEncodingException;
+}
@@ -0,0 +1,200 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.RIRecord;
+import com.williballenthin.rejistry.record.SubkeyList;
+import com.williballenthin.rejistry.record.VKRecord;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RegistryWalker visits every key and value of a RegistryHive using a pool of threads.
+ *   Work is split at each subkey list, so sibling subtrees are processed in parallel,
+ *   and at each RIRecord, so the sublists of very large keys are processed in parallel, too.
+ *   The keys of a walk share a SecurityDescriptorCache, so `RegistryKey.getSecurityDescriptor`
+ *   parses each distinct descriptor once per walk.
+ */
+public class RegistryWalker {
+    private final RegistryHive _hive;
+    private final int _parallelism;
+
+    /**
+     * Create a walker that uses one thread per available processor.
+     */
+    public RegistryWalker(RegistryHive hive) {
+        this(hive, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism The number of threads used to walk the hive.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public RegistryWalker(RegistryHive hive, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this._hive = hive;
+        this._parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return this._parallelism;
+    }
+
+    /**
+     * walk visits every key and value reachable from the root of the hive, and returns
+     *   once they have all been visited. If the visitor, or the parsing of any structure,
+     *   throws an exception, the walk is aborted and the exception is rethrown here.
+     *
+     * @param visitor The thread safe visitor that receives keys and values.
+     * @throws RegistryParseException if a structure cannot be parsed, or the visitor aborts the walk.
+     * @throws UnsupportedEncodingException if a key name cannot be decoded.
+     */
+    public void walk(RegistryVisitor visitor) throws RegistryParseException, UnsupportedEncodingException {
+        NKRecord root = this._hive.getHeader().getRootNKRecord();
+        SecurityDescriptorCache securityCache = new SecurityDescriptorCache();
+        ForkJoinPool pool = new ForkJoinPool(this._parallelism);
+        try {
+            pool.invoke(new KeyTask(visitor, securityCache, root.getName(), root));
+        } catch (WalkException e) {
+            Throwable cause = e.getCause();
+            // the pool may re-wrap an exception that crossed threads
+            while (cause instanceof WalkException) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof UnsupportedEncodingException) {
+                throw (UnsupportedEncodingException)cause;
+            }
+            throw (RegistryParseException)cause;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * walkSerially visits every key and value reachable from the root of `hive`, as `walk` does, but on
+     *   the calling thread alone, depth first and in subkey list order. It is for callers that already
+     *   run one walk per thread, such as HiveBatch, and would gain nothing from a pool of their own.
+     *
+     * @throws RegistryParseException if a structure cannot be parsed, or the visitor aborts the walk.
+     * @throws UnsupportedEncodingException if a key name cannot be decoded.
+     */
+    static void walkSerially(RegistryHive hive, RegistryVisitor visitor) throws RegistryParseException, UnsupportedEncodingException {
+        NKRecord root = hive.getHeader().getRootNKRecord();
+        visitSerially(visitor, new SecurityDescriptorCache(), root.getName(), root);
+    }
+
+    private static void visitSerially(RegistryVisitor visitor, SecurityDescriptorCache securityCache, String path, NKRecord nk) throws RegistryParseException, UnsupportedEncodingException {
+        RegistryKey key = new RegistryKey(nk, securityCache);
+        visitor.visitKey(path, key);
+
+        Iterator<VKRecord> vkit = nk.getValueList().getValues();
+        while (vkit.hasNext()) {
+            visitor.visitValue(path, key, new RegistryValue(vkit.next()));
+        }
+
+        if (nk.getSubkeyCount() > 0) {
+            Iterator<NKRecord> nkit = nk.getSubkeyList().getSubkeys();
+            while (nkit.hasNext()) {
+                NKRecord subkey = nkit.next();
+                visitSerially(visitor, securityCache, path + "\\" + subkey.getName(), subkey);
+            }
+        }
+    }
+
+    /**
+     * WalkException carries checked exceptions out of the fork-join tasks.
+     */
+    private static class WalkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WalkException(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * KeyTask visits a key and its values, and then forks tasks for its subkeys.
+     */
+    private static class KeyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RegistryVisitor _visitor;
+        private final SecurityDescriptorCache _securityCache;
+        private final String _path;
+        private final NKRecord _nk;
+
+        KeyTask(RegistryVisitor visitor, SecurityDescriptorCache securityCache, String path, NKRecord nk) {
+            this._visitor = visitor;
+            this._securityCache = securityCache;
+            this._path = path;
+            this._nk = nk;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                RegistryKey key = new RegistryKey(this._nk, this._securityCache);
+                this._visitor.visitKey(this._path, key);
+
+                Iterator<VKRecord> vkit = this._nk.getValueList().getValues();
+                while (vkit.hasNext()) {
+                    this._visitor.visitValue(this._path, key, new RegistryValue(vkit.next()));
+                }
+
+                if (this._nk.getSubkeyCount() > 0) {
+                    new ListTask(this._visitor, this._securityCache, this._path, this._nk.getSubkeyList()).compute();
+                }
+            } catch (RegistryParseException e) {
+                throw new WalkException(e);
+            } catch (UnsupportedEncodingException e) {
+                throw new WalkException(e);
+            }
+        }
+    }
+
+    /**
+     * ListTask forks a task for each entry of a subkey list. For an RIRecord,
+     *   the entries are themselves subkey lists.
+     */
+    private static class ListTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final RegistryVisitor _visitor;
+        private final SecurityDescriptorCache _securityCache;
+        private final String _path;
+        private final SubkeyList _list;
+
+        ListTask(RegistryVisitor visitor, SecurityDescriptorCache securityCache, String path, SubkeyList list) {
+            this._visitor = visitor;
+            this._securityCache = securityCache;
+            this._path = path;
+            this._list = list;
+        }
+
+        @Override
+        protected void compute() {
+            List<RecursiveAction> tasks = new LinkedList<RecursiveAction>();
+            try {
+                if (this._list instanceof RIRecord) {
+                    Iterator<SubkeyList> it = ((RIRecord)this._list).getSubkeyLists();
+                    while (it.hasNext()) {
+                        tasks.add(new ListTask(this._visitor, this._securityCache, this._path, it.next()));
+                    }
+                } else {
+                    Iterator<NKRecord> it = this._list.getSubkeys();
+                    while (it.hasNext()) {
+                        NKRecord nk = it.next();
+                        tasks.add(new KeyTask(this._visitor, this._securityCache, this._path + "\\" + nk.getName(), nk));
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new WalkException(e);
+            }
+            invokeAll(tasks);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.williballenthin.rejistry;
+
+/**
+ * ScannedCell describes a cell found by a CellScanner: where it is, how large it is,
+ *   whether it is allocated, and what its signature says it contains.
+ *   Use `getCell` to parse the structure within.
+ */
+public class ScannedCell {
+    private final HiveStorage _buf;
+    private final int _cellOffset;
+    private final int _length;
+    private final boolean _active;
+    private final CellType _type;
+
+    ScannedCell(HiveStorage buf, int cellOffset, int length, boolean active, CellType type) {
+        this._buf = buf;
+        this._cellOffset = cellOffset;
+        this._length = length;
+        this._active = active;
+        this._type = type;
+    }
+
+    /**
+     * getCellOffset fetches the offset of this cell, relative to the first HBIN.
+     *   This is the form in which structures in the hive refer to one another.
+     */
+    public int getCellOffset() {
+        return this._cellOffset;
+    }
+
+    /**
+     * getLength fetches the size of this cell, including its four byte size header.
+     */
+    public int getLength() {
+        return this._length;
+    }
+
+    /**
+     * isActive returns True if the cell is allocated, or False if it is free space.
+     */
+    public boolean isActive() {
+        return this._active;
+    }
+
+    public CellType getType() {
+        return this._type;
+    }
+
+    /**
+     * getCell creates a Cell for parsing the structure within this cell.
+     */
+    public Cell getCell() {
+        return new Cell(this._buf, REGFHeader.FIRST_HBIN_OFFSET + this._cellOffset);
+    }
+}
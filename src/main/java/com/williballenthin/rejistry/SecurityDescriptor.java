@@ -0,0 +1,145 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * SecurityDescriptor is a parsed self-relative Windows security descriptor: the owner and group of a key,
+ *   its discretionary ACL (who may access it), and its system ACL (which accesses are audited).
+ *   SIDs are rendered in their string form, such as "S-1-5-18".
+ *
+ * The descriptor is parsed in full when constructed, and is immutable, so it may be shared by many keys and threads.
+ */
+public class SecurityDescriptor {
+    public static final int SE_OWNER_DEFAULTED = 0x0001;
+    public static final int SE_GROUP_DEFAULTED = 0x0002;
+    public static final int SE_DACL_PRESENT = 0x0004;
+    public static final int SE_DACL_DEFAULTED = 0x0008;
+    public static final int SE_SACL_PRESENT = 0x0010;
+    public static final int SE_SACL_DEFAULTED = 0x0020;
+    public static final int SE_DACL_PROTECTED = 0x1000;
+    public static final int SE_SACL_PROTECTED = 0x2000;
+    public static final int SE_SELF_RELATIVE = 0x8000;
+
+    private static final int CONTROL_OFFSET = 0x2;
+    private static final int OWNER_OFFSET_OFFSET = 0x4;
+    private static final int GROUP_OFFSET_OFFSET = 0x8;
+    private static final int SACL_OFFSET_OFFSET = 0xC;
+    private static final int DACL_OFFSET_OFFSET = 0x10;
+    private static final int HEADER_SIZE = 0x14;
+
+    private static final int SID_SUBAUTHORITY_COUNT_OFFSET = 0x1;
+    private static final int SID_AUTHORITY_OFFSET = 0x2;
+    private static final int SID_SUBAUTHORITIES_OFFSET = 0x8;
+    private static final int MAX_SUBAUTHORITIES = 15;
+
+    private final int _revision;
+    private final int _control;
+    private final String _owner;
+    private final String _group;
+    private final AccessControlList _sacl;
+    private final AccessControlList _dacl;
+
+    /**
+     * @param buf The bytes of the self-relative descriptor, from position zero to the limit.
+     * @throws RegistryParseException if the descriptor is malformed.
+     */
+    public SecurityDescriptor(ByteBuffer buf) throws RegistryParseException {
+        ByteBuffer b = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (b.limit() < HEADER_SIZE) {
+            throw new RegistryParseException("Security descriptor too short: " + b.limit());
+        }
+        this._revision = b.get(0x0) & 0xFF;
+        this._control = b.getShort(CONTROL_OFFSET) & 0xFFFF;
+
+        int owner = b.getInt(OWNER_OFFSET_OFFSET);
+        this._owner = owner == 0 ? null : parseSid(b, owner);
+        int group = b.getInt(GROUP_OFFSET_OFFSET);
+        this._group = group == 0 ? null : parseSid(b, group);
+
+        int sacl = b.getInt(SACL_OFFSET_OFFSET);
+        this._sacl = (this._control & SE_SACL_PRESENT) == 0 || sacl == 0 ? null : new AccessControlList(b, sacl);
+        int dacl = b.getInt(DACL_OFFSET_OFFSET);
+        this._dacl = (this._control & SE_DACL_PRESENT) == 0 || dacl == 0 ? null : new AccessControlList(b, dacl);
+    }
+
+    public int getRevision() {
+        return this._revision;
+    }
+
+    /**
+     * getControl fetches the control flags of the descriptor, a combination of the SE_* constants.
+     */
+    public int getControl() {
+        return this._control;
+    }
+
+    /**
+     * getOwner fetches the SID of the owner, or null if the descriptor has no owner.
+     */
+    public String getOwner() {
+        return this._owner;
+    }
+
+    /**
+     * getGroup fetches the SID of the primary group, or null if the descriptor has no group.
+     */
+    public String getGroup() {
+        return this._group;
+    }
+
+    /**
+     * getDacl fetches the discretionary ACL, or null if there is none, which grants everyone full access.
+     */
+    public AccessControlList getDacl() {
+        return this._dacl;
+    }
+
+    /**
+     * getSacl fetches the system ACL, or null if there is none.
+     */
+    public AccessControlList getSacl() {
+        return this._sacl;
+    }
+
+    /**
+     * getSidLength fetches the size in bytes of the SID at `offset`.
+     * @throws RegistryParseException if the SID overruns the buffer.
+     */
+    static int getSidLength(ByteBuffer b, int offset) throws RegistryParseException {
+        if (offset < 0 || offset > b.limit() - SID_SUBAUTHORITIES_OFFSET) {
+            throw new RegistryParseException("SID out of bounds at offset: " + offset);
+        }
+        int count = b.get(offset + SID_SUBAUTHORITY_COUNT_OFFSET) & 0xFF;
+        if (count > MAX_SUBAUTHORITIES || SID_SUBAUTHORITIES_OFFSET + (0x4 * count) > b.limit() - offset) {
+            throw new RegistryParseException("SID out of bounds at offset: " + offset);
+        }
+        return SID_SUBAUTHORITIES_OFFSET + (0x4 * count);
+    }
+
+    /**
+     * parseSid renders the SID at `offset` in its string form, such as "S-1-5-32-544".
+     * @param b A little endian view of the descriptor.
+     * @throws RegistryParseException if the SID overruns the buffer.
+     */
+    static String parseSid(ByteBuffer b, int offset) throws RegistryParseException {
+        int count = (getSidLength(b, offset) - SID_SUBAUTHORITIES_OFFSET) / 0x4;
+        // the identifier authority is a 48 bit big endian number
+        long authority = 0;
+        for (int i = 0; i < 6; i++) {
+            authority = (authority << 8) | (b.get(offset + SID_AUTHORITY_OFFSET + i) & 0xFF);
+        }
+
+        StringBuilder sb = new StringBuilder("S-");
+        sb.append(b.get(offset) & 0xFF).append('-');
+        if (authority < 0x100000000L) {
+            sb.append(authority);
+        } else {
+            sb.append(String.format("0x%012X", authority));
+        }
+        for (int i = 0; i < count; i++) {
+            sb.append('-').append(b.getInt(offset + SID_SUBAUTHORITIES_OFFSET + (0x4 * i)) & 0xFFFFFFFFL);
+        }
+        return sb.toString();
+    }
+}
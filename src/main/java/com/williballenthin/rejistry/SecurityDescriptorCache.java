@@ -0,0 +1,65 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SecurityDescriptorCache remembers the security descriptors of a hive by the cell offset of their SKRecord.
+ *   A hive usually has far fewer SKRecords than keys, since keys with the same descriptor share a
+ *   record, so an audit of every key through this cache parses each distinct descriptor exactly once.
+ * A SecurityDescriptorCache is safe for use by many threads at once.
+ */
+public class SecurityDescriptorCache {
+    ///< SKRecord cell offset, relative to the first HBIN -> parsed descriptor.
+    private final ConcurrentHashMap<Integer, SecurityDescriptor> _descriptors = new ConcurrentHashMap<Integer, SecurityDescriptor>();
+    private long _parses = 0;
+
+    /**
+     * getSecurityDescriptor fetches the security descriptor of `nk`, parsing its SKRecord if it has not been seen.
+     *
+     * @param nk A key of the hive that this cache serves.
+     * @return The security descriptor of the key.
+     * @throws java.util.NoSuchElementException if the key has no security descriptor.
+     * @throws RegistryParseException if the SKRecord or descriptor cannot be parsed.
+     */
+    public SecurityDescriptor getSecurityDescriptor(NKRecord nk) throws RegistryParseException {
+        int offset = nk.getSecurityRecordOffset();
+        SecurityDescriptor descriptor = this._descriptors.get(offset);
+        if (descriptor != null) {
+            return descriptor;
+        }
+        // parse under the lock, so that threads that miss together do not parse the same record twice
+        synchronized (this) {
+            descriptor = this._descriptors.get(offset);
+            if (descriptor == null) {
+                descriptor = nk.getSecurityRecord().getSecurityDescriptor();
+                this._descriptors.put(offset, descriptor);
+                this._parses++;
+            }
+            return descriptor;
+        }
+    }
+
+    /**
+     * getParseCount fetches the number of SKRecords that have been parsed.
+     */
+    public synchronized long getParseCount() {
+        return this._parses;
+    }
+
+    /**
+     * size fetches the number of descriptors currently remembered.
+     */
+    public int size() {
+        return this._descriptors.size();
+    }
+
+    /**
+     * clear forgets all remembered descriptors, and resets the parse count.
+     */
+    public synchronized void clear() {
+        this._descriptors.clear();
+        this._parses = 0;
+    }
+}
@@ -0,0 +1,38 @@
+package com.williballenthin.rejistry;
+
+/**
+ * Timeline is the result of a TimelineScanner query: the keys last written within a window of time,
+ *   ordered by timestamp, and then by cell offset.
+ *
+ * The i-th entry is the key whose NKRecord is at cell offset `getKeyOffsets()[i]` (relative to the
+ *   first HBIN), last written at `getTimestamps()[i]`, a Windows FILETIME. Use an NKCursor, or
+ *   `REGFHeader.getCellAtOffset`, to fetch the keys of interest.
+ *
+ * The arrays are returned without copying, and their length is exactly the number of entries.
+ *   They are shared by all callers, so do not modify them.
+ */
+public class Timeline {
+    private final int[] _keyOffsets;
+    private final long[] _timestamps;
+
+    Timeline(int[] keyOffsets, long[] timestamps) {
+        this._keyOffsets = keyOffsets;
+        this._timestamps = timestamps;
+    }
+
+    public int getCount() {
+        return this._keyOffsets.length;
+    }
+
+    public int[] getKeyOffsets() {
+        return this._keyOffsets;
+    }
+
+    /**
+     * getTimestamps fetches the last written timestamps of the keys, as Windows FILETIMEs:
+     *   the number of 100 nanosecond intervals since 1601-01-01T00:00:00Z.
+     */
+    public long[] getTimestamps() {
+        return this._timestamps;
+    }
+}
@@ -0,0 +1,154 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * TimelineScanner finds the keys of a hive last written within a window of time.
+ *   Rather than walking the tree of keys and parsing each timestamp into a Calendar, it streams
+ *   the cells of the hive (see CellScanner) and compares the raw FILETIME of each allocated
+ *   NKRecord against the window, so only the offsets and timestamps of the matches are kept.
+ *
+ * Keys are found whether or not they are reachable from the root key. Deleted keys are not
+ *   included; see DeletedRecordScanner.
+ */
+public class TimelineScanner {
+    private final REGFHeader _header;
+    private boolean _parallel = false;
+
+    public TimelineScanner(REGFHeader header) {
+        this._header = header;
+    }
+
+    /**
+     * setParallel selects whether the cells are scanned on the common ForkJoinPool,
+     *   split at HBIN boundaries. The result is the same either way.
+     */
+    public void setParallel(boolean parallel) {
+        this._parallel = parallel;
+    }
+
+    /**
+     * scan finds the keys last written in [start, end).
+     *
+     * @param start The earliest timestamp to include, as a Windows FILETIME.
+     * @param end The timestamp at which to stop, exclusive, as a Windows FILETIME.
+     * @return The matching keys, ordered by timestamp.
+     */
+    public Timeline scan(final long start, final long end) {
+        CellScanner scanner = new CellScanner(this._header);
+        Stream<ScannedCell> cells = this._parallel ? scanner.parallelStream() : scanner.stream();
+        Matches matches = cells.collect(
+                new Supplier<Matches>() {
+                    @Override
+                    public Matches get() {
+                        return new Matches(TimelineScanner.this._header.newNKCursor());
+                    }
+                },
+                new BiConsumer<Matches, ScannedCell>() {
+                    @Override
+                    public void accept(Matches m, ScannedCell cell) {
+                        if (cell.isActive() && cell.getType() == CellType.NK && m._nk.moveTo(cell.getCellOffset())) {
+                            long timestamp = m._nk.getTimestampFiletime();
+                            if (timestamp >= start && timestamp < end) {
+                                m.add(cell.getCellOffset(), timestamp);
+                            }
+                        }
+                    }
+                },
+                new BiConsumer<Matches, Matches>() {
+                    @Override
+                    public void accept(Matches m, Matches other) {
+                        m.addAll(other);
+                    }
+                });
+        return matches.toTimeline();
+    }
+
+    /**
+     * scan finds the keys last written in [start, end). See `scan(long, long)`.
+     */
+    public Timeline scan(Instant start, Instant end) {
+        return this.scan(U.instantToFiletime(start), U.instantToFiletime(end));
+    }
+
+    /**
+     * Matches collects the keys found by one thread of a scan.
+     */
+    private static class Matches {
+        private final NKCursor _nk;
+        private final IntColumn _keyOffsets = new IntColumn();
+        private long[] _timestamps = new long[IntColumn.INITIAL_CAPACITY];
+
+        private Matches(NKCursor nk) {
+            this._nk = nk;
+        }
+
+        private void add(int keyOffset, long timestamp) {
+            int size = this._keyOffsets.size();
+            if (size == this._timestamps.length) {
+                this._timestamps = Arrays.copyOf(this._timestamps, size * 2);
+            }
+            this._timestamps[size] = timestamp;
+            this._keyOffsets.add(keyOffset);
+        }
+
+        private void addAll(Matches other) {
+            for (int i = 0; i < other._keyOffsets.size(); i++) {
+                this.add(other._keyOffsets.get(i), other._timestamps[i]);
+            }
+        }
+
+        /**
+         * toTimeline sorts the matches by timestamp, and then by offset.
+         *   The matches arrive in file order, so sorting by timestamp alone with a stable sort suffices.
+         */
+        private Timeline toTimeline() {
+            int size = this._keyOffsets.size();
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            sort(order, new int[size], 0, size, this._timestamps);
+
+            int[] keyOffsets = new int[size];
+            long[] timestamps = new long[size];
+            for (int i = 0; i < size; i++) {
+                keyOffsets[i] = this._keyOffsets.get(order[i]);
+                timestamps[i] = this._timestamps[order[i]];
+            }
+            return new Timeline(keyOffsets, timestamps);
+        }
+    }
+
+    /**
+     * sort stably sorts the indices order[from, to) by `keys`, using `scratch` as temporary space.
+     *   This is a merge sort over primitives, to avoid boxing each index for `Arrays.sort`.
+     */
+    private static void sort(int[] order, int[] scratch, int from, int to, long[] keys) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(order, scratch, from, middle, keys);
+        sort(order, scratch, middle, to, keys);
+        if (keys[order[middle - 1]] <= keys[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && keys[scratch[left]] <= keys[scratch[right]])) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.williballenthin.rejistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * TransactionLogReplay applies the transaction logs of a hive (its .LOG1 and .LOG2 files),
+ *   producing a RegistryHive that reflects the latest writes.
+ *
+ * Since Windows 8.1, changes to a hive are written first to a log, as "HvLE" entries that each
+ *   hold a set of dirty pages, and reach the primary file only later. So a hive acquired from a
+ *   running system may be stale, or inconsistent (see `REGFHeader.isSynchronized`), until its logs
+ *   are applied. The entries of both logs are applied in order of sequence number, starting from the
+ *   secondary sequence number of the primary file, and stopping at the first entry that is missing
+ *   or fails its Marvin32 hashes.
+ *
+ * The primary file is only ever opened for reading. It is mapped read-only, and the replayed hive is a
+ *   map of pages over that mapping: only the pages written by the logs, and the base block, are copied
+ *   into memory, even when the logs grow the hive beyond the end of the file.
+ *   Logs in the format of earlier versions of Windows ("DIRT") are not supported.
+ */
+public class TransactionLogReplay {
+    private static final int REGF_MAGIC = 0x66676572;
+    private static final int HVLE_MAGIC = 0x454C7648;
+    private static final int DIRT_MAGIC = 0x54524944;
+    private static final int LOG_ENTRIES_OFFSET = 0x200;
+    private static final int LOG_ENTRY_ALIGNMENT = 0x200;
+    private static final int ENTRY_SIZE_OFFSET = 0x4;
+    private static final int ENTRY_SEQUENCE_OFFSET = 0xC;
+    private static final int ENTRY_HBINS_SIZE_OFFSET = 0x10;
+    private static final int ENTRY_PAGE_COUNT_OFFSET = 0x14;
+    private static final int ENTRY_HASH1_OFFSET = 0x18;
+    private static final int ENTRY_HASH2_OFFSET = 0x20;
+    private static final int ENTRY_HEADER_SIZE = 0x28;
+    private static final int PAGE_REFERENCE_SIZE = 0x8;
+    private static final int PAGE_SIZE = 0x1000;
+
+    private final File _hive;
+    private final List<File> _logs;
+    private int _appliedEntries = 0;
+    private int _copiedPages = 0;
+
+    /**
+     * @param hive The primary file of the hive.
+     * @param logs The transaction logs of the hive, in any order. Missing files are ignored.
+     */
+    public TransactionLogReplay(File hive, File... logs) {
+        this._hive = hive;
+        this._logs = Arrays.asList(logs);
+    }
+
+    /**
+     * LogEntry is a validated "HvLE" entry of a transaction log.
+     */
+    private static class LogEntry {
+        private final ByteBuffer _log;
+        ///< the absolute offset of the entry in the log.
+        private final int _offset;
+        private final long _sequenceNumber;
+        private final int _hbinsSize;
+
+        private LogEntry(ByteBuffer log, int offset) {
+            this._log = log;
+            this._offset = offset;
+            this._sequenceNumber = log.getInt(offset + ENTRY_SEQUENCE_OFFSET) & 0xFFFFFFFFL;
+            this._hbinsSize = log.getInt(offset + ENTRY_HBINS_SIZE_OFFSET);
+        }
+    }
+
+    /**
+     * OverlayStorage is the storage of a replayed hive: the pages written by the replay, over a read-only
+     *   mapping of the primary file. Pages beyond the end of the file that were not written are zeros.
+     */
+    private static class OverlayStorage extends PagedStorage {
+        private final ByteBuffer _primary;
+        ///< page index -> page, filled lazily with views of the primary file, and eagerly with written pages.
+        private final AtomicReferenceArray<ByteBuffer> _pages;
+
+        private OverlayStorage(ByteBuffer primary, int capacity) {
+            super(PAGE_SIZE, capacity);
+            this._primary = primary;
+            this._pages = new AtomicReferenceArray<ByteBuffer>((int)(((long)capacity + PAGE_SIZE - 1) / PAGE_SIZE));
+        }
+
+        private int getPageLength(int index) {
+            return (int)Math.min(PAGE_SIZE, (long)this.capacity() - ((long)index * PAGE_SIZE));
+        }
+
+        @Override
+        protected ByteBuffer getPage(int index) {
+            ByteBuffer page = this._pages.get(index);
+            if (page != null) {
+                return page;
+            }
+            int start = index * PAGE_SIZE;
+            int length = this.getPageLength(index);
+            if (start + length <= this._primary.capacity()) {
+                ByteBuffer view = this._primary.duplicate();
+                view.position(start);
+                view.limit(start + length);
+                page = view.slice().order(ByteOrder.LITTLE_ENDIAN);
+            } else {
+                page = this.copyPage(index);
+            }
+            // another thread may have raced us here; either view will do, but a written page must win
+            this._pages.compareAndSet(index, null, page);
+            return this._pages.get(index);
+        }
+
+        /**
+         * copyPage creates a writable copy of the page at `index`, padded with zeros beyond the primary file.
+         */
+        private ByteBuffer copyPage(int index) {
+            int start = index * PAGE_SIZE;
+            byte[] b = new byte[this.getPageLength(index)];
+            int available = Math.max(0, Math.min(b.length, this._primary.capacity() - start));
+            if (available > 0) {
+                ByteBuffer view = this._primary.duplicate();
+                view.position(start);
+                view.get(b, 0, available);
+            }
+            return ByteBuffer.wrap(b).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * getWritablePage fetches the copy of the page at `index` to which the replay writes, creating it if need be.
+         *   The replay writes before the storage is shared, so this need not be safe for many threads.
+         */
+        private ByteBuffer getWritablePage(int index) {
+            ByteBuffer page = this._pages.get(index);
+            if (page == null || page.isReadOnly() || ! page.hasArray()) {
+                page = this.copyPage(index);
+                this._pages.set(index, page);
+            }
+            return page;
+        }
+
+        /**
+         * put copies `length` bytes of `src`, starting at `srcOffset`, into the hive at absolute offset `index`.
+         */
+        private void put(int index, ByteBuffer src, int srcOffset, int length) {
+            while (length > 0) {
+                int offset = index % PAGE_SIZE;
+                int n = Math.min(length, PAGE_SIZE - offset);
+                ByteBuffer from = src.duplicate();
+                from.position(srcOffset);
+                from.limit(srcOffset + n);
+                ByteBuffer to = this.getWritablePage(index / PAGE_SIZE).duplicate();
+                to.position(offset);
+                to.put(from);
+                index += n;
+                srcOffset += n;
+                length -= n;
+            }
+        }
+
+        private void putInt(int index, int value) {
+            this.getWritablePage(index / PAGE_SIZE).putInt(index % PAGE_SIZE, value);
+        }
+
+        /**
+         * getPageCopyCount fetches the number of pages held in memory, rather than mapped from the primary file.
+         */
+        private int getPageCopyCount() {
+            int count = 0;
+            for (int i = 0; i < this._pages.length(); i++) {
+                ByteBuffer page = this._pages.get(i);
+                if (page != null && page.hasArray()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * replay applies the logs to the hive.
+     *
+     * @return A hive that reflects the writes in the logs.
+     * @throws IOException if the hive or a log cannot be read.
+     * @throws RegistryParseException if the hive is invalid, or a log is in an unsupported format.
+     */
+    public RegistryHive replay() throws IOException, RegistryParseException {
+        this._appliedEntries = 0;
+        this._copiedPages = 0;
+        ByteBuffer primary = map(this._hive);
+        REGFHeader header = new REGFHeader(primary, 0x0);
+
+        Map<Long, LogEntry> entries = new TreeMap<Long, LogEntry>();
+        for (File log : this._logs) {
+            if (log.isFile()) {
+                readEntries(map(log), entries);
+            }
+        }
+
+        List<LogEntry> applicable = new ArrayList<LogEntry>();
+        long next = header.getSecondarySequenceNumber();
+        for (Map.Entry<Long, LogEntry> entry : entries.entrySet()) {
+            if (entry.getKey() < next) {
+                continue;
+            }
+            if ( ! applicable.isEmpty() && entry.getKey() != next) {
+                // a gap, beyond which the entries cannot be applied consistently
+                break;
+            }
+            applicable.add(entry.getValue());
+            next = entry.getKey() + 1;
+        }
+        if (applicable.isEmpty()) {
+            return new RegistryHiveBuffer(primary);
+        }
+
+        // pages may extend to the size of the hive bins as of each entry
+        long size = primary.capacity();
+        for (LogEntry entry : applicable) {
+            size = Math.max(size, REGFHeader.FIRST_HBIN_OFFSET + (entry._hbinsSize & 0xFFFFFFFFL));
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Hive too large: " + size);
+        }
+        OverlayStorage storage = new OverlayStorage(primary, (int)size);
+        for (LogEntry entry : applicable) {
+            apply(entry, storage);
+        }
+
+        LogEntry last = applicable.get(applicable.size() - 1);
+        int sequenceNumber = (int)(last._sequenceNumber + 1);
+        storage.putInt(REGFHeader.SEQ1_OFFSET, sequenceNumber);
+        storage.putInt(REGFHeader.SEQ2_OFFSET, sequenceNumber);
+        storage.putInt(REGFHeader.LAST_HBIN_OFFSET_OFFSET, last._hbinsSize);
+        storage.putInt(REGFHeader.CHECKSUM_OFFSET, REGFHeader.computeChecksum(storage, 0x0));
+        this._appliedEntries = applicable.size();
+        this._copiedPages = storage.getPageCopyCount();
+        return new RegistryHiveBuffer(storage, KeyPathCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * getAppliedEntryCount fetches the number of log entries applied by the last call to `replay`.
+     */
+    public int getAppliedEntryCount() {
+        return this._appliedEntries;
+    }
+
+    /**
+     * getCopiedPageCount fetches the number of 4KB pages of the hive held in memory by the last call to
+     *   `replay`: those written by the logs, and the base block. The rest remain mapped from the primary file.
+     */
+    public int getCopiedPageCount() {
+        return this._copiedPages;
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile f = new RandomAccessFile(file, "r");
+        try {
+            return f.getChannel().map(MapMode.READ_ONLY, 0, f.length()).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            f.close(); // does not affect ByteBuffer mapping
+        }
+    }
+
+    /**
+     * readEntries collects the valid entries of `log` into `entries`, by sequence number.
+     *   Entries are read from the start of the log up to the first invalid entry, which marks
+     *   the end of the entries written since the log was last reset.
+     */
+    private static void readEntries(ByteBuffer log, Map<Long, LogEntry> entries) throws RegistryParseException {
+        if (log.capacity() < LOG_ENTRIES_OFFSET + ENTRY_HEADER_SIZE || log.getInt(0x0) != REGF_MAGIC) {
+            return;
+        }
+        if (log.getInt(LOG_ENTRIES_OFFSET) == DIRT_MAGIC) {
+            throw new RegistryParseException("Unsupported transaction log format: DIRT");
+        }
+
+        int offset = LOG_ENTRIES_OFFSET;
+        while (isValidEntry(log, offset)) {
+            LogEntry entry = new LogEntry(log, offset);
+            if ( ! entries.containsKey(entry._sequenceNumber)) {
+                entries.put(entry._sequenceNumber, entry);
+            }
+            offset += log.getInt(offset + ENTRY_SIZE_OFFSET);
+        }
+    }
+
+    private static boolean isValidEntry(ByteBuffer log, int offset) {
+        if ((long)offset + ENTRY_HEADER_SIZE > log.capacity() || log.getInt(offset) != HVLE_MAGIC) {
+            return false;
+        }
+        long size = log.getInt(offset + ENTRY_SIZE_OFFSET) & 0xFFFFFFFFL;
+        if (size < ENTRY_HEADER_SIZE || size % LOG_ENTRY_ALIGNMENT != 0 || offset + size > log.capacity()) {
+            return false;
+        }
+        long hbinsSize = log.getInt(offset + ENTRY_HBINS_SIZE_OFFSET) & 0xFFFFFFFFL;
+        long count = log.getInt(offset + ENTRY_PAGE_COUNT_OFFSET) & 0xFFFFFFFFL;
+        long data = ENTRY_HEADER_SIZE + (PAGE_REFERENCE_SIZE * count);
+        if (data > size) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int reference = offset + ENTRY_HEADER_SIZE + (PAGE_REFERENCE_SIZE * i);
+            long pageOffset = log.getInt(reference) & 0xFFFFFFFFL;
+            long pageSize = log.getInt(reference + 0x4) & 0xFFFFFFFFL;
+            data += pageSize;
+            if (pageOffset + pageSize > hbinsSize || data > size) {
+                return false;
+            }
+        }
+        return log.getLong(offset + ENTRY_HASH1_OFFSET) == Marvin32.hash(log, offset + ENTRY_HEADER_SIZE, (int)size - ENTRY_HEADER_SIZE, Marvin32.LOG_ENTRY_SEED)
+                && log.getLong(offset + ENTRY_HASH2_OFFSET) == Marvin32.hash(log, offset, ENTRY_HASH2_OFFSET, Marvin32.LOG_ENTRY_SEED);
+    }
+
+    /**
+     * apply copies the dirty pages of `entry` into the hive `storage`.
+     */
+    private static void apply(LogEntry entry, OverlayStorage storage) {
+        ByteBuffer log = entry._log;
+        int count = log.getInt(entry._offset + ENTRY_PAGE_COUNT_OFFSET);
+        int data = entry._offset + ENTRY_HEADER_SIZE + (PAGE_REFERENCE_SIZE * count);
+        for (int i = 0; i < count; i++) {
+            int reference = entry._offset + ENTRY_HEADER_SIZE + (PAGE_REFERENCE_SIZE * i);
+            int pageOffset = log.getInt(reference);
+            int pageSize = log.getInt(reference + 0x4);
+
+            storage.put(REGFHeader.FIRST_HBIN_OFFSET + pageOffset, log, data, pageSize);
+            data += pageSize;
+        }
+    }
+}
@@ -2,8 +2,25 @@ package com.williballenthin.rejistry;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class U {
+    ///< the number of 100 nanosecond intervals between 1601-01-01 and 1970-01-01.
+    public static final long FILETIME_UNIX_EPOCH = 116444736000000000L;
+    private static final long FILETIME_TICKS_PER_SECOND = 10000000L;
+    private static final int NANOS_PER_FILETIME_TICK = 100;
+    ///< the buffer into which names are copied for comparison, a chunk at a time, so that paged storage is read once per chunk.
+    private static final ThreadLocal<byte[]> NAME_CHUNK = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[0x100];
+        }
+    };
+
     public static void d(String s) {
         System.out.println(s);
     }
@@ -24,6 +41,41 @@ public class U {
         d(hex(i));
     }
 
+    /**
+     * filetimeToInstant converts a Windows FILETIME, the number of 100 nanosecond intervals
+     *   since 1601-01-01T00:00:00Z, to an Instant, without loss of precision.
+     */
+    public static Instant filetimeToInstant(long filetime) {
+        long ticks = filetime - FILETIME_UNIX_EPOCH;
+        return Instant.ofEpochSecond(Math.floorDiv(ticks, FILETIME_TICKS_PER_SECOND),
+                Math.floorMod(ticks, FILETIME_TICKS_PER_SECOND) * NANOS_PER_FILETIME_TICK);
+    }
+
+    /**
+     * instantToFiletime converts an Instant to a Windows FILETIME, truncating to 100 nanoseconds.
+     * @throws ArithmeticException if the Instant cannot be represented as a FILETIME.
+     */
+    public static long instantToFiletime(Instant instant) {
+        long ticks = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), FILETIME_TICKS_PER_SECOND),
+                instant.getNano() / NANOS_PER_FILETIME_TICK);
+        return Math.addExact(ticks, FILETIME_UNIX_EPOCH);
+    }
+
+    /**
+     * millisToFiletime converts milliseconds since the Unix epoch, as from `Calendar.getTimeInMillis`, to a Windows FILETIME.
+     * @throws ArithmeticException if the time cannot be represented as a FILETIME.
+     */
+    public static long millisToFiletime(long millis) {
+        return Math.addExact(Math.multiplyExact(millis, FILETIME_TICKS_PER_SECOND / 1000), FILETIME_UNIX_EPOCH);
+    }
+
+    /**
+     * filetimeToMillis converts a Windows FILETIME to milliseconds since the Unix epoch, rounding towards the past.
+     */
+    public static long filetimeToMillis(long filetime) {
+        return Math.floorDiv(filetime - FILETIME_UNIX_EPOCH, FILETIME_TICKS_PER_SECOND / 1000);
+    }
+
     /**
      * parseWString fetches `length` bytes from `buf` at relative offset `offset`
      * and interprets them as a UTF-16LE string.
@@ -36,20 +88,93 @@ public class U {
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as an UTF-16LE string.
      */
     public static String parseWString(ByteBuffer buf, int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = buf.position();
-        byte[] sb = new byte[length];
+        return decodeWString(buf, offset, length);
+    }
 
-        buf.position(offset);
-        buf.get(sb, 0, length);
-        buf.position(saved_position);
+    /**
+     * parseWString decodes the UTF-16LE string of `length` bytes at absolute offset `offset` in `buf`,
+     *   as `parseWString(ByteBuffer, int, int)`.
+     */
+    public static String parseWString(HiveStorage buf, int offset, int length) throws UnsupportedEncodingException {
+        return decodeWString(buf, offset, length);
+    }
 
-        String s = new String(sb, "UTF-16LE");
+    /**
+     * decodeWChars decodes the UTF-16LE characters of `length` bytes at absolute offset `offset` in `buf`
+     *   directly into a new array, without copying the bytes first unless they straddle pages of `buf`. Invalid sequences become the Unicode
+     *   replacement character exactly as with `new String(bytes, "UTF-16LE")`: an unpaired high surrogate
+     *   swallows the unit (or odd byte) that follows it, and a lone low surrogate or odd byte is replaced.
+     *
+     * @return The characters, which may include NULLs.
+     */
+    private static char[] decodeWChars(HiveStorage buf, int offset, int length) {
+        // one bulk read, rather than a read of the storage per character
+        ByteBuffer b = buf.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+        int count = length / 2;
+        boolean oddByte = (length & 0x1) != 0;
+        char[] chars = new char[oddByte ? count + 1 : count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            char c = (char)b.getShort(2 * i);
+            if ( ! Character.isSurrogate(c)) {
+                chars[n++] = c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count) {
+                char next = (char)b.getShort(2 * ++i);
+                if (Character.isLowSurrogate(next)) {
+                    chars[n++] = c;
+                    chars[n++] = next;
+                } else {
+                    chars[n++] = '\uFFFD';
+                }
+            } else {
+                if (Character.isHighSurrogate(c)) {
+                    oddByte = false;
+                }
+                chars[n++] = '\uFFFD';
+            }
+        }
+        if (oddByte) {
+            chars[n++] = '\uFFFD';
+        }
+        return n == chars.length ? chars : Arrays.copyOf(chars, n);
+    }
 
-        int eos = s.indexOf(0x0);
-        if (eos != -1) {
-            s = s.substring(0, eos);
+    /**
+     * decodeWString decodes the UTF-16LE string of `length` bytes at absolute offset `offset` in `buf`.
+     *   The string ends at the first NULL character. Unlike `parseWString`, this cannot fail.
+     */
+    public static String decodeWString(ByteBuffer buf, int offset, int length) {
+        return decodeWString(new BufferStorage(buf), offset, length);
+    }
+
+    /**
+     * decodeWString decodes the UTF-16LE string of `length` bytes at absolute offset `offset` in `buf`,
+     *   as `decodeWString(ByteBuffer, int, int)`.
+     */
+    public static String decodeWString(HiveStorage buf, int offset, int length) {
+        char[] chars = decodeWChars(buf, offset, length);
+        int eos = 0;
+        while (eos < chars.length && chars[eos] != 0x0) {
+            eos++;
         }
-        return s;
+        return new String(chars, 0, eos);
+    }
+
+    /**
+     * decodeWStringArray decodes the list of NULL terminated UTF-16LE strings of `length` bytes
+     *   at absolute offset `offset` in `buf`. Characters after the last NULL are ignored.
+     */
+    public static List<String> decodeWStringArray(ByteBuffer buf, int offset, int length) {
+        char[] chars = decodeWChars(new BufferStorage(buf), offset, length);
+        List<String> ret = new ArrayList<String>();
+        int start = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == 0x0) {
+                ret.add(new String(chars, start, i - start));
+                start = i + 1;
+            }
+        }
+        return ret;
     }
 
     /**
@@ -63,13 +188,9 @@ public class U {
      * @return A string decoded from ASCII bytes.
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as an ASCII string.
      */
-    public static String parseASCIIString(ByteBuffer buf, int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = buf.position();
+    public static String parseASCIIString(HiveStorage buf, int offset, int length) throws UnsupportedEncodingException {
         byte[] sb = new byte[length];
-
-        buf.position(offset);
-        buf.get(sb, 0, length);
-        buf.position(saved_position);
+        buf.get(offset, sb, 0, length);
 
         String s = new String(sb, "ASCII");
 
@@ -79,4 +200,106 @@ public class U {
         }
         return s;
     }
+
+    /**
+     * parseASCIIString fetches `length` bytes from `buf` at absolute offset `offset`, as `parseASCIIString(HiveStorage, int, int)`.
+     */
+    public static String parseASCIIString(ByteBuffer buf, int offset, int length) throws UnsupportedEncodingException {
+        return parseASCIIString(HiveStorage.wrap(buf), offset, length);
+    }
+
+    /**
+     * asciiEqualsIgnoreCase compares the ASCII string of `length` bytes at absolute offset
+     *   `offset` in `buf` with `s`, case-insensitively, without decoding the string or allocating.
+     *   The bytes are read in chunks into a per-thread buffer. The string ends at the first NULL character, and bytes outside the ASCII range are
+     *   treated as the Unicode replacement character, just like `parseASCIIString`.
+     *
+     * @param offset The absolute offset into the buffer from which to read.
+     * @param length The number of bytes to read.
+     * @param s The string to compare against.
+     * @return True if the strings are equal, ignoring case.
+     */
+    public static boolean asciiEqualsIgnoreCase(HiveStorage buf, int offset, int length, String s) {
+        byte[] chunk = NAME_CHUNK.get();
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, chunk.length);
+            buf.get(offset + i, chunk, 0, n);
+            for (int j = 0; j < n; j++, i++) {
+                int b = chunk[j] & 0xFF;
+                if (b == 0x0) {
+                    return i == s.length();
+                }
+                if (i >= s.length()) {
+                    return false;
+                }
+                char c = b > 0x7F ? '\uFFFD' : (char)b;
+                if ( ! charEqualsIgnoreCase(c, s.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return i == s.length();
+    }
+
+    /**
+     * asciiEqualsIgnoreCase compares the ASCII string at absolute offset `offset` in `buf` with `s`,
+     *   as `asciiEqualsIgnoreCase(HiveStorage, int, int, String)`.
+     */
+    public static boolean asciiEqualsIgnoreCase(ByteBuffer buf, int offset, int length, String s) {
+        return asciiEqualsIgnoreCase(HiveStorage.wrap(buf), offset, length, s);
+    }
+
+    /**
+     * wstringEqualsIgnoreCase compares the UTF-16LE string of `length` bytes at absolute offset
+     *   `offset` in `buf` with `s`, case-insensitively, without decoding the string or allocating.
+     *   The bytes are read in chunks into a per-thread buffer. The string ends at the first NULL character, just like `parseWString`.
+     *
+     * @param offset The absolute offset into the buffer from which to read.
+     * @param length The number of bytes to read.
+     * @param s The string to compare against.
+     * @return True if the strings are equal, ignoring case.
+     */
+    public static boolean wstringEqualsIgnoreCase(HiveStorage buf, int offset, int length, String s) {
+        byte[] chunk = NAME_CHUNK.get();
+        int bytes = length & ~0x1;
+        int i = 0;
+        while (2 * i < bytes) {
+            int n = Math.min(bytes - (2 * i), chunk.length);
+            buf.get(offset + (2 * i), chunk, 0, n);
+            for (int j = 0; j < n; j += 2, i++) {
+                char c = (char)((chunk[j] & 0xFF) | ((chunk[j + 1] & 0xFF) << 8));
+                if (c == 0x0) {
+                    return i == s.length();
+                }
+                if (i >= s.length()) {
+                    return false;
+                }
+                if ( ! charEqualsIgnoreCase(c, s.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return i == s.length();
+    }
+
+    /**
+     * wstringEqualsIgnoreCase compares the UTF-16LE string at absolute offset `offset` in `buf` with `s`,
+     *   as `wstringEqualsIgnoreCase(HiveStorage, int, int, String)`.
+     */
+    public static boolean wstringEqualsIgnoreCase(ByteBuffer buf, int offset, int length, String s) {
+        return wstringEqualsIgnoreCase(HiveStorage.wrap(buf), offset, length, s);
+    }
+
+    /**
+     * charEqualsIgnoreCase compares two characters the same way as `String.equalsIgnoreCase`.
+     */
+    private static boolean charEqualsIgnoreCase(char a, char b) {
+        if (a == b) {
+            return true;
+        }
+        char ua = Character.toUpperCase(a);
+        char ub = Character.toUpperCase(b);
+        return ua == ub || Character.toLowerCase(ua) == Character.toLowerCase(ub);
+    }
 }
@@ -0,0 +1,124 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * ValueColumnExtractor collects the numeric and string values of a hive into primitive columns.
+ *   See ValueColumns.
+ *
+ * Where the RegistryKey and RegistryValue API allocates several objects for each value it reads,
+ *   the extractor walks the keys with an NKCursor and the values with a VKCursor, and appends the data
+ *   straight into growable arrays, so the cost is a few array copies regardless of the number of values.
+ *   Values whose data has an unexpected length for their type are skipped.
+ */
+public class ValueColumnExtractor {
+    private static final int INITIAL_CAPACITY = IntColumn.INITIAL_CAPACITY;
+
+    private final REGFHeader _header;
+
+    public ValueColumnExtractor(REGFHeader header) {
+        this._header = header;
+    }
+
+    /**
+     * extract walks the keys of the hive from the root, collecting the values of each.
+     *   Keys are walked depth first, each before its subkeys, and the subkeys in the order of their subkey
+     *   list; the values of each key are collected in the order of its value list.
+     *
+     * @return The columns of values.
+     * @throws RegistryParseException if a subkey list or the data of a big data value cannot be parsed.
+     */
+    public ValueColumns extract() throws RegistryParseException {
+        NKCursor nk = this._header.newNKCursor();
+        VKCursor vk = this._header.newVKCursor();
+        int capacity = this._header._buf.capacity();
+
+        IntColumn dwords = new IntColumn();
+        IntColumn dwordValues = new IntColumn();
+        IntColumn dwordKeys = new IntColumn();
+        long[] qwords = new long[INITIAL_CAPACITY];
+        IntColumn qwordValues = new IntColumn();
+        IntColumn qwordKeys = new IntColumn();
+        byte[] stringData = new byte[INITIAL_CAPACITY];
+        int stringLength = 0;
+        IntColumn stringStarts = new IntColumn();
+        IntColumn stringValues = new IntColumn();
+        IntColumn stringKeys = new IntColumn();
+
+        // a cycle of keys would otherwise be walked forever
+        BitSet visited = new BitSet();
+        IntColumn pending = new IntColumn();
+        int[] offsets = new int[INITIAL_CAPACITY];
+        pending.add(this._header.getRootCellOffset());
+
+        while (pending.size() > 0) {
+            int key = pending.pop();
+            if ( ! nk.moveTo(key) || visited.get(key)) {
+                continue;
+            }
+            visited.set(key);
+
+            if (offsets.length < nk.getNumberOfValues()) {
+                offsets = new int[nk.getNumberOfValues()];
+            }
+            int count = nk.getNumberOfValues() == 0 ? 0 : nk.readValueOffsets(offsets);
+            for (int i = 0; i < count; i++) {
+                if ( ! vk.moveTo(offsets[i])) {
+                    continue;
+                }
+                int type = vk.getValueTypeCode();
+                long length = vk.getDataLength();
+                if (type == RegistryValueType.REG_DWORD.getValue() || type == RegistryValueType.REG_BIG_ENDIAN.getValue()) {
+                    if (length != 0x4) {
+                        continue;
+                    }
+                    dwords.add((int)vk.getNumber());
+                    dwordValues.add(offsets[i]);
+                    dwordKeys.add(key);
+                } else if (type == RegistryValueType.REG_QWORD.getValue()) {
+                    if (length != 0x8) {
+                        continue;
+                    }
+                    if (qwordValues.size() == qwords.length) {
+                        qwords = Arrays.copyOf(qwords, qwords.length * 2);
+                    }
+                    qwords[qwordValues.size()] = vk.getNumber();
+                    qwordValues.add(offsets[i]);
+                    qwordKeys.add(key);
+                } else if (type == RegistryValueType.REG_SZ.getValue() || type == RegistryValueType.REG_EXPAND_SZ.getValue()) {
+                    if (length > capacity) {
+                        continue;
+                    }
+                    if (stringLength + length > stringData.length) {
+                        stringData = Arrays.copyOf(stringData, (int)Math.min(Integer.MAX_VALUE - 0x8,
+                                Math.max(stringData.length * 2L, stringLength + length)));
+                    }
+                    stringStarts.add(stringLength);
+                    stringLength += vk.readData(stringData, stringLength);
+                    stringValues.add(offsets[i]);
+                    stringKeys.add(key);
+                }
+            }
+
+            if (nk.getSubkeyCount() > 0) {
+                if (offsets.length < nk.getSubkeyCount()) {
+                    offsets = new int[nk.getSubkeyCount()];
+                }
+                count = nk.readSubkeyOffsets(offsets);
+                // in reverse, so that the first subkey is walked first
+                for (int i = count - 1; i >= 0; i--) {
+                    pending.add(offsets[i]);
+                }
+            }
+        }
+
+        stringStarts.add(stringLength);
+        return new ValueColumns(dwords.toArray(), dwordValues.toArray(), dwordKeys.toArray(),
+                Arrays.copyOf(qwords, qwordValues.size()), qwordValues.toArray(), qwordKeys.toArray(),
+                Arrays.copyOf(stringData, stringLength), stringStarts.toArray(), stringValues.toArray(), stringKeys.toArray());
+    }
+}
@@ -0,0 +1,110 @@
+package com.williballenthin.rejistry;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ValueColumns is a columnar snapshot of the numeric and string values of a hive,
+ *   as produced by a ValueColumnExtractor.
+ *
+ * Each kind of value has its own column: a primitive array of the data, and parallel arrays
+ *   with the cell offsets (relative to the first HBIN) of each value's VKRecord and of the
+ *   NKRecord of its key. Use an NKCursor or VKCursor to fetch names for the offsets of interest.
+ *   String data is kept as stored, UTF-16LE, in a single arena; the i-th string spans
+ *   [getStringStarts()[i], getStringStarts()[i + 1]).
+ *
+ * The arrays are returned without copying, and their length is exactly the number of entries.
+ *   They are shared by all callers, so do not modify them.
+ */
+public class ValueColumns {
+    private final int[] _dwords;
+    private final int[] _dwordValueOffsets;
+    private final int[] _dwordKeyOffsets;
+    private final long[] _qwords;
+    private final int[] _qwordValueOffsets;
+    private final int[] _qwordKeyOffsets;
+    private final byte[] _stringData;
+    private final int[] _stringStarts;
+    private final int[] _stringValueOffsets;
+    private final int[] _stringKeyOffsets;
+
+    ValueColumns(int[] dwords, int[] dwordValueOffsets, int[] dwordKeyOffsets,
+                 long[] qwords, int[] qwordValueOffsets, int[] qwordKeyOffsets,
+                 byte[] stringData, int[] stringStarts, int[] stringValueOffsets, int[] stringKeyOffsets) {
+        this._dwords = dwords;
+        this._dwordValueOffsets = dwordValueOffsets;
+        this._dwordKeyOffsets = dwordKeyOffsets;
+        this._qwords = qwords;
+        this._qwordValueOffsets = qwordValueOffsets;
+        this._qwordKeyOffsets = qwordKeyOffsets;
+        this._stringData = stringData;
+        this._stringStarts = stringStarts;
+        this._stringValueOffsets = stringValueOffsets;
+        this._stringKeyOffsets = stringKeyOffsets;
+    }
+
+    /**
+     * getDwords fetches the data of the REG_DWORD and REG_BIG_ENDIAN values, as numbers.
+     *   Read them as unsigned with `Integer.toUnsignedLong`.
+     */
+    public int[] getDwords() {
+        return this._dwords;
+    }
+
+    public int[] getDwordValueOffsets() {
+        return this._dwordValueOffsets;
+    }
+
+    public int[] getDwordKeyOffsets() {
+        return this._dwordKeyOffsets;
+    }
+
+    /**
+     * getQwords fetches the data of the REG_QWORD values.
+     */
+    public long[] getQwords() {
+        return this._qwords;
+    }
+
+    public int[] getQwordValueOffsets() {
+        return this._qwordValueOffsets;
+    }
+
+    public int[] getQwordKeyOffsets() {
+        return this._qwordKeyOffsets;
+    }
+
+    /**
+     * getStringData fetches the arena holding the raw UTF-16LE data of the REG_SZ and REG_EXPAND_SZ values.
+     */
+    public byte[] getStringData() {
+        return this._stringData;
+    }
+
+    /**
+     * getStringStarts fetches the offset of each string in the arena, followed by the length of the arena,
+     *   so it has one more entry than there are strings.
+     */
+    public int[] getStringStarts() {
+        return this._stringStarts;
+    }
+
+    public int[] getStringValueOffsets() {
+        return this._stringValueOffsets;
+    }
+
+    public int[] getStringKeyOffsets() {
+        return this._stringKeyOffsets;
+    }
+
+    public int getStringCount() {
+        return this._stringValueOffsets.length;
+    }
+
+    /**
+     * getString decodes the `index`-th string, up to its first NULL character, just like `ValueData.getAsString`.
+     */
+    public String getString(int index) {
+        int start = this._stringStarts[index];
+        return U.decodeWString(ByteBuffer.wrap(this._stringData), start, this._stringStarts[index + 1] - start);
+    }
+}
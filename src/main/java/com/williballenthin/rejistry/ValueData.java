@@ -3,16 +3,49 @@ package com.williballenthin.rejistry;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * ValueData is the data of a Registry value, with accessors that interpret it by type.
+ *   The data is usually a single view of the hive. Big data values, which Windows splits
+ *   into segments, are represented by a view of each segment, rather than by a copy.
+ *
+ * The typed accessors decode the data the first time they are called, and then return the
+ *   same result, so a ValueData may be consulted repeatedly at little cost.
+ */
 public class ValueData {
 
     private final RegistryValueType _type;
-    private final ByteBuffer _buf;
+    ///< the data, in order. Each buffer spans from position zero to its limit.
+    private final List<ByteBuffer> _segments;
+    private final int _length;
+
+    // memoized results of the typed accessors, which are immutable and so may be shared
+    private volatile String _string;
+    private volatile List<String> _strings;
+    ///< the number is written before the volatile flag, so a reader that sees the flag set also sees the number.
+    private long _number;
+    private volatile boolean _hasNumber;
 
     public ValueData(ByteBuffer buf, RegistryValueType type) {
-        this._buf = buf;
+        this(Collections.singletonList(buf.slice()), type);
+    }
+
+    /**
+     * @param segments The views that together hold the data, in order, from their positions to their limits.
+     * @param type The type of the value.
+     */
+    public ValueData(List<ByteBuffer> segments, RegistryValueType type) {
+        List<ByteBuffer> views = new ArrayList<ByteBuffer>(segments.size());
+        int length = 0;
+        for (ByteBuffer segment : segments) {
+            views.add(segment.slice());
+            length += segment.remaining();
+        }
+        this._segments = Collections.unmodifiableList(views);
+        this._length = length;
         this._type = type;
     }
 
@@ -26,6 +59,41 @@ public class ValueData {
         return this._type;
     }
 
+    /**
+     * getLength fetches the length of the data, in bytes.
+     */
+    public int getLength() {
+        return this._length;
+    }
+
+    /**
+     * getAsSegments fetches views of the pieces of the data, in order, without copying.
+     *   Most values have a single segment; big data values have one per "db" segment.
+     *   Each view is independent, so its position and limit may be changed freely.
+     */
+    public List<ByteBuffer> getAsSegments() {
+        List<ByteBuffer> ret = new ArrayList<ByteBuffer>(this._segments.size());
+        for (ByteBuffer segment : this._segments) {
+            ret.add(segment.duplicate());
+        }
+        return ret;
+    }
+
+    /**
+     * getContiguous fetches a single view of the data, which must be copied if the data has many segments.
+     */
+    private ByteBuffer getContiguous() {
+        if (this._segments.size() == 1) {
+            return this._segments.get(0).duplicate();
+        }
+        ByteBuffer b = ByteBuffer.allocate(this._length);
+        for (ByteBuffer segment : this._segments) {
+            b.put(segment.duplicate());
+        }
+        b.position(0x0);
+        return b;
+    }
+
 
     /**
      * parseWString fetches `length` bytes from `buf` at relative offset `offset`
@@ -37,23 +105,9 @@ public class ValueData {
      * @param length The number of bytes to read.
      * @return A string decoded from UTF-16LE bytes.
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as an UTF-16LE string.
-     * TODO(wb): don't like the duplication here.
      */
     public static String parseWString(ByteBuffer buf, int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = buf.position();
-        byte[] sb = new byte[length];
-
-        buf.position(offset);
-        buf.get(sb, 0, length);
-        buf.position(saved_position);
-
-        String s = new String(sb, "UTF-16LE");
-
-        int eos = s.indexOf(0x0);
-        if (eos != -1) {
-            s = s.substring(0, eos);
-        }
-        return s;
+        return U.decodeWString(buf, offset, length);
     }
 
     /**
@@ -66,30 +120,7 @@ public class ValueData {
      * @throws UnsupportedEncodingException if the bytes cannot be decoded as UTF-16LE strings.
      */
     public static List<String> parseWStringArray(ByteBuffer buf, int offset, int length) throws UnsupportedEncodingException {
-        int saved_position = buf.position();
-        byte[] sb = new byte[length];
-
-        buf.position(offset);
-        buf.get(sb, 0, length);
-        buf.position(saved_position);
-
-        String stringBuffer = new String(sb, "UTF-16LE");
-
-        List<String> ret = new LinkedList<String>();
-        int index = 0;
-
-        while (index < stringBuffer.length()) {
-            int eos = stringBuffer.indexOf(0x0, index);
-            if (eos == -1) {
-                break;
-            }
-
-            String s = stringBuffer.substring(index, eos);
-            ret.add(s);
-            index += s.length() + 1;
-        }
-
-        return ret;
+        return U.decodeWStringArray(buf, offset, length);
     }
 
     /**
@@ -102,14 +133,12 @@ public class ValueData {
      * @return A non-negative 32bit number with the range 0-2**32-1.
      */
     private static long parseDword(ByteBuffer buf, int offset) {
-        buf.order(ByteOrder.LITTLE_ENDIAN);
-        return buf.getInt(offset) & 0xFFFFFFFFL;
+        return buf.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(offset) & 0xFFFFFFFFL;
     }
 
     /**
      * parseDwordBE parses a 32bit number from the specified relative offset with the range 0-2**32 - 1;
      *   The integer is decoded as a big endian value.
-     *   This is not thread safe.
      *
      *   TODO(wb): stop duplicating this everywhere.
      *
@@ -117,8 +146,7 @@ public class ValueData {
      * @return A non-negative 32bit number with the range 0-2**32-1.
      */
     private static long parseDwordBE(ByteBuffer buf, int offset) {
-        buf.order(ByteOrder.BIG_ENDIAN);
-        return buf.getInt(offset) & 0xFFFFFFFFL;
+        return buf.duplicate().order(ByteOrder.BIG_ENDIAN).getInt(offset) & 0xFFFFFFFFL;
     }
 
     /**
@@ -132,9 +160,8 @@ public class ValueData {
      * @return A non-negative 64bit number with the range 0-2**64-1;
      */
     protected long parseQword(ByteBuffer buf, int offset) {
-        buf.order(ByteOrder.LITTLE_ENDIAN);
         //noinspection PointlessBitwiseExpression
-        return buf.getLong(offset) & 0xFFFFFFFFFFFFFFFFL;
+        return buf.duplicate().order(ByteOrder.LITTLE_ENDIAN).getLong(offset) & 0xFFFFFFFFFFFFFFFFL;
     }
 
     /**
@@ -145,8 +172,14 @@ public class ValueData {
     public String getAsString() throws UnsupportedEncodingException {
         switch(this._type) {
             case REG_SZ:  // intentional fallthrough
-            case REG_EXPAND_SZ:
-                return parseWString(this._buf, 0x0, this._buf.limit());
+            case REG_EXPAND_SZ: {
+                String s = this._string;
+                if (s == null) {
+                    s = U.decodeWString(this.getContiguous(), 0x0, this._length);
+                    this._string = s;
+                }
+                return s;
+            }
             default:
                 throw new IllegalArgumentException("Cannot parse String from " + this._type.toString());
         }
@@ -156,30 +189,38 @@ public class ValueData {
      * getAsStringList returns the data from this value as a list of Strings, if the
      *   underlying Registry datatype is compatible.
      * Data that can be parsed as a String is returned as a list with one entry.
+     * The list is shared by all callers, and so cannot be modified.
      * @throws UnsupportedEncodingException if the string values cannot be parsed.
      * @throws IllegalArgumentException if the data type is not one of REG_SZ, REG_EXPAND_SZ, or REG_MULTI_SZ.
      */
     public List<String> getAsStringList() throws UnsupportedEncodingException {
+        List<String> ret = this._strings;
+        if (ret != null) {
+            return ret;
+        }
         switch(this._type) {
             case REG_SZ:  // intentional fallthrough
-            case REG_EXPAND_SZ: {
-                List<String> ret = new LinkedList<String>();
-                ret.add(parseWString(this._buf, 0x0, this._buf.limit()));
-                return ret;
-            }
+            case REG_EXPAND_SZ:
+                ret = Collections.singletonList(this.getAsString());
+                break;
             case REG_MULTI_SZ:
-                return parseWStringArray(this._buf, 0x0, this._buf.limit());
+                ret = Collections.unmodifiableList(U.decodeWStringArray(this.getContiguous(), 0x0, this._length));
+                break;
             default:
                 throw new IllegalArgumentException("Cannot parse String list from " + this._type.toString());
         }
+        this._strings = ret;
+        return ret;
     }
 
     /**
      * getAsRawBinary returns the raw binary data from this value.
      *   It can be used with all datatypes.
+     *   The data is a view of the hive, unless it has many segments, in which case it is
+     *   copied into a new buffer; use `getAsSegments` to avoid the copy.
      */
     public ByteBuffer getAsRawData() {
-        return this._buf.slice();
+        return this.getContiguous();
     }
 
     /**
@@ -188,17 +229,25 @@ public class ValueData {
      * @throws IllegalArgumentException if the data type is not one of REG_DWORD, REG_QWORD, or REG_BIG_ENDIAN.
      */
     public long getAsNumber() {
+        if (this._hasNumber) {
+            return this._number;
+        }
+        long ret;
         switch(this._type) {
             case REG_DWORD:
-                return parseDword(this._buf, 0x0);
+                ret = parseDword(this.getContiguous(), 0x0);
+                break;
             case REG_QWORD:
-                return parseQword(this._buf, 0x0);
+                ret = parseQword(this.getContiguous(), 0x0);
+                break;
             case REG_BIG_ENDIAN:
-                return parseDwordBE(this._buf, 0x0);
+                ret = parseDwordBE(this.getContiguous(), 0x0);
+                break;
             default:
                 throw new IllegalArgumentException("Cannot parse Number from " + this._type.toString());
         }
+        this._number = ret;
+        this._hasNumber = true;
+        return ret;
     }
 }
-
-
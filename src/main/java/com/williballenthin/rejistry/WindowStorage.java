@@ -0,0 +1,39 @@
+package com.williballenthin.rejistry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * WindowStorage is the storage of a hive mapped from a file as consecutive windows, rather than as one
+ *   mapping, so that a hive of up to 2GB never needs one contiguous region of address space that large.
+ *   Cells that straddle two windows are assembled from both. The windows are mapped up front, so the
+ *   storage remains valid after the file is closed.
+ */
+final class WindowStorage extends PagedStorage {
+    private final ByteBuffer[] _windows;
+
+    /**
+     * @param channel The file that contains the hive.
+     * @param offset The offset of the hive within the file.
+     * @param windowSize The size of each window, a power of two.
+     * @param capacity The number of bytes of the hive.
+     * @throws IOException if the hive cannot be mapped.
+     */
+    WindowStorage(FileChannel channel, long offset, int windowSize, int capacity) throws IOException {
+        super(windowSize, capacity);
+        this._windows = new ByteBuffer[(int)(((long)capacity + windowSize - 1) / windowSize)];
+        for (int i = 0; i < this._windows.length; i++) {
+            long start = (long)i * windowSize;
+            long size = Math.min(windowSize, capacity - start);
+            this._windows[i] = channel.map(MapMode.READ_ONLY, offset + start, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    protected ByteBuffer getPage(int index) {
+        return this._windows[index];
+    }
+}
@@ -1,51 +1,77 @@
 package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.Cell;
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.REGFHeader;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DBIndirectRecord extends Record {
     private static final int OFFSET_LIST_OFFSET = 0x0;
+    ///< the number of bytes of value data held by each segment, except perhaps the last.
+    static final int SEGMENT_SIZE = 0x3FD8;
 
-    public DBIndirectRecord(ByteBuffer buf, int offset) {
+    public DBIndirectRecord(HiveStorage buf, int offset) {
         super(buf, offset);
     }
 
+    public DBIndirectRecord(ByteBuffer buf, int offset) {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
-     * getData fetches `length` data from the blocks pointed to by this indirect block.
+     * getSegments fetches read-only views of the blocks pointed to by this indirect block,
+     *   which together hold `length` bytes of data. No data is copied.
      * Note, there's no structural checking performed to ensure the direct blocks are
      *   valid.
      * @param length The number of bytes to attempt to parse from the direct blocks.
-     * @return The bytes parsed from the blocks.
-     * @throws java.nio.BufferOverflowException if too much data is requested.
+     * @return Views of the blocks, in order.
+     * @throws IllegalArgumentException if a block is too small for its part of the data.
      */
-    public ByteBuffer getData(int length) {
-        ByteBuffer b = ByteBuffer.allocate(length);
-        b.position(0x0);
+    public List<ByteBuffer> getSegments(int length) {
+        List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
         int count = 0;
         while (length > 0) {
-            int size = 0x3fd8;
-            int offset = (int)this.getDword(OFFSET_LIST_OFFSET + (count * 4));
-            offset += REGFHeader.FIRST_HBIN_OFFSET;
-            Cell c = new Cell(this._buf, offset);
-            ByteBuffer data = c.getData();
-
-            if (length < size) {
-                size = length;
-            }
-
-            data.position(size);
-            data.flip();
-            data.limit(size);
-            data.position(0x0);
-
-            b.put(data);
+            int size = Math.min(SEGMENT_SIZE, length);
+            segments.add(this.getSegment(count, size));
 
             length -= size;
             count += 1;
             // TODO(wb): could use some more error checking here.
         }
+        return segments;
+    }
+
+    /**
+     * getSegment fetches a read-only view of the block at `index` in the list of this indirect block.
+     * @param index The index of the block.
+     * @param size The number of bytes of data held by the block.
+     * @return A view of the data in the block.
+     * @throws IllegalArgumentException if the block is smaller than `size`.
+     */
+    public ByteBuffer getSegment(int index, int size) {
+        int offset = (int)this.getDword(OFFSET_LIST_OFFSET + (index * 4));
+        offset += REGFHeader.FIRST_HBIN_OFFSET;
+        Cell c = new Cell(this._buf, offset);
+        ByteBuffer data = c.getData();
+        data.limit(size);
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * getData copies `length` data from the blocks pointed to by this indirect block into a new buffer.
+     *   Prefer `getSegments`, which does not copy.
+     * @param length The number of bytes to attempt to parse from the direct blocks.
+     * @return The bytes parsed from the blocks.
+     */
+    public ByteBuffer getData(int length) {
+        ByteBuffer b = ByteBuffer.allocate(length);
+        for (ByteBuffer segment : this.getSegments(length)) {
+            b.put(segment);
+        }
+        b.position(0x0);
         return b;
     }
 }
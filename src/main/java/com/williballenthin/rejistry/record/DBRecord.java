@@ -1,16 +1,18 @@
 package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.Cell;
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.REGFHeader;
 import com.williballenthin.rejistry.RegistryParseException;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 public class DBRecord extends Record {
     public static final String MAGIC = "db";
     private static final int INDIRECT_BLOCK_OFFSET_OFFSET = 0x4;
 
-    public DBRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public DBRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset);
 
         if (!this.getMagic().equals(DBRecord.MAGIC)) {
@@ -18,20 +20,39 @@ public class DBRecord extends Record {
         }
     }
 
+    public DBRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
+    DBIndirectRecord getIndirectRecord() throws RegistryParseException {
+        int offset = (int)this.getDword(INDIRECT_BLOCK_OFFSET_OFFSET);
+        offset += REGFHeader.FIRST_HBIN_OFFSET;
+
+        Cell c = new Cell(this._buf, offset);
+        return c.getDBIndirectRecord();
+    }
+
     /**
-     * getData fetches `length` data from the blocks pointed to by this DBRecord.
+     * getSegments fetches read-only views of the blocks pointed to by this DBRecord,
+     *   which together hold `length` bytes of data. No data is copied.
+     * Note, there's no structural checking performed to ensure the direct blocks are
+     *   valid.
+     * @param length The number of bytes to attempt to parse from the direct blocks.
+     * @return Views of the blocks, in order.
+     */
+    public List<ByteBuffer> getSegments(int length) throws RegistryParseException {
+        return this.getIndirectRecord().getSegments(length);
+    }
+
+    /**
+     * getData copies `length` data from the blocks pointed to by this DBRecord into a new buffer.
+     *   Prefer `getSegments`, which does not copy.
      * Note, there's no structural checking performed to ensure the direct blocks are
      *   valid.
      * @param length The number of bytes to attempt to parse from the direct blocks.
      * @return The bytes parsed from the blocks.
-     * @throws java.nio.BufferOverflowException if too much data is requested.
      */
     public ByteBuffer getData(int length) throws RegistryParseException {
-        int offset = (int)this.getDword(INDIRECT_BLOCK_OFFSET_OFFSET);
-        offset += REGFHeader.FIRST_HBIN_OFFSET;
-
-        Cell c = new Cell(this._buf, offset);
-        DBIndirectRecord dbi = c.getDBIndirectRecord();
-        return dbi.getData(length);
+        return this.getIndirectRecord().getData(length);
     }
 }
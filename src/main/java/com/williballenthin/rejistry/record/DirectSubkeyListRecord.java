@@ -1,6 +1,7 @@
 package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.Cell;
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.REGFHeader;
 import com.williballenthin.rejistry.RegistryParseException;
 
@@ -12,11 +13,70 @@ public class DirectSubkeyListRecord extends SubkeyListRecord {
     private final int LIST_START_OFFSET = 0x4;
     private final int _item_size;
 
-    public DirectSubkeyListRecord(ByteBuffer buf, int offset, int item_size) throws RegistryParseException {
+    public DirectSubkeyListRecord(HiveStorage buf, int offset, int item_size) throws RegistryParseException {
         super(buf, offset);
         this._item_size = item_size;
     }
 
+    public DirectSubkeyListRecord(ByteBuffer buf, int offset, int item_size) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset, item_size);
+    }
+
+    /**
+     * getSubkeyOffset fetches the offset of the NKRecord cell referenced by the entry at `index`.
+     * @param index The index of the entry in this list.
+     * @return The offset of the NKRecord cell, relative to the first HBIN.
+     */
+    protected int getSubkeyOffset(int index) {
+        return (int)this.getDword(LIST_START_OFFSET + (index * this._item_size));
+    }
+
+    /**
+     * getHint fetches the field that follows the cell offset in the entry at `index`.
+     *   For an "lh" list, this is a hash of the subkey name, and for an "lf" list, it is
+     *   the first four characters of the subkey name.
+     *   Only valid for lists with eight byte entries.
+     * @param index The index of the entry in this list.
+     * @return The hint of the entry.
+     */
+    protected long getHint(int index) {
+        return this.getDword(LIST_START_OFFSET + (index * this._item_size) + 0x4);
+    }
+
+    /**
+     * getSubkeyAtIndex fetches the NKRecord referenced by the entry at `index`.
+     * @param index The index of the entry in this list.
+     * @return The NKRecord referenced by the entry.
+     * @throws IndexOutOfBoundsException if the index is not within this list.
+     * @throws RegistryParseException if the NKRecord cannot be parsed.
+     */
+    public NKRecord getSubkeyAtIndex(int index) throws RegistryParseException {
+        if (index < 0 || index >= this.getListLength()) {
+            throw new IndexOutOfBoundsException("Invalid subkey list index: " + index);
+        }
+        Cell c = new Cell(this._buf, REGFHeader.FIRST_HBIN_OFFSET + this.getSubkeyOffset(index));
+        return c.getNKRecord();
+    }
+
+    /**
+     * getMatchingSubkeyAtIndex fetches the NKRecord referenced by the entry at `index`,
+     *   if its name matches `name` case-insensitively.
+     * @param index The index of the entry in this list.
+     * @param name The name of the subkey to match.
+     * @return The matching NKRecord, or null if the name does not match or cannot be parsed.
+     */
+    protected NKRecord getMatchingSubkeyAtIndex(int index, String name) {
+        try {
+            NKRecord r = this.getSubkeyAtIndex(index);
+            if (r.nameEqualsIgnoreCase(name)) {
+                return r;
+            }
+        } catch (RegistryParseException e) {
+            return null;
+        }
+        return null;
+    }
+
     public Iterator<NKRecord> getSubkeys() {
         return new Iterator<NKRecord>() {
             private int _index = 0;
@@ -29,12 +89,8 @@ public class DirectSubkeyListRecord extends SubkeyListRecord {
                     return false;
                 }
 
-                int rel_off = DirectSubkeyListRecord.this.LIST_START_OFFSET + (this._index * DirectSubkeyListRecord.this._item_size);
-                int offset = (int)DirectSubkeyListRecord.this.getDword(rel_off);
-                int parent_offset = REGFHeader.FIRST_HBIN_OFFSET + offset;
-                Cell c = new Cell(DirectSubkeyListRecord.this._buf, parent_offset);
                 try {
-                    this._next = c.getNKRecord();
+                    this._next = DirectSubkeyListRecord.this.getSubkeyAtIndex(this._index);
                 } catch (RegistryParseException e) {
                     return false;
                 }
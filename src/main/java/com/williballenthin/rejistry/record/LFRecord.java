@@ -1,8 +1,10 @@
 package com.williballenthin.rejistry.record;
 
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.RegistryParseException;
 
 import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
 
 public class LFRecord extends DirectSubkeyListRecord {
     public static final String MAGIC = "lf";
@@ -10,11 +12,65 @@ public class LFRecord extends DirectSubkeyListRecord {
     /**
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "lf".
      */
-    public LFRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public LFRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset, 0x8);
 
         if (!this.getMagic().equals(LFRecord.MAGIC)) {
             throw new RegistryParseException("LFRecord invalid magic header, expected \"lf\", got: " + this.getMagic());
         }
     }
+
+    public LFRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
+    /**
+     * hintMatches returns True if the four character name hint of an "lf" entry
+     *   could belong to a key named `name`. Characters outside the ASCII range
+     *   are not compared, and are left to the full name comparison.
+     * @param hint The hint from the entry, with the first character in the low byte.
+     * @param name The name of a key.
+     * @return False if the hint rules out the name, True otherwise.
+     */
+    static boolean hintMatches(long hint, String name) {
+        for (int i = 0; i < 4; i++) {
+            int h = (int)((hint >> (8 * i)) & 0xFF);
+            if (i >= name.length()) {
+                if (h != 0x0) {
+                    return false;
+                }
+                continue;
+            }
+            char c = name.charAt(i);
+            if (c > 0x7F || h > 0x7F) {
+                continue;
+            }
+            if (Character.toUpperCase((char)h) != Character.toUpperCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * getSubkey fetches the subkey with name `name` from the list of subkeys.
+     *   Only the entries whose name hint matches the start of `name` are parsed and compared.
+     * @param name The name of the subkey to fetch.
+     * @return The subkey with name `name` from the list of subkeys.
+     * @throws NoSuchElementException if a key with name `name` does not exist in this list.
+     */
+    @Override
+    public NKRecord getSubkey(String name) throws NoSuchElementException {
+        int count = this.getListLength();
+        for (int i = 0; i < count; i++) {
+            if ( ! hintMatches(this.getHint(i), name)) {
+                continue;
+            }
+            NKRecord r = this.getMatchingSubkeyAtIndex(i, name);
+            if (r != null) {
+                return r;
+            }
+        }
+        throw new NoSuchElementException("Cannot find subkey with name " + name);
+    }
 }
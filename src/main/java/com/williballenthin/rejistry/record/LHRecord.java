@@ -1,8 +1,10 @@
 package com.williballenthin.rejistry.record;
 
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.RegistryParseException;
 
 import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
 
 public class LHRecord extends DirectSubkeyListRecord {
     public static final String MAGIC = "lh";
@@ -10,11 +12,56 @@ public class LHRecord extends DirectSubkeyListRecord {
     /**
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "lh".
      */
-    public LHRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public LHRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset, 0x8);
 
         if (!this.getMagic().equals(LHRecord.MAGIC)) {
             throw new RegistryParseException("LHRecord invalid magic header, expected \"lh\", got: " + this.getMagic());
         }
     }
+
+    public LHRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
+    /**
+     * hashName computes the hash that Windows stores alongside each entry of an "lh" list.
+     *   It is computed over the upper cased characters of the name.
+     * @param name The name of a key.
+     * @return The hash of the name, as an unsigned 32bit number.
+     */
+    public static long hashName(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 37 * hash + Character.toUpperCase(name.charAt(i));
+        }
+        return hash & 0xFFFFFFFFL;
+    }
+
+    /**
+     * getSubkey fetches the subkey with name `name` from the list of subkeys.
+     *   Only the entries whose hash matches the hash of `name` are parsed and compared.
+     * @param name The name of the subkey to fetch.
+     * @return The subkey with name `name` from the list of subkeys.
+     * @throws NoSuchElementException if a key with name `name` does not exist in this list.
+     */
+    @Override
+    public NKRecord getSubkey(String name) throws NoSuchElementException {
+        if ( ! isAsciiName(name)) {
+            return super.getSubkey(name);
+        }
+
+        long hash = hashName(name);
+        int count = this.getListLength();
+        for (int i = 0; i < count; i++) {
+            if (this.getHint(i) != hash) {
+                continue;
+            }
+            NKRecord r = this.getMatchingSubkeyAtIndex(i, name);
+            if (r != null) {
+                return r;
+            }
+        }
+        throw new NoSuchElementException("Cannot find subkey with name " + name);
+    }
 }
@@ -1,5 +1,6 @@
 package com.williballenthin.rejistry.record;
 
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.RegistryParseException;
 
 import java.nio.ByteBuffer;
@@ -10,11 +11,15 @@ public class LIRecord extends DirectSubkeyListRecord {
     /**
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "li".
      */
-    public LIRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public LIRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset, 0x4);
 
         if (!this.getMagic().equals(LIRecord.MAGIC)) {
             throw new RegistryParseException("LIRecord invalid magic header, expected \"li\", got: " + this.getMagic());
         }
     }
+
+    public LIRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
 }
@@ -0,0 +1,217 @@
+package com.williballenthin.rejistry.record;
+
+import com.williballenthin.rejistry.HiveStorage;
+import com.williballenthin.rejistry.REGFHeader;
+import com.williballenthin.rejistry.RegistryParseException;
+import com.williballenthin.rejistry.U;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+/**
+ * NKCursor is a reusable view of NKRecords. See RecordCursor.
+ *   Its accessors mirror those of NKRecord, but references to other structures are
+ *   returned as cell offsets (relative to the first HBIN) rather than as new objects,
+ *   so that they may be followed with this, or another, cursor.
+ */
+public class NKCursor extends RecordCursor {
+    private static final int LIST_LENGTH_OFFSET = 0x2;
+    private static final int LIST_START_OFFSET = 0x4;
+
+    public NKCursor(HiveStorage buf) {
+        super(buf);
+    }
+
+    public NKCursor(ByteBuffer buf) {
+        this(HiveStorage.wrap(buf));
+    }
+
+    @Override
+    protected String getMagic() {
+        return NKRecord.MAGIC;
+    }
+
+    @Override
+    protected int getMinimumLength() {
+        return NKRecord.NAME_OFFSET;
+    }
+
+    /**
+     * moveToParent positions this cursor at the parent of the current key.
+     * @return True if the cursor now points at the parent key.
+     */
+    public boolean moveToParent() {
+        if (this.isRootKey()) {
+            return this.moveTo(-1);
+        }
+        return this.moveTo(this.getParentOffset());
+    }
+
+    public boolean isRootKey() {
+        return this.getWord(NKRecord.FLAGS_OFFSET) == 0x2C;
+    }
+
+    public boolean hasAsciiName() {
+        return (this.getWord(NKRecord.FLAGS_OFFSET) & NKRecord.FLAG_COMPRESSED_NAME) == NKRecord.FLAG_COMPRESSED_NAME;
+    }
+
+    /**
+     * getNameLength fetches the length in bytes of the name of the current key, as stored.
+     */
+    public int getNameLength() {
+        return this.getWord(NKRecord.NAME_LENGTH_OFFSET);
+    }
+
+    /**
+     * getName decodes the name of the current key. Unlike the other accessors, this allocates.
+     * @throws UnsupportedEncodingException if the name cannot be decoded.
+     */
+    public String getName() throws UnsupportedEncodingException {
+        int length = this.getNameLength();
+        if (this.hasAsciiName()) {
+            return U.parseASCIIString(this._buf, this.getOffset() + NKRecord.NAME_OFFSET, length);
+        } else {
+            return U.parseWString(this._buf, this.getOffset() + NKRecord.NAME_OFFSET, length);
+        }
+    }
+
+    /**
+     * nameEqualsIgnoreCase compares the name of the current key with `name`, case-insensitively, in place.
+     */
+    public boolean nameEqualsIgnoreCase(String name) {
+        int length = this.getNameLength();
+        if (this.hasAsciiName()) {
+            return U.asciiEqualsIgnoreCase(this._buf, this.getOffset() + NKRecord.NAME_OFFSET, length, name);
+        } else {
+            return U.wstringEqualsIgnoreCase(this._buf, this.getOffset() + NKRecord.NAME_OFFSET, length, name);
+        }
+    }
+
+    /**
+     * getTimestampFiletime fetches the modification timestamp of the current key as the raw
+     *   Windows FILETIME: the number of 100 nanosecond intervals since 1601-01-01T00:00:00Z.
+     */
+    public long getTimestampFiletime() {
+        return this.getQword(NKRecord.TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * getParentOffset fetches the cell offset of the parent key, relative to the first HBIN.
+     */
+    public int getParentOffset() {
+        return (int)this.getDword(NKRecord.PARENT_RECORD_OFFSET_OFFSET);
+    }
+
+    /**
+     * getSecurityRecordOffset fetches the cell offset of the SKRecord of the current key, relative to the first HBIN,
+     *   or -1 if it has none.
+     */
+    public int getSecurityRecordOffset() {
+        return (int)this.getDword(NKRecord.SECURITY_RECORD_OFFSET_OFFSET);
+    }
+
+    public int getSubkeyCount() {
+        int num = (int)this.getDword(NKRecord.SUBKEY_NUMBER_OFFSET);
+        return num == 0xFFFFFFFF ? 0 : num;
+    }
+
+    public int getNumberOfValues() {
+        int num = (int)this.getDword(NKRecord.VALUES_NUMBER_OFFSET);
+        return num == 0xFFFFFFFF ? 0 : num;
+    }
+
+    /**
+     * getSubkeyListOffset fetches the cell offset of the subkey list, relative to the first HBIN.
+     *   Only meaningful if the key has subkeys.
+     */
+    public int getSubkeyListOffset() {
+        return (int)this.getDword(NKRecord.SUBKEY_LIST_OFFSET_OFFSET);
+    }
+
+    /**
+     * getValueListOffset fetches the cell offset of the value list, relative to the first HBIN.
+     *   Only meaningful if the key has values.
+     */
+    public int getValueListOffset() {
+        return (int)this.getDword(NKRecord.VALUE_LIST_OFFSET_OFFSET);
+    }
+
+    /**
+     * getClassnameOffset fetches the cell offset of the class name, relative to the first HBIN.
+     *   Only meaningful if `getClassnameLength` is not zero.
+     */
+    public int getClassnameOffset() {
+        return (int)this.getDword(NKRecord.CLASSNAME_OFFSET_OFFSET);
+    }
+
+    public int getClassnameLength() {
+        return this.getWord(NKRecord.CLASSNAME_LENGTH_OFFSET);
+    }
+
+    /**
+     * readSubkeyOffsets copies the cell offsets of the subkeys of the current key into `dest`.
+     *   "lf", "lh", "li", and "ri" subkey lists are supported.
+     *   Reuse the array across calls to avoid allocating; size it using `getSubkeyCount`.
+     *
+     * @param dest The array into which to copy the offsets, relative to the first HBIN.
+     * @return The number of offsets copied, which is at most the length of `dest`.
+     * @throws RegistryParseException if a subkey list has an unexpected type.
+     */
+    public int readSubkeyOffsets(int[] dest) throws RegistryParseException {
+        if (this.getSubkeyCount() == 0) {
+            return 0;
+        }
+        return this.readSubkeyList(this.getSubkeyListOffset(), dest, 0, true);
+    }
+
+    private int readSubkeyList(int cellOffset, int[] dest, int count, boolean allowIndexRoot) throws RegistryParseException {
+        int list = REGFHeader.FIRST_HBIN_OFFSET + cellOffset + CELL_HEADER_SIZE;
+        byte m0 = this._buf.get(list);
+        byte m1 = this._buf.get(list + 1);
+        int length = this._buf.getShort(list + LIST_LENGTH_OFFSET) & 0xFFFF;
+
+        int itemSize;
+        if (m0 == 'l' && (m1 == 'f' || m1 == 'h')) {
+            itemSize = 0x8;
+        } else if (m0 == 'l' && m1 == 'i') {
+            itemSize = 0x4;
+        } else if (m0 == 'r' && m1 == 'i' && allowIndexRoot) {
+            for (int i = 0; i < length && count < dest.length; i++) {
+                int sublist = this._buf.getInt(list + LIST_START_OFFSET + (0x4 * i));
+                count = this.readSubkeyList(sublist, dest, count, false);
+            }
+            return count;
+        } else {
+            throw new RegistryParseException("Unexpected subkey list type at cell offset: " + cellOffset);
+        }
+
+        for (int i = 0; i < length && count < dest.length; i++) {
+            dest[count++] = this._buf.getInt(list + LIST_START_OFFSET + (itemSize * i));
+        }
+        return count;
+    }
+
+    /**
+     * readValueOffsets copies the cell offsets of the values of the current key into `dest`.
+     *   Reuse the array across calls to avoid allocating; size it using `getNumberOfValues`.
+     *
+     * @param dest The array into which to copy the offsets, relative to the first HBIN.
+     * @return The number of offsets copied, which is at most the length of `dest`.
+     */
+    public int readValueOffsets(int[] dest) {
+        int count = Math.min(this.getNumberOfValues(), dest.length);
+        int list = REGFHeader.FIRST_HBIN_OFFSET + this.getValueListOffset() + CELL_HEADER_SIZE;
+        for (int i = 0; i < count; i++) {
+            dest[i] = this._buf.getInt(list + (0x4 * i));
+        }
+        return count;
+    }
+
+    /**
+     * toRecord creates an NKRecord for the current key, for access to the full API.
+     * @throws RegistryParseException if the NKRecord cannot be parsed.
+     */
+    public NKRecord toRecord() throws RegistryParseException {
+        return new NKRecord(this._buf, this.getOffset());
+    }
+}
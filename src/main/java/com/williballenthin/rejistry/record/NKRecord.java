@@ -4,24 +4,28 @@ import com.williballenthin.rejistry.*;
 
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.Calendar;
+import java.util.NoSuchElementException;
 
 /**
  * NKRecord is the structure that backs a Registry key. It has a name, and may have values and subkeys.
  */
 public class NKRecord extends Record {
     public static final String MAGIC = "nk";
-    private static final int IS_ROOT_OFFSET = 0x02;
-    private static final int TIMESTAMP_OFFSET = 0x04;
-    private static final int PARENT_RECORD_OFFSET_OFFSET = 0x10;
-    private static final int SUBKEY_NUMBER_OFFSET = 0x14;
-    private static final int SUBKEY_LIST_OFFSET_OFFSET = 0x1C;
-    private static final int VALUES_NUMBER_OFFSET = 0x24;
-    private static final int VALUE_LIST_OFFSET_OFFSET = 0x28;
-    private static final int CLASSNAME_OFFSET_OFFSET = 0x30;
-    private static final int NAME_LENGTH_OFFSET = 0x48;
-    private static final int CLASSNAME_LENGTH_OFFSET = 0x4A;
-    private static final int NAME_OFFSET = 0x4C;
+    static final int FLAGS_OFFSET = 0x02;
+    static final int TIMESTAMP_OFFSET = 0x04;
+    static final int PARENT_RECORD_OFFSET_OFFSET = 0x10;
+    static final int SUBKEY_NUMBER_OFFSET = 0x14;
+    static final int SUBKEY_LIST_OFFSET_OFFSET = 0x1C;
+    static final int VALUES_NUMBER_OFFSET = 0x24;
+    static final int VALUE_LIST_OFFSET_OFFSET = 0x28;
+    static final int SECURITY_RECORD_OFFSET_OFFSET = 0x2C;
+    static final int CLASSNAME_OFFSET_OFFSET = 0x30;
+    static final int NAME_LENGTH_OFFSET = 0x48;
+    static final int CLASSNAME_LENGTH_OFFSET = 0x4A;
+    static final int NAME_OFFSET = 0x4C;
+    static final int FLAG_COMPRESSED_NAME = 0x20;
 
     /**
      *
@@ -29,7 +33,7 @@ public class NKRecord extends Record {
      * @param offset
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "nk".
      */
-    public NKRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public NKRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset);
 
         if (!this.getMagic().equals(NKRecord.MAGIC)) {
@@ -37,6 +41,10 @@ public class NKRecord extends Record {
         }
     }
 
+    public NKRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * hasClassname returns True if the key has a classname.
      * @return True if the NKRecord has a classname.
@@ -78,23 +86,68 @@ public class NKRecord extends Record {
         return this.getWindowsTimestamp(TIMESTAMP_OFFSET);
     }
 
+    /**
+     * getTimestampFiletime fetches the modification timestamp of the NKRecord as the raw Windows FILETIME:
+     *   the number of 100 nanosecond intervals since 1601-01-01T00:00:00Z. Unlike `getTimestamp`, this does not allocate,
+     *   so prefer it for sorting and comparing many keys.
+     */
+    public long getTimestampFiletime() {
+        return this.getQword(TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * getTimestampInstant fetches the modification timestamp of the NKRecord, with 100 nanosecond precision.
+     */
+    public Instant getTimestampInstant() {
+        return this.getWindowsInstant(TIMESTAMP_OFFSET);
+    }
+
     /**
      * isRootKey returns True if the key is a root key.
      * @return True if the NKRecord is a root record.
      */
     public boolean isRootKey() {
-        return this.getWord(IS_ROOT_OFFSET) == 0x2C;
+        return this.getWord(FLAGS_OFFSET) == 0x2C;
+    }
+
+    /**
+     * hasAsciiName returns True if the key name is stored compressed, as one byte per character.
+     *   Otherwise, the key name is stored as UTF-16LE.
+     * @return True if the key name is stored as ASCII, False for UTF-16LE.
+     */
+    public boolean hasAsciiName() {
+        return (this.getWord(FLAGS_OFFSET) & FLAG_COMPRESSED_NAME) == FLAG_COMPRESSED_NAME;
     }
 
     /**
      * getName fetches the name of the Registry key represented by this NKRecord. It is not the
      *   full path, but a single path component.
      * @return The name of the associated Registry key.
-     * @throws UnsupportedEncodingException if the ASCII name of the NKRecord cannot be decoded.
+     * @throws UnsupportedEncodingException if the name of the NKRecord cannot be decoded.
      */
     public String getName() throws UnsupportedEncodingException {
         int length = this.getWord(NAME_LENGTH_OFFSET);
-        return this.getASCIIString(NAME_OFFSET, length);
+        if (this.hasAsciiName()) {
+            return this.getASCIIString(NAME_OFFSET, length);
+        } else {
+            return this.getWString(NAME_OFFSET, length);
+        }
+    }
+
+    /**
+     * nameEqualsIgnoreCase compares the name of this key with `name`, case-insensitively.
+     *   This reads the name in place, so it does not allocate, and is cheaper than
+     *   `getName().equalsIgnoreCase(name)`.
+     * @param name The name to compare against.
+     * @return True if this key has the name `name`, ignoring case.
+     */
+    public boolean nameEqualsIgnoreCase(String name) {
+        int length = this.getWord(NAME_LENGTH_OFFSET);
+        if (this.hasAsciiName()) {
+            return this.asciiEqualsIgnoreCase(NAME_OFFSET, length, name);
+        } else {
+            return this.wstringEqualsIgnoreCase(NAME_OFFSET, length, name);
+        }
     }
 
     /**
@@ -127,6 +180,37 @@ public class NKRecord extends Record {
         return c.getNKRecord();
     }
 
+    /**
+     * hasSecurityRecord returns True if the key references an SKRecord.
+     * @return True if the key has a security descriptor.
+     */
+    public boolean hasSecurityRecord() {
+        return this.getDword(SECURITY_RECORD_OFFSET_OFFSET) != 0xFFFFFFFFL;
+    }
+
+    /**
+     * getSecurityRecordOffset fetches the cell offset of the SKRecord of this key, relative to the first HBIN.
+     *   Keys with the same security descriptor share an SKRecord, so the offset identifies the descriptor.
+     * @throws NoSuchElementException if the key has no security descriptor.
+     */
+    public int getSecurityRecordOffset() throws NoSuchElementException {
+        if ( ! this.hasSecurityRecord()) {
+            throw new NoSuchElementException("Registry Key has no security descriptor");
+        }
+        return (int)this.getDword(SECURITY_RECORD_OFFSET_OFFSET);
+    }
+
+    /**
+     * getSecurityRecord fetches the SKRecord that holds the security descriptor of this key.
+     * @return The SKRecord of this key.
+     * @throws NoSuchElementException if the key has no security descriptor.
+     * @throws RegistryParseException If the SKRecord cannot be parsed from the cell data.
+     */
+    public SKRecord getSecurityRecord() throws RegistryParseException {
+        Cell c = new Cell(this._buf, REGFHeader.FIRST_HBIN_OFFSET + this.getSecurityRecordOffset());
+        return c.getSKRecord();
+    }
+
     /**
      * getNumberOfValues fetches the number of values the key has.
      * @return the number of values the key has.
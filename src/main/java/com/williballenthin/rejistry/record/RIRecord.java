@@ -2,6 +2,7 @@ package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.*;
 
+import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -14,7 +15,7 @@ public class RIRecord extends SubkeyListRecord {
     /**
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "ri".
      */
-    public RIRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public RIRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset);
 
         if (!this.getMagic().equals(RIRecord.MAGIC)) {
@@ -22,12 +23,84 @@ public class RIRecord extends SubkeyListRecord {
         }
     }
 
+    public RIRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
+    /**
+     * getSubkeyListAtIndex fetches the SubkeyList referenced by the entry at `index`.
+     * @param index The index of the entry in this list.
+     * @return The SubkeyList referenced by the entry.
+     * @throws RegistryParseException if the SubkeyList cannot be parsed.
+     */
+    private SubkeyList getSubkeyListAtIndex(int index) throws RegistryParseException {
+        int offset = (int)(this.getDword(RIRecord.LIST_START_OFFSET + (index * RIRecord.LIST_ENTRY_SIZE)));
+        Cell c = new Cell(this._buf, REGFHeader.FIRST_HBIN_OFFSET + offset);
+        return c.getSubkeyList();
+    }
+
+    /**
+     * getLastSubkeyName fetches the name of the final subkey in the SubkeyList at `index`.
+     *   Since Windows keeps the sublists sorted, this is the greatest name in the sublist.
+     * @param index The index of the entry in this list.
+     * @return The name of the final subkey of the sublist.
+     * @throws RegistryParseException if the sublist is empty or not a direct subkey list.
+     */
+    private String getLastSubkeyName(int index) throws RegistryParseException, UnsupportedEncodingException {
+        SubkeyList list = this.getSubkeyListAtIndex(index);
+        if ( ! (list instanceof DirectSubkeyListRecord)) {
+            throw new RegistryParseException("Unexpected nested subkey list in RIRecord");
+        }
+        DirectSubkeyListRecord direct = (DirectSubkeyListRecord)list;
+        if (direct.getListLength() == 0) {
+            throw new RegistryParseException("Unexpected empty subkey list in RIRecord");
+        }
+        return direct.getSubkeyAtIndex(direct.getListLength() - 1).getName();
+    }
+
+    /**
+     * getSubkey fetches the subkey with name `name` from the list of subkeys.
+     *   The sublists are binary searched by their final entries, so only one
+     *   sublist is scanned. If the sublists are not in the expected form, this
+     *   falls back to a scan of every subkey.
+     * @param name The name of the subkey to fetch.
+     * @return The subkey with name `name` from the list of subkeys.
+     * @throws NoSuchElementException if a key with name `name` does not exist in this list.
+     */
+    @Override
+    public NKRecord getSubkey(String name) throws NoSuchElementException {
+        if ( ! isAsciiName(name) || this.getListLength() == 0) {
+            return super.getSubkey(name);
+        }
+
+        SubkeyList candidate;
+        try {
+            // find the first sublist whose final entry sorts at or after `name`
+            int lo = 0;
+            int hi = this.getListLength() - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compareNames(this.getLastSubkeyName(mid), name) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            candidate = this.getSubkeyListAtIndex(lo);
+        } catch (RegistryParseException e) {
+            return super.getSubkey(name);
+        } catch (UnsupportedEncodingException e) {
+            return super.getSubkey(name);
+        }
+        return candidate.getSubkey(name);
+    }
+
     /**
      * getSubkeyLists returns an iterator over each of the SubkeyLists pointed to by this RIRecord.
      *   Since an RIRecord is like an indirect block, this iterates over an instance's direct blocks.
      * @return an iterator over each of the SubkeyLists pointed to by this RIRecord.
      */
-    private Iterator<SubkeyList> getSubkeyLists() {
+    public Iterator<SubkeyList> getSubkeyLists() {
         return new Iterator<SubkeyList>() {
             private int _index = 0;
             private int _max_index = RIRecord.this.getListLength();
@@ -39,11 +112,8 @@ public class RIRecord extends SubkeyListRecord {
                     return false;
                 }
 
-                int offset = (int)(RIRecord.this.getDword(RIRecord.LIST_START_OFFSET + (this._index * RIRecord.LIST_ENTRY_SIZE)));
-                int parent_offset = REGFHeader.FIRST_HBIN_OFFSET + offset;
-                Cell c = new Cell(RIRecord.this._buf, parent_offset);
                 try {
-                    this._next = c.getSubkeyList();
+                    this._next = RIRecord.this.getSubkeyListAtIndex(this._index);
                 } catch (RegistryParseException e) {
                     return false;
                 }
@@ -1,6 +1,8 @@
 package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.BinaryBlock;
+import com.williballenthin.rejistry.HiveStorage;
+import com.williballenthin.rejistry.REGFHeader;
 import com.williballenthin.rejistry.RegistryParseException;
 
 import java.io.UnsupportedEncodingException;
@@ -13,11 +15,16 @@ import java.nio.ByteBuffer;
 public class Record extends BinaryBlock {
 
     private static final int MAGIC_OFFSET = 0x0;
+    private static final int CELL_HEADER_SIZE = 0x4;
 
-    public Record(ByteBuffer buf, int offset) {
+    public Record(HiveStorage buf, int offset) {
         super(buf, offset);
     }
 
+    public Record(ByteBuffer buf, int offset) {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * getMagic fetches the magic bytes that determine this
      * Record's type.
@@ -34,4 +41,15 @@ public class Record extends BinaryBlock {
             throw new RegistryParseException("Unexpected magic header.");
         }
     }
+
+    /**
+     * getCellOffset fetches the offset of the Cell that contains this Record, relative to
+     *   the first HBIN. This is the form in which other structures in the hive refer to
+     *   this Record, and may be passed to `REGFHeader.getCellAtOffset`.
+     *
+     * @return The offset of the containing Cell, relative to the first HBIN.
+     */
+    public int getCellOffset() {
+        return this._offset - CELL_HEADER_SIZE - REGFHeader.FIRST_HBIN_OFFSET;
+    }
 }
@@ -0,0 +1,107 @@
+package com.williballenthin.rejistry.record;
+
+import com.williballenthin.rejistry.HiveStorage;
+import com.williballenthin.rejistry.REGFHeader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RecordCursor is a reusable view of a Record that can be moved from cell to cell.
+ *   Where the Record classes allocate a new object for each structure they parse,
+ *   a scan over many structures needs just one cursor, so bulk scans allocate a constant
+ *   number of objects regardless of the size of the hive.
+ * Like the Records, a cursor only reads the hive storage with absolute accesses.
+ *   However, the cursor itself is mutable, so each thread should use its own.
+ */
+public abstract class RecordCursor {
+    protected static final int CELL_HEADER_SIZE = 0x4;
+    private static final int INVALID_OFFSET = -1;
+
+    ///< The backing bytes of the hive. This storage may be shared across many instances.
+    protected final HiveStorage _buf;
+    ///< The absolute offset of the current record, or INVALID_OFFSET.
+    private int _offset = INVALID_OFFSET;
+
+    protected RecordCursor(HiveStorage buf) {
+        this._buf = buf;
+    }
+
+    protected RecordCursor(ByteBuffer buf) {
+        this(HiveStorage.wrap(buf));
+    }
+
+    /**
+     * getMagic fetches the two character signature of the records this cursor reads.
+     */
+    protected abstract String getMagic();
+
+    /**
+     * getMinimumLength fetches the number of bytes a record must span to be read by this cursor.
+     */
+    protected abstract int getMinimumLength();
+
+    /**
+     * moveTo positions this cursor at the record contained by the cell at `cellOffset`.
+     *   If the cell does not contain a record of the expected type, the cursor is left invalid.
+     *
+     * @param cellOffset The offset of the cell, relative to the first HBIN.
+     * @return True if the cursor now points at a valid record.
+     */
+    public boolean moveTo(int cellOffset) {
+        this._offset = INVALID_OFFSET;
+        if (cellOffset < 0) {
+            return false;
+        }
+        long offset = (long)REGFHeader.FIRST_HBIN_OFFSET + cellOffset + CELL_HEADER_SIZE;
+        if (offset + this.getMinimumLength() > this._buf.capacity()) {
+            return false;
+        }
+        String magic = this.getMagic();
+        if (this._buf.get((int)offset) != magic.charAt(0) || this._buf.get((int)offset + 1) != magic.charAt(1)) {
+            return false;
+        }
+        this._offset = (int)offset;
+        return true;
+    }
+
+    /**
+     * isValid returns True if the cursor points at a record.
+     */
+    public boolean isValid() {
+        return this._offset != INVALID_OFFSET;
+    }
+
+    /**
+     * getCellOffset fetches the offset of the cell containing the current record,
+     *   relative to the first HBIN.
+     *
+     * @throws IllegalStateException if the cursor does not point at a record.
+     */
+    public int getCellOffset() {
+        return this.getOffset() - CELL_HEADER_SIZE - REGFHeader.FIRST_HBIN_OFFSET;
+    }
+
+    /**
+     * getOffset fetches the absolute offset of the current record.
+     *
+     * @throws IllegalStateException if the cursor does not point at a record.
+     */
+    protected int getOffset() {
+        if (this._offset == INVALID_OFFSET) {
+            throw new IllegalStateException("Cursor does not point at a record");
+        }
+        return this._offset;
+    }
+
+    protected int getWord(int offset) {
+        return this._buf.getShort(this.getOffset() + offset) & 0xFFFF;
+    }
+
+    protected long getDword(int offset) {
+        return this._buf.getInt(this.getOffset() + offset) & 0xFFFFFFFFL;
+    }
+
+    protected long getQword(int offset) {
+        return this._buf.getLong(this.getOffset() + offset);
+    }
+}
@@ -0,0 +1,85 @@
+package com.williballenthin.rejistry.record;
+
+import com.williballenthin.rejistry.HiveStorage;
+import com.williballenthin.rejistry.RegistryParseException;
+import com.williballenthin.rejistry.SecurityDescriptor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SKRecord is the structure that holds a security descriptor. Keys with the same descriptor share a
+ *   single SKRecord, which counts the keys that reference it. The SKRecords of a hive form a circular,
+ *   doubly linked list.
+ */
+public class SKRecord extends Record {
+    public static final String MAGIC = "sk";
+    static final int PREVIOUS_RECORD_OFFSET_OFFSET = 0x4;
+    static final int NEXT_RECORD_OFFSET_OFFSET = 0x8;
+    static final int REFERENCE_COUNT_OFFSET = 0xC;
+    static final int DESCRIPTOR_LENGTH_OFFSET = 0x10;
+    static final int DESCRIPTOR_OFFSET = 0x14;
+
+    /**
+     * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "sk".
+     */
+    public SKRecord(HiveStorage buf, int offset) throws RegistryParseException {
+        super(buf, offset);
+
+        if (!this.getMagic().equals(SKRecord.MAGIC)) {
+            throw new RegistryParseException("SKRecord invalid magic header, expected \"sk\", got: " + this.getMagic());
+        }
+    }
+
+    public SKRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
+    /**
+     * getPreviousRecordOffset fetches the cell offset of the previous SKRecord in the list, relative to the first HBIN.
+     */
+    public int getPreviousRecordOffset() {
+        return (int)this.getDword(PREVIOUS_RECORD_OFFSET_OFFSET);
+    }
+
+    /**
+     * getNextRecordOffset fetches the cell offset of the next SKRecord in the list, relative to the first HBIN.
+     */
+    public int getNextRecordOffset() {
+        return (int)this.getDword(NEXT_RECORD_OFFSET_OFFSET);
+    }
+
+    /**
+     * getReferenceCount fetches the number of keys that use this security descriptor.
+     */
+    public long getReferenceCount() {
+        return this.getDword(REFERENCE_COUNT_OFFSET);
+    }
+
+    /**
+     * getDescriptorLength fetches the size in bytes of the self-relative security descriptor.
+     */
+    public int getDescriptorLength() {
+        return (int)this.getDword(DESCRIPTOR_LENGTH_OFFSET);
+    }
+
+    /**
+     * getDescriptorData fetches a read-only view of the self-relative security descriptor. No data is copied.
+     * @throws RegistryParseException if the descriptor overruns the hive.
+     */
+    public ByteBuffer getDescriptorData() throws RegistryParseException {
+        int length = this.getDescriptorLength();
+        if (length < 0 || (long)this.getAbsoluteOffset(DESCRIPTOR_OFFSET) + length > this._buf.capacity()) {
+            throw new RegistryParseException("Security descriptor overruns the hive: " + length);
+        }
+        return this.getSlice(DESCRIPTOR_OFFSET, length);
+    }
+
+    /**
+     * getSecurityDescriptor parses the security descriptor. Prefer `SecurityDescriptorCache`,
+     *   which parses each SKRecord only once, when visiting many keys.
+     * @throws RegistryParseException if the descriptor is malformed.
+     */
+    public SecurityDescriptor getSecurityDescriptor() throws RegistryParseException {
+        return new SecurityDescriptor(this.getDescriptorData());
+    }
+}
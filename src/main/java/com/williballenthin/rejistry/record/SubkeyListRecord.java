@@ -1,6 +1,7 @@
 package com.williballenthin.rejistry.record;
 
-import java.io.UnsupportedEncodingException;
+import com.williballenthin.rejistry.HiveStorage;
+
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -8,10 +9,14 @@ import java.util.NoSuchElementException;
 public abstract class SubkeyListRecord extends Record implements SubkeyList {
     private static final int LIST_LENGTH_OFFSET = 0x2;
 
-    public SubkeyListRecord(ByteBuffer buf, int offset) {
+    public SubkeyListRecord(HiveStorage buf, int offset) {
         super(buf, offset);
     }
 
+    public SubkeyListRecord(ByteBuffer buf, int offset) {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * getListLength fetches the number of subkeys this list has.
      * @return the number of subkeys this list has.
@@ -37,14 +42,43 @@ public abstract class SubkeyListRecord extends Record implements SubkeyList {
         Iterator<NKRecord> it = this.getSubkeys();
         while (it.hasNext()) {
             NKRecord r = it.next();
-            try {
-                if (r.getName().equalsIgnoreCase(name)) {
-                    return r;
-                }
-            } catch (UnsupportedEncodingException e) {
-                continue;
+            if (r.nameEqualsIgnoreCase(name)) {
+                return r;
             }
         }
         throw new NoSuchElementException("Cannot find subkey with name " + name);
     }
+
+    /**
+     * isAsciiName returns True if all the characters of `name` fall within the ASCII range.
+     *   Windows and Java agree on how to upper case these characters, so names hashes,
+     *   hints, and sort orders computed here match those found in the hive.
+     * @param name The name to inspect.
+     * @return True if the name is entirely ASCII.
+     */
+    protected static boolean isAsciiName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * compareNames orders two key names the way Windows sorts subkey lists:
+     *   character by character, after converting each to upper case.
+     * @return A negative number, zero, or a positive number as `a` sorts before, with, or after `b`.
+     */
+    protected static int compareNames(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = Character.toUpperCase(a.charAt(i));
+            char cb = Character.toUpperCase(b.charAt(i));
+            if (ca != cb) {
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
 }
@@ -0,0 +1,208 @@
+package com.williballenthin.rejistry.record;
+
+import com.williballenthin.rejistry.HiveStorage;
+import com.williballenthin.rejistry.REGFHeader;
+import com.williballenthin.rejistry.RegistryParseException;
+import com.williballenthin.rejistry.RegistryValueType;
+import com.williballenthin.rejistry.U;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * VKCursor is a reusable view of VKRecords. See RecordCursor.
+ *   Numeric values can be read without allocating; for other data, use `toRecord`.
+ */
+public class VKCursor extends RecordCursor {
+
+    public VKCursor(HiveStorage buf) {
+        super(buf);
+    }
+
+    public VKCursor(ByteBuffer buf) {
+        this(HiveStorage.wrap(buf));
+    }
+
+    @Override
+    protected String getMagic() {
+        return VKRecord.MAGIC;
+    }
+
+    @Override
+    protected int getMinimumLength() {
+        return VKRecord.NAME_OFFSET_OFFSET;
+    }
+
+    public boolean hasName() {
+        return this.getWord(VKRecord.NAME_LENGTH_OFFSET) != 0x0;
+    }
+
+    public boolean hasAsciiName() {
+        return (this.getWord(VKRecord.NAME_FLAGS_OFFSET) & 0x1) == 0x1;
+    }
+
+    /**
+     * getNameLength fetches the length in bytes of the name of the current value, as stored.
+     */
+    public int getNameLength() {
+        return this.getWord(VKRecord.NAME_LENGTH_OFFSET);
+    }
+
+    /**
+     * getName decodes the name of the current value. Unlike the other accessors, this allocates.
+     * @throws UnsupportedEncodingException if the name cannot be decoded.
+     */
+    public String getName() throws UnsupportedEncodingException {
+        if ( ! this.hasName()) {
+            return "";
+        }
+        int length = this.getNameLength();
+        if (this.hasAsciiName()) {
+            return U.parseASCIIString(this._buf, this.getOffset() + VKRecord.NAME_OFFSET_OFFSET, length);
+        } else {
+            return U.parseWString(this._buf, this.getOffset() + VKRecord.NAME_OFFSET_OFFSET, length);
+        }
+    }
+
+    /**
+     * nameEqualsIgnoreCase compares the name of the current value with `name`, case-insensitively, in place.
+     */
+    public boolean nameEqualsIgnoreCase(String name) {
+        if ( ! this.hasName()) {
+            return name.length() == 0;
+        }
+        int length = this.getNameLength();
+        if (this.hasAsciiName()) {
+            return U.asciiEqualsIgnoreCase(this._buf, this.getOffset() + VKRecord.NAME_OFFSET_OFFSET, length, name);
+        } else {
+            return U.wstringEqualsIgnoreCase(this._buf, this.getOffset() + VKRecord.NAME_OFFSET_OFFSET, length, name);
+        }
+    }
+
+    /**
+     * getValueTypeCode fetches the type of the current value as the raw integer found in the hive.
+     */
+    public int getValueTypeCode() {
+        return (int)this.getDword(VKRecord.VALUE_TYPE_OFFSET);
+    }
+
+    /**
+     * getValueType fetches the type of the current value.
+     * @throws RegistryParseException if the value type is not recognized as valid.
+     */
+    public RegistryValueType getValueType() throws RegistryParseException {
+        try {
+            return RegistryValueType.valueOf(this.getValueTypeCode());
+        } catch (IllegalArgumentException e) {
+            throw new RegistryParseException("Unexpected Registry value type: " + this.getValueTypeCode());
+        }
+    }
+
+    public long getRawDataLength() {
+        return this.getDword(VKRecord.DATA_LENGTH_OFFSET);
+    }
+
+    /**
+     * getDataLength fetches the length of the value data. See `VKRecord.getDataLength`.
+     */
+    public long getDataLength() {
+        long size = this.getRawDataLength();
+        if (size > VKRecord.LARGE_DATA_SIZE) {
+            size -= VKRecord.LARGE_DATA_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * isDataResident returns True if the value data is stored within the VKRecord itself.
+     */
+    public boolean isDataResident() {
+        return this.getRawDataLength() >= VKRecord.LARGE_DATA_SIZE;
+    }
+
+    /**
+     * getDataCellOffset fetches the cell offset of the value data, relative to the first HBIN.
+     *   Only meaningful if the data is not resident.
+     */
+    public int getDataCellOffset() {
+        return (int)this.getDword(VKRecord.DATA_OFFSET_OFFSET);
+    }
+
+    /**
+     * getNumber fetches the data of a REG_DWORD, REG_BIG_ENDIAN, or REG_QWORD value, without allocating.
+     * @return The value data as a number.
+     * @throws IllegalArgumentException if the value is not one of the numeric types.
+     */
+    public long getNumber() {
+        int type = this.getValueTypeCode();
+        if (type == RegistryValueType.REG_DWORD.getValue()) {
+            return this.getDword(VKRecord.DATA_OFFSET_OFFSET);
+        } else if (type == RegistryValueType.REG_BIG_ENDIAN.getValue()) {
+            return Integer.reverseBytes((int)this.getDword(VKRecord.DATA_OFFSET_OFFSET)) & 0xFFFFFFFFL;
+        } else if (type == RegistryValueType.REG_QWORD.getValue()) {
+            if (this.isDataResident()) {
+                return this.getDword(VKRecord.DATA_OFFSET_OFFSET);
+            }
+            int data = REGFHeader.FIRST_HBIN_OFFSET + this.getDataCellOffset() + CELL_HEADER_SIZE;
+            return this._buf.getLong(data);
+        } else {
+            throw new IllegalArgumentException("Cannot parse Number from value type " + type);
+        }
+    }
+
+    /**
+     * readData copies the data of the current value into `dest`, starting at `destOffset`.
+     *   Resident data and data in a single cell are copied straight from the hive; the segments
+     *   of big data are located via `VKRecord.openChannel`. Size `dest` using `getDataLength`.
+     *
+     * @return The number of bytes copied, which is at most the room remaining in `dest`.
+     * @throws RegistryParseException if the value data cannot be located.
+     */
+    public int readData(byte[] dest, int destOffset) throws RegistryParseException {
+        long raw = this.getRawDataLength();
+        int room = dest.length - destOffset;
+        int start;
+        int length;
+        if (raw >= VKRecord.LARGE_DATA_SIZE && raw - VKRecord.LARGE_DATA_SIZE <= 0x4) {
+            start = this.getOffset() + VKRecord.DATA_OFFSET_OFFSET;
+            length = (int)(raw - VKRecord.LARGE_DATA_SIZE);
+        } else if (raw < VKRecord.SMALL_DATA_SIZE) {
+            // see `VKRecord.getDataOffset`
+            start = this.getOffset() + VKRecord.DATA_OFFSET_OFFSET;
+            length = (int)raw;
+        } else if (raw <= VKRecord.DB_DATA_SIZE) {
+            start = REGFHeader.FIRST_HBIN_OFFSET + this.getDataCellOffset() + CELL_HEADER_SIZE;
+            length = (int)raw;
+            if (start < 0 || (long)start + length > this._buf.capacity()) {
+                throw new RegistryParseException("Value data out of bounds at cell offset: " + this.getDataCellOffset());
+            }
+        } else {
+            ByteBuffer b = ByteBuffer.wrap(dest, destOffset, room);
+            try {
+                ValueDataChannel channel = this.toRecord().openChannel();
+                while (channel.read(b) > 0) {
+                    // keep reading until the data or `dest` is exhausted
+                }
+            } catch (ClosedChannelException e) {
+                throw new IllegalStateException("Channel closed while reading value data", e);
+            } catch (IOException e) {
+                throw new RegistryParseException("Value data is corrupt at cell offset: " + this.getDataCellOffset(), e);
+            }
+            return b.position() - destOffset;
+        }
+
+        length = Math.min(length, room);
+        this._buf.get(start, dest, destOffset, length);
+        return length;
+    }
+
+    /**
+     * toRecord creates a VKRecord for the current value, for access to the full API.
+     * @throws RegistryParseException if the VKRecord cannot be parsed.
+     */
+    public VKRecord toRecord() throws RegistryParseException {
+        return new VKRecord(this._buf, this.getOffset());
+    }
+}
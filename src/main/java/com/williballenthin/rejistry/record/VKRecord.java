@@ -9,21 +9,21 @@ import java.security.InvalidParameterException;
 public class VKRecord extends Record {
     public static final String MAGIC = "vk";
 
-    private static final int NAME_LENGTH_OFFSET = 0x2;
-    private static final int DATA_LENGTH_OFFSET = 0x4;
-    private static final int DATA_OFFSET_OFFSET = 0x8;
-    private static final int VALUE_TYPE_OFFSET = 0xC;
-    private static final int NAME_FLAGS_OFFSET = 0x10;
-    private static final int NAME_OFFSET_OFFSET = 0x14;
+    static final int NAME_LENGTH_OFFSET = 0x2;
+    static final int DATA_LENGTH_OFFSET = 0x4;
+    static final int DATA_OFFSET_OFFSET = 0x8;
+    static final int VALUE_TYPE_OFFSET = 0xC;
+    static final int NAME_FLAGS_OFFSET = 0x10;
+    static final int NAME_OFFSET_OFFSET = 0x14;
 
-    private static final int SMALL_DATA_SIZE = 0x5;
-    private static final int DB_DATA_SIZE = 0x3FD8;
-    private static final long LARGE_DATA_SIZE = 0x80000000L;
+    static final int SMALL_DATA_SIZE = 0x5;
+    static final int DB_DATA_SIZE = 0x3FD8;
+    static final long LARGE_DATA_SIZE = 0x80000000L;
 
     /**
      * @throws com.williballenthin.rejistry.RegistryParseException if the magic header is not the ASCII string "vk".
      */
-    public VKRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+    public VKRecord(HiveStorage buf, int offset) throws RegistryParseException {
         super(buf, offset);
 
         if (!this.getMagic().equals(VKRecord.MAGIC)) {
@@ -31,6 +31,10 @@ public class VKRecord extends Record {
         }
     }
 
+    public VKRecord(ByteBuffer buf, int offset) throws RegistryParseException {
+        this(HiveStorage.wrap(buf), offset);
+    }
+
     /**
      * hasName returns False if the value has the default name.
      * @return True if the value has an explicit name, or False if the value has the default name.
@@ -65,6 +69,25 @@ public class VKRecord extends Record {
         }
     }
 
+    /**
+     * nameEqualsIgnoreCase compares the name of this value with `name`, case-insensitively.
+     *   This reads the name in place, so it does not allocate, and is cheaper than
+     *   `getName().equalsIgnoreCase(name)`.
+     * @param name The name to compare against, or the empty string for the default value.
+     * @return True if this value has the name `name`, ignoring case.
+     */
+    public boolean nameEqualsIgnoreCase(String name) {
+        if ( ! this.hasName()) {
+            return name.length() == 0;
+        }
+        int name_length = this.getWord(NAME_LENGTH_OFFSET);
+        if (this.hasAsciiName()) {
+            return this.asciiEqualsIgnoreCase(NAME_OFFSET_OFFSET, name_length, name);
+        } else {
+            return this.wstringEqualsIgnoreCase(NAME_OFFSET_OFFSET, name_length, name);
+        }
+    }
+
     /**
      * getValueType fetches the type of the Registry value stored by this VK record.
      * @return The type of the value.
@@ -112,8 +135,42 @@ public class VKRecord extends Record {
         }
     }
 
+    /**
+     * openChannel opens a channel that reads the raw data of this value, straight from the hive.
+     *   Unlike `getValue`, the segments of a big data value are located only as they are read,
+     *   so values of any size may be read with constant memory.
+     * @return A channel over the data of this value.
+     * @throws RegistryParseException if the value is too large.
+     */
+    public ValueDataChannel openChannel() throws RegistryParseException {
+        long length = this.getRawDataLength();
+        if (length > LARGE_DATA_SIZE + DB_DATA_SIZE) {
+            throw new RegistryParseException("Value size too large: " + length);
+        }
+
+        if (length >= LARGE_DATA_SIZE) {
+            return new ValueDataChannel(this.getSlice(DATA_OFFSET_OFFSET, (int)(length - LARGE_DATA_SIZE)));
+        } else if (length < SMALL_DATA_SIZE) {
+            // see `getDataOffset`
+            return new ValueDataChannel(this.getSlice(DATA_OFFSET_OFFSET, (int)length));
+        }
+
+        Cell c = new Cell(this._buf, (int)this.getDataOffset());
+        if (length > DB_DATA_SIZE) {
+            try {
+                return new ValueDataChannel(c.getDBRecord().getIndirectRecord(), (int)length);
+            } catch (RegistryParseException e) {
+                // not big data, so the data is contiguous
+            }
+        }
+        ByteBuffer data = c.getData();
+        data.limit((int)length);
+        return new ValueDataChannel(data.asReadOnlyBuffer());
+    }
+
     /**
      * getValue parses and returns the data associated with this value.
+     *   The data is not copied: the ValueData is backed by read-only views of the hive.
      * @return The data associated with this value.
      * @throws RegistryParseException
      */
@@ -138,18 +195,12 @@ public class VKRecord extends Record {
             case REG_RESOURCE_REQUIREMENTS_LIST: {
                 ByteBuffer data;
                 if (length >= LARGE_DATA_SIZE) {
-                    int bufSize = (int)(length - LARGE_DATA_SIZE);
-                    data = ByteBuffer.allocate(bufSize);
-                    data.position(0x0);
-                    data.limit(bufSize);
-                    for (int i = 0; i < bufSize; i++) {
-                        data.put(this.getByte(DATA_OFFSET_OFFSET + i));
-                    }
+                    data = this.getSlice(DATA_OFFSET_OFFSET, (int)(length - LARGE_DATA_SIZE));
                 } else if (DB_DATA_SIZE < length && length < LARGE_DATA_SIZE) {
                     Cell c = new Cell(this._buf, offset);
                     try {
                         DBRecord db = c.getDBRecord();
-                        data = db.getData((int)length);
+                        return new ValueData(db.getSegments((int)length), t);
                     } catch (RegistryParseException e) {
                         data = c.getData();
                         data.limit((int)length);
@@ -159,22 +210,12 @@ public class VKRecord extends Record {
                     data = c.getData();
                     data.limit((int)length);
                 }
-                data.position(0x0);
-                return new ValueData(data, t);
+                return new ValueData(data.asReadOnlyBuffer(), t);
             }
 
             case REG_DWORD:
             case REG_BIG_ENDIAN: {
-                ByteBuffer data;
-                int bufSize = 0x4;
-                data = ByteBuffer.allocate(bufSize);
-                data.position(0x0);
-                data.limit(bufSize);
-                for (int i = 0; i < bufSize; i++) {
-                    data.put(this.getByte(DATA_OFFSET_OFFSET + i));
-                }
-                data.position(0x0);
-                return new ValueData(data, t);
+                return new ValueData(this.getSlice(DATA_OFFSET_OFFSET, 0x4), t);
             }
 
             case REG_QWORD: {
@@ -182,8 +223,7 @@ public class VKRecord extends Record {
                 Cell c = new Cell(this._buf, offset);
                 data = c.getData();
                 data.limit((int)length);
-                data.position(0x0);
-                return new ValueData(data, t);
+                return new ValueData(data.asReadOnlyBuffer(), t);
             }
 
             default: {
@@ -0,0 +1,104 @@
+package com.williballenthin.rejistry.record;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * ValueDataChannel reads the data of a value sequentially, straight from the hive.
+ *   For big data values, the "db" segment list is walked lazily, one segment at a time,
+ *   so reading a value of any size needs a constant amount of memory.
+ * Like other channels, a ValueDataChannel should be used by one thread at a time;
+ *   open a channel per reader.
+ */
+public class ValueDataChannel implements ReadableByteChannel {
+    ///< the list of segments still to be read, or null if the data is contiguous.
+    private final DBIndirectRecord _segments;
+    ///< the view of the data currently being read.
+    private ByteBuffer _current;
+    ///< the index of the next segment to read from `_segments`.
+    private int _nextSegment = 0;
+    ///< the number of bytes in the segments that follow `_current`.
+    private long _remaining;
+    private boolean _open = true;
+
+    /**
+     * @param data A view of the data of the value, from position to limit.
+     */
+    ValueDataChannel(ByteBuffer data) {
+        this._segments = null;
+        this._current = data.slice();
+        this._remaining = 0;
+    }
+
+    /**
+     * @param segments The list of the segments of a big data value.
+     * @param length The number of bytes of value data held by the segments.
+     */
+    ValueDataChannel(DBIndirectRecord segments, int length) {
+        this._segments = segments;
+        this._current = ByteBuffer.allocate(0);
+        this._remaining = length;
+    }
+
+    /**
+     * read reads the next bytes of the value data into `dst`.
+     *
+     * @throws ClosedChannelException if the channel is closed.
+     * @throws StreamCorruptedException if the list of segments of a big data value points outside the hive,
+     *   or at a cell too small for its segment.
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!this._open) {
+            throw new ClosedChannelException();
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int total = 0;
+        while (dst.hasRemaining()) {
+            if (!this._current.hasRemaining()) {
+                if (this._remaining == 0) {
+                    break;
+                }
+                int size = (int)Math.min(DBIndirectRecord.SEGMENT_SIZE, this._remaining);
+                try {
+                    this._current = this._segments.getSegment(this._nextSegment, size);
+                } catch (IllegalArgumentException e) {
+                    throw corruptSegment(this._nextSegment, e);
+                } catch (IndexOutOfBoundsException e) {
+                    throw corruptSegment(this._nextSegment, e);
+                }
+                this._nextSegment++;
+                this._remaining -= size;
+            }
+            int count = Math.min(dst.remaining(), this._current.remaining());
+            ByteBuffer src = this._current.duplicate();
+            src.limit(src.position() + count);
+            dst.put(src);
+            this._current.position(this._current.position() + count);
+            total += count;
+        }
+        // `dst` had room, so reading nothing means the end of the data
+        return total == 0 ? -1 : total;
+    }
+
+    private static StreamCorruptedException corruptSegment(int index, RuntimeException cause) {
+        StreamCorruptedException e = new StreamCorruptedException("Big data segment " + index + " is corrupt");
+        e.initCause(cause);
+        return e;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this._open;
+    }
+
+    @Override
+    public void close() {
+        this._open = false;
+    }
+}
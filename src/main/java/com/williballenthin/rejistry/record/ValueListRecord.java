@@ -1,10 +1,10 @@
 package com.williballenthin.rejistry.record;
 
 import com.williballenthin.rejistry.Cell;
+import com.williballenthin.rejistry.HiveStorage;
 import com.williballenthin.rejistry.REGFHeader;
 import com.williballenthin.rejistry.RegistryParseException;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -13,12 +13,16 @@ public class ValueListRecord extends Record implements ValueList {
     private static final int VALUE_LIST_OFFSET = 0x0;
     private final int _numValues;
 
-    public ValueListRecord(ByteBuffer buf, int offset, int numValues) {
+    public ValueListRecord(HiveStorage buf, int offset, int numValues) {
         super(buf, offset);
 
         this._numValues = numValues;
     }
 
+    public ValueListRecord(ByteBuffer buf, int offset, int numValues) {
+        this(HiveStorage.wrap(buf), offset, numValues);
+    }
+
     public Iterator<VKRecord> getValues() {
         return new Iterator<VKRecord>() {
             private int _index = 0x0;
@@ -61,12 +65,8 @@ public class ValueListRecord extends Record implements ValueList {
         Iterator<VKRecord> it = this.getValues();
         while (it.hasNext()) {
             VKRecord r = it.next();
-            try {
-                if (r.getName().equalsIgnoreCase(name)) {
-                    return r;
-                }
-            } catch (UnsupportedEncodingException e) {
-                continue;
+            if (r.nameEqualsIgnoreCase(name)) {
+                return r;
             }
         }
         throw new NoSuchElementException("Cannot find value with name " + name);
@@ -0,0 +1,76 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class CellScannerTest extends TestCase {
+    private File _file;
+    private SyntheticHiveGenerator _generator;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        this._generator = new SyntheticHiveGenerator();
+        this._generator.setDepth(3);
+        this._generator.setFanout(12);
+        this._generator.setValuesPerKey(3);
+        this._generator.setBigDataInterval(50);
+        this._generator.setMaxSubkeyListLength(5);
+        this._generator.generate(this._file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testScanMatchesHBINCells() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        List<ScannedCell> scanned = new CellScanner(header).stream().collect(Collectors.toList());
+
+        int i = 0;
+        Iterator<HBIN> hbins = header.getHBINs();
+        while (hbins.hasNext()) {
+            Iterator<Cell> cells = hbins.next().getCells();
+            while (cells.hasNext()) {
+                Cell cell = cells.next();
+                ScannedCell s = scanned.get(i++);
+                assertEquals(cell.getLength(), s.getLength());
+                assertEquals(cell.isActive(), s.isActive());
+                assertEquals(cell.getDataSignature(), s.getCell().getDataSignature());
+            }
+        }
+        assertEquals(i, scanned.size());
+    }
+
+    public void testClassification() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        Map<CellType, Long> counts = new EnumMap<CellType, Long>(CellType.class);
+        counts.putAll(new CellScanner(header).stream()
+                .filter(ScannedCell::isActive)
+                .collect(Collectors.groupingBy(ScannedCell::getType, Collectors.counting())));
+
+        assertEquals(this._generator.getNumKeys(), (long)counts.get(CellType.NK));
+        assertEquals(this._generator.getNumValues(), (long)counts.get(CellType.VK));
+        assertEquals(this._generator.getNumValues() / 50, (long)counts.get(CellType.DB));
+        assertTrue(counts.get(CellType.RI) > 0);
+        assertTrue(counts.get(CellType.LH) > 0);
+        assertFalse(counts.containsKey(CellType.LF));
+    }
+
+    public void testParallelScanMatchesSequential() throws Exception {
+        CellScanner scanner = new CellScanner(new RegistryHiveFile(this._file).getHeader());
+        List<Integer> sequential = scanner.stream().map(ScannedCell::getCellOffset).collect(Collectors.toList());
+        List<Integer> parallel = scanner.parallelStream().map(ScannedCell::getCellOffset).collect(Collectors.toList());
+        assertEquals(sequential, parallel);
+        for (int i = 1; i < sequential.size(); i++) {
+            assertTrue(sequential.get(i) > sequential.get(i - 1));
+        }
+    }
+}
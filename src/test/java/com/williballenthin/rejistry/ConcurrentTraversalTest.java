@@ -0,0 +1,107 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * ConcurrentTraversalTest walks a single RegistryHiveFile from many threads at once,
+ *   and checks that each thread sees exactly what a lone, sequential walker sees.
+ */
+public class ConcurrentTraversalTest extends TestCase {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20;
+
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            for (int i = 0; i < 12; i++) {
+                w.beginKey("Key" + i);
+                w.addString("Name", "value of key " + i);
+                w.addDword("Count", i);
+                w.addQword("Big", 0x100000000L + i);
+                for (int j = 0; j < 8; j++) {
+                    w.beginKey("Subkey" + j);
+                    w.addString("", "default " + i + "." + j);
+                    w.addValue("Blob", RegistryValueType.REG_BIN, new byte[] {(byte)i, (byte)j, 1, 2, 3, 4, 5, 6});
+                    w.endKey();
+                }
+                w.endKey();
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private static void walk(RegistryKey key, String path, List<String> out)
+            throws RegistryParseException, IOException {
+        out.add(path + " " + key.getTimestamp().getTimeInMillis());
+        for (RegistryValue value : key.getValueList()) {
+            ValueData data = value.getValue();
+            String s;
+            switch (data.getValueType()) {
+                case REG_SZ:
+                    s = data.getAsString();
+                    break;
+                case REG_DWORD:
+                case REG_QWORD:
+                    s = Long.toHexString(data.getAsNumber());
+                    break;
+                default:
+                    s = HexDump.dumpHexString(data.getAsRawData());
+            }
+            out.add(path + ":" + value.getName() + "=" + s);
+        }
+        for (RegistryKey subkey : key.getSubkeyList()) {
+            walk(subkey, path + "\\" + subkey.getName(), out);
+        }
+    }
+
+    public void testConcurrentWalksMatchSequentialWalk() throws Exception {
+        final RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        final List<String> expected = new ArrayList<String>();
+        walk(hive.getRoot(), "ROOT", expected);
+        assertEquals(1 + 12 * 4 + 12 * 8 * 3, expected.size());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int r = 0; r < ROUNDS; r++) {
+                            List<String> seen = new ArrayList<String>();
+                            walk(hive.getRoot(), "ROOT", seen);
+                            assertEquals(expected, seen);
+                            assertEquals(8, hive.getRoot().getSubkey("key7").getSubkeyList().size());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : results) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DeletedRecordScannerTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.beginKey("Alive");
+            w.addString("Kept", "still here");
+            w.endKey();
+            w.beginKey("Gone");
+            w.addDword("Count", 7);
+            w.addString("Label", "removed");
+            w.beginKey("Child");
+            w.addDword("Inner", 1);
+            w.endKey();
+            w.endKey();
+            w.beginKey("Reused");
+            w.beginKey("Orphan");
+            w.endKey();
+            w.endKey();
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private static int getCellSize(RandomAccessFile f, int cellOffset) throws Exception {
+        f.seek(REGFHeader.FIRST_HBIN_OFFSET + cellOffset);
+        return Integer.reverseBytes(f.readInt());
+    }
+
+    private static void setCellSize(RandomAccessFile f, int cellOffset, int size) throws Exception {
+        f.seek(REGFHeader.FIRST_HBIN_OFFSET + cellOffset);
+        f.writeInt(Integer.reverseBytes(size));
+    }
+
+    /**
+     * free marks a cell as unallocated, as Windows does when deleting a key or value.
+     */
+    private static void free(RandomAccessFile f, int cellOffset) throws Exception {
+        setCellSize(f, cellOffset, Math.abs(getCellSize(f, cellOffset)));
+    }
+
+    /**
+     * delete frees the cells of the records, much as Windows would, and overwrites a parent key's record
+     *   with another structure, as if its space had been reused.
+     */
+    private void delete() throws Exception {
+        NKRecord root = new RegistryHiveFile(this._file).getHeader().getRootNKRecord();
+        NKRecord alive = root.getSubkeyList().getSubkey("Alive");
+        NKRecord gone = root.getSubkeyList().getSubkey("Gone");
+        NKRecord child = gone.getSubkeyList().getSubkey("Child");
+        NKRecord reused = root.getSubkeyList().getSubkey("Reused");
+        NKRecord orphan = reused.getSubkeyList().getSubkey("Orphan");
+        int count = gone.getValueList().getValue("Count").getCellOffset();
+
+        RandomAccessFile f = new RandomAccessFile(this._file, "rw");
+        try {
+            free(f, alive.getValueList().getValue("Kept").getCellOffset());
+            free(f, gone.getValueList().getValue("Label").getCellOffset());
+            free(f, child.getValueList().getValue("Inner").getCellOffset());
+            free(f, child.getCellOffset());
+            free(f, orphan.getCellOffset());
+
+            // coalesce the cell of "Gone" with the cell of its first value, which follows it
+            int goneSize = Math.abs(getCellSize(f, gone.getCellOffset()));
+            assertEquals(gone.getCellOffset() + goneSize, count);
+            setCellSize(f, gone.getCellOffset(), goneSize + Math.abs(getCellSize(f, count)));
+            setCellSize(f, count, Math.abs(getCellSize(f, count)));
+
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + reused.getCellOffset() + 0x4);
+            f.writeBytes("xx");
+        } finally {
+            f.close();
+        }
+    }
+
+    public void testNothingRecoveredFromIntactHive() throws Exception {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(2);
+        g.setFanout(20);
+        g.setValueSize(0x400);
+        g.generate(this._file);
+
+        RecoveryResult result = new DeletedRecordScanner(new RegistryHiveFile(this._file).getHeader()).scan();
+        assertEquals(0, result.getKeys().size());
+        assertEquals(0, result.getValues().size());
+    }
+
+    public void testRecoverDeletedKeysAndValues() throws Exception {
+        this.delete();
+        RecoveryResult result = new DeletedRecordScanner(new RegistryHiveFile(this._file).getHeader()).scan();
+
+        Map<String, RecoveredKey> keys = new HashMap<String, RecoveredKey>();
+        for (RecoveredKey key : result.getKeys()) {
+            keys.put(key.getName(), key);
+        }
+        assertEquals(3, keys.size());
+
+        RecoveredKey gone = keys.get("Gone");
+        assertEquals("ROOT\\Gone", gone.getPath());
+        assertTrue(gone.isPathComplete());
+        assertEquals(2, gone.getValues().size());
+        assertEquals(7, gone.getRecord().getValueList().getValue("Count").getValue().getAsNumber());
+        assertEquals("removed", gone.getRecord().getValueList().getValue("Label").getValue().getAsString());
+
+        RecoveredKey child = keys.get("Child");
+        assertEquals("ROOT\\Gone\\Child", child.getPath());
+        assertTrue(child.isPathComplete());
+        assertEquals(1, child.getValues().size());
+        assertEquals("Inner", child.getValues().get(0).getName());
+        assertSame(child, child.getValues().get(0).getKey());
+
+        RecoveredKey orphan = keys.get("Orphan");
+        assertEquals(DeletedRecordScanner.UNKNOWN_PARENT + "\\Orphan", orphan.getPath());
+        assertFalse(orphan.isPathComplete());
+
+        assertEquals(4, result.getValues().size());
+        assertEquals(1, result.getOrphanedValues().size());
+        RecoveredValue kept = result.getOrphanedValues().get(0);
+        assertEquals("Kept", kept.getName());
+        assertEquals("still here", kept.getRecord().getValue().getAsString());
+    }
+}
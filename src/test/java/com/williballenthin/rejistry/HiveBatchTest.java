@@ -0,0 +1,130 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HiveBatchTest extends TestCase {
+    private static final int NUM_HIVES = 6;
+
+    private File _directory;
+    private File _corrupt;
+    private long _hiveSize;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._directory = Files.createTempDirectory("rejistry").toFile();
+        File nested = new File(this._directory, "nested");
+        assertTrue(nested.mkdir());
+        for (int i = 0; i < NUM_HIVES; i++) {
+            SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+            g.setDepth(2);
+            g.setFanout(5);
+            g.setValuesPerKey(2);
+            File hive = new File(i % 2 == 0 ? this._directory : nested, "hive" + i);
+            g.generate(hive);
+            this._hiveSize = hive.length();
+        }
+
+        // a transaction log, or any other file, is not a hive
+        FileOutputStream log = new FileOutputStream(new File(this._directory, "hive0.LOG1"));
+        try {
+            log.write(new byte[] {'H', 'v', 'L', 'E'});
+        } finally {
+            log.close();
+        }
+
+        // a hive whose root key has been overwritten
+        this._corrupt = new File(this._directory, "hive9");
+        Files.copy(new File(this._directory, "hive0").toPath(), this._corrupt.toPath());
+        RandomAccessFile f = new RandomAccessFile(this._corrupt, "rw");
+        try {
+            f.seek(0x24);
+            int root = Integer.reverseBytes(f.readInt());
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + root + 0x4);
+            f.writeBytes("xx");
+        } finally {
+            f.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File nested = new File(this._directory, "nested");
+        for (File file : nested.listFiles()) {
+            file.delete();
+        }
+        nested.delete();
+        for (File file : this._directory.listFiles()) {
+            file.delete();
+        }
+        this._directory.delete();
+    }
+
+    public void testProcessDirectory() throws Exception {
+        HiveBatch batch = HiveBatch.fromDirectory(this._directory);
+        assertEquals(NUM_HIVES + 1, batch.getHives().size());
+        batch.setParallelism(3);
+        // room for two hives at a time
+        batch.setMappedBytesBudget((2 * this._hiveSize) + 1);
+
+        final AtomicInteger keys = new AtomicInteger();
+        final AtomicInteger pooled = new AtomicInteger();
+        BatchReport report = batch.run(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) {
+                keys.incrementAndGet();
+                // each hive is walked on the worker that opened it, not in a pool of its own
+                if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+                    pooled.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) {
+            }
+        });
+
+        assertEquals(NUM_HIVES * (1 + 5 + 25), keys.get());
+        assertEquals(0, pooled.get());
+        assertEquals(NUM_HIVES + 1, report.getResults().size());
+        assertEquals((NUM_HIVES + 1) * this._hiveSize, report.getTotalBytes());
+        assertTrue(report.getPeakMappedBytes() <= 2 * this._hiveSize);
+
+        List<HiveResult> failures = report.getFailures();
+        assertEquals(1, failures.size());
+        assertEquals(this._corrupt, failures.get(0).getFile());
+        assertTrue(failures.get(0).getFailure() instanceof RegistryParseException);
+        for (HiveResult result : report.getResults()) {
+            assertEquals(this._hiveSize, result.getMappedBytes());
+        }
+    }
+
+    public void testHiveLargerThanBudget() throws Exception {
+        HiveBatch batch = HiveBatch.fromDirectory(this._directory);
+        batch.setMappedBytesBudget(1);
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger maxOpen = new AtomicInteger();
+        BatchReport report = batch.run(new HiveVisitor() {
+            @Override
+            public void visitHive(File file, RegistryHive hive) throws RegistryParseException {
+                int n = open.incrementAndGet();
+                maxOpen.accumulateAndGet(n, Math::max);
+                try {
+                    hive.getRoot();
+                } finally {
+                    open.decrementAndGet();
+                }
+            }
+        });
+        assertEquals(1, maxOpen.get());
+        assertEquals(this._hiveSize, report.getPeakMappedBytes());
+        assertEquals(1, report.getFailures().size());
+    }
+}
@@ -0,0 +1,101 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class HiveImageTest extends TestCase {
+    private File _hive;
+    private File _image;
+    private byte[] _hiveBytes;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._hive = File.createTempFile("rejistry", ".hive");
+        this._image = File.createTempFile("rejistry", ".img");
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(2);
+        g.setFanout(6);
+        g.generate(this._hive);
+        this._hiveBytes = Files.readAllBytes(this._hive.toPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._hive.delete();
+        this._image.delete();
+    }
+
+    public void testFindConcatenatedHives() throws Exception {
+        Random random = new Random(0);
+        byte[] junk = new byte[0x3000];
+        random.nextBytes(junk);
+        long first = junk.length;
+        long second = first + this._hiveBytes.length + 0x200;
+
+        RandomAccessFile f = new RandomAccessFile(this._image, "rw");
+        try {
+            f.write(junk);
+            f.write(this._hiveBytes);
+            f.write(junk, 0, 0x200);
+            f.write(this._hiveBytes);
+            // a base block without HBINs is not a hive
+            f.write("regf".getBytes("US-ASCII"));
+            f.write(junk, 0, 0x1FC);
+            f.write(junk);
+        } finally {
+            f.close();
+        }
+
+        HiveImage image = new HiveImage(this._image);
+        try {
+            // a small window, so that the hives span several
+            image.setWindowSize(0x1000);
+            assertEquals(Arrays.asList(first, second), image.findHives());
+            assertEquals(this._hiveBytes.length, image.getHiveLength(second));
+            RegistryHive hive = image.openHive(second);
+            assertEquals("ROOT", hive.getRoot().getName());
+            assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(hive.getRoot()));
+        } finally {
+            image.close();
+        }
+    }
+
+    public void testHiveBeyondTwoGigabytes() throws Exception {
+        long second = 0x88000000L;
+        RandomAccessFile f = new RandomAccessFile(this._image, "rw");
+        try {
+            // sparse, so that this costs no disk space
+            f.write(this._hiveBytes);
+            f.seek(second);
+            f.write(this._hiveBytes);
+            f.setLength(0x90000000L);
+        } finally {
+            f.close();
+        }
+
+        assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(new RegistryHiveFile(this._image).getRoot()));
+        HiveImage image = new HiveImage(this._image);
+        try {
+            assertEquals(this._hiveBytes.length, image.getHiveLength(0));
+            assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(image.openHive(second).getRoot()));
+        } finally {
+            image.close();
+        }
+    }
+
+    public void testHiveFileMappedInWindows() throws Exception {
+        // windows far smaller than the hive, so that many cells straddle two of them
+        assertTrue(this._hiveBytes.length > 0x4 * 0x1000);
+        RegistryHive windowed = new RegistryHiveFile(this._hive, KeyPathCache.DEFAULT_CAPACITY, 0x1000);
+        RegistryHive whole = new RegistryHiveFile(this._hive);
+        assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(windowed.getRoot()));
+        assertEquals(whole.getHeader().getHiveName(), windowed.getHeader().getHiveName());
+        assertEquals(this._hiveBytes.length, windowed.getHeader()._buf.capacity());
+        assertTrue(windowed.getHeader()._buf instanceof WindowStorage);
+    }
+}
@@ -0,0 +1,87 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.VKRecord;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+public class HiveIndexTest extends TestCase {
+    private File _file;
+    private long _numValues;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(3);
+        g.setFanout(5);
+        g.setBigDataInterval(7);
+        g.setBigDataSize(0x9000);
+        g.setMaxSubkeyListLength(3);
+        g.generate(this._file);
+        this._numValues = g.getNumValues();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testIndex() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        HiveIndex index = HiveIndex.build(header);
+
+        int cells = 0;
+        for (ScannedCell cell : new CellScanner(header).stream().toArray(ScannedCell[]::new)) {
+            assertEquals(cell.getType(), index.getType(cell.getCellOffset()));
+            assertEquals(cell.isActive(), index.isAllocated(index.indexOf(cell.getCellOffset())));
+            cells++;
+        }
+        assertEquals(cells, index.getCellCount());
+
+        NKRecord root = header.getRootNKRecord();
+        NKRecord parent = root.getSubkeyList().getSubkey("Key1");
+        NKRecord key = parent.getSubkeyList().getSubkey("Key2");
+        assertEquals(CellType.NK, index.getType(key.getCellOffset()));
+        assertEquals(parent.getCellOffset(), index.getOwner(key.getCellOffset()));
+        assertEquals(HiveIndex.NO_OWNER, index.getOwner(root.getCellOffset()));
+        assertEquals("ROOT\\Key1\\Key2", index.getPath(key.getCellOffset()));
+
+        VKRecord value = key.getValueList().getValue("Value2");
+        assertEquals(key.getCellOffset(), index.getOwner(value.getCellOffset()));
+        assertEquals(key.getCellOffset(), index.getKeyOffset(value.getCellOffset()));
+        assertEquals("ROOT\\Key1\\Key2", index.getPath(value.getCellOffset()));
+
+        try {
+            index.getType(root.getCellOffset() + 0x8);
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testBigDataSegmentsBelongToTheirKey() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        HiveIndex index = HiveIndex.build(header);
+
+        int segments = 0;
+        for (int i = 0; i < index.getCellCount(); i++) {
+            if (index.getCellType(i) != CellType.DB) {
+                continue;
+            }
+            // the db record, its list of segments, and the segments all lead back to a value of a key
+            int db = index.getCellOffset(i);
+            assertEquals(CellType.VK, index.getType(index.getOwner(db)));
+            for (int j = 0; j < index.getCellCount(); j++) {
+                if (index.getOwner(index.getCellOffset(j)) == db) {
+                    assertEquals(index.getKeyOffset(db), index.getKeyOffset(index.getCellOffset(j)));
+                    segments++;
+                }
+            }
+        }
+        // each big value has a list and three segments
+        assertEquals(4 * (this._numValues / 7), segments);
+    }
+}
@@ -0,0 +1,115 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Set;
+
+public class HiveIntegrityCheckerTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(2);
+        g.setFanout(12);
+        g.setBigDataInterval(9);
+        g.setBigDataSize(0x9000);
+        g.setMaxSubkeyListLength(5);
+        g.generate(this._file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private IntegrityReport check(int maxErrors) throws Exception {
+        HiveIntegrityChecker checker = new HiveIntegrityChecker(new RegistryHiveFile(this._file).getHeader());
+        checker.setMaxErrors(maxErrors);
+        return checker.check();
+    }
+
+    public void testIntactHive() throws Exception {
+        IntegrityReport report = this.check(Integer.MAX_VALUE);
+        assertTrue(report.getErrors().toString(), report.isValid());
+        assertTrue(report.isComplete());
+        assertTrue(new RegistryHiveFile(this._file).getHeader().isChecksumValid());
+    }
+
+    public void testDamagedHive() throws Exception {
+        NKRecord root = new RegistryHiveFile(this._file).getHeader().getRootNKRecord();
+        NKRecord key = root.getSubkeyList().getSubkey("Key1");
+        int value = key.getValueList().getValue("Value0").getCellOffset();
+
+        RandomAccessFile f = new RandomAccessFile(this._file, "rw");
+        try {
+            // the checksum
+            f.seek(0x1FC);
+            f.writeInt(0x0);
+            // free the cell of a value, which its key's value list references
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + value);
+            int size = Integer.reverseBytes(f.readInt());
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + value);
+            f.writeInt(Integer.reverseBytes(-size));
+            // the offset of the second HBIN
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + 0x1000 + 0x4);
+            f.writeInt(0x0);
+        } finally {
+            f.close();
+        }
+
+        IntegrityReport report = this.check(Integer.MAX_VALUE);
+        assertTrue(report.isComplete());
+        Set<IntegrityError.Kind> kinds = new HashSet<IntegrityError.Kind>();
+        for (IntegrityError error : report.getErrors()) {
+            kinds.add(error.getKind());
+        }
+        assertTrue(report.getErrors().toString(), kinds.contains(IntegrityError.Kind.HEADER_CHECKSUM));
+        assertTrue(report.getErrors().toString(), kinds.contains(IntegrityError.Kind.HBIN_OFFSET));
+        assertTrue(report.getErrors().toString(), kinds.contains(IntegrityError.Kind.REFERENCE));
+        assertEquals(3, report.getErrors().size());
+
+        // fail fast
+        report = this.check(1);
+        assertFalse(report.isComplete());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(IntegrityError.Kind.HEADER_CHECKSUM, report.getErrors().get(0).getKind());
+    }
+
+    public void testDamagedHBIN() throws Exception {
+        RandomAccessFile f = new RandomAccessFile(this._file, "rw");
+        try {
+            // the signature of the second HBIN
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + 0x1000);
+            f.writeInt(0x0);
+        } finally {
+            f.close();
+        }
+
+        IntegrityReport report = this.check(Integer.MAX_VALUE);
+        assertFalse(report.isComplete());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(IntegrityError.Kind.HBIN_SIGNATURE, report.getErrors().get(0).getKind());
+    }
+
+    public void testDamagedCell() throws Exception {
+        int root = new RegistryHiveFile(this._file).getHeader().getRootCellOffset();
+        RandomAccessFile f = new RandomAccessFile(this._file, "rw");
+        try {
+            f.seek(REGFHeader.FIRST_HBIN_OFFSET + root);
+            f.writeInt(Integer.reverseBytes(-0x7));
+        } finally {
+            f.close();
+        }
+
+        IntegrityReport report = this.check(Integer.MAX_VALUE);
+        IntegrityError error = report.getErrors().get(0);
+        assertEquals(IntegrityError.Kind.CELL_SIZE, error.getKind());
+        assertEquals(REGFHeader.FIRST_HBIN_OFFSET + root, error.getOffset());
+    }
+}
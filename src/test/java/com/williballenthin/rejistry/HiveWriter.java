@@ -0,0 +1,566 @@
+package com.williballenthin.rejistry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * HiveWriter emits a structurally valid Registry hive file, for use as a test fixture.
+ *   Keys are written depth-first: call `beginKey`, then `addValue` for each of its values,
+ *   then any nested `beginKey`/`endKey` pairs, then `endKey`. The first key begun is the root.
+ *
+ * HBINs are filled in memory and flushed to disk as soon as they are full, so the
+ *   memory used by the writer does not depend on the size of the hive.
+ *   Fields of a key that are only known once its children are written (subkey list, value list)
+ *   are patched in place, either in the current HBIN or directly in the file.
+ *
+ * Value data longer than a single big data segment is split across a "db" record,
+ *   and subkey lists longer than `setMaxSubkeyListLength` are split beneath an "ri" index root.
+ *   Since cell offsets are 32 bit, hives are limited to 2GB.
+ */
+public class HiveWriter implements Closeable {
+    public static final long DEFAULT_TIMESTAMP = 0x01CE2F3A8A2C6000L;  // 2013-04-07T00:00:00Z
+
+    private static final int HBIN_SIZE = 0x1000;
+    private static final int HBIN_HEADER_SIZE = 0x20;
+    private static final int CELL_HEADER_SIZE = 0x4;
+    private static final int NO_OFFSET = 0xFFFFFFFF;
+
+    private static final int NK_FLAGS_OFFSET = 0x02;
+    private static final int NK_TIMESTAMP_OFFSET = 0x04;
+    private static final int NK_PARENT_OFFSET = 0x10;
+    private static final int NK_SUBKEY_COUNT_OFFSET = 0x14;
+    private static final int NK_SUBKEY_LIST_OFFSET = 0x1C;
+    private static final int NK_VOLATILE_SUBKEY_LIST_OFFSET = 0x20;
+    private static final int NK_VALUE_COUNT_OFFSET = 0x24;
+    private static final int NK_VALUE_LIST_OFFSET = 0x28;
+    private static final int NK_SECURITY_OFFSET = 0x2C;
+    private static final int NK_CLASSNAME_OFFSET = 0x30;
+    private static final int NK_NAME_LENGTH_OFFSET = 0x48;
+    private static final int NK_NAME_OFFSET = 0x4C;
+    private static final int NK_FLAG_COMPRESSED_NAME = 0x20;
+    private static final int NK_FLAGS_ROOT = 0x2C;
+
+    private static final int SK_PREVIOUS_OFFSET = 0x4;
+    private static final int SK_NEXT_OFFSET = 0x8;
+    private static final int SK_REFERENCE_COUNT_OFFSET = 0xC;
+    private static final int SK_DESCRIPTOR_LENGTH_OFFSET = 0x10;
+    private static final int SK_DESCRIPTOR_OFFSET = 0x14;
+
+    private static final int VK_NAME_OFFSET = 0x14;
+    private static final long VK_DATA_RESIDENT = 0x80000000L;
+    private static final int DB_SEGMENT_SIZE = 0x3FD8;
+
+    private final FileChannel _channel;
+    private final RandomAccessFile _file;
+    ///< the HBIN currently being filled, or null before the first allocation.
+    private ByteBuffer _hbin = null;
+    ///< offset of the current HBIN, relative to the first HBIN.
+    private int _hbinOffset = 0;
+    ///< number of bytes of the current HBIN that are in use.
+    private int _hbinUsed = 0;
+    ///< total size of the HBINs flushed to disk so far.
+    private int _hbinsSize = 0;
+    private int _rootCell = NO_OFFSET;
+    private String _listMagic = "lh";
+    private int _maxListLength = 0xFFFF;
+    private final Deque<OpenKey> _stack = new ArrayDeque<OpenKey>();
+    ///< the SKRecords written so far, in order, with the number of keys that reference each.
+    private final LinkedHashMap<Integer, Integer> _securityRecords = new LinkedHashMap<Integer, Integer>();
+    ///< the SKRecord referenced by keys begun from now on, or NO_OFFSET.
+    private int _security = NO_OFFSET;
+
+    private static class Child {
+        final String name;
+        final int cell;
+
+        Child(String name, int cell) {
+            this.name = name;
+            this.cell = cell;
+        }
+    }
+
+    private static class OpenKey {
+        final int cell;
+        final String name;
+        final List<Child> children = new ArrayList<Child>();
+        final List<Integer> values = new ArrayList<Integer>();
+
+        OpenKey(int cell, String name) {
+            this.cell = cell;
+            this.name = name;
+        }
+    }
+
+    public HiveWriter(File file) throws IOException {
+        this._file = new RandomAccessFile(file, "rw");
+        this._file.setLength(0);
+        this._channel = this._file.getChannel();
+    }
+
+    /**
+     * setSubkeyListType selects the kind of subkey list written by subsequent calls to `endKey`.
+     *
+     * @param magic One of "lh", "lf", or "li".
+     */
+    public void setSubkeyListType(String magic) {
+        if (!magic.equals("lh") && !magic.equals("lf") && !magic.equals("li")) {
+            throw new IllegalArgumentException("Unsupported subkey list type: " + magic);
+        }
+        this._listMagic = magic;
+    }
+
+    /**
+     * setMaxSubkeyListLength selects the number of entries in a subkey list above which
+     *   subsequent calls to `endKey` split the list into sublists referenced by an "ri" index root.
+     *
+     * @param length The maximum number of entries in a single list, at most 0xFFFF.
+     */
+    public void setMaxSubkeyListLength(int length) {
+        if (length < 1 || length > 0xFFFF) {
+            throw new IllegalArgumentException("Unsupported subkey list length: " + length);
+        }
+        this._maxListLength = length;
+    }
+
+    /**
+     * beginKey starts a new key as a child of the currently open key, or as the root key
+     *   if no key is open.
+     *
+     * @param name The name of the key.
+     * @param timestamp The last-written time of the key, as a FILETIME.
+     * @return The offset of the key's cell, relative to the first HBIN.
+     */
+    public int beginKey(String name, long timestamp) throws IOException {
+        if (this._stack.isEmpty() && this._rootCell != NO_OFFSET) {
+            throw new IllegalStateException("The root key has already been written");
+        }
+        boolean compressed = isAscii(name);
+        byte[] nameBytes = encodeName(name);
+        int cell = this.allocate(NK_NAME_OFFSET + nameBytes.length);
+        ByteBuffer nk = this.record(cell);
+
+        int flags = this._stack.isEmpty() ? NK_FLAGS_ROOT : NK_FLAG_COMPRESSED_NAME;
+        if (!compressed) {
+            flags &= ~NK_FLAG_COMPRESSED_NAME;
+        }
+        nk.put(0, (byte)'n');
+        nk.put(1, (byte)'k');
+        nk.putShort(NK_FLAGS_OFFSET, (short)flags);
+        nk.putLong(NK_TIMESTAMP_OFFSET, timestamp);
+        nk.putInt(NK_PARENT_OFFSET, this._stack.isEmpty() ? 0 : this._stack.peek().cell);
+        nk.putInt(NK_SUBKEY_LIST_OFFSET, NO_OFFSET);
+        nk.putInt(NK_VOLATILE_SUBKEY_LIST_OFFSET, NO_OFFSET);
+        nk.putInt(NK_VALUE_LIST_OFFSET, NO_OFFSET);
+        nk.putInt(NK_SECURITY_OFFSET, this._security);
+        if (this._security != NO_OFFSET) {
+            this._securityRecords.put(this._security, this._securityRecords.get(this._security) + 1);
+        }
+        nk.putInt(NK_CLASSNAME_OFFSET, NO_OFFSET);
+        nk.putShort(NK_NAME_LENGTH_OFFSET, (short)nameBytes.length);
+        for (int i = 0; i < nameBytes.length; i++) {
+            nk.put(NK_NAME_OFFSET + i, nameBytes[i]);
+        }
+
+        this._stack.push(new OpenKey(cell, name));
+        return cell;
+    }
+
+    public int beginKey(String name) throws IOException {
+        return this.beginKey(name, DEFAULT_TIMESTAMP);
+    }
+
+    /**
+     * addSecurityDescriptor writes an SKRecord holding a self-relative security descriptor, and links
+     *   it into the circular list of SKRecords. Its reference count is set when the hive is closed.
+     *
+     * @param descriptor The bytes of the self-relative security descriptor.
+     * @return The offset of the record's cell, relative to the first HBIN.
+     */
+    public int addSecurityDescriptor(byte[] descriptor) throws IOException {
+        int cell = this.allocate(SK_DESCRIPTOR_OFFSET + descriptor.length);
+        ByteBuffer sk = this.record(cell);
+        sk.put(0, (byte)'s');
+        sk.put(1, (byte)'k');
+        sk.putInt(SK_DESCRIPTOR_LENGTH_OFFSET, descriptor.length);
+        for (int i = 0; i < descriptor.length; i++) {
+            sk.put(SK_DESCRIPTOR_OFFSET + i, descriptor[i]);
+        }
+
+        if (this._securityRecords.isEmpty()) {
+            sk.putInt(SK_PREVIOUS_OFFSET, cell);
+            sk.putInt(SK_NEXT_OFFSET, cell);
+        } else {
+            int first = this._securityRecords.keySet().iterator().next();
+            int last = 0;
+            for (int record : this._securityRecords.keySet()) {
+                last = record;
+            }
+            sk.putInt(SK_PREVIOUS_OFFSET, last);
+            sk.putInt(SK_NEXT_OFFSET, first);
+            this.patchInt(last, SK_NEXT_OFFSET, cell);
+            this.patchInt(first, SK_PREVIOUS_OFFSET, cell);
+        }
+        this._securityRecords.put(cell, 0);
+        return cell;
+    }
+
+    /**
+     * setSecurity selects the SKRecord, from `addSecurityDescriptor`, referenced by the keys begun from now on.
+     */
+    public void setSecurity(int securityRecord) {
+        if (!this._securityRecords.containsKey(securityRecord)) {
+            throw new IllegalArgumentException("Unknown security record: " + securityRecord);
+        }
+        this._security = securityRecord;
+    }
+
+    /**
+     * addValue adds a value to the currently open key.
+     *   Data of four bytes or less is stored resident in the VK record, and data longer
+     *   than a single cell segment (0x3FD8 bytes) is stored as big data via a "db" record.
+     *
+     * @param name The name of the value, or the empty string for the default value.
+     * @param type The type of the value.
+     * @param data The raw data of the value.
+     * @return The offset of the value's cell, relative to the first HBIN.
+     */
+    public int addValue(String name, RegistryValueType type, byte[] data) throws IOException {
+        if (this._stack.isEmpty()) {
+            throw new IllegalStateException("No key is open");
+        }
+
+        int dataOffset = 0;
+        long dataLength = data.length;
+        if (data.length <= 4) {
+            dataLength |= VK_DATA_RESIDENT;
+        } else if (data.length > DB_SEGMENT_SIZE) {
+            dataOffset = this.writeBigData(data);
+        } else {
+            dataOffset = this.writeDataCell(data, 0, data.length);
+        }
+
+        byte[] nameBytes = encodeName(name);
+        int cell = this.allocate(VK_NAME_OFFSET + nameBytes.length);
+        ByteBuffer vk = this.record(cell);
+        vk.put(0, (byte)'v');
+        vk.put(1, (byte)'k');
+        vk.putShort(0x2, (short)nameBytes.length);
+        vk.putInt(0x4, (int)dataLength);
+        if (data.length <= 4) {
+            for (int i = 0; i < data.length; i++) {
+                vk.put(0x8 + i, data[i]);
+            }
+        } else {
+            vk.putInt(0x8, dataOffset);
+        }
+        vk.putInt(0xC, type.getValue());
+        vk.putShort(0x10, (short)(isAscii(name) ? 0x1 : 0x0));  // ASCII name
+        for (int i = 0; i < nameBytes.length; i++) {
+            vk.put(VK_NAME_OFFSET + i, nameBytes[i]);
+        }
+
+        this._stack.peek().values.add(cell);
+        return cell;
+    }
+
+    public int addString(String name, String value) throws IOException {
+        return this.addValue(name, RegistryValueType.REG_SZ, encodeString(value));
+    }
+
+    public int addDword(String name, int value) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(0x4).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(0, value);
+        return this.addValue(name, RegistryValueType.REG_DWORD, b.array());
+    }
+
+    public int addQword(String name, long value) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(0x8).order(ByteOrder.LITTLE_ENDIAN);
+        b.putLong(0, value);
+        return this.addValue(name, RegistryValueType.REG_QWORD, b.array());
+    }
+
+    /**
+     * endKey completes the currently open key, writing its value list and subkey list.
+     */
+    public void endKey() throws IOException {
+        OpenKey key = this._stack.pop();
+
+        if (!key.values.isEmpty()) {
+            int list = this.allocate(0x4 * key.values.size());
+            ByteBuffer b = this.record(list);
+            for (int i = 0; i < key.values.size(); i++) {
+                b.putInt(0x4 * i, key.values.get(i));
+            }
+            this.patchInt(key.cell, NK_VALUE_COUNT_OFFSET, key.values.size());
+            this.patchInt(key.cell, NK_VALUE_LIST_OFFSET, list);
+        }
+
+        if (!key.children.isEmpty()) {
+            // Windows keeps subkey lists sorted by the upper case name.
+            Collections.sort(key.children, new Comparator<Child>() {
+                @Override
+                public int compare(Child a, Child b) {
+                    return a.name.toUpperCase().compareTo(b.name.toUpperCase());
+                }
+            });
+
+            int list = this.writeSubkeyList(key.children);
+            this.patchInt(key.cell, NK_SUBKEY_COUNT_OFFSET, key.children.size());
+            this.patchInt(key.cell, NK_SUBKEY_LIST_OFFSET, list);
+        }
+
+        if (this._stack.isEmpty()) {
+            this._rootCell = key.cell;
+        } else {
+            this._stack.peek().children.add(new Child(key.name, key.cell));
+        }
+    }
+
+    /**
+     * close flushes the final HBIN and writes the REGF header.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!this._stack.isEmpty()) {
+                throw new IllegalStateException("Keys are still open");
+            }
+            if (this._rootCell == NO_OFFSET) {
+                throw new IllegalStateException("No root key was written");
+            }
+            for (Map.Entry<Integer, Integer> record : this._securityRecords.entrySet()) {
+                this.patchInt(record.getKey(), SK_REFERENCE_COUNT_OFFSET, record.getValue());
+            }
+            this.flushHbin();
+
+            ByteBuffer header = ByteBuffer.allocate(REGFHeader.FIRST_HBIN_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(0, (byte)'r');
+            header.put(1, (byte)'e');
+            header.put(2, (byte)'g');
+            header.put(3, (byte)'f');
+            header.putInt(0x4, 1);     // primary sequence number
+            header.putInt(0x8, 1);     // secondary sequence number
+            header.putLong(0xC, DEFAULT_TIMESTAMP);
+            header.putInt(0x14, 1);    // major version
+            header.putInt(0x18, 5);    // minor version
+            header.putInt(0x1C, 0);    // file type: primary
+            header.putInt(0x20, 1);    // file format: direct memory load
+            header.putInt(0x24, this._rootCell);
+            header.putInt(0x28, this._hbinsSize);
+            header.putInt(0x2C, 1);    // clustering factor
+            byte[] name = "SYNTHETIC".getBytes("UTF-16LE");
+            for (int i = 0; i < name.length; i++) {
+                header.put(0x30 + i, name[i]);
+            }
+            int checksum = 0;
+            for (int i = 0; i < 0x1FC; i += 4) {
+                checksum ^= header.getInt(i);
+            }
+            header.putInt(0x1FC, checksum);
+
+            this._channel.write(header, 0);
+        } finally {
+            this._file.close();
+        }
+    }
+
+    private int writeSubkeyList(List<Child> children) throws IOException {
+        if (children.size() <= this._maxListLength) {
+            return this.writeDirectSubkeyList(children);
+        }
+
+        int numLists = (children.size() + this._maxListLength - 1) / this._maxListLength;
+        if (numLists > 0xFFFF) {
+            throw new IllegalStateException("Too many subkeys for a single index root: " + children.size());
+        }
+        int[] lists = new int[numLists];
+        for (int i = 0; i < numLists; i++) {
+            int start = i * this._maxListLength;
+            int end = Math.min(children.size(), start + this._maxListLength);
+            lists[i] = this.writeDirectSubkeyList(children.subList(start, end));
+        }
+
+        int ri = this.allocate(0x4 + 0x4 * numLists);
+        ByteBuffer b = this.record(ri);
+        b.put(0, (byte)'r');
+        b.put(1, (byte)'i');
+        b.putShort(0x2, (short)numLists);
+        for (int i = 0; i < numLists; i++) {
+            b.putInt(0x4 + 0x4 * i, lists[i]);
+        }
+        return ri;
+    }
+
+    private int writeDirectSubkeyList(List<Child> children) throws IOException {
+        int itemSize = this._listMagic.equals("li") ? 0x4 : 0x8;
+        int list = this.allocate(0x4 + itemSize * children.size());
+        ByteBuffer b = this.record(list);
+        b.put(0, (byte)this._listMagic.charAt(0));
+        b.put(1, (byte)this._listMagic.charAt(1));
+        b.putShort(0x2, (short)children.size());
+        for (int i = 0; i < children.size(); i++) {
+            Child child = children.get(i);
+            b.putInt(0x4 + itemSize * i, child.cell);
+            if (this._listMagic.equals("lh")) {
+                b.putInt(0x4 + itemSize * i + 0x4, hashName(child.name));
+            } else if (this._listMagic.equals("lf")) {
+                byte[] hint = child.name.getBytes("US-ASCII");
+                for (int j = 0; j < 4 && j < hint.length; j++) {
+                    b.put(0x4 + itemSize * i + 0x4 + j, hint[j]);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * hashName computes the hash stored alongside each entry of an "lh" subkey list.
+     */
+    public static int hashName(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 37 * hash + Character.toUpperCase(name.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * isAscii returns True if a name can be stored compressed, as one byte per character.
+     */
+    public static boolean isAscii(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * encodeName encodes a key or value name, compressed if possible, or as UTF-16LE otherwise.
+     */
+    public static byte[] encodeName(String name) throws UnsupportedEncodingException {
+        return isAscii(name) ? name.getBytes("US-ASCII") : name.getBytes("UTF-16LE");
+    }
+
+    /**
+     * encodeString encodes a string as NULL-terminated UTF-16LE, as found in REG_SZ data.
+     */
+    public static byte[] encodeString(String s) throws UnsupportedEncodingException {
+        return (s + "\0").getBytes("UTF-16LE");
+    }
+
+    private int writeDataCell(byte[] data, int offset, int length) throws IOException {
+        int cell = this.allocate(length);
+        ByteBuffer b = this.record(cell);
+        for (int i = 0; i < length; i++) {
+            b.put(i, data[offset + i]);
+        }
+        return cell;
+    }
+
+    /**
+     * writeBigData writes `data` as a series of segments, a list of the segment offsets,
+     *   and a "db" record that references the list.
+     *
+     * @return The offset of the "db" record's cell, relative to the first HBIN.
+     */
+    private int writeBigData(byte[] data) throws IOException {
+        int numSegments = (data.length + DB_SEGMENT_SIZE - 1) / DB_SEGMENT_SIZE;
+        if (numSegments > 0xFFFF) {
+            throw new IllegalArgumentException("Value data too large: " + data.length);
+        }
+        int[] segments = new int[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            int offset = i * DB_SEGMENT_SIZE;
+            segments[i] = this.writeDataCell(data, offset, Math.min(DB_SEGMENT_SIZE, data.length - offset));
+        }
+
+        int list = this.allocate(0x4 * numSegments);
+        ByteBuffer b = this.record(list);
+        for (int i = 0; i < numSegments; i++) {
+            b.putInt(0x4 * i, segments[i]);
+        }
+
+        int db = this.allocate(0x8);
+        b = this.record(db);
+        b.put(0, (byte)'d');
+        b.put(1, (byte)'b');
+        b.putShort(0x2, (short)numSegments);
+        b.putInt(0x4, list);
+        return db;
+    }
+
+    /**
+     * allocate reserves an active cell with room for `size` bytes of data.
+     *
+     * @return The offset of the cell, relative to the first HBIN.
+     */
+    private int allocate(int size) throws IOException {
+        int cellSize = (size + CELL_HEADER_SIZE + 0x7) & ~0x7;
+        if (this._hbin == null || this._hbinUsed + cellSize > this._hbin.capacity()) {
+            this.flushHbin();
+            int hbinSize = Math.max(HBIN_SIZE, (cellSize + HBIN_HEADER_SIZE + HBIN_SIZE - 1) & ~(HBIN_SIZE - 1));
+            if ((long)REGFHeader.FIRST_HBIN_OFFSET + this._hbinsSize + hbinSize > Integer.MAX_VALUE) {
+                throw new IOException("Hive too large, it would exceed 2GB");
+            }
+            this._hbin = ByteBuffer.allocate(hbinSize).order(ByteOrder.LITTLE_ENDIAN);
+            this._hbinOffset = this._hbinsSize;
+            this._hbinUsed = HBIN_HEADER_SIZE;
+            this._hbin.put(0, (byte)'h');
+            this._hbin.put(1, (byte)'b');
+            this._hbin.put(2, (byte)'i');
+            this._hbin.put(3, (byte)'n');
+            this._hbin.putInt(0x4, this._hbinOffset);
+            this._hbin.putInt(0x8, hbinSize);
+            this._hbin.putLong(0x14, DEFAULT_TIMESTAMP);
+        }
+
+        int cell = this._hbinOffset + this._hbinUsed;
+        this._hbin.putInt(this._hbinUsed, -cellSize);
+        this._hbinUsed += cellSize;
+        return cell;
+    }
+
+    /**
+     * record fetches a little endian view of the data of a cell in the current HBIN.
+     */
+    private ByteBuffer record(int cell) {
+        ByteBuffer view = this._hbin.duplicate();
+        view.position(cell - this._hbinOffset + CELL_HEADER_SIZE);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void patchInt(int cell, int offset, int value) throws IOException {
+        if (cell >= this._hbinOffset && this._hbin != null) {
+            this._hbin.putInt(cell - this._hbinOffset + CELL_HEADER_SIZE + offset, value);
+        } else {
+            ByteBuffer b = ByteBuffer.allocate(0x4).order(ByteOrder.LITTLE_ENDIAN);
+            b.putInt(0, value);
+            b.position(0);
+            this._channel.write(b, REGFHeader.FIRST_HBIN_OFFSET + cell + CELL_HEADER_SIZE + offset);
+        }
+    }
+
+    private void flushHbin() throws IOException {
+        if (this._hbin == null) {
+            return;
+        }
+        int remaining = this._hbin.capacity() - this._hbinUsed;
+        if (remaining > 0) {
+            // the slack at the end of a HBIN is a single free cell
+            this._hbin.putInt(this._hbinUsed, remaining);
+        }
+        this._hbin.position(0);
+        this._channel.write(this._hbin, REGFHeader.FIRST_HBIN_OFFSET + this._hbinOffset);
+        this._hbinsSize += this._hbin.capacity();
+        this._hbin = null;
+    }
+}
@@ -0,0 +1,120 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class KeyIndexFileTest extends TestCase {
+    private File _hive;
+    private File _sidecar;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._hive = File.createTempFile("rejistry", ".hive");
+        this._sidecar = new File(this._hive.getPath() + ".rjki");
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(2);
+        g.setFanout(12);
+        g.setValuesPerKey(3);
+        g.setMaxSubkeyListLength(5);
+        g.setNameEncoding(SyntheticHiveGenerator.NameEncoding.MIXED);
+        g.generate(this._hive);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._hive.delete();
+        this._sidecar.delete();
+    }
+
+    public void testLookupsMatchHive() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._hive);
+        KeyIndexFile index = KeyIndexFile.open(hive.getHeader(), this._sidecar);
+        assertTrue(this._sidecar.isFile());
+        assertEquals(1 + 12 + (12 * 12), index.getKeyCount());
+        assertEquals(3 * index.getKeyCount(), index.getValueCount());
+
+        for (RegistryKey key : hive.getRoot().getSubkeyList()) {
+            String path = key.getName();
+            assertEquals(hive.getKey(path).getName(), index.getKey(path).getName());
+            for (RegistryKey subkey : key.getSubkeyList()) {
+                String subpath = path.toUpperCase() + "\\" + subkey.getName();
+                RegistryKey expected = hive.getKey(subpath);
+                assertEquals(expected.getName(), index.getKey(subpath).getName());
+                assertEquals(expected.getTimestamp().getTimeInMillis(),
+                        (index.getKeyTimestampFiletime(subpath) / 10000L) - 11644473600000L);
+                int offset = index.getValueOffset(subpath, "VALUE\u00DC1");
+                assertEquals(expected.getValue("Value\u00FC1").getValue().getAsNumber(),
+                        new RegistryValue(hive.getHeader().getCellAtOffset(offset).getVKRecord()).getValue().getAsNumber());
+            }
+        }
+        assertEquals(hive.getHeader().getRootCellOffset(), index.getKeyOffset(""));
+
+        // the names of the second level repeat beneath each key of the first
+        String name = hive.getRoot().getSubkeyList().get(0).getSubkeyList().get(1).getName();
+        int expected = 0;
+        for (RegistryKey key : hive.getRoot().getSubkeyList()) {
+            for (RegistryKey subkey : key.getSubkeyList()) {
+                if (subkey.getName().equalsIgnoreCase(name)) {
+                    expected++;
+                }
+            }
+        }
+        assertTrue(expected > 0);
+        List<RegistryKey> named = index.getKeysByName(name.toUpperCase());
+        assertEquals(expected, named.size());
+        for (RegistryKey key : named) {
+            assertTrue(key.getName().equalsIgnoreCase(name));
+        }
+        assertTrue(index.getKeyOffsetsByName("Missing").isEmpty());
+
+        try {
+            index.getKeyOffset("Key1\\Missing");
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            index.getValueOffset("Key1", "Missing");
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testReopenAndStaleness() throws Exception {
+        KeyIndexFile.open(new RegistryHiveFile(this._hive).getHeader(), this._sidecar);
+        long modified = this._sidecar.lastModified();
+        assertTrue(this._sidecar.setLastModified(modified - 10000));
+        KeyIndexFile.open(new RegistryHiveFile(this._hive).getHeader(), this._sidecar);
+        assertEquals(modified - 10000, this._sidecar.lastModified());
+
+        // bump the sequence numbers, as Windows does on each write
+        RandomAccessFile f = new RandomAccessFile(this._hive, "rw");
+        try {
+            f.seek(REGFHeader.SEQ1_OFFSET);
+            f.writeInt(Integer.reverseBytes(0x1234));
+            f.seek(REGFHeader.SEQ2_OFFSET);
+            f.writeInt(Integer.reverseBytes(0x1234));
+        } finally {
+            f.close();
+        }
+        KeyIndexFile index = KeyIndexFile.open(new RegistryHiveFile(this._hive).getHeader(), this._sidecar);
+        assertTrue(this._sidecar.lastModified() != modified - 10000);
+        assertEquals(1 + 12 + (12 * 12), index.getKeyCount());
+
+        // a sidecar too short to hold its header is rebuilt
+        f = new RandomAccessFile(this._sidecar, "rw");
+        try {
+            f.setLength(0x10);
+        } finally {
+            f.close();
+        }
+        index = KeyIndexFile.open(new RegistryHiveFile(this._hive).getHeader(), this._sidecar);
+        assertEquals(1 + 12 + (12 * 12), index.getKeyCount());
+        assertTrue(this._sidecar.length() > 0x10);
+    }
+}
@@ -0,0 +1,101 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+public class KeyPathCacheTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.beginKey("Microsoft");
+            w.beginKey("Windows");
+            w.beginKey("CurrentVersion");
+            w.beginKey("Run");
+            w.addString("updater", "c:\\updater.exe");
+            w.endKey();
+            w.beginKey("RunOnce");
+            w.endKey();
+            w.endKey();
+            w.endKey();
+            w.endKey();
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testGetKeyCountsHitsAndMisses() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        KeyPathCache cache = hive.getPathCache();
+
+        RegistryKey run = hive.getKey("Microsoft\\Windows\\CurrentVersion\\Run");
+        assertEquals("Run", run.getName());
+        assertEquals("c:\\updater.exe", run.getValue("updater").getValue().getAsString());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(4, cache.size());
+
+        assertEquals("Run", hive.getKey("\\microsoft\\WINDOWS\\currentversion\\run\\").getName());
+        assertEquals("CurrentVersion", hive.getKey("Microsoft\\\\Windows\\CurrentVersion").getName());
+        assertEquals(2, cache.getHitCount());
+
+        // resolved from the cached prefix
+        assertEquals("RunOnce", hive.getKey("Microsoft\\Windows\\CurrentVersion\\RunOnce").getName());
+        assertEquals(2, cache.getMissCount());
+
+        assertEquals("ROOT", hive.getKey("").getName());
+
+        try {
+            hive.getKey("Microsoft\\Windows\\Missing");
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testCapacityIsBounded() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file, 2);
+        hive.getKey("Microsoft\\Windows\\CurrentVersion\\Run");
+        assertEquals(2, hive.getPathCache().size());
+        assertEquals("Run", hive.getKey("Microsoft\\Windows\\CurrentVersion\\Run").getName());
+        assertEquals(1, hive.getPathCache().getHitCount());
+    }
+
+    public void testDefaultGetKeyWalksFromRoot() throws Exception {
+        final RegistryHiveFile file = new RegistryHiveFile(this._file);
+        RegistryHive hive = new RegistryHive() {
+            @Override
+            public RegistryKey getRoot() throws RegistryParseException {
+                return file.getRoot();
+            }
+
+            @Override
+            public REGFHeader getHeader() throws RegistryParseException {
+                return file.getHeader();
+            }
+        };
+
+        assertEquals("Run", hive.getKey("\\microsoft\\Windows\\CurrentVersion\\Run").getName());
+        assertEquals("ROOT", hive.getKey("").getName());
+        assertEquals(0, file.getPathCache().getMissCount());
+
+        try {
+            hive.getKey("Microsoft\\Missing");
+            fail("Expected NoSuchElementException");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.VKCursor;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RecordCursorTest walks a hive with a single NKCursor and VKCursor and checks
+ *   that they see the same keys and values as the record API.
+ */
+public class RecordCursorTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            for (int i = 0; i < 10; i++) {
+                w.beginKey("Key" + i, HiveWriter.DEFAULT_TIMESTAMP + i);
+                w.addDword("Dword", i);
+                w.addQword("Qword", 0x100000000L * i);
+                w.addString("String", "value " + i);
+                for (int j = 0; j < 3; j++) {
+                    w.beginKey("Subkey" + j);
+                    w.endKey();
+                }
+                w.endKey();
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private static void walk(NKCursor nk, VKCursor vk, int offset, String path, List<String> out) throws Exception {
+        assertTrue(nk.moveTo(offset));
+        out.add(path + " " + nk.getTimestampFiletime() + " " + nk.toRecord().getTimestamp().getTimeInMillis());
+
+        int[] values = new int[nk.getNumberOfValues()];
+        nk.readValueOffsets(values);
+        for (int value : values) {
+            assertTrue(vk.moveTo(value));
+            if (vk.getValueType() == RegistryValueType.REG_SZ) {
+                out.add(path + ":" + vk.getName() + "=" + vk.toRecord().getValue().getAsString());
+            } else {
+                out.add(path + ":" + vk.getName() + "=" + vk.getNumber());
+            }
+        }
+
+        int[] subkeys = new int[nk.getSubkeyCount()];
+        assertEquals(subkeys.length, nk.readSubkeyOffsets(subkeys));
+        for (int subkey : subkeys) {
+            assertTrue(nk.moveTo(subkey));
+            walk(nk, vk, subkey, path + "\\" + nk.getName(), out);
+        }
+    }
+
+    private static void walk(RegistryKey key, String path, List<String> out, long filetime) throws Exception {
+        out.add(path + " " + filetime + " " + key.getTimestamp().getTimeInMillis());
+        for (RegistryValue value : key.getValueList()) {
+            ValueData data = value.getValue();
+            if (data.getValueType() == RegistryValueType.REG_SZ) {
+                out.add(path + ":" + value.getName() + "=" + data.getAsString());
+            } else {
+                out.add(path + ":" + value.getName() + "=" + data.getAsNumber());
+            }
+        }
+        int i = 0;
+        for (RegistryKey subkey : key.getSubkeyList()) {
+            // Key0 through Key9 are written with increasing timestamps, and their subkeys with the default
+            long subkeyFiletime = path.equals("ROOT") ? HiveWriter.DEFAULT_TIMESTAMP + i : HiveWriter.DEFAULT_TIMESTAMP;
+            walk(subkey, path + "\\" + subkey.getName(), out, subkeyFiletime);
+            i++;
+        }
+    }
+
+    public void testCursorWalkMatchesRecordWalk() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        REGFHeader header = hive.getHeader();
+
+        List<String> expected = new ArrayList<String>();
+        walk(hive.getRoot(), "ROOT", expected, HiveWriter.DEFAULT_TIMESTAMP);
+
+        List<String> seen = new ArrayList<String>();
+        walk(header.newNKCursor(), header.newVKCursor(), header.getRootCellOffset(), "ROOT", seen);
+
+        assertEquals(expected, seen);
+    }
+
+    public void testMoveToRejectsOtherRecords() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        REGFHeader header = hive.getHeader();
+        NKCursor nk = header.newNKCursor();
+        VKCursor vk = header.newVKCursor();
+
+        assertTrue(nk.moveTo(header.getRootCellOffset()));
+        assertTrue(nk.isRootKey());
+        assertFalse(vk.moveTo(header.getRootCellOffset()));
+        assertFalse(vk.isValid());
+        assertFalse(nk.moveTo(-8));
+        assertFalse(nk.moveTo(Integer.MAX_VALUE));
+
+        int subkey = header.getRootNKRecord().getSubkeyList().getSubkey("Key3").getSubkeyList().getSubkey("Subkey1").getCellOffset();
+        assertTrue(nk.moveTo(subkey));
+        assertTrue(nk.nameEqualsIgnoreCase("SUBKEY1"));
+        assertTrue(nk.moveToParent());
+        assertTrue(nk.nameEqualsIgnoreCase("key3"));
+    }
+
+    public void testByteBufferConstructors() throws Exception {
+        // callers holding a hive in a ByteBuffer may still build records and cursors from it
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(this._file.toPath()));
+        REGFHeader header = new REGFHeader(buf, 0x0);
+        int root = REGFHeader.FIRST_HBIN_OFFSET + header.getRootCellOffset();
+        Cell cell = new Cell(buf, root);
+        assertEquals(CellType.NK, CellType.classify(buf, root + 0x4, cell.getLength() - 0x4));
+        assertEquals("nk", U.parseASCIIString(buf, root + 0x4, 0x2));
+        NKRecord nk = new NKRecord(buf, root + 0x4);
+        assertEquals("ROOT", nk.getName());
+        NKCursor cursor = new NKCursor(buf);
+        assertTrue(cursor.moveTo(header.getRootCellOffset()));
+        assertEquals("ROOT", cursor.getName());
+        assertEquals(10, cursor.getSubkeyCount());
+        assertEquals(0, new HBIN(header, buf, REGFHeader.FIRST_HBIN_OFFSET).getRelativeOffsetFirstHBIN());
+    }
+}
@@ -0,0 +1,356 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class RegistryHiveChannelTest extends TestCase {
+    private byte[] _hiveBytes;
+
+    /**
+     * ByteArrayChannel is a read-only channel over a byte array, which counts the reads made of it.
+     */
+    private static class ByteArrayChannel implements SeekableByteChannel {
+        private final byte[] _data;
+        private long _position = 0;
+        private int _reads = 0;
+
+        ByteArrayChannel(byte[] data) {
+            this._data = data;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            // widen the window in which another thread could move the position of a shared channel
+            Thread.yield();
+            if (this._position >= this._data.length) {
+                return -1;
+            }
+            int n = (int)Math.min(dst.remaining(), this._data.length - this._position);
+            dst.put(this._data, (int)this._position, n);
+            this._position += n;
+            this._reads++;
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return this._position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            this._position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return this._data.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        File f = File.createTempFile("rejistry", ".hive");
+        try {
+            SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+            g.setDepth(2);
+            g.setFanout(6);
+            g.generate(f);
+            this._hiveBytes = Files.readAllBytes(f.toPath());
+        } finally {
+            f.delete();
+        }
+    }
+
+    public void testMatchesBuffer() throws Exception {
+        RegistryHive expected = new RegistryHiveBuffer(ByteBuffer.wrap(this._hiveBytes));
+        RegistryHiveChannel hive = new RegistryHiveChannel(new ByteArrayChannel(this._hiveBytes));
+        assertEquals(SyntheticHiveGenerator.countKeys(expected.getRoot()), SyntheticHiveGenerator.countKeys(hive.getRoot()));
+        assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(hive.getRoot()));
+        assertEquals(expected.getHeader().getHiveName(), hive.getHeader().getHiveName());
+        assertEquals(this._hiveBytes.length, hive.getPageCache().capacity());
+    }
+
+    public void testHiveWithinContainer() throws Exception {
+        // a hive at a sector boundary within a larger container, followed by trailing data
+        long offset = 0x2200;
+        byte[] container = new byte[(int)offset + this._hiveBytes.length + 0x5000];
+        Arrays.fill(container, (byte)0x41);
+        System.arraycopy(this._hiveBytes, 0, container, (int)offset, this._hiveBytes.length);
+
+        // far fewer pages than the hive holds, so that the walk must evict and re-read pages
+        RegistryHiveChannel hive = new RegistryHiveChannel(new ByteArrayChannel(container), offset, 0x2, 0x1);
+        PageCache pages = hive.getPageCache();
+        assertEquals(offset, hive.getOffset());
+        assertTrue(this._hiveBytes.length > 0x4 * PageCache.PAGE_SIZE);
+        assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(hive.getRoot()));
+        assertTrue(pages.getPageCount() <= 0x2);
+        assertTrue(pages.getHitCount() > 0);
+        assertTrue(pages.getMissCount() > 0);
+    }
+
+    public void testParallelWalk() throws Exception {
+        // many threads share a cache too small to hold the hive, so pages are evicted while in use
+        final Set<String> keys = Collections.synchronizedSet(new HashSet<String>());
+        final Set<String> values = Collections.synchronizedSet(new HashSet<String>());
+        RegistryHiveChannel hive = new RegistryHiveChannel(new ByteArrayChannel(this._hiveBytes), 0, 0x3, 0x1);
+        new RegistryWalker(hive, 4).walk(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) {
+                assertTrue(keys.add(path));
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) throws UnsupportedEncodingException {
+                assertTrue(values.add(path + ":" + value.getName()));
+            }
+        });
+        assertEquals(1 + 6 + 36, keys.size());
+        assertTrue(hive.getPageCache().getPageCount() <= 0x3);
+    }
+
+    public void testReadAheadAndEviction() throws Exception {
+        byte[] data = new byte[PageCache.PAGE_SIZE * 0x10 + 0x123];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i * 31);
+        }
+        ByteBuffer expected = ByteBuffer.wrap(data).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        ByteArrayChannel channel = new ByteArrayChannel(data);
+        PageCache pages = new PageCache(channel, 0x0, data.length, 0x8, 0x3);
+
+        // one miss reads four pages, so the next three are hits
+        for (int i = 0; i < 4; i++) {
+            assertEquals(data[i * PageCache.PAGE_SIZE + 7], pages.get(i * PageCache.PAGE_SIZE + 7));
+        }
+        assertEquals(1, pages.getMissCount());
+        assertEquals(3, pages.getHitCount());
+        assertEquals(0.75, pages.getHitRate(), 1e-9);
+
+        // values that straddle pages
+        for (int i = 1; i < 8; i++) {
+            int index = PageCache.PAGE_SIZE - i;
+            assertEquals(expected.getShort(index), pages.getShort(index));
+            assertEquals(expected.getInt(index), pages.getInt(index));
+            assertEquals(expected.getLong(index), pages.getLong(index));
+        }
+        assertEquals(ByteBuffer.wrap(data, PageCache.PAGE_SIZE - 0x10, 0x20), pages.slice(PageCache.PAGE_SIZE - 0x10, 0x20));
+
+        // a read spanning pages, and the short final page
+        byte[] all = new byte[data.length];
+        pages.get(0, all, 0, all.length);
+        assertTrue(Arrays.equals(data, all));
+        assertTrue(pages.getPageCount() <= 0x8);
+
+        // the first pages were evicted, so reading them again misses
+        long misses = pages.getMissCount();
+        pages.get(0);
+        assertEquals(misses + 1, pages.getMissCount());
+
+        try {
+            pages.getShort(data.length - 1);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+
+        pages.clear();
+        assertEquals(0, pages.getPageCount());
+        assertEquals(0.0, pages.getHitRate());
+    }
+
+    public void testFragmentedHiveInImage() throws Exception {
+        // split the hive into three runs, and store them out of order within an image
+        int a = 0x1800;
+        int b = 0x3000;
+        int[][] runs = {{0, a}, {a, b - a}, {b, this._hiveBytes.length - b}};
+        long[] placement = {0x9000, 0x200, 0x5000 + this._hiveBytes.length};
+        byte[] image = new byte[(int)placement[2] + runs[2][1] + 0x1000];
+        Arrays.fill(image, (byte)0x41);
+        List<ExtentChannel.Extent> extents = new ArrayList<ExtentChannel.Extent>();
+        for (int i = 0; i < runs.length; i++) {
+            System.arraycopy(this._hiveBytes, runs[i][0], image, (int)placement[i], runs[i][1]);
+            extents.add(new ExtentChannel.Extent(placement[i], runs[i][1]));
+        }
+
+        File f = File.createTempFile("rejistry", ".img");
+        try {
+            Files.write(f.toPath(), image);
+            SeekableByteChannel channel = Files.newByteChannel(f.toPath(), StandardOpenOption.READ);
+            try {
+                ExtentChannel file = new ExtentChannel(channel, extents);
+                assertEquals(this._hiveBytes.length, file.size());
+                ByteBuffer all = ByteBuffer.allocate(this._hiveBytes.length);
+                while (all.hasRemaining() && file.read(all) > 0) {
+                    // reads stop at the end of each extent
+                }
+                assertTrue(Arrays.equals(this._hiveBytes, all.array()));
+                assertEquals(-1, file.read(ByteBuffer.allocate(1)));
+
+                RegistryHiveChannel hive = new RegistryHiveChannel(channel, extents);
+                assertEquals(1 + 6 + 36, SyntheticHiveGenerator.countKeys(hive.getRoot()));
+            } finally {
+                channel.close();
+            }
+        } finally {
+            f.delete();
+        }
+
+        try {
+            new ExtentChannel(new ByteArrayChannel(image), Arrays.asList(new ExtentChannel.Extent(image.length - 1, 2)));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testHivesShareImage() throws Exception {
+        // two fragmented copies of the hive, interleaved within one image that isn't a FileChannel
+        int half = 0x2000;
+        int rest = this._hiveBytes.length - half;
+        byte[] image = new byte[0x200 + (2 * this._hiveBytes.length)];
+        List<ExtentChannel.Extent> first = new ArrayList<ExtentChannel.Extent>();
+        List<ExtentChannel.Extent> second = new ArrayList<ExtentChannel.Extent>();
+        int position = 0x200;
+        for (List<ExtentChannel.Extent> extents : Arrays.asList(first, second)) {
+            System.arraycopy(this._hiveBytes, 0, image, position, half);
+            extents.add(new ExtentChannel.Extent(position, half));
+            position += half;
+        }
+        for (List<ExtentChannel.Extent> extents : Arrays.asList(first, second)) {
+            System.arraycopy(this._hiveBytes, half, image, position, rest);
+            extents.add(new ExtentChannel.Extent(position, rest));
+            position += rest;
+        }
+
+        ByteArrayChannel channel = new ByteArrayChannel(image);
+        final RegistryHiveChannel[] hives = {
+                new RegistryHiveChannel(new ExtentChannel(channel, first), 0, 0x2, 0x0),
+                new RegistryHiveChannel(new ExtentChannel(channel, second), 0, 0x2, 0x0),
+        };
+        final int[] counts = new int[hives.length];
+        final Exception[] failures = new Exception[hives.length];
+        Thread[] threads = new Thread[hives.length];
+        for (int i = 0; i < hives.length; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int round = 0; round < 0x10; round++) {
+                            counts[index] = SyntheticHiveGenerator.countKeys(hives[index].getRoot());
+                        }
+                    } catch (Exception e) {
+                        failures[index] = e;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (int i = 0; i < hives.length; i++) {
+            threads[i].join();
+            if (failures[i] != null) {
+                throw failures[i];
+            }
+            assertEquals(1 + 6 + 36, counts[i]);
+        }
+    }
+
+    public void testMissDoesNotBlockHits() throws Exception {
+        byte[] data = new byte[PageCache.PAGE_SIZE * 0x8];
+        data[0x10] = 0x7;
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final PageCache pages = new PageCache(new ByteArrayChannel(data) {
+            @Override
+            public int read(ByteBuffer dst) {
+                if (this.position() >= 0x4 * PageCache.PAGE_SIZE) {
+                    // a slow read of the later pages
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.read(dst);
+            }
+        }, 0x0, data.length, 0x8, 0x0);
+        assertEquals(0x7, pages.get(0x10));
+
+        Thread slow = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pages.get(0x4 * PageCache.PAGE_SIZE);
+            }
+        });
+        slow.start();
+        try {
+            assertTrue(reading.await(10, TimeUnit.SECONDS));
+            // the cache is not locked while the slow page is read, so a cached page is still available
+            final byte[] fast = new byte[1];
+            Thread hit = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    fast[0] = pages.get(0x10);
+                }
+            });
+            hit.start();
+            hit.join(10000);
+            assertFalse(hit.isAlive());
+            assertEquals(0x7, fast[0]);
+            assertEquals(3, pages.getHitCount() + pages.getMissCount());
+        } finally {
+            release.countDown();
+            slow.join();
+        }
+    }
+
+    public void testNameComparisonLooksUpPagesOnce() throws Exception {
+        byte[] data = new byte[PageCache.PAGE_SIZE * 0x2];
+        byte[] name = "SOFTWARE".getBytes("US-ASCII");
+        System.arraycopy(name, 0, data, 0x100, name.length);
+        System.arraycopy(name, 0, data, PageCache.PAGE_SIZE - 0x3, name.length);
+        PageCache pages = new PageCache(new ByteArrayChannel(data), 0x0, data.length, 0x2, 0x1);
+
+        assertTrue(U.asciiEqualsIgnoreCase(pages, 0x100, name.length, "software"));
+        assertEquals(1, pages.getHitCount() + pages.getMissCount());
+        // a name that straddles two pages looks up each of them once
+        assertTrue(U.asciiEqualsIgnoreCase(pages, PageCache.PAGE_SIZE - 0x3, name.length, "Software"));
+        assertEquals(3, pages.getHitCount() + pages.getMissCount());
+    }
+}
@@ -0,0 +1,123 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class RegistryValueStreamTest extends TestCase {
+    private static final int BIG_SIZE = 0x9000;
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.addDword("Dword", 0x12345678);
+            w.addString("Small", "small string");
+            w.addValue("BigBinary", RegistryValueType.REG_BIN, SyntheticHiveGenerator.getBigData(BIG_SIZE));
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private static byte[] readAll(InputStream in, int bufferSize) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    public void testStreamBigData() throws Exception {
+        RegistryValue value = new RegistryHiveFile(this._file).getRoot().getValue("BigBinary");
+        // a buffer size that doesn't divide the segment size, so reads straddle segments
+        byte[] actual = readAll(value.openStream(), 0x1001);
+        assertTrue(Arrays.equals(SyntheticHiveGenerator.getBigData(BIG_SIZE), actual));
+    }
+
+    public void testStreamSmallData() throws Exception {
+        RegistryKey root = new RegistryHiveFile(this._file).getRoot();
+        assertTrue(Arrays.equals(HiveWriter.encodeString("small string"), readAll(root.getValue("Small").openStream(), 0x10)));
+        assertTrue(Arrays.equals(new byte[] {0x78, 0x56, 0x34, 0x12}, readAll(root.getValue("Dword").openStream(), 0x10)));
+    }
+
+    public void testClosedChannel() throws Exception {
+        ReadableByteChannel channel = new RegistryHiveFile(this._file).getRoot().getValue("BigBinary").openChannel();
+        ByteBuffer dst = ByteBuffer.allocate(0x10);
+        assertEquals(0x10, channel.read(dst));
+        channel.close();
+        assertFalse(channel.isOpen());
+        try {
+            channel.read(dst);
+            fail();
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    /**
+     * setSegmentOffset overwrites the offset of the second segment in the "db" list of the big data value.
+     */
+    private void setSegmentOffset(int offset) throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        NKCursor nk = header.newNKCursor();
+        VKCursor vk = header.newVKCursor();
+        nk.moveTo(header.getRootCellOffset());
+        int[] values = new int[nk.getNumberOfValues()];
+        int db = -1;
+        for (int i = 0; i < nk.readValueOffsets(values); i++) {
+            if (vk.moveTo(values[i]) && vk.nameEqualsIgnoreCase("BigBinary")) {
+                db = REGFHeader.FIRST_HBIN_OFFSET + vk.getDataCellOffset();
+            }
+        }
+        ByteBuffer hive = ByteBuffer.wrap(Files.readAllBytes(this._file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        // the cell header, then "db", the segment count, and the offset of the list
+        int list = REGFHeader.FIRST_HBIN_OFFSET + hive.getInt(db + 0x8);
+        RandomAccessFile f = new RandomAccessFile(this._file, "rw");
+        try {
+            f.seek(list + 0x4 + 0x4);
+            f.writeInt(Integer.reverseBytes(offset));
+        } finally {
+            f.close();
+        }
+    }
+
+    public void testCorruptSegmentList() throws Exception {
+        // a segment beyond the hive, and a segment in a cell far too small to hold it
+        for (int offset : new int[] {0x7FFFFFF0, 0x20}) {
+            this.setUp();
+            this.setSegmentOffset(offset);
+            RegistryValue value = new RegistryHiveFile(this._file).getRoot().getValue("BigBinary");
+            try {
+                readAll(value.openStream(), 0x1001);
+                fail("expected StreamCorruptedException");
+            } catch (StreamCorruptedException e) {
+                // expected
+            }
+            this.tearDown();
+        }
+    }
+}
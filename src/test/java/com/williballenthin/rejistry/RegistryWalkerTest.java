@@ -0,0 +1,81 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class RegistryWalkerTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            for (int i = 0; i < 20; i++) {
+                w.beginKey("Key" + i);
+                w.addDword("Index", i);
+                for (int j = 0; j < 5; j++) {
+                    w.beginKey("Subkey" + j);
+                    w.addString("Name", "subkey " + j);
+                    w.endKey();
+                }
+                w.endKey();
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testWalkVisitsEveryKeyAndValue() throws Exception {
+        final Set<String> keys = Collections.synchronizedSet(new HashSet<String>());
+        final Set<String> values = Collections.synchronizedSet(new HashSet<String>());
+
+        new RegistryWalker(new RegistryHiveFile(this._file), 4).walk(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) {
+                assertTrue(keys.add(path));
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) throws UnsupportedEncodingException {
+                assertTrue(values.add(path + ":" + value.getName()));
+            }
+        });
+
+        assertEquals(1 + 20 + 20 * 5, keys.size());
+        assertEquals(20 + 20 * 5, values.size());
+        assertTrue(keys.contains("ROOT\\Key13\\Subkey4"));
+        assertTrue(values.contains("ROOT\\Key13\\Subkey4:Name"));
+    }
+
+    public void testWalkRethrowsVisitorFailure() throws Exception {
+        try {
+            new RegistryWalker(new RegistryHiveFile(this._file), 4).walk(new RegistryVisitor() {
+                @Override
+                public void visitKey(String path, RegistryKey key) throws RegistryParseException {
+                    if (path.endsWith("Subkey3")) {
+                        throw new RegistryParseException("abort");
+                    }
+                }
+
+                @Override
+                public void visitValue(String path, RegistryKey key, RegistryValue value) { }
+            });
+            fail("Expected the walk to be aborted");
+        } catch (RegistryParseException e) {
+            assertEquals("abort", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.SKRecord;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+public class SecurityDescriptorTest extends TestCase {
+    private static final UUID OBJECT_TYPE = UUID.fromString("bf967aba-0de6-11d0-a285-00aa003049e2");
+
+    private File _file;
+    private int _admins;
+    private int _users;
+
+    /**
+     * sid encodes a SID such as S-1-5-32-544, given its authority and subauthorities.
+     */
+    private static byte[] sid(int authority, int... subauthorities) {
+        ByteBuffer b = ByteBuffer.allocate(0x8 + (0x4 * subauthorities.length)).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(0, (byte)1);
+        b.put(1, (byte)subauthorities.length);
+        b.put(7, (byte)authority);
+        for (int i = 0; i < subauthorities.length; i++) {
+            b.putInt(0x8 + (0x4 * i), subauthorities[i]);
+        }
+        return b.array();
+    }
+
+    private static byte[] ace(int type, int flags, int mask, UUID objectType, byte[] sid) {
+        int size = 0x8 + (objectType == null ? 0 : 0x14) + sid.length;
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte)type).put((byte)flags).putShort((short)size).putInt(mask);
+        if (objectType != null) {
+            b.putInt(0x1);  // ACE_OBJECT_TYPE_PRESENT
+            b.putInt((int)(objectType.getMostSignificantBits() >>> 32));
+            b.putShort((short)(objectType.getMostSignificantBits() >>> 16));
+            b.putShort((short)objectType.getMostSignificantBits());
+            b.order(ByteOrder.BIG_ENDIAN).putLong(objectType.getLeastSignificantBits()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        b.put(sid);
+        return b.array();
+    }
+
+    /**
+     * descriptor encodes a self-relative security descriptor with the given owner, group, and DACL entries.
+     */
+    private static byte[] descriptor(byte[] owner, byte[] group, byte[]... aces) throws Exception {
+        ByteArrayOutputStream acl = new ByteArrayOutputStream();
+        for (byte[] ace : aces) {
+            acl.write(ace);
+        }
+        int aclSize = 0x8 + acl.size();
+        ByteBuffer b = ByteBuffer.allocate(0x14 + owner.length + group.length + aclSize).order(ByteOrder.LITTLE_ENDIAN);
+        b.put((byte)1).put((byte)0).putShort((short)(SecurityDescriptor.SE_SELF_RELATIVE | SecurityDescriptor.SE_DACL_PRESENT));
+        b.putInt(0x14);
+        b.putInt(0x14 + owner.length);
+        b.putInt(0);
+        b.putInt(0x14 + owner.length + group.length);
+        b.put(owner).put(group);
+        b.put((byte)2).put((byte)0).putShort((short)aclSize).putShort((short)aces.length).putShort((short)0);
+        b.put(acl.toByteArray());
+        return b.array();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        byte[] admins = sid(5, 32, 544);
+        byte[] system = sid(5, 18);
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            this._admins = w.addSecurityDescriptor(descriptor(admins, system,
+                    ace(AccessControlEntry.ACCESS_ALLOWED_ACE_TYPE, AccessControlEntry.CONTAINER_INHERIT_ACE, 0xF003F, null, system),
+                    ace(AccessControlEntry.ACCESS_ALLOWED_OBJECT_ACE_TYPE, 0, 0x20019, OBJECT_TYPE, sid(5, 11))));
+            this._users = w.addSecurityDescriptor(descriptor(system, system,
+                    ace(AccessControlEntry.ACCESS_DENIED_ACE_TYPE, AccessControlEntry.INHERITED_ACE, 0x20019, null, sid(5, 32, 545))));
+            w.setSecurity(this._admins);
+            w.beginKey("ROOT");
+            for (int i = 0; i < 10; i++) {
+                w.setSecurity(i % 2 == 0 ? this._admins : this._users);
+                w.beginKey("Key" + i);
+                w.beginKey("Subkey");
+                w.endKey();
+                w.endKey();
+            }
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testParseDescriptor() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        SecurityDescriptor sd = hive.getRoot().getSecurityDescriptor();
+        assertEquals("S-1-5-32-544", sd.getOwner());
+        assertEquals("S-1-5-18", sd.getGroup());
+        assertNull(sd.getSacl());
+
+        List<AccessControlEntry> aces = sd.getDacl().getEntries();
+        assertEquals(2, aces.size());
+        assertEquals(AccessControlEntry.ACCESS_ALLOWED_ACE_TYPE, aces.get(0).getType());
+        assertEquals(AccessControlEntry.CONTAINER_INHERIT_ACE, aces.get(0).getFlags());
+        assertEquals(0xF003F, aces.get(0).getAccessMask());
+        assertEquals("S-1-5-18", aces.get(0).getSid());
+        assertNull(aces.get(0).getObjectType());
+        assertEquals(AccessControlEntry.ACCESS_ALLOWED_OBJECT_ACE_TYPE, aces.get(1).getType());
+        assertEquals(OBJECT_TYPE, aces.get(1).getObjectType());
+        assertEquals("S-1-5-11", aces.get(1).getSid());
+
+        SecurityDescriptor users = hive.getKey("Key1\\Subkey").getSecurityDescriptor();
+        assertEquals(AccessControlEntry.ACCESS_DENIED_ACE_TYPE, users.getDacl().getEntries().get(0).getType());
+        assertEquals("S-1-5-32-545", users.getDacl().getEntries().get(0).getSid());
+    }
+
+    public void testRecordsAreLinkedAndCounted() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        SKRecord admins = header.getCellAtOffset(this._admins).getSKRecord();
+        SKRecord users = header.getCellAtOffset(this._users).getSKRecord();
+        assertEquals(this._users, admins.getNextRecordOffset());
+        assertEquals(this._users, admins.getPreviousRecordOffset());
+        assertEquals(this._admins, users.getNextRecordOffset());
+        assertEquals(1 + 10, admins.getReferenceCount());
+        assertEquals(10, users.getReferenceCount());
+        assertEquals(this._admins, header.getRootNKRecord().getSecurityRecordOffset());
+    }
+
+    public void testEachDescriptorParsedOnce() throws Exception {
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        SecurityDescriptor root = hive.getRoot().getSecurityDescriptor();
+        for (RegistryKey key : hive.getRoot().getSubkeyList()) {
+            SecurityDescriptor sd = key.getSecurityDescriptor();
+            if (key.getName().equals("Key0")) {
+                assertSame(root, sd);
+            }
+            for (RegistryKey subkey : key.getSubkeyList()) {
+                assertSame(sd, subkey.getSecurityDescriptor());
+            }
+        }
+        assertEquals(2, hive.getSecurityCache().getParseCount());
+        assertEquals(2, hive.getSecurityCache().size());
+
+        new RegistryWalker(hive, 4).walk(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) throws RegistryParseException {
+                assertNotNull(key.getSecurityDescriptor().getOwner());
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) {
+            }
+        });
+    }
+
+    public void testKeyWithoutDescriptor() throws Exception {
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.endKey();
+        } finally {
+            w.close();
+        }
+        NKRecord root = new RegistryHiveFile(this._file).getHeader().getRootNKRecord();
+        assertFalse(root.hasSecurityRecord());
+        try {
+            new RegistryHiveFile(this._file).getRoot().getSecurityDescriptor();
+            fail();
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testTruncatedDescriptor() throws Exception {
+        byte[] full = descriptor(sid(5, 18), sid(5, 18), ace(0, 0, 0x1, null, sid(5, 18)));
+        try {
+            new SecurityDescriptor(ByteBuffer.wrap(full, 0, full.length - 4).slice());
+            fail();
+        } catch (RegistryParseException e) {
+            // expected
+        }
+    }
+
+    public void testTruncatedObjectAce() throws Exception {
+        // an object ACE too short for its object flags, at the very end of the descriptor
+        byte[] ace = ByteBuffer.allocate(0x8).order(ByteOrder.LITTLE_ENDIAN)
+                .put((byte)AccessControlEntry.ACCESS_ALLOWED_OBJECT_ACE_TYPE).put((byte)0).putShort((short)0x8).putInt(0x1)
+                .array();
+        try {
+            new SecurityDescriptor(ByteBuffer.wrap(descriptor(sid(5, 18), sid(5, 18), ace)).order(ByteOrder.LITTLE_ENDIAN));
+            fail("expected RegistryParseException");
+        } catch (RegistryParseException e) {
+            // expected
+        }
+    }
+
+    public void testOffsetNearIntegerMax() throws Exception {
+        // offsets that overflow when added to a field size must still be rejected as out of bounds
+        for (int field : new int[] {0x4, 0x10}) {
+            ByteBuffer b = ByteBuffer.allocate(0x20).order(ByteOrder.LITTLE_ENDIAN);
+            b.put((byte)1).put((byte)0).putShort((short)(SecurityDescriptor.SE_SELF_RELATIVE | SecurityDescriptor.SE_DACL_PRESENT));
+            b.putInt(field, 0x7FFFFFFC);
+            try {
+                new SecurityDescriptor(b);
+                fail("expected RegistryParseException");
+            } catch (RegistryParseException e) {
+                // expected
+            }
+        }
+    }
+}
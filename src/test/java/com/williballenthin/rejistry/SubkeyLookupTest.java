@@ -0,0 +1,92 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.LHRecord;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+/**
+ * SubkeyLookupTest resolves subkeys by name against each kind of subkey list.
+ */
+public class SubkeyLookupTest extends TestCase {
+    private static final int SUBKEYS = 300;
+
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    private RegistryHive writeHive(String listType) throws Exception {
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.setSubkeyListType(listType);
+            w.beginKey("ROOT");
+            for (int i = 0; i < SUBKEYS; i++) {
+                w.beginKey("Key" + i);
+                w.addDword("Index", i);
+                w.endKey();
+            }
+            w.beginKey("ab");
+            w.endKey();
+            w.beginKey("abc");
+            w.endKey();
+            w.beginKey("\u00c9t\u00e9");
+            w.addString("\u00e9l\u00e8ve", "wide value name");
+            w.endKey();
+            w.endKey();
+        } finally {
+            w.close();
+        }
+        return new RegistryHiveFile(this._file);
+    }
+
+    private void checkLookups(RegistryHive hive) throws Exception {
+        RegistryKey root = hive.getRoot();
+        for (int i = 0; i < SUBKEYS; i++) {
+            RegistryKey key = root.getSubkey("KEY" + i);
+            assertEquals("Key" + i, key.getName());
+            assertEquals(i, key.getValue("index").getValue().getAsNumber());
+        }
+        assertEquals("ab", root.getSubkey("AB").getName());
+        assertEquals("abc", root.getSubkey("Abc").getName());
+
+        RegistryKey wide = root.getSubkey("\u00e9T\u00c9");
+        assertEquals("\u00c9t\u00e9", wide.getName());
+        assertEquals("wide value name", wide.getValue("\u00c9L\u00c8VE").getValue().getAsString());
+
+        for (String missing : new String[] {"Key", "Key300", "a", "abcd", "Kez1", "\u00e9t\u00e9s", "\u00e9t"}) {
+            try {
+                root.getSubkey(missing);
+                fail("Unexpectedly found subkey " + missing);
+            } catch (NoSuchElementException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testHashList() throws Exception {
+        this.checkLookups(this.writeHive("lh"));
+    }
+
+    public void testHintList() throws Exception {
+        this.checkLookups(this.writeHive("lf"));
+    }
+
+    public void testIndexList() throws Exception {
+        this.checkLookups(this.writeHive("li"));
+    }
+
+    public void testHashName() {
+        assertEquals(LHRecord.hashName("software"), LHRecord.hashName("SOFTWARE"));
+        assertEquals(0x41L, LHRecord.hashName("a"));
+        assertEquals((37L * 0x41 + 0x42) & 0xFFFFFFFFL, LHRecord.hashName("ab"));
+    }
+}
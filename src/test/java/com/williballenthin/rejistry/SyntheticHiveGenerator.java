@@ -0,0 +1,297 @@
+package com.williballenthin.rejistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * SyntheticHiveGenerator writes reproducible hives of a configurable shape, using HiveWriter.
+ *   The tree has `depth` levels of keys beneath the root, each with `fanout` subkeys and
+ *   `valuesPerKey` values, until `maxKeys` keys have been written. Since HiveWriter streams
+ *   to disk, hives from a few KB up to the 2GB limit of the format's 32 bit offsets can be made.
+ *
+ * Values cycle through REG_SZ, REG_DWORD, REG_BIN, REG_QWORD, and REG_MULTI_SZ, with string and
+ *   binary data of about `valueSize` bytes. Every `bigDataInterval`-th value is instead a REG_BIN
+ *   of `bigDataSize` bytes, which is stored as big data via a "db" record.
+ *
+ * From the command line (with the test classpath):
+ *
+ *   SyntheticHiveGenerator [--depth N] [--fanout N] [--max-keys N] [--values-per-key N]
+ *       [--value-size N] [--big-data-interval N] [--big-data-size N] [--subkey-list lh|lf|li]
+ *       [--max-subkey-list-length N] [--names ascii|utf16|mixed] [--seed N] output.hive
+ */
+public class SyntheticHiveGenerator {
+    /**
+     * NameEncoding selects how key and value names are stored.
+     *   Names containing only ASCII are stored compressed; the others as UTF-16LE.
+     */
+    public enum NameEncoding {
+        ASCII,
+        UTF16,
+        ///< alternate between ASCII and UTF-16 names.
+        MIXED
+    }
+
+    private static final String[] STRINGS = {
+            "%SystemRoot%\\System32\\svchost.exe -k netsvcs",
+            "C:\\Program Files\\Common Files\\microsoft shared",
+            "{645FF040-5081-101B-9F08-00AA002F954E}",
+            "Microsoft Corporation",
+    };
+
+    private int _depth = 3;
+    private int _fanout = 10;
+    private long _maxKeys = Long.MAX_VALUE;
+    private int _valuesPerKey = 4;
+    private int _valueSize = 64;
+    private int _bigDataInterval = 0;
+    private int _bigDataSize = 0x10000;
+    private String _subkeyListType = "lh";
+    private int _maxSubkeyListLength = 0xFFFF;
+    private NameEncoding _nameEncoding = NameEncoding.ASCII;
+    private long _seed = 0;
+
+    private Random _random;
+    private long _numKeys;
+    private long _numValues;
+
+    public void setDepth(int depth) {
+        this._depth = depth;
+    }
+
+    public void setFanout(int fanout) {
+        this._fanout = fanout;
+    }
+
+    /**
+     * setMaxKeys limits the number of keys written, including the root key.
+     */
+    public void setMaxKeys(long maxKeys) {
+        this._maxKeys = maxKeys;
+    }
+
+    public void setValuesPerKey(int valuesPerKey) {
+        this._valuesPerKey = valuesPerKey;
+    }
+
+    /**
+     * setValueSize selects the approximate size in bytes of string and binary value data.
+     */
+    public void setValueSize(int valueSize) {
+        this._valueSize = valueSize;
+    }
+
+    /**
+     * setBigDataInterval makes every `interval`-th value a big data value. Zero disables big data values.
+     */
+    public void setBigDataInterval(int interval) {
+        this._bigDataInterval = interval;
+    }
+
+    public void setBigDataSize(int size) {
+        this._bigDataSize = size;
+    }
+
+    /**
+     * setSubkeyListType selects the kind of subkey list written. See `HiveWriter.setSubkeyListType`.
+     */
+    public void setSubkeyListType(String magic) {
+        this._subkeyListType = magic;
+    }
+
+    /**
+     * setMaxSubkeyListLength selects the length above which subkey lists are split
+     *   beneath an "ri" index root. See `HiveWriter.setMaxSubkeyListLength`.
+     */
+    public void setMaxSubkeyListLength(int length) {
+        this._maxSubkeyListLength = length;
+    }
+
+    public void setNameEncoding(NameEncoding encoding) {
+        this._nameEncoding = encoding;
+    }
+
+    public void setSeed(long seed) {
+        this._seed = seed;
+    }
+
+    /**
+     * getNumKeys fetches the number of keys written by the last call to `generate`.
+     */
+    public long getNumKeys() {
+        return this._numKeys;
+    }
+
+    /**
+     * getNumValues fetches the number of values written by the last call to `generate`.
+     */
+    public long getNumValues() {
+        return this._numValues;
+    }
+
+    /**
+     * generate writes a hive with the configured shape to `file`.
+     *   The same configuration always produces the same hive.
+     */
+    public void generate(File file) throws IOException {
+        this._random = new Random(this._seed);
+        this._numKeys = 0;
+        this._numValues = 0;
+
+        // not closed on failure, since HiveWriter.close would report the unfinished keys instead of the cause
+        HiveWriter w = new HiveWriter(file);
+        w.setSubkeyListType(this._subkeyListType);
+        w.setMaxSubkeyListLength(this._maxSubkeyListLength);
+        this.writeKey(w, "ROOT", 0);
+        w.close();
+    }
+
+    private void writeKey(HiveWriter w, String name, int depth) throws IOException {
+        w.beginKey(name, HiveWriter.DEFAULT_TIMESTAMP + this._random.nextInt(Integer.MAX_VALUE));
+        this._numKeys++;
+
+        for (int i = 0; i < this._valuesPerKey; i++) {
+            this.writeValue(w, i);
+        }
+
+        if (depth < this._depth) {
+            for (int i = 0; i < this._fanout && this._numKeys < this._maxKeys; i++) {
+                this.writeKey(w, this.getName("Key", this._numKeys), depth + 1);
+            }
+        }
+        w.endKey();
+    }
+
+    private void writeValue(HiveWriter w, int index) throws IOException {
+        this._numValues++;
+        String name = this.getName("Value", index);
+
+        if (this._bigDataInterval > 0 && this._numValues % this._bigDataInterval == 0) {
+            w.addValue(name, RegistryValueType.REG_BIN, getBigData(this._bigDataSize));
+            return;
+        }
+
+        switch (index % 5) {
+            case 0:
+                w.addString(name, this.getString());
+                break;
+            case 1:
+                w.addDword(name, this._random.nextInt());
+                break;
+            case 2: {
+                byte[] data = new byte[this._valueSize];
+                this._random.nextBytes(data);
+                w.addValue(name, RegistryValueType.REG_BIN, data);
+                break;
+            }
+            case 3:
+                w.addQword(name, this._random.nextLong());
+                break;
+            default: {
+                StringBuilder sb = new StringBuilder();
+                while (sb.length() * 2 < this._valueSize) {
+                    sb.append(STRINGS[this._random.nextInt(STRINGS.length)]).append('\0');
+                }
+                sb.append('\0');
+                w.addValue(name, RegistryValueType.REG_MULTI_SZ, sb.toString().getBytes("UTF-16LE"));
+            }
+        }
+    }
+
+    private String getString() {
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append(STRINGS[this._random.nextInt(STRINGS.length)]);
+        } while (sb.length() * 2 < this._valueSize);
+        return sb.substring(0, Math.max(0, this._valueSize / 2 - 1));
+    }
+
+    /**
+     * getName builds the `index`-th name with the given prefix, in the configured encoding.
+     */
+    private String getName(String prefix, long index) {
+        boolean wide = this._nameEncoding == NameEncoding.UTF16
+                || (this._nameEncoding == NameEncoding.MIXED && index % 2 == 1);
+        // U+00FC LATIN SMALL LETTER U WITH DIAERESIS, which prevents the name from being compressed
+        return wide ? prefix + "\u00FC" + index : prefix + index;
+    }
+
+    /**
+     * getBigData builds the data of big data values: a repeating pattern that is easy to verify.
+     */
+    public static byte[] getBigData(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte)(i % 251);
+        }
+        return data;
+    }
+
+    /**
+     * countKeys counts `key` and all the keys beneath it, so that a hive read back may be checked
+     *   against `getNumKeys`.
+     */
+    public static int countKeys(RegistryKey key) throws RegistryParseException {
+        int count = 1;
+        for (RegistryKey subkey : key.getSubkeyList()) {
+            count += countKeys(subkey);
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        File output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    output = new File(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                if (arg.equals("--depth")) {
+                    g.setDepth(Integer.parseInt(value));
+                } else if (arg.equals("--fanout")) {
+                    g.setFanout(Integer.parseInt(value));
+                } else if (arg.equals("--max-keys")) {
+                    g.setMaxKeys(Long.parseLong(value));
+                } else if (arg.equals("--values-per-key")) {
+                    g.setValuesPerKey(Integer.parseInt(value));
+                } else if (arg.equals("--value-size")) {
+                    g.setValueSize(Integer.parseInt(value));
+                } else if (arg.equals("--big-data-interval")) {
+                    g.setBigDataInterval(Integer.parseInt(value));
+                } else if (arg.equals("--big-data-size")) {
+                    g.setBigDataSize(Integer.parseInt(value));
+                } else if (arg.equals("--subkey-list")) {
+                    g.setSubkeyListType(value);
+                } else if (arg.equals("--max-subkey-list-length")) {
+                    g.setMaxSubkeyListLength(Integer.parseInt(value));
+                } else if (arg.equals("--names")) {
+                    g.setNameEncoding(NameEncoding.valueOf(value.toUpperCase()));
+                } else if (arg.equals("--seed")) {
+                    g.setSeed(Long.parseLong(value));
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (output == null) {
+                throw new IllegalArgumentException("Missing output file");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("usage: SyntheticHiveGenerator [--depth N] [--fanout N] [--max-keys N] [--values-per-key N]");
+            System.out.println("           [--value-size N] [--big-data-interval N] [--big-data-size N] [--subkey-list lh|lf|li]");
+            System.out.println("           [--max-subkey-list-length N] [--names ascii|utf16|mixed] [--seed N] output.hive");
+            System.exit(1);
+        }
+
+        g.generate(output);
+        System.out.println("Wrote " + g.getNumKeys() + " keys and " + g.getNumValues() + " values, "
+                + output.length() + " bytes, to " + output);
+    }
+}
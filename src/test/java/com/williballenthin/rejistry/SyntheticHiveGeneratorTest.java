@@ -0,0 +1,102 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKRecord;
+import com.williballenthin.rejistry.record.RIRecord;
+import com.williballenthin.rejistry.record.SubkeyList;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SyntheticHiveGeneratorTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testGeneratedHiveParses() throws Exception {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(3);
+        g.setFanout(6);
+        g.setValuesPerKey(5);
+        g.setBigDataInterval(7);
+        g.setBigDataSize(0x9000);
+        g.setMaxSubkeyListLength(4);
+        g.setNameEncoding(SyntheticHiveGenerator.NameEncoding.MIXED);
+        g.generate(this._file);
+        assertEquals(1 + 6 + 6 * 6 + 6 * 6 * 6, g.getNumKeys());
+        assertEquals(5 * g.getNumKeys(), g.getNumValues());
+
+        final AtomicInteger keys = new AtomicInteger();
+        final AtomicInteger values = new AtomicInteger();
+        final AtomicInteger bigValues = new AtomicInteger();
+        final byte[] expected = SyntheticHiveGenerator.getBigData(0x9000);
+        new RegistryWalker(new RegistryHiveFile(this._file)).walk(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) {
+                keys.incrementAndGet();
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) throws RegistryParseException, UnsupportedEncodingException {
+                values.incrementAndGet();
+                ByteBuffer data = value.getValue().getAsRawData();
+                if (data.remaining() == expected.length) {
+                    byte[] actual = new byte[data.remaining()];
+                    data.get(actual);
+                    assertTrue(Arrays.equals(expected, actual));
+                    bigValues.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(g.getNumKeys(), keys.get());
+        assertEquals(g.getNumValues(), values.get());
+        assertEquals(g.getNumValues() / 7, bigValues.get());
+    }
+
+    public void testIndexRootLookup() throws Exception {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(1);
+        g.setFanout(100);
+        g.setValuesPerKey(0);
+        g.setMaxSubkeyListLength(8);
+        g.generate(this._file);
+
+        SubkeyList list = new RegistryHiveFile(this._file).getHeader().getRootNKRecord().getSubkeyList();
+        assertTrue(list instanceof RIRecord);
+
+        int count = 0;
+        Iterator<NKRecord> it = list.getSubkeys();
+        while (it.hasNext()) {
+            NKRecord key = it.next();
+            assertEquals(key.getName(), list.getSubkey(key.getName().toLowerCase()).getName());
+            count++;
+        }
+        assertEquals(100, count);
+    }
+
+    public void testMaxKeys() throws Exception {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(10);
+        g.setFanout(10);
+        g.setMaxKeys(500);
+        g.setNameEncoding(SyntheticHiveGenerator.NameEncoding.UTF16);
+        g.generate(this._file);
+        assertEquals(500, g.getNumKeys());
+
+        RegistryKey root = new RegistryHiveFile(this._file).getRoot();
+        assertEquals("Key\u00FC1", root.getSubkeyList().get(0).getName());
+    }
+}
@@ -0,0 +1,102 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TimelineScannerTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(3);
+        g.setFanout(12);
+        g.setValuesPerKey(1);
+        g.generate(this._file);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    /**
+     * collect fetches the timestamps of the key at `offset` and its descendants, walking the tree.
+     */
+    private static void collect(NKCursor nk, int offset, List<Long> timestamps) throws Exception {
+        assertTrue(nk.moveTo(offset));
+        timestamps.add(nk.getTimestampFiletime());
+        int[] subkeys = new int[nk.getSubkeyCount()];
+        int count = nk.readSubkeyOffsets(subkeys);
+        for (int i = 0; i < count; i++) {
+            collect(nk, subkeys[i], timestamps);
+        }
+    }
+
+    public void testMatchesTreeWalk() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        List<Long> all = new ArrayList<Long>();
+        collect(header.newNKCursor(), header.getRootCellOffset(), all);
+        Collections.sort(all);
+        long start = all.get(all.size() / 4);
+        long end = all.get((3 * all.size()) / 4);
+
+        List<Long> expected = new ArrayList<Long>();
+        for (long timestamp : all) {
+            if (timestamp >= start && timestamp < end) {
+                expected.add(timestamp);
+            }
+        }
+
+        Timeline timeline = new TimelineScanner(header).scan(start, end);
+        assertEquals(expected.size(), timeline.getCount());
+        NKCursor nk = header.newNKCursor();
+        for (int i = 0; i < timeline.getCount(); i++) {
+            assertEquals(expected.get(i).longValue(), timeline.getTimestamps()[i]);
+            assertTrue(nk.moveTo(timeline.getKeyOffsets()[i]));
+            assertEquals(expected.get(i).longValue(), nk.getTimestampFiletime());
+        }
+    }
+
+    public void testParallelMatchesSequential() throws Exception {
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        TimelineScanner scanner = new TimelineScanner(header);
+        Timeline sequential = scanner.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+        scanner.setParallel(true);
+        Timeline parallel = scanner.scan(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        assertEquals(1 + 12 + (12 * 12) + (12 * 12 * 12), sequential.getCount());
+        assertTrue(Arrays.equals(sequential.getKeyOffsets(), parallel.getKeyOffsets()));
+        assertTrue(Arrays.equals(sequential.getTimestamps(), parallel.getTimestamps()));
+    }
+
+    public void testTimestampConversions() throws Exception {
+        assertEquals(Instant.EPOCH, U.filetimeToInstant(U.FILETIME_UNIX_EPOCH));
+        assertEquals(Instant.EPOCH.minusNanos(100), U.filetimeToInstant(U.FILETIME_UNIX_EPOCH - 1));
+        assertEquals(-1, U.filetimeToMillis(U.FILETIME_UNIX_EPOCH - 1));
+        assertEquals(U.FILETIME_UNIX_EPOCH - 10000, U.millisToFiletime(-1));
+        assertEquals(U.FILETIME_UNIX_EPOCH + 1, U.instantToFiletime(Instant.EPOCH.plusNanos(199)));
+
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        Timeline timeline = new TimelineScanner(header).scan(Long.MIN_VALUE, Long.MAX_VALUE);
+        for (int i = 0; i < timeline.getCount(); i++) {
+            long filetime = timeline.getTimestamps()[i];
+            RegistryKey key = new RegistryKey(header.getCellAtOffset(timeline.getKeyOffsets()[i]).getNKRecord());
+            assertEquals(filetime, key.getTimestampFiletime());
+            assertEquals(filetime, U.instantToFiletime(key.getTimestampInstant()));
+            assertEquals(key.getTimestampInstant().toEpochMilli(), key.getTimestamp().getTimeInMillis());
+        }
+
+        Instant start = U.filetimeToInstant(timeline.getTimestamps()[10]);
+        Instant end = U.filetimeToInstant(timeline.getTimestamps()[20]);
+        assertTrue(new TimelineScanner(header).scan(start, end).getCount() >= 10);
+    }
+}
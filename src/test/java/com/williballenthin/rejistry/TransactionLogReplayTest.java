@@ -0,0 +1,189 @@
+package com.williballenthin.rejistry;
+
+import com.williballenthin.rejistry.record.NKCursor;
+import com.williballenthin.rejistry.record.VKCursor;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class TransactionLogReplayTest extends TestCase {
+    private static final int PAGE_SIZE = 0x1000;
+    private File _hive;
+    private File _log1;
+    private File _log2;
+    private byte[] _original;
+    private int _hbinsSize;
+    ///< the offset of the data cell of "Version", relative to the first HBIN.
+    private int _versionData;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._hive = File.createTempFile("rejistry", ".hive");
+        this._log1 = new File(this._hive.getPath() + ".LOG1");
+        this._log2 = new File(this._hive.getPath() + ".LOG2");
+        HiveWriter w = new HiveWriter(this._hive);
+        try {
+            w.beginKey("ROOT");
+            w.addString("Version", "old-value");
+            w.beginKey("Keep");
+            w.endKey();
+            w.endKey();
+        } finally {
+            w.close();
+        }
+        this._original = Files.readAllBytes(this._hive.toPath());
+
+        REGFHeader header = new RegistryHiveFile(this._hive).getHeader();
+        this._hbinsSize = header.getLastHbinOffset();
+        NKCursor nk = header.newNKCursor();
+        nk.moveTo(header.getRootCellOffset());
+        int[] values = new int[1];
+        nk.readValueOffsets(values);
+        VKCursor vk = header.newVKCursor();
+        vk.moveTo(values[0]);
+        this._versionData = vk.getDataCellOffset();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._hive.delete();
+        this._log1.delete();
+        this._log2.delete();
+    }
+
+    /**
+     * withVersion fetches a copy of the hive in which the data of "Version" is `version`,
+     *   which must be as long as the original.
+     */
+    private byte[] withVersion(String version) throws Exception {
+        byte[] hive = this._original.clone();
+        byte[] data = HiveWriter.encodeString(version);
+        System.arraycopy(data, 0, hive, REGFHeader.FIRST_HBIN_OFFSET + this._versionData + 0x4, data.length);
+        return hive;
+    }
+
+    /**
+     * entry builds an "HvLE" log entry holding the pages of `hive` at the given offsets, relative to the first HBIN.
+     */
+    private static byte[] entry(long sequenceNumber, int hbinsSize, byte[] hive, int... pages) {
+        int size = 0x28 + (0x8 * pages.length) + (PAGE_SIZE * pages.length);
+        size = (size + 0x1FF) & ~0x1FF;
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(new byte[] {'H', 'v', 'L', 'E'});
+        b.putInt(0x4, size);
+        b.putInt(0xC, (int)sequenceNumber);
+        b.putInt(0x10, hbinsSize);
+        b.putInt(0x14, pages.length);
+        for (int i = 0; i < pages.length; i++) {
+            b.putInt(0x28 + (0x8 * i), pages[i]);
+            b.putInt(0x28 + (0x8 * i) + 0x4, PAGE_SIZE);
+            int source = REGFHeader.FIRST_HBIN_OFFSET + pages[i];
+            int length = Math.max(0, Math.min(PAGE_SIZE, hive.length - source));
+            System.arraycopy(hive, source, b.array(), 0x28 + (0x8 * pages.length) + (PAGE_SIZE * i), length);
+        }
+        b.putLong(0x18, Marvin32.hash(b, 0x28, size - 0x28, Marvin32.LOG_ENTRY_SEED));
+        b.putLong(0x20, Marvin32.hash(b, 0x0, 0x20, Marvin32.LOG_ENTRY_SEED));
+        return b.array();
+    }
+
+    private void writeLog(File log, byte[]... entries) throws Exception {
+        FileOutputStream out = new FileOutputStream(log);
+        try {
+            out.write(this._original, 0, 0x200);
+            for (byte[] entry : entries) {
+                out.write(entry);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private int getVersionPage() {
+        return this._versionData & ~(PAGE_SIZE - 1);
+    }
+
+    private static String getVersion(RegistryHive hive) throws Exception {
+        return hive.getRoot().getValue("Version").getValue().getAsString();
+    }
+
+    public void testReplay() throws Exception {
+        this.writeLog(this._log1, entry(1, this._hbinsSize, this.withVersion("new-value"), this.getVersionPage()));
+
+        TransactionLogReplay replay = new TransactionLogReplay(this._hive, this._log1, this._log2);
+        RegistryHive hive = replay.replay();
+        assertEquals(1, replay.getAppliedEntryCount());
+        assertEquals("new-value", getVersion(hive));
+        assertEquals("Keep", hive.getKey("Keep").getName());
+        // the base block and the dirty page
+        assertEquals(2, replay.getCopiedPageCount());
+
+        REGFHeader header = hive.getHeader();
+        assertTrue(header.isSynchronized());
+        assertEquals(2, header.getSecondarySequenceNumber());
+        assertEquals(REGFHeader.computeChecksum(header._buf, 0x0), header._buf.getInt(REGFHeader.CHECKSUM_OFFSET));
+
+        // the primary file is untouched
+        assertTrue(Arrays.equals(this._original, Files.readAllBytes(this._hive.toPath())));
+        assertEquals("old-value", getVersion(new RegistryHiveFile(this._hive)));
+    }
+
+    public void testCorruptEntryIsIgnored() throws Exception {
+        byte[] entry = entry(1, this._hbinsSize, this.withVersion("new-value"), this.getVersionPage());
+        entry[entry.length - 1] ^= 0x1;
+        this.writeLog(this._log1, entry);
+
+        TransactionLogReplay replay = new TransactionLogReplay(this._hive, this._log1);
+        assertEquals("old-value", getVersion(replay.replay()));
+        assertEquals(0, replay.getAppliedEntryCount());
+    }
+
+    public void testEntriesAreMergedAcrossLogs() throws Exception {
+        int page = this.getVersionPage();
+        this.writeLog(this._log1, entry(1, this._hbinsSize, this.withVersion("new-value"), page));
+        this.writeLog(this._log2,
+                entry(0, this._hbinsSize, this.withVersion("bad-value"), page),
+                entry(2, this._hbinsSize, this.withVersion("nxt-value"), page),
+                entry(4, this._hbinsSize, this.withVersion("gap-value"), page));
+
+        TransactionLogReplay replay = new TransactionLogReplay(this._hive, this._log2, this._log1);
+        assertEquals("nxt-value", getVersion(replay.replay()));
+        assertEquals(2, replay.getAppliedEntryCount());
+    }
+
+    public void testHiveGrows() throws Exception {
+        int size = this._hbinsSize + PAGE_SIZE;
+        this.writeLog(this._log1, entry(1, size, this.withVersion("new-value"), this.getVersionPage(), this._hbinsSize));
+
+        TransactionLogReplay replay = new TransactionLogReplay(this._hive, this._log1);
+        RegistryHive hive = replay.replay();
+        assertEquals(size, hive.getHeader().getLastHbinOffset());
+        assertEquals(REGFHeader.FIRST_HBIN_OFFSET + size, hive.getHeader()._buf.capacity());
+        assertEquals("new-value", getVersion(hive));
+        // the base block, the dirty page, and the new page; the rest of the file is still mapped
+        assertEquals(3, replay.getCopiedPageCount());
+    }
+
+    public void testReadOnlyHive() throws Exception {
+        this.writeLog(this._log1, entry(1, this._hbinsSize, this.withVersion("new-value"), this.getVersionPage()));
+        assertTrue(this._hive.setReadOnly());
+        try {
+            TransactionLogReplay replay = new TransactionLogReplay(this._hive, this._log1);
+            assertEquals("new-value", getVersion(replay.replay()));
+            assertEquals(2, replay.getCopiedPageCount());
+        } finally {
+            this._hive.setWritable(true);
+        }
+    }
+
+    public void testMarvin32() throws Exception {
+        long seed = 0x004FB61A001BDBCCL;
+        assertEquals(0x48E73FC77D75DDC1L, Marvin32.hash(ByteBuffer.wrap(new byte[] {(byte)0xAF}), 0x0, 1, seed));
+        assertEquals(0xB5F6E1FC485DBFF8L, Marvin32.hash(ByteBuffer.wrap(new byte[] {(byte)0xE7, 0x0F}), 0x0, 2, seed));
+        assertEquals(0x7008F2E87E9CF556L, Marvin32.hash(ByteBuffer.wrap(new byte[] {(byte)0x86, 0x42, (byte)0xDC, 0x59}), 0x0, 4, seed));
+    }
+}
@@ -0,0 +1,93 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ValueColumnExtractorTest extends TestCase {
+    private File _file;
+
+    @Override
+    protected void setUp() throws Exception {
+        this._file = File.createTempFile("rejistry", ".hive");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testColumnsMatchWalker() throws Exception {
+        SyntheticHiveGenerator g = new SyntheticHiveGenerator();
+        g.setDepth(3);
+        g.setFanout(6);
+        g.setValuesPerKey(5);
+        g.setMaxSubkeyListLength(4);
+        g.setNameEncoding(SyntheticHiveGenerator.NameEncoding.MIXED);
+        g.generate(this._file);
+
+        RegistryHiveFile hive = new RegistryHiveFile(this._file);
+        final List<Long> numbers = new ArrayList<Long>();
+        final List<String> strings = new ArrayList<String>();
+        new RegistryWalker(hive).walk(new RegistryVisitor() {
+            @Override
+            public void visitKey(String path, RegistryKey key) {
+            }
+
+            @Override
+            public void visitValue(String path, RegistryKey key, RegistryValue value) throws RegistryParseException, UnsupportedEncodingException {
+                switch (value.getValueType()) {
+                    case REG_DWORD:
+                    case REG_QWORD:
+                        numbers.add(value.getValue().getAsNumber());
+                        break;
+                    case REG_SZ:
+                        strings.add(value.getValue().getAsString());
+                        break;
+                }
+            }
+        });
+
+        ValueColumns columns = new ValueColumnExtractor(hive.getHeader()).extract();
+        assertEquals(g.getNumKeys(), columns.getDwords().length);
+        assertEquals(g.getNumKeys(), columns.getQwords().length);
+        assertEquals(g.getNumKeys(), columns.getStringCount());
+        assertEquals(g.getNumKeys() + 1, columns.getStringStarts().length);
+
+        // each key has one value of each type, so the columns interleave in walk order
+        for (int i = 0; i < g.getNumKeys(); i++) {
+            assertEquals((long)numbers.get(2 * i), Integer.toUnsignedLong(columns.getDwords()[i]));
+            assertEquals((long)numbers.get(2 * i + 1), columns.getQwords()[i]);
+            assertEquals(strings.get(i), columns.getString(i));
+            assertEquals(columns.getDwordKeyOffsets()[i], columns.getQwordKeyOffsets()[i]);
+        }
+    }
+
+    public void testBigString() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 0x5000) {
+            sb.append("big string ");
+        }
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.addString("Big", sb.toString());
+            w.addValue("BigEndian", RegistryValueType.REG_BIG_ENDIAN, new byte[] {0x12, 0x34, 0x56, 0x78});
+            w.addString("Small", "small");
+            w.endKey();
+        } finally {
+            w.close();
+        }
+
+        REGFHeader header = new RegistryHiveFile(this._file).getHeader();
+        ValueColumns columns = new ValueColumnExtractor(header).extract();
+        assertEquals(2, columns.getStringCount());
+        assertEquals(sb.toString(), columns.getString(0));
+        assertEquals("small", columns.getString(1));
+        assertEquals(0x12345678, columns.getDwords()[0]);
+        assertEquals(header.getRootCellOffset(), columns.getDwordKeyOffsets()[0]);
+    }
+}
@@ -0,0 +1,118 @@
+package com.williballenthin.rejistry;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ValueDataTest extends TestCase {
+    private static final int BIG_SIZE = 0x9000;
+    private File _file;
+    private String _bigString;
+
+    @Override
+    protected void setUp() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 0x3000; i++) {
+            sb.append("segment ").append(i).append(' ');
+        }
+        this._bigString = sb.toString();
+
+        this._file = File.createTempFile("rejistry", ".hive");
+        HiveWriter w = new HiveWriter(this._file);
+        try {
+            w.beginKey("ROOT");
+            w.addDword("Dword", 0x12345678);
+            w.addString("Small", "small string");
+            w.addString("BigString", this._bigString);
+            w.addValue("BigBinary", RegistryValueType.REG_BIN, SyntheticHiveGenerator.getBigData(BIG_SIZE));
+            w.addValue("Multi", RegistryValueType.REG_MULTI_SZ, HiveWriter.encodeString("one\0\0three\0"));
+            w.endKey();
+        } finally {
+            w.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this._file.delete();
+    }
+
+    public void testResidentData() throws Exception {
+        ValueData data = new RegistryHiveFile(this._file).getRoot().getValue("Dword").getValue();
+        assertEquals(4, data.getLength());
+        assertEquals(1, data.getAsSegments().size());
+        assertTrue(data.getAsRawData().isReadOnly());
+        assertEquals(0x12345678, data.getAsNumber());
+    }
+
+    public void testBigDataSegments() throws Exception {
+        ValueData data = new RegistryHiveFile(this._file).getRoot().getValue("BigBinary").getValue();
+        assertEquals(BIG_SIZE, data.getLength());
+
+        List<ByteBuffer> segments = data.getAsSegments();
+        assertEquals(3, segments.size());
+        assertEquals(0x3FD8, segments.get(0).remaining());
+        assertEquals(BIG_SIZE - 2 * 0x3FD8, segments.get(2).remaining());
+
+        byte[] actual = new byte[BIG_SIZE];
+        int offset = 0;
+        for (ByteBuffer segment : segments) {
+            assertTrue(segment.isReadOnly());
+            int length = segment.remaining();
+            segment.get(actual, offset, length);
+            offset += length;
+        }
+        assertTrue(Arrays.equals(SyntheticHiveGenerator.getBigData(BIG_SIZE), actual));
+
+        // the segments are independent views
+        assertEquals(0x3FD8, data.getAsSegments().get(0).remaining());
+        assertEquals(BIG_SIZE, data.getAsRawData().remaining());
+    }
+
+    public void testStrings() throws Exception {
+        RegistryHiveBuffer hive = new RegistryHiveBuffer(ByteBuffer.wrap(Files.readAllBytes(this._file.toPath())));
+        assertEquals("small string", hive.getRoot().getValue("Small").getValue().getAsString());
+        ValueData big = hive.getRoot().getValue("BigString").getValue();
+        assertTrue(big.getAsSegments().size() > 1);
+        assertEquals(this._bigString, big.getAsString());
+        assertEquals(this._bigString, big.getAsStringList().get(0));
+    }
+
+    public void testDecodedValuesAreShared() throws Exception {
+        RegistryKey root = new RegistryHiveFile(this._file).getRoot();
+        RegistryValue small = root.getValue("Small");
+        assertSame(small.getValue(), small.getValue());
+        assertSame(small.getValue().getAsString(), small.getValue().getAsString());
+
+        ValueData multi = root.getValue("Multi").getValue();
+        assertEquals(Arrays.asList("one", "", "three", ""), multi.getAsStringList());
+        assertSame(multi.getAsStringList(), multi.getAsStringList());
+        try {
+            multi.getAsStringList().add("four");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testDecodeMatchesCharsetDecoder() throws Exception {
+        Random random = new Random(0);
+        // mostly ASCII and surrogate code units, in either order, with the occasional NULL and odd byte
+        byte[] units = {0x00, 0x41, (byte)0xD8, (byte)0xDC, 0x20};
+        for (int i = 0; i < 10000; i++) {
+            byte[] data = new byte[random.nextInt(16)];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = j % 2 == 0 ? (byte)random.nextInt(0x100) : units[random.nextInt(units.length)];
+            }
+            String expected = new String(data, "UTF-16LE");
+            int eos = expected.indexOf(0x0);
+            expected = eos == -1 ? expected : expected.substring(0, eos);
+            assertEquals(expected, U.decodeWString(ByteBuffer.wrap(data), 0x0, data.length));
+        }
+    }
+}